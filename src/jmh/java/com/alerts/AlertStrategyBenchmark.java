@@ -0,0 +1,84 @@
+package com.alerts;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each {@link AlertStrategy#evaluateData} on the records of one
+ * patient over a window of the given length, as AlertGenerator passes them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertStrategyBenchmark {
+
+    @Param({"BloodPressure", "BloodSaturation", "HypotensiveHypoxemia", "ECG", "Triggered"})
+    String strategyName;
+
+    @Param({"10000", "86400"})
+    int recordsPerPatient;
+
+    @Param({"simulator", "vitals"})
+    String mix;
+
+    @Param({"60", "1440"})
+    int windowMinutes;
+
+    AlertStrategy strategy;
+    Patient patient;
+    List<PatientRecord> records;
+
+    @Setup
+    public void createData() {
+        SyntheticDataBuilder.Dataset dataset = new SyntheticDataBuilder(1)
+                .recordsPerPatient(recordsPerPatient)
+                .mix(mix)
+                .build();
+        DataStorage storage = dataset.fill(new DataStorage());
+        patient = storage.getAllPatients().get(0);
+        long end = dataset.lastTimestamp();
+        records = storage.getRecords(patient.getPatientId(), end - windowMinutes * 60_000L, end);
+        strategy = createStrategy(strategyName);
+    }
+
+    static AlertStrategy createStrategy(String name) {
+        switch (name) {
+            case "BloodPressure":
+                return new BloodPressureAlertStrategy();
+            case "BloodSaturation":
+                return new BloodSaturationAlertStrategy();
+            case "HypotensiveHypoxemia":
+                return new HypotensiveHypoxemiaAlertStrategy();
+            case "ECG":
+                return new ECGAlertStrategy();
+            case "Triggered":
+                return new TriggeredAlertStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    @Benchmark
+    public List<Alert> evaluateData() {
+        return strategy.evaluateData(patient, records);
+    }
+}
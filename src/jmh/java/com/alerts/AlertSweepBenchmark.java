@@ -0,0 +1,60 @@
+package com.alerts;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import com.data_management.DataStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full {@link AlertGenerator#evaluateAllPatients()} sweep, once on
+ * the calling thread and once spread over the common fork-join pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertSweepBenchmark {
+
+    @Param({"200", "2000"})
+    int patientCount;
+
+    @Param({"1000"})
+    int recordsPerPatient;
+
+    @Param({"serial", "parallel"})
+    String evaluation;
+
+    AlertGenerator generator;
+
+    @Setup
+    public void createData() {
+        DataStorage storage = new SyntheticDataBuilder(patientCount)
+                .recordsPerPatient(recordsPerPatient)
+                .build()
+                .fill(new DataStorage());
+        generator = new AlertGenerator(storage);
+        if (evaluation.equals("parallel")) {
+            generator.enableParallelEvaluation(ForkJoinPool.commonPool());
+        }
+    }
+
+    @Benchmark
+    public List<Alert> evaluateAllPatients() {
+        return generator.evaluateAllPatients();
+    }
+}
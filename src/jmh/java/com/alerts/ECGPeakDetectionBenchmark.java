@@ -0,0 +1,107 @@
+package com.alerts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the original O(n*w) ECG peak scan against {@link ECGAlertStrategy},
+ * which now uses {@link SlidingWindowPeakDetector}.
+ * The original scan is reproduced here without its early {@code break}, so
+ * both sides look for every peak.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ECGPeakDetectionBenchmark {
+
+    private static final double ABNORMAL_PEAK_MULTIPLIER = 2.5;
+
+    @Param({"10000", "100000", "1000000"})
+    int samples;
+
+    @Param({"10", "250"})
+    int windowSize;
+
+    Patient patient;
+    List<PatientRecord> records;
+    double[] values;
+
+    @Setup
+    public void createSignal() {
+        patient = new Patient(1);
+        records = new ArrayList<>(samples);
+        values = new double[samples];
+        Random random = new Random(42);
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < samples; i++) {
+            double t = i / 250.0;
+            double value = 0.1 * Math.sin(2 * Math.PI * 1.2 * t)
+                    + 0.5 * Math.sin(2 * Math.PI * 3.6 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 2.4 * t + Math.PI / 4)
+                    + random.nextDouble() * 0.05;
+            if (random.nextInt(1000) == 0) {
+                value *= 6; // occasional artefact
+            }
+            values[i] = value;
+            records.add(new PatientRecord(1, value, "ECG", start + i * 4L));
+        }
+    }
+
+    @Benchmark
+    public int originalNestedLoop() {
+        List<PatientRecord> ecgRecords = records.stream()
+                .filter(r -> "ECG".equals(r.getRecordType()))
+                .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
+                .collect(Collectors.toList());
+        int peaks = 0;
+        for (int i = windowSize; i < ecgRecords.size(); i++) {
+            double currentValue = ecgRecords.get(i).getMeasurementValue();
+            double sum = 0;
+            for (int j = i - windowSize; j < i; j++) {
+                sum += Math.abs(ecgRecords.get(j).getMeasurementValue());
+            }
+            double average = sum / windowSize;
+            if (Math.abs(currentValue) > average * ABNORMAL_PEAK_MULTIPLIER) {
+                peaks++;
+            }
+        }
+        return peaks;
+    }
+
+    @Benchmark
+    public List<Alert> ecgAlertStrategy() {
+        return new ECGAlertStrategy(windowSize).evaluateData(patient, records);
+    }
+
+    @Benchmark
+    public int detectorOnly() {
+        SlidingWindowPeakDetector detector = new SlidingWindowPeakDetector(windowSize, ABNORMAL_PEAK_MULTIPLIER);
+        int peaks = 0;
+        for (double value : values) {
+            if (detector.offer(value)) {
+                peaks++;
+            }
+        }
+        return peaks;
+    }
+}
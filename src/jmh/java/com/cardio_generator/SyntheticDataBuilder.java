@@ -0,0 +1,333 @@
+package com.cardio_generator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.RecordCodec;
+
+/**
+ * Builds benchmark data sets by running the real generators from
+ * {@code cardio_generator.generators} against a virtual clock.
+ * Each virtual second runs every generator that is due for every patient, in
+ * the same periods the simulator uses, and stamps the readings with virtual
+ * time, so a day of data takes as long as the generators need to run.
+ */
+public class SyntheticDataBuilder {
+
+    /**
+     * Which generators contribute readings.
+     * SIMULATOR uses the simulator's schedule (ECG and saturation every second,
+     * blood pressure every minute, blood levels every two minutes, alerts every 20 seconds),
+     * ECG runs only the ECG generator and VITALS runs saturation and blood pressure every second.
+     */
+    public enum Mix { SIMULATOR, ECG, VITALS }
+
+    private final int patientCount;
+    private int recordsPerPatient = 1000;
+    private Mix mix = Mix.SIMULATOR;
+    private long endTime = System.currentTimeMillis();
+    private long seed = 42;
+
+    public SyntheticDataBuilder(int patientCount) {
+        this.patientCount = patientCount;
+    }
+
+    public SyntheticDataBuilder recordsPerPatient(int recordsPerPatient) {
+        this.recordsPerPatient = recordsPerPatient;
+        return this;
+    }
+
+    public SyntheticDataBuilder mix(Mix mix) {
+        this.mix = mix;
+        return this;
+    }
+
+    public SyntheticDataBuilder mix(String mix) {
+        return mix(Mix.valueOf(mix.toUpperCase()));
+    }
+
+    /**
+     * @param seed the same seed gives the same readings
+     */
+    public SyntheticDataBuilder seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param endTime the virtual time of the last tick; the data ends here
+     */
+    public SyntheticDataBuilder endTime(long endTime) {
+        this.endTime = endTime;
+        return this;
+    }
+
+    /**
+     * Runs the generators until every patient has {@code recordsPerPatient} readings.
+     * @return the readings, ordered by virtual time
+     */
+    public Dataset build() {
+        Collector collector = new Collector(patientCount * recordsPerPatient);
+        List<ScheduledGenerator> schedule = createSchedule(() -> collector.now);
+        int[] produced = new int[patientCount + 1];
+
+        // run on a clock starting at 0, shift to endTime afterwards
+        int complete = 0;
+        for (long second = 0; complete < patientCount; second++) {
+            collector.now = second * 1000;
+            for (int patientId = 1; patientId <= patientCount; patientId++) {
+                if (produced[patientId] >= recordsPerPatient) {
+                    continue;
+                }
+                for (ScheduledGenerator scheduled : schedule) {
+                    if (second % scheduled.periodSeconds == 0) {
+                        int before = collector.size;
+                        collector.limit = recordsPerPatient - produced[patientId];
+                        scheduled.generator.generate(patientId, collector);
+                        produced[patientId] += collector.size - before;
+                    }
+                }
+                if (produced[patientId] >= recordsPerPatient) {
+                    complete++;
+                }
+            }
+        }
+
+        long shift = endTime - collector.now;
+        for (int i = 0; i < collector.size; i++) {
+            collector.timestamps[i] += shift;
+        }
+        return new Dataset(Arrays.copyOf(collector.patientIds, collector.size),
+                Arrays.copyOf(collector.timestamps, collector.size),
+                Arrays.copyOf(collector.recordTypes, collector.size),
+                Arrays.copyOf(collector.values, collector.size));
+    }
+
+    private List<ScheduledGenerator> createSchedule(LongSupplier clock) {
+        List<ScheduledGenerator> schedule = new ArrayList<>();
+        switch (mix) {
+            case ECG:
+                schedule.add(new ScheduledGenerator(new ECGDataGenerator(patientCount, seed, clock), 1));
+                break;
+            case VITALS:
+                schedule.add(new ScheduledGenerator(new BloodSaturationDataGenerator(patientCount, seed, clock), 1));
+                schedule.add(new ScheduledGenerator(new BloodPressureDataGenerator(patientCount, seed, clock), 1));
+                break;
+            default:
+                schedule.add(new ScheduledGenerator(new ECGDataGenerator(patientCount, seed, clock), 1));
+                schedule.add(new ScheduledGenerator(new BloodSaturationDataGenerator(patientCount, seed, clock), 1));
+                schedule.add(new ScheduledGenerator(new BloodPressureDataGenerator(patientCount, seed, clock), 60));
+                schedule.add(new ScheduledGenerator(new BloodLevelsDataGenerator(patientCount, seed, clock), 120));
+                schedule.add(new ScheduledGenerator(new AlertGenerator(patientCount, seed, clock), 20));
+        }
+        return schedule;
+    }
+
+    /**
+     * Turns generator output into a number: strips the "%" the saturation
+     * generator appends and maps alert states to 1 (triggered) and 0 (resolved).
+     */
+    static double parseValue(String data) {
+        switch (data) {
+            case "triggered":
+                return 1.0;
+            case "resolved":
+                return 0.0;
+            default:
+                return Double.parseDouble(data.endsWith("%") ? data.substring(0, data.length() - 1) : data);
+        }
+    }
+
+    private static class ScheduledGenerator {
+        final PatientDataGenerator generator;
+        final long periodSeconds;
+
+        ScheduledGenerator(PatientDataGenerator generator, long periodSeconds) {
+            this.generator = generator;
+            this.periodSeconds = periodSeconds;
+        }
+    }
+
+    private static class Collector implements OutputStrategy {
+        int[] patientIds;
+        long[] timestamps;
+        String[] recordTypes;
+        double[] values;
+        int size;
+        int limit;
+        long now;
+
+        Collector(int capacity) {
+            patientIds = new int[capacity];
+            timestamps = new long[capacity];
+            recordTypes = new String[capacity];
+            values = new double[capacity];
+        }
+
+        @Override
+        public void output(int patientId, long timestamp, String label, String data) {
+            if (limit <= 0) {
+                return; // the patient already has enough readings
+            }
+            limit--;
+            if (size == patientIds.length) {
+                int capacity = size * 2 + 16;
+                patientIds = Arrays.copyOf(patientIds, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                recordTypes = Arrays.copyOf(recordTypes, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            patientIds[size] = patientId;
+            timestamps[size] = now;
+            recordTypes[size] = label;
+            values[size] = parseValue(data);
+            size++;
+        }
+    }
+
+    /**
+     * A built data set in columnar form, with helpers to feed it to the
+     * different ingestion paths.
+     */
+    public static class Dataset {
+        public final int[] patientIds;
+        public final long[] timestamps;
+        public final String[] recordTypes;
+        public final double[] values;
+
+        Dataset(int[] patientIds, long[] timestamps, String[] recordTypes, double[] values) {
+            this.patientIds = patientIds;
+            this.timestamps = timestamps;
+            this.recordTypes = recordTypes;
+            this.values = values;
+        }
+
+        public int size() {
+            return patientIds.length;
+        }
+
+        public long firstTimestamp() {
+            return timestamps.length == 0 ? 0 : timestamps[0];
+        }
+
+        public long lastTimestamp() {
+            return timestamps.length == 0 ? 0 : timestamps[timestamps.length - 1];
+        }
+
+        /**
+         * Adds every reading to the given storage.
+         */
+        public DataStorage fill(DataStorage storage) {
+            for (int i = 0; i < patientIds.length; i++) {
+                storage.addPatientData(patientIds[i], values[i], recordTypes[i], timestamps[i]);
+            }
+            return storage;
+        }
+
+        /**
+         * Writes the readings as FileDataReader CSV files ("timestamp, patientId, type, value"),
+         * split into the given number of files.
+         */
+        public void writeCsv(Path directory, int files) throws IOException {
+            Files.createDirectories(directory);
+            int perFile = (patientIds.length + files - 1) / Math.max(files, 1);
+            for (int f = 0; f < files; f++) {
+                try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("data-" + f + ".csv"))) {
+                    int end = Math.min(patientIds.length, (f + 1) * perFile);
+                    for (int i = f * perFile; i < end; i++) {
+                        out.write(timestamps[i] + ", " + patientIds[i] + ", " + recordTypes[i] + ", " + values[i]);
+                        out.newLine();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the readings as WebSocket text messages ("patientId,timestamp,label,data")
+         */
+        public String[] csvMessages() {
+            String[] messages = new String[patientIds.length];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = patientIds[i] + "," + timestamps[i] + "," + recordTypes[i] + "," + values[i];
+            }
+            return messages;
+        }
+
+        /**
+         * @return the readings as the JSON messages WebSocketOutputStrategy sends
+         */
+        public String[] jsonMessages() {
+            String[] messages = new String[patientIds.length];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = "{\"patientId\":" + patientIds[i] + ",\"timestamp\":" + timestamps[i]
+                        + ",\"label\":\"" + recordTypes[i] + "\",\"data\":\"" + values[i] + "\"}";
+            }
+            return messages;
+        }
+
+        /**
+         * @param recordsPerFrame records per message
+         * @return the CSV messages joined into frames of newline separated lines
+         */
+        public String[] csvFrames(int recordsPerFrame) {
+            return frames(csvMessages(), recordsPerFrame, "", "\n", "");
+        }
+
+        /**
+         * @param recordsPerFrame records per message
+         * @return the JSON messages joined into JSON arrays
+         */
+        public String[] jsonFrames(int recordsPerFrame) {
+            return frames(jsonMessages(), recordsPerFrame, "[", ",", "]");
+        }
+
+        /**
+         * @param recordsPerFrame records per message
+         * @return the readings as binary messages of one {@link RecordCodec} frame each
+         */
+        public ByteBuffer[] binaryFrames(int recordsPerFrame) {
+            ByteBuffer[] frames = new ByteBuffer[(patientIds.length + recordsPerFrame - 1) / recordsPerFrame];
+            RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+            for (int f = 0; f < frames.length; f++) {
+                int end = Math.min(patientIds.length, (f + 1) * recordsPerFrame);
+                for (int i = f * recordsPerFrame; i < end; i++) {
+                    encoder.add(patientIds[i], timestamps[i], recordTypes[i], values[i]);
+                }
+                frames[f] = ByteBuffer.wrap(encoder.finishFrame()).asReadOnlyBuffer();
+            }
+            return frames;
+        }
+
+        private static String[] frames(String[] messages, int recordsPerFrame, String open, String separator,
+                                       String close) {
+            String[] frames = new String[(messages.length + recordsPerFrame - 1) / recordsPerFrame];
+            for (int f = 0; f < frames.length; f++) {
+                StringBuilder frame = new StringBuilder(open);
+                int end = Math.min(messages.length, (f + 1) * recordsPerFrame);
+                for (int i = f * recordsPerFrame; i < end; i++) {
+                    if (i > f * recordsPerFrame) {
+                        frame.append(separator);
+                    }
+                    frame.append(messages[i]);
+                }
+                frames[f] = frame.append(close).toString();
+            }
+            return frames;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.cardio_generator.outputs;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import com.data_management.DataStorage;
+import org.java_websocket.client.WebSocketClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures message handling in {@link WebSocketDataReader} without a network
+ * connection: CSV text frames and binary frames through the client callbacks and
+ * JSON messages through {@link WebSocketDataReader#onMessage}, one record or {@code recordsPerFrame}
+ * records per message, with the default or the high-throughput reader options.
+ * The reader's console logging is still executed, but sent to a discarding stream.
+ * Scores are messages per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebSocketDataReaderBenchmark {
+
+    @Param({"100"})
+    int patientCount;
+
+    @Param({"1000"})
+    int recordsPerPatient;
+
+    @Param({"simulator"})
+    String mix;
+
+    @Param({"1", "100"})
+    int recordsPerFrame;
+
+    @Param({"default", "highThroughput"})
+    String readerMode;
+
+    String[] csvMessages;
+    String[] jsonMessages;
+    ByteBuffer[] binaryMessages;
+    WebSocketDataReader reader;
+    WebSocketClient client;
+    PrintStream originalOut;
+    int next;
+
+    @Setup
+    public void createMessages() {
+        SyntheticDataBuilder.Dataset dataset = new SyntheticDataBuilder(patientCount)
+                .recordsPerPatient(recordsPerPatient)
+                .mix(mix)
+                .build();
+        csvMessages = dataset.csvFrames(recordsPerFrame);
+        jsonMessages = dataset.jsonFrames(recordsPerFrame);
+        binaryMessages = dataset.binaryFrames(recordsPerFrame);
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Iteration)
+    public void createReader() throws ReflectiveOperationException {
+        WebSocketDataReader.Options options = readerMode.equals("highThroughput")
+                ? WebSocketDataReader.Options.highThroughput()
+                : new WebSocketDataReader.Options();
+        reader = new WebSocketDataReader(new DataStorage(), "ws://localhost:9999", options);
+        Field field = WebSocketDataReader.class.getDeclaredField("client");
+        field.setAccessible(true);
+        client = (WebSocketClient) field.get(reader);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeReader() {
+        reader.close();
+    }
+
+    @TearDown
+    public void restoreOut() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void csvMessage() {
+        client.onMessage(csvMessages[next++ % csvMessages.length]);
+    }
+
+    @Benchmark
+    public void jsonMessage() {
+        reader.onMessage(jsonMessages[next++ % jsonMessages.length]);
+    }
+
+    @Benchmark
+    public void binaryMessage() {
+        client.onMessage(binaryMessages[next++ % binaryMessages.length].duplicate());
+    }
+}
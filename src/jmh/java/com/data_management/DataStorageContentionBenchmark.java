@@ -0,0 +1,98 @@
+package com.data_management;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Measures {@link DataStorage#addPatientData} throughput with 1, 4 and 16 writer threads.
+ * In "partitioned" mode every patient has a single writer thread, like one
+ * reader connection per ward; in "shared" mode all threads write all patients.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataStorageContentionBenchmark {
+
+    @Param({"1000"})
+    int patientCount;
+
+    @Param({"partitioned", "shared"})
+    String writerLayout;
+
+    DataStorage storage;
+
+    @Setup(Level.Iteration)
+    public void createStorage() {
+        storage = new DataStorage();
+    }
+
+    /**
+     * Per-thread cursor over the patients a writer thread sends data for.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        int nextPatient;
+        int step;
+        double value;
+
+        @Setup
+        public void setUp(DataStorageContentionBenchmark benchmark, ThreadParams threads) {
+            if ("partitioned".equals(benchmark.writerLayout)) {
+                nextPatient = threads.getThreadIndex();
+                step = threads.getThreadCount();
+            } else {
+                nextPatient = threads.getThreadIndex() * 7;
+                step = 1;
+            }
+        }
+
+        int patientId(int patientCount) {
+            int patientId = nextPatient % patientCount + 1;
+            nextPatient += step;
+            if (nextPatient < 0) {
+                nextPatient = 0;
+            }
+            return patientId;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void writers01(Writer writer) {
+        write(writer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void writers04(Writer writer) {
+        write(writer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void writers16(Writer writer) {
+        write(writer);
+    }
+
+    private void write(Writer writer) {
+        writer.value += 0.5;
+        storage.addPatientData(writer.patientId(patientCount), writer.value, "ECG", System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,80 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link FileDataReader#readData} and {@link ParallelFileDataReader#readData}
+ * over CSV files written from a synthetic data set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileDataReaderBenchmark {
+
+    @Param({"100"})
+    int patientCount;
+
+    @Param({"1000", "10000"})
+    int recordsPerPatient;
+
+    @Param({"simulator"})
+    String mix;
+
+    @Param({"4"})
+    int files;
+
+    Path directory;
+
+    @Setup
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("file-reader-bench");
+        new SyntheticDataBuilder(patientCount)
+                .recordsPerPatient(recordsPerPatient)
+                .mix(mix)
+                .build()
+                .writeCsv(directory, files);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public DataStorage readData() throws IOException {
+        DataStorage storage = new DataStorage();
+        new FileDataReader(directory.toString()).readData(storage);
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage parallelReadData() throws IOException {
+        DataStorage storage = new DataStorage();
+        new ParallelFileDataReader(directory.toString()).readData(storage);
+        return storage;
+    }
+}
@@ -0,0 +1,106 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rebuilding a {@link DataStorage} after a restart: replaying the
+ * write-ahead log or mapping snapshot segments, against re-parsing the same
+ * readings from CSV files.
+ * 24 hours of simulator data are about 172800 records per patient.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    @Param({"500"})
+    int patientCount;
+
+    @Param({"10000"})
+    int recordsPerPatient;
+
+    @Param({"simulator"})
+    String mix;
+
+    Path walDirectory;
+    Path csvDirectory;
+    Path snapshotDirectory;
+
+    @Setup
+    public void writeData() throws IOException {
+        SyntheticDataBuilder.Dataset dataset = new SyntheticDataBuilder(patientCount)
+                .recordsPerPatient(recordsPerPatient)
+                .mix(mix)
+                .build();
+        walDirectory = Files.createTempDirectory("recovery-bench-wal");
+        csvDirectory = Files.createTempDirectory("recovery-bench-csv");
+        snapshotDirectory = Files.createTempDirectory("recovery-bench-segments");
+        try (WriteAheadLog log = WriteAheadLog.open(walDirectory)) {
+            DataStorage storage = new DataStorage();
+            storage.setWriteAheadLog(log);
+            dataset.fill(storage);
+        }
+        try (SnapshotStore snapshots = new SnapshotStore(snapshotDirectory)) {
+            DataStorage storage = new DataStorage();
+            dataset.fill(storage);
+            snapshots.snapshot(storage);
+        }
+        dataset.writeCsv(csvDirectory, 4);
+    }
+
+    @TearDown
+    public void deleteData() throws IOException {
+        for (Path directory : new Path[] {walDirectory, csvDirectory, snapshotDirectory}) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public DataStorage walReplay() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (WriteAheadLog log = WriteAheadLog.open(walDirectory)) {
+            log.replayInto(storage);
+        }
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage snapshotLoad() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (SnapshotStore snapshots = new SnapshotStore(snapshotDirectory)) {
+            snapshots.loadInto(storage);
+        }
+        return storage;
+    }
+
+    @Benchmark
+    public DataStorage csvReparse() throws IOException {
+        DataStorage storage = new DataStorage();
+        new FileDataReader(csvDirectory.toString()).readData(storage);
+        return storage;
+    }
+}
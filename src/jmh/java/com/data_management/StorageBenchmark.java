@@ -0,0 +1,77 @@
+package com.data_management;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.SyntheticDataBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ingestion through {@link DataStorage#addPatientData} and time range
+ * queries through {@link Patient#getRecords}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    @Param({"10", "100"})
+    int patientCount;
+
+    @Param({"1000", "10000"})
+    int recordsPerPatient;
+
+    @Param({"simulator", "ecg"})
+    String mix;
+
+    @Param({"10", "1440"})
+    int windowMinutes;
+
+    SyntheticDataBuilder.Dataset dataset;
+    DataStorage storage;
+    List<Patient> patients;
+
+    @Setup
+    public void createData() {
+        dataset = new SyntheticDataBuilder(patientCount)
+                .recordsPerPatient(recordsPerPatient)
+                .mix(mix)
+                .build();
+        storage = dataset.fill(new DataStorage());
+        patients = storage.getAllPatients();
+    }
+
+    /**
+     * Ingests the whole data set into an empty storage; divide by the record
+     * count for the cost per reading.
+     */
+    @Benchmark
+    public DataStorage addPatientData() {
+        return dataset.fill(new DataStorage());
+    }
+
+    /**
+     * Queries the last {@code windowMinutes} of a random patient, the way
+     * AlertGenerator.evaluateData does.
+     */
+    @Benchmark
+    public List<PatientRecord> getRecords() {
+        Patient patient = patients.get(ThreadLocalRandom.current().nextInt(patients.size()));
+        long end = dataset.lastTimestamp();
+        return patient.getRecords(end - windowMinutes * 60_000L, end);
+    }
+}
@@ -5,11 +5,17 @@ public class Alert {
     private String patientId;
     private String condition;
     private long timestamp;
+    private String strategyName;
 
     public Alert(String patientId, String condition, long timestamp) {
+        this(patientId, condition, timestamp, null);
+    }
+
+    public Alert(String patientId, String condition, long timestamp, String strategyName) {
         this.patientId = patientId;
         this.condition = condition;
         this.timestamp = timestamp;
+        this.strategyName = strategyName;
     }
 
     public String getPatientId() {
@@ -23,4 +29,21 @@ public class Alert {
     public long getTimestamp() {
         return timestamp;
     }
+
+    /**
+     * @return the name of the strategy that raised this alert, or null if it is not known
+     */
+    public String getStrategyName() {
+        return strategyName;
+    }
+
+    /**
+     * @return this alert, attributed to the given strategy
+     */
+    Alert withStrategyName(String strategyName) {
+        if (strategyName == null || strategyName.equals(this.strategyName)) {
+            return this;
+        }
+        return new Alert(patientId, condition, timestamp, strategyName);
+    }
 }
@@ -3,18 +3,42 @@ package com.alerts;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordType;
+import com.metrics.LatencyHistogram;
+import com.metrics.MetricsRegistry;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * The AlertGenerator class checks patient data and creates alerts
  * when certain conditions are met. It uses a DataStorage instance
  * to access (+ evaluate) the patients health information.
+ * The time every strategy takes per patient is recorded in
+ * "alert_strategy_evaluation_seconds" of the default {@link MetricsRegistry}.
  */
 public class AlertGenerator {
+    private static final long EVALUATION_WINDOW = 24 * 60 * 60 * 1000; // 24 hours
+    // small tasks let idle workers take over the rest of a busy worker's patients
+    private static final int PATIENTS_PER_TASK = 8;
+
     private DataStorage dataStorage;
+    private List<Supplier<AlertStrategy>> strategyFactories;
     private List<AlertStrategy> alertStrategies;
+    private LatencyHistogram[] evaluationTimes; // one per strategy, in the order of the strategies
     private List<AlertListener> alertListeners;
+    private StreamingAlertEvaluator streamingEvaluator;
+    private volatile ExecutorService evaluationExecutor;
+    private volatile AlertSuppressor suppressor;
 
     /**
      * Creates an AlertGenerator using the given DataStorage.
@@ -25,8 +49,9 @@ public class AlertGenerator {
      */
     public AlertGenerator(DataStorage dataStorage) {
         this.dataStorage = dataStorage;
+        this.strategyFactories = new ArrayList<>();
         this.alertStrategies = new ArrayList<>();
-        this.alertListeners = new ArrayList<>();
+        this.alertListeners = new CopyOnWriteArrayList<>(); // alerts may be triggered from ingestion threads
 
         // Initialize all alert strategies
         initializeAlertStrategies();
@@ -36,15 +61,30 @@ public class AlertGenerator {
      * Initialize all alert strategies
      */
     private void initializeAlertStrategies() {
-        alertStrategies.add(new BloodPressureAlertStrategy());
-        alertStrategies.add(new BloodSaturationAlertStrategy());
-        alertStrategies.add(new HypotensiveHypoxemiaAlertStrategy());
-        alertStrategies.add(new ECGAlertStrategy());
-        alertStrategies.add(new TriggeredAlertStrategy());
+        strategyFactories.add(BloodPressureAlertStrategy::new);
+        strategyFactories.add(BloodSaturationAlertStrategy::new);
+        strategyFactories.add(HypotensiveHypoxemiaAlertStrategy::new);
+        strategyFactories.add(ECGAlertStrategy::new);
+        strategyFactories.add(TriggeredAlertStrategy::new);
+        alertStrategies = createStrategies();
+        evaluationTimes = new LatencyHistogram[alertStrategies.size()];
+        for (int i = 0; i < evaluationTimes.length; i++) {
+            evaluationTimes[i] = MetricsRegistry.getDefault().histogram("alert_strategy_evaluation_seconds",
+                    "strategy", alertStrategies.get(i).getStrategyName());
+        }
+    }
+
+    private List<AlertStrategy> createStrategies() {
+        List<AlertStrategy> strategies = new ArrayList<>(strategyFactories.size());
+        for (Supplier<AlertStrategy> factory : strategyFactories) {
+            strategies.add(factory.get());
+        }
+        return strategies;
     }
 
     /**
-     * Add an alert listener to be notified when alerts are triggered
+     * Add an alert listener to be notified when alerts are triggered.
+     * The listener is called on the thread that triggers the alert, so it should return quickly.
      * @param listener the alert listener to add
      */
     public void addAlertListener(AlertListener listener) {
@@ -52,13 +92,121 @@ public class AlertGenerator {
     }
 
     /**
-     * Remove an alert listener
+     * Add an alert listener that is notified on a thread of its own, so a slow
+     * listener does not hold up evaluation or the other listeners.
+     * @param listener the alert listener to add
+     * @param options  queue size, batching and overflow settings for the listener
+     * @return the dispatcher in front of the listener, which counts delivered and dropped alerts
+     */
+    public AsyncAlertDispatcher addAsyncAlertListener(AlertListener listener, AsyncAlertDispatcher.Options options) {
+        AsyncAlertDispatcher dispatcher = new AsyncAlertDispatcher(listener, options);
+        alertListeners.add(dispatcher);
+        return dispatcher;
+    }
+
+    /**
+     * Log triggered alerts to the console with a {@link ConsoleAlertListener}
+     * on a thread of its own, so printing does not hold up evaluation.
+     * Alerts are not logged to the console unless this is called.
+     * @return the dispatcher in front of the console listener; close it to print the queued alerts and stop logging
+     */
+    public AsyncAlertDispatcher enableConsoleLog() {
+        return addAsyncAlertListener(new ConsoleAlertListener(), new AsyncAlertDispatcher.Options());
+    }
+
+    /**
+     * Remove an alert listener. An asynchronous listener is removed after the
+     * alerts queued for it have been delivered.
      * @param listener the alert listener to remove
      */
     public void removeAlertListener(AlertListener listener) {
+        for (AlertListener added : alertListeners) {
+            if (added instanceof AsyncAlertDispatcher && ((AsyncAlertDispatcher) added).getListener() == listener) {
+                alertListeners.remove(added);
+                ((AsyncAlertDispatcher) added).close();
+            }
+        }
         alertListeners.remove(listener);
     }
 
+    /**
+     * Switches on incremental evaluation: every reading added to the DataStorage
+     * is passed to per-patient streaming strategies as soon as it is stored, and
+     * alerts are triggered right away instead of on the next full sweep.
+     * Calling this more than once has no further effect.
+     */
+    public synchronized void enableIncrementalEvaluation() {
+        if (streamingEvaluator == null) {
+            streamingEvaluator = new StreamingAlertEvaluator(StreamingAlertEvaluator.defaultStrategies(),
+                    this::triggerAlert);
+            dataStorage.addPatientDataListener(streamingEvaluator);
+        }
+    }
+
+    /**
+     * Switches off incremental evaluation and drops the per-patient streaming state.
+     */
+    public synchronized void disableIncrementalEvaluation() {
+        if (streamingEvaluator != null) {
+            dataStorage.removePatientDataListener(streamingEvaluator);
+            streamingEvaluator = null;
+        }
+    }
+
+    /**
+     * Makes {@link #evaluateAllPatients()} spread the patients over the
+     * common fork-join pool.
+     */
+    public void enableParallelEvaluation() {
+        enableParallelEvaluation(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Makes {@link #evaluateAllPatients()} spread the patients over the given
+     * executor, a few patients per task. With a {@link ForkJoinPool} idle
+     * workers steal the tasks of busy ones, so a few patients with long
+     * histories do not hold up the sweep. Every patient is evaluated with its
+     * own strategy instances, and alerts are still triggered on the calling
+     * thread in the same order as a serial sweep.
+     * The executor is not shut down by this class.
+     *
+     * @param executor the executor that evaluates the patients
+     */
+    public void enableParallelEvaluation(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        evaluationExecutor = executor;
+    }
+
+    /**
+     * Makes {@link #evaluateAllPatients()} evaluate the patients one after
+     * another on the calling thread again.
+     */
+    public void disableParallelEvaluation() {
+        evaluationExecutor = null;
+    }
+
+    /**
+     * Passes every triggered alert through the suppressor first, so repeats of
+     * a condition that is already known do not reach the listeners.
+     *
+     * @param suppressor the suppressor, e.g. {@code new AlertSuppressor()}
+     */
+    public void enableSuppression(AlertSuppressor suppressor) {
+        if (suppressor == null) {
+            throw new IllegalArgumentException("suppressor must not be null");
+        }
+        this.suppressor = suppressor;
+    }
+
+    /**
+     * Triggers every alert again, including repeats.
+     */
+    public void disableSuppression() {
+        suppressor = null;
+    }
+
     /**
      * Evaluates the specified patient's data to determine if any alert conditions
      * are met. If a condition is met, an alert is triggered via the
@@ -66,32 +214,57 @@ public class AlertGenerator {
      * under which an alert will be triggered.
      *
      * @param patient the patient data to evaluate for alert conditions
-     * @return
+     * @return the triggered alerts, in the order of the strategies
      */
     public List<Alert> evaluateData(Patient patient) {
+        return triggerAlerts(collectAlerts(patient, alertStrategies, System.currentTimeMillis()));
+    }
+
+    /**
+     * Runs the strategies on the patient's records of the last 24 hours
+     * without triggering the alerts they raise. Each strategy is given only the
+     * records of its types; those are read once per type and shared.
+     */
+    private List<Alert> collectAlerts(Patient patient, List<AlertStrategy> strategies, long currentTime) {
+        List<Alert> alerts = new ArrayList<>();
         try {
             // Get recent patient records (last 24 hours for comprehensive analysis)
-            long currentTime = System.currentTimeMillis();
-            long timeWindow = 24 * 60 * 60 * 1000; // 24 hours
-            long startTime = currentTime - timeWindow;
-
-            List<PatientRecord> recentRecords = dataStorage.getRecords(patient.getPatientId(), startTime, currentTime);
-
-            if (recentRecords.isEmpty()) {
-                return null;
-            }
+            long startTime = currentTime - EVALUATION_WINDOW;
+            Map<RecordType, List<PatientRecord>> recordsByType = new HashMap<>();
+            List<PatientRecord> allRecords = null;
 
             // Apply each alert strategy
-            for (AlertStrategy strategy : alertStrategies) {
+            for (int i = 0; i < strategies.size(); i++) {
+                AlertStrategy strategy = strategies.get(i);
+                RecordType[] types = strategy.getRecordTypes();
+                List<PatientRecord> records;
+                if (types == null) {
+                    if (allRecords == null) {
+                        allRecords = dataStorage.getRecords(patient.getPatientId(), startTime, currentTime);
+                    }
+                    records = allRecords;
+                } else if (types.length == 1) {
+                    records = recordsOf(patient, types[0], startTime, currentTime, recordsByType);
+                } else {
+                    records = new ArrayList<>();
+                    for (RecordType type : types) {
+                        records.addAll(recordsOf(patient, type, startTime, currentTime, recordsByType));
+                    }
+                }
+                if (records.isEmpty()) {
+                    continue;
+                }
+                long start = System.nanoTime();
                 try {
-                    List<Alert> strategyAlerts = strategy.evaluateData(patient, recentRecords);
-                    for (Alert alert : strategyAlerts) {
-                        triggerAlert(alert);
+                    for (Alert alert : strategy.evaluateData(patient, records)) {
+                        alerts.add(alert.withStrategyName(strategy.getStrategyName()));
                     }
                 } catch (Exception e) {
                     System.err.println("Error in alert strategy " + strategy.getStrategyName() +
                             " for patient " + patient.getPatientId() + ": " + e.getMessage());
                     e.printStackTrace();
+                } finally {
+                    evaluationTimes[i].recordSince(start);
                 }
             }
 
@@ -99,21 +272,46 @@ public class AlertGenerator {
             System.err.println("Error evaluating data for patient " + patient.getPatientId() + ": " + e.getMessage());
             e.printStackTrace();
         }
-        return null;
+        return alerts;
+    }
+
+    private static List<PatientRecord> recordsOf(Patient patient, RecordType type, long startTime, long endTime,
+                                                 Map<RecordType, List<PatientRecord>> recordsByType) {
+        return recordsByType.computeIfAbsent(type, t -> {
+            List<PatientRecord> records = new ArrayList<>();
+            patient.getSlice(t, startTime, endTime).appendTo(patient.getPatientId(), records);
+            return records;
+        });
+    }
+
+    private List<Alert> triggerAlerts(List<Alert> alerts) {
+        List<Alert> triggered = new ArrayList<>(alerts.size());
+        for (Alert alert : alerts) {
+            Alert passed = triggerAlert(alert);
+            if (passed != null) {
+                triggered.add(passed);
+            }
+        }
+        return triggered;
     }
 
     /**
      * Triggers an alert for the monitoring system. This method notifies all
-     * registered alert listeners and logs the alert.
+     * registered alert listeners, unless the suppressor holds it back.
      *
      * @param alert the alert object containing details about the alert condition
+     * @return the alert that was triggered, which the suppressor may have escalated,
+     *         or null if it was suppressed
      */
-    private void triggerAlert(Alert alert) {
+    private Alert triggerAlert(Alert alert) {
+        AlertSuppressor currentSuppressor = suppressor;
+        if (currentSuppressor != null) {
+            alert = currentSuppressor.filter(alert);
+            if (alert == null) {
+                return null;
+            }
+        }
         try {
-            // Log the alert
-            System.out.println("ALERT TRIGGERED: Patient " + alert.getPatientId() +
-                    " - " + alert.getCondition() + " at " + new java.util.Date(alert.getTimestamp()));
-
             // Notify all alert listeners
             for (AlertListener listener : alertListeners) {
                 try {
@@ -127,20 +325,56 @@ public class AlertGenerator {
             System.err.println("Error triggering alert: " + e.getMessage());
             e.printStackTrace();
         }
+        return alert;
     }
 
     /**
-     * Evaluate all patients in the data storage system
+     * Evaluate all patients in the data storage system, in the order of their ids,
+     * on the executor given to {@link #enableParallelEvaluation} if there is one.
+     * All patients are evaluated against the same current time.
+     *
+     * @return the triggered alerts, grouped by patient in the order of their ids
      */
-    public void evaluateAllPatients() {
+    public List<Alert> evaluateAllPatients() {
+        List<Alert> alerts = new ArrayList<>();
         try {
-            List<Patient> patients = dataStorage.getAllPatients();
-            for (Patient patient : patients) {
-                evaluateData(patient);
+            List<Patient> patients = new ArrayList<>(dataStorage.getAllPatients());
+            patients.sort(Comparator.comparingInt(Patient::getPatientId));
+            long currentTime = System.currentTimeMillis();
+            ExecutorService executor = evaluationExecutor;
+            if (executor == null) {
+                for (Patient patient : patients) {
+                    alerts.addAll(collectAlerts(patient, alertStrategies, currentTime));
+                }
+            } else {
+                evaluateInParallel(patients, currentTime, executor, alerts);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while evaluating all patients");
         } catch (Exception e) {
             System.err.println("Error evaluating all patients: " + e.getMessage());
             e.printStackTrace();
         }
+        return triggerAlerts(alerts);
+    }
+
+    private void evaluateInParallel(List<Patient> patients, long currentTime, ExecutorService executor,
+                                    List<Alert> alerts) throws InterruptedException, ExecutionException {
+        List<Callable<List<Alert>>> tasks = new ArrayList<>();
+        for (int from = 0; from < patients.size(); from += PATIENTS_PER_TASK) {
+            List<Patient> part = patients.subList(from, Math.min(from + PATIENTS_PER_TASK, patients.size()));
+            tasks.add(() -> {
+                List<Alert> partAlerts = new ArrayList<>();
+                for (Patient patient : part) {
+                    partAlerts.addAll(collectAlerts(patient, createStrategies(), currentTime));
+                }
+                return partAlerts;
+            });
+        }
+        // invokeAll returns the futures in task order, which keeps the patients in id order
+        for (Future<List<Alert>> task : executor.invokeAll(tasks)) {
+            alerts.addAll(task.get());
+        }
     }
-}
\ No newline at end of file
+}
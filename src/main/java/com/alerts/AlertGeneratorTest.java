@@ -0,0 +1,87 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlertGeneratorTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    @DisplayName("Should trigger the same alerts in the same order with parallel evaluation")
+    void testParallelSweepMatchesSerialSweep() {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        // every third patient has low saturation, every fifth a critical systolic pressure
+        for (int patientId = 100; patientId >= 1; patientId--) {
+            for (int i = 0; i < 10; i++) {
+                long timestamp = now - (10 - i) * MINUTE;
+                storage.addPatientData(patientId, patientId % 3 == 0 ? 88.0 : 97.0, "Saturation", timestamp);
+                storage.addPatientData(patientId, patientId % 5 == 0 ? 185.0 : 120.0, "SystolicPressure", timestamp);
+            }
+        }
+
+        AlertGenerator generator = new AlertGenerator(storage);
+        List<Alert> triggered = new ArrayList<>();
+        generator.addAlertListener(triggered::add);
+        List<Alert> serial = generator.evaluateAllPatients();
+        assertEquals(serial, triggered);
+
+        triggered.clear();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            generator.enableParallelEvaluation(pool);
+            List<Alert> parallel = generator.evaluateAllPatients();
+            assertEquals(describe(serial), describe(parallel));
+            assertEquals(parallel, triggered);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertFalse(serial.isEmpty());
+        int lastPatient = 0;
+        for (Alert alert : serial) {
+            int patientId = Integer.parseInt(alert.getPatientId());
+            assertTrue(patientId >= lastPatient);
+            lastPatient = patientId;
+        }
+    }
+
+    @Test
+    @DisplayName("Should give every strategy the records of its own types only")
+    void testStrategiesSeeOnlyTheirRecordTypes() {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            long timestamp = now - (20 - i) * MINUTE;
+            storage.addPatientData(1, i == 15 ? 5.0 : 1.0, "ECG", timestamp);
+            storage.addPatientData(1, 120.0 + i, "HeartRate", timestamp);
+        }
+        storage.addPatientData(1, 85.0, "Saturation", now - MINUTE);
+        storage.addPatientData(1, 185.0, "SystolicPressure", now - MINUTE);
+
+        List<Alert> alerts = new AlertGenerator(storage).evaluateAllPatients();
+
+        assertEquals(List.of(
+                "1 Critical High Systolic: 185.0 mmHg (threshold: 180.0)",
+                "1 Low Blood Saturation: 85.0% (threshold: 92.0%)",
+                "1 ECG Abnormal Peak: 5.00 (5.0x above recent average of 1.00)"), describe(alerts));
+        assertEquals("BloodPressureAlertStrategy", alerts.get(0).getStrategyName());
+        assertArrayEquals(new RecordType[] {RecordType.ECG}, new ECGAlertStrategy().getRecordTypes());
+    }
+
+    // the strategies stamp alerts with the time they were raised, so timestamps differ between sweeps
+    private static List<String> describe(List<Alert> alerts) {
+        List<String> descriptions = new ArrayList<>();
+        for (Alert alert : alerts) {
+            descriptions.add(alert.getPatientId() + " " + alert.getCondition());
+        }
+        return descriptions;
+    }
+}
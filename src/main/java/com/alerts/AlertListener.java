@@ -1,4 +1,7 @@
 package com.alerts;
+
+import java.util.List;
+
 /**
  * Interface for components that need to be notified when alerts are triggered
  */
@@ -8,5 +11,15 @@ public interface AlertListener {
      * @param alert the alert that was triggered
      */
     void onAlertTriggered(Alert alert);
-}
 
+    /**
+     * Called with alerts that are delivered together, in the order they were triggered.
+     * Listeners that write to a file or the network can override this to handle them at once.
+     * @param alerts the alerts that were triggered
+     */
+    default void onAlertsTriggered(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            onAlertTriggered(alert);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.alerts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps every alert it is notified of, so alerts can be looked up later by
+ * patient, strategy and time, e.g. "all alerts for patient 17 in the last hour".
+ * Alerts are appended to a log file in the store's directory. Only the
+ * timestamp and file offset of every alert are indexed in memory, and the
+ * alerts on a page are read from the log, so the heap does not grow with the
+ * text of the stored alerts. Opening the store streams the log to rebuild the
+ * indexes. An entry cut off by a crash is dropped when the store is opened.
+ * Add the store with {@link AlertGenerator#addAsyncAlertListener} so file
+ * writes happen off the evaluation thread and in batches.
+ */
+public class AlertStore implements AlertListener, AutoCloseable {
+    private static final int MAGIC = 0x50414C31; // "PAL1"
+    private static final String FILE_NAME = "alerts.log";
+    private static final byte ALERT_ENTRY = 1;
+    // enough for most entries; longer ones are read again with a larger buffer
+    private static final int ENTRY_READ_BYTES = 512;
+    // the longest text DataOutputStream.writeUTF can write
+    private static final int MAX_UTF_BYTES = 0xFFFF;
+
+    /**
+     * which alerts to return; all criteria that are set must match
+     */
+    public static class Query {
+        private String patientId;
+        private String strategyName;
+        private long startTime = Long.MIN_VALUE;
+        private long endTime = Long.MAX_VALUE;
+        private int offset;
+        private int limit = 100;
+
+        /**
+         * @param patientId only alerts of this patient
+         */
+        public Query patientId(String patientId) {
+            this.patientId = patientId;
+            return this;
+        }
+
+        /**
+         * @param strategyName only alerts raised by the strategy with this name
+         */
+        public Query strategyName(String strategyName) {
+            this.strategyName = strategyName;
+            return this;
+        }
+
+        /**
+         * @param startTime only alerts at or after this time, in milliseconds since UNIX epoch
+         * @param endTime   only alerts at or before this time, in milliseconds since UNIX epoch
+         */
+        public Query between(long startTime, long endTime) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            return this;
+        }
+
+        /**
+         * @param offset matching alerts to skip, for the pages after the first
+         */
+        public Query offset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * @param limit the most alerts on one page
+         */
+        public Query limit(int limit) {
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    /**
+     * one page of the alerts matching a query
+     */
+    public static class Page {
+        private final List<Alert> alerts;
+        private final int totalCount;
+        private final int nextOffset;
+
+        Page(List<Alert> alerts, int totalCount, int nextOffset) {
+            this.alerts = alerts;
+            this.totalCount = totalCount;
+            this.nextOffset = nextOffset;
+        }
+
+        /**
+         * @return the alerts on this page, oldest first
+         */
+        public List<Alert> getAlerts() {
+            return alerts;
+        }
+
+        /**
+         * @return the number of alerts matching the query on all pages
+         */
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return the offset of the next page, or -1 if this is the last page
+         */
+        public int getNextOffset() {
+            return nextOffset;
+        }
+    }
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final FileOutputStream fileOut;
+    // an entry is encoded here first, so its length is known before it is written
+    private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream entryOut = new DataOutputStream(entryBytes);
+    // the entries of a batch, written to the log together
+    private final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream(4096);
+    // the offset the next entry is written at
+    private long end;
+    private boolean closed;
+
+    // file offsets of the alerts by time; no alert is held in memory
+    private final TimeIndex allAlerts = new TimeIndex();
+    private final Map<String, TimeIndex> byPatient = new HashMap<>();
+    private final Map<String, TimeIndex> byStrategy = new HashMap<>();
+    private final Map<String, TimeIndex> byPatientAndStrategy = new HashMap<>();
+
+    private AlertStore(Path file, FileOutputStream fileOut) {
+        this.file = file;
+        this.fileOut = fileOut;
+        this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+    }
+
+    /**
+     * Opens the store in the directory, creating it if needed, and indexes the stored alerts.
+     *
+     * @param directory the directory of the store
+     * @return the opened store
+     * @throws IOException if the log cannot be read or created
+     */
+    public static AlertStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        // in append mode every write goes to the end of the file, also after it is truncated below
+        AlertStore store = new AlertStore(file, new FileOutputStream(file.toFile(), true));
+        try {
+            long validBytes = store.readLog();
+            if (validBytes < Files.size(file)) {
+                System.err.println("Dropping incomplete alert at the end of " + file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                }
+            }
+            if (validBytes == 0) {
+                store.out.writeInt(MAGIC);
+                store.out.flush();
+                validBytes = Integer.BYTES;
+            }
+            store.end = validBytes;
+        } catch (IOException | RuntimeException e) {
+            store.out.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Streams the log and indexes every alert in it.
+     *
+     * @return the length of the log up to the end of the last complete alert
+     */
+    private long readLog() throws IOException {
+        if (Files.size(file) < Integer.BYTES) {
+            return 0;
+        }
+        try (CountingInputStream counter = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            DataInputStream in = new DataInputStream(counter);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an alert log: " + file);
+            }
+            long validBytes = Integer.BYTES;
+            try {
+                int type;
+                while ((type = in.read()) >= 0) {
+                    if (type != ALERT_ENTRY) {
+                        throw new IOException("Corrupt alert log " + file + " at byte " + validBytes);
+                    }
+                    long timestamp = in.readLong();
+                    String patientId = in.readUTF();
+                    String strategyName = in.readUTF();
+                    in.skipNBytes(in.readUnsignedShort()); // the condition is read when a page needs it
+                    index(timestamp, patientId, strategyName.isEmpty() ? null : strategyName, validBytes);
+                    validBytes = counter.count;
+                }
+            } catch (EOFException e) {
+                // the last alert was only partly written
+            }
+            return validBytes;
+        }
+    }
+
+    @Override
+    public void onAlertTriggered(Alert alert) {
+        onAlertsTriggered(List.of(alert));
+    }
+
+    /**
+     * Appends the alerts to the log and indexes them. The whole batch is
+     * encoded before any of it is written, so the index never points past an
+     * alert that could not be encoded. A condition too long for the log is
+     * cut off; an alert whose patient id or strategy name is too long is
+     * skipped. If writing fails, the store stops taking alerts, because it
+     * no longer knows where the next entry would start; opening it again
+     * indexes what reached the log.
+     *
+     * @param alerts the alerts that were triggered
+     * @throws UncheckedIOException if the alerts cannot be written
+     */
+    @Override
+    public synchronized void onAlertsTriggered(List<Alert> alerts) {
+        if (closed) {
+            throw new IllegalStateException("Alert store is closed");
+        }
+        batchBytes.reset();
+        List<Alert> encoded = new ArrayList<>(alerts.size());
+        long[] offsets = new long[alerts.size()];
+        for (Alert alert : alerts) {
+            entryBytes.reset();
+            try {
+                entryOut.writeByte(ALERT_ENTRY);
+                entryOut.writeLong(alert.getTimestamp());
+                entryOut.writeUTF(alert.getPatientId());
+                entryOut.writeUTF(alert.getStrategyName() == null ? "" : alert.getStrategyName());
+                entryOut.writeUTF(truncateUtf(alert.getCondition()));
+                offsets[encoded.size()] = end + batchBytes.size();
+                entryBytes.writeTo(batchBytes);
+                encoded.add(alert);
+            } catch (IOException e) {
+                // only a patient id or strategy name over 64 KB gets here, writing to memory does not fail
+                System.err.println("Skipping alert that cannot be stored: " + e.getMessage());
+            }
+        }
+        if (encoded.isEmpty()) {
+            return;
+        }
+        try {
+            batchBytes.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw new UncheckedIOException("Error writing alert store " + file, e);
+        }
+        end += batchBytes.size();
+        for (int i = 0; i < encoded.size(); i++) {
+            Alert alert = encoded.get(i);
+            index(alert.getTimestamp(), alert.getPatientId(), alert.getStrategyName(), offsets[i]);
+        }
+    }
+
+    /**
+     * cuts the text off so that it fits in {@link DataOutputStream#writeUTF}, without splitting a surrogate pair
+     */
+    private static String truncateUtf(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            bytes += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+            if (bytes > MAX_UTF_BYTES) {
+                return text.substring(0, i > 0 && Character.isHighSurrogate(text.charAt(i - 1)) ? i - 1 : i);
+            }
+        }
+        return text;
+    }
+
+    private void index(long timestamp, String patientId, String strategyName, long offset) {
+        allAlerts.add(timestamp, offset);
+        byPatient.computeIfAbsent(patientId, key -> new TimeIndex()).add(timestamp, offset);
+        if (strategyName != null) {
+            byStrategy.computeIfAbsent(strategyName, key -> new TimeIndex()).add(timestamp, offset);
+            byPatientAndStrategy.computeIfAbsent(patientId + '\n' + strategyName, key -> new TimeIndex())
+                    .add(timestamp, offset);
+        }
+    }
+
+    /**
+     * Returns one page of the alerts matching the query, ordered by time;
+     * alerts with the same timestamp are in the order they were stored.
+     *
+     * @param query the criteria, offset and page size
+     * @return the matching alerts on the requested page
+     * @throws UncheckedIOException if the alerts cannot be read from the log
+     */
+    public synchronized Page query(Query query) {
+        TimeIndex index = allAlerts;
+        if (query.patientId != null && query.strategyName != null) {
+            index = byPatientAndStrategy.get(query.patientId + '\n' + query.strategyName);
+        } else if (query.patientId != null) {
+            index = byPatient.get(query.patientId);
+        } else if (query.strategyName != null) {
+            index = byStrategy.get(query.strategyName);
+        }
+        List<Alert> page = new ArrayList<>(Math.min(query.limit, 1024));
+        if (index == null) {
+            return new Page(page, 0, -1);
+        }
+        int from = index.lowerBound(query.startTime);
+        int to = query.endTime == Long.MAX_VALUE ? index.size : index.lowerBound(query.endTime + 1);
+        int matched = Math.max(0, to - from);
+        int first = from + Math.min(query.offset, matched);
+        int last = (int) Math.min(to, (long) first + query.limit);
+        if (first < last) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(ENTRY_READ_BYTES);
+                for (int i = first; i < last; i++) {
+                    buffer = readEntry(channel, index.offsets[i], buffer);
+                    page.add(parseEntry(buffer));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading alert store " + file, e);
+            }
+        }
+        int next = query.offset + page.size();
+        return new Page(page, matched, next < matched ? next : -1);
+    }
+
+    /**
+     * reads the entry at the offset into the buffer, growing the buffer if the entry does not fit
+     * @return the buffer holding the entry from its start
+     */
+    private ByteBuffer readEntry(FileChannel channel, long offset, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                // keep reading until the buffer is full or the log ends
+            }
+            buffer.flip();
+            if (entryLength(buffer) <= buffer.limit()) {
+                return buffer;
+            }
+            if (buffer.limit() < buffer.capacity()) {
+                throw new IOException("Truncated alert at byte " + offset + " of " + file);
+            }
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    /**
+     * @return the length of the entry at the start of the buffer, or more than the buffer holds if it is cut off
+     */
+    private static int entryLength(ByteBuffer buffer) {
+        int length = 1 + Long.BYTES;
+        for (int field = 0; field < 3; field++) {
+            if (length + 2 > buffer.limit()) {
+                return Integer.MAX_VALUE;
+            }
+            length += 2 + Short.toUnsignedInt(buffer.getShort(length));
+        }
+        return length;
+    }
+
+    private Alert parseEntry(ByteBuffer buffer) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(buffer.array(), 0, buffer.limit()));
+        if (in.readByte() != ALERT_ENTRY) {
+            throw new IOException("Corrupt alert log " + file);
+        }
+        long timestamp = in.readLong();
+        String patientId = in.readUTF();
+        String strategyName = in.readUTF();
+        String condition = in.readUTF();
+        return new Alert(patientId, condition, timestamp, strategyName.isEmpty() ? null : strategyName);
+    }
+
+    /**
+     * @return the number of stored alerts
+     */
+    public synchronized int size() {
+        return allAlerts.size;
+    }
+
+    /**
+     * Forces the log to disk and closes it. Queries still work after closing.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.flush();
+        fileOut.getChannel().force(false);
+        out.close();
+    }
+
+    /**
+     * File offsets of alerts sorted by timestamp, then by offset.
+     */
+    private static final class TimeIndex {
+        long[] timestamps = new long[8];
+        long[] offsets = new long[8];
+        int size;
+
+        void add(long timestamp, long offset) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            // alerts mostly arrive in time order, so this is usually the end
+            int index = size;
+            if (size > 0 && timestamps[size - 1] > timestamp) {
+                index = lowerBound(timestamp + 1);
+                System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+                System.arraycopy(offsets, index, offsets, index + 1, size - index);
+            }
+            timestamps[index] = timestamp;
+            offsets[index] = offset;
+            size++;
+        }
+
+        int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Counts the bytes read, so the offset of every entry is known while streaming the log.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
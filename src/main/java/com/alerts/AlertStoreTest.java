@@ -0,0 +1,144 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlertStoreTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should return the alerts of a patient in a time range in time order, page by page")
+    void testQueryByPatientAndTime() throws IOException {
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            // stored out of time order, as alerts of several threads can be
+            for (int i = 99; i >= 0; i--) {
+                store.onAlertTriggered(new Alert(Integer.toString(i % 5), "Condition " + i, i * 1000L,
+                        i % 2 == 0 ? "EvenStrategy" : "OddStrategy"));
+            }
+
+            AlertStore.Query query = new AlertStore.Query().patientId("2").between(10_000, 60_000).limit(4);
+            List<Long> timestamps = new ArrayList<>();
+            int pages = 0;
+            for (int offset = 0; offset >= 0; pages++) {
+                AlertStore.Page page = store.query(query.offset(offset));
+                assertEquals(10, page.getTotalCount());
+                for (Alert alert : page.getAlerts()) {
+                    assertEquals("2", alert.getPatientId());
+                    timestamps.add(alert.getTimestamp());
+                }
+                offset = page.getNextOffset();
+            }
+            assertEquals(3, pages);
+            assertEquals(List.of(12_000L, 17_000L, 22_000L, 27_000L, 32_000L, 37_000L, 42_000L, 47_000L,
+                    52_000L, 57_000L), timestamps);
+
+            AlertStore.Page even = store.query(new AlertStore.Query().patientId("2").strategyName("EvenStrategy"));
+            assertEquals(10, even.getTotalCount());
+            assertEquals(2_000L, even.getAlerts().get(0).getTimestamp());
+            assertEquals(50, store.query(new AlertStore.Query().strategyName("OddStrategy")).getTotalCount());
+            assertEquals(0, store.query(new AlertStore.Query().patientId("17")).getTotalCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Should read stored alerts back and drop an alert cut off by a crash")
+    void testReopen() throws IOException {
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            store.onAlertTriggered(new Alert("1", "Low Blood Saturation: 88.0%", 1000L, "BloodSaturationAlertStrategy"));
+            store.onAlertTriggered(new Alert("1", "ECG Abnormal Peak: 3.00", 2000L));
+        }
+        try (FileChannel log = FileChannel.open(tempDir.resolve("alerts.log"), StandardOpenOption.WRITE)) {
+            log.truncate(log.size() - 3);
+        }
+
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            assertEquals(1, store.size());
+            Alert alert = store.query(new AlertStore.Query()).getAlerts().get(0);
+            assertEquals("Low Blood Saturation: 88.0%", alert.getCondition());
+            assertEquals("BloodSaturationAlertStrategy", alert.getStrategyName());
+            store.onAlertTriggered(new Alert("1", "ECG Abnormal Peak: 3.00", 2000L));
+        }
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            assertEquals(2, store.size());
+            assertNull(store.query(new AlertStore.Query().between(1500, 2500)).getAlerts().get(0).getStrategyName());
+        }
+    }
+
+    @Test
+    @DisplayName("Should read the alerts of a page from the log, however long they are")
+    void testPageIsReadFromLog() throws IOException {
+        String longCondition = "Condition " + "x".repeat(2000);
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            for (int i = 0; i < 10; i++) {
+                store.onAlertTriggered(new Alert("1", i == 5 ? longCondition : "Condition " + i, i * 1000L,
+                        "Strategy" + (i % 2)));
+            }
+            List<Alert> page = store.query(new AlertStore.Query().patientId("1").strategyName("Strategy1")
+                    .offset(1).limit(2)).getAlerts();
+            assertEquals(2, page.size());
+            assertEquals("Condition 3", page.get(0).getCondition());
+            assertEquals(longCondition, page.get(1).getCondition());
+            assertEquals("Strategy1", page.get(1).getStrategyName());
+        }
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            store.onAlertTriggered(new Alert("2", "After reopen", 20_000L));
+            List<Alert> all = store.query(new AlertStore.Query()).getAlerts();
+            assertEquals(11, all.size());
+            assertEquals(longCondition, all.get(5).getCondition());
+            assertEquals("Condition 6", all.get(6).getCondition());
+            assertEquals("After reopen", all.get(10).getCondition());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the index in step with the log when an alert of a batch is too long")
+    void testOversizeAlertInBatch() throws IOException {
+        String hugeText = "x".repeat(70_000);
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            store.onAlertsTriggered(List.of(
+                    new Alert("1", "Before", 1000L),
+                    new Alert("1", hugeText, 2000L),
+                    new Alert(hugeText, "Unstorable patient id", 3000L),
+                    new Alert("1", "After", 4000L)));
+            store.onAlertTriggered(new Alert("1", "Next batch", 5000L));
+
+            List<Alert> alerts = store.query(new AlertStore.Query().patientId("1")).getAlerts();
+            assertEquals(4, alerts.size());
+            assertEquals("Before", alerts.get(0).getCondition());
+            assertEquals(hugeText.substring(0, 0xFFFF), alerts.get(1).getCondition());
+            assertEquals("After", alerts.get(2).getCondition());
+            assertEquals("Next batch", alerts.get(3).getCondition());
+        }
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            assertEquals(4, store.size());
+            assertEquals("Next batch", store.query(new AlertStore.Query().between(5000, 5000))
+                    .getAlerts().get(0).getCondition());
+        }
+    }
+
+    @Test
+    @DisplayName("Should store the alerts of an alert sweep with the strategy that raised them")
+    void testStoreGeneratorAlerts() throws IOException {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        storage.addPatientData(17, 88.0, "Saturation", now - 1000);
+        AlertGenerator generator = new AlertGenerator(storage);
+        try (AlertStore store = AlertStore.open(tempDir)) {
+            generator.addAlertListener(store);
+            generator.evaluateAllPatients();
+            AlertStore.Page page = store.query(new AlertStore.Query().patientId("17").between(now - 60_000, now + 60_000));
+            assertEquals(1, page.getTotalCount());
+            assertEquals("BloodSaturationAlertStrategy", page.getAlerts().get(0).getStrategyName());
+        }
+    }
+}
@@ -11,4 +11,12 @@ public interface AlertStrategy {
 
     //returns name of alert strategy
     String getStrategyName();
+
+    /**
+     * the record types this strategy evaluates; the generator only passes it records of these types
+     * @return the evaluated types, or null for every type
+     */
+    default RecordType[] getRecordTypes() {
+        return null;
+    }
 }
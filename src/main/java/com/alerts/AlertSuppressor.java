@@ -0,0 +1,271 @@
+package com.alerts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lets the first alert of a condition through and holds back repeats of it.
+ * Alerts are grouped by patient and condition type, the condition without its
+ * measured values (see {@link #conditionType}). Once an alert of a group has
+ * been let through, repeats are suppressed until the group has been quiet for
+ * the hold-off time. A condition that keeps firing for the escalation time is
+ * let through once more, marked as escalated.
+ * Time is taken from the alert timestamps. Quiet groups are found with a
+ * hashed timer wheel: each group sits in the slot of the tick when its
+ * hold-off may run out, so advancing the clock only looks at the groups due
+ * in the passed ticks, however many groups are active.
+ * Thread-safe.
+ */
+public class AlertSuppressor {
+
+    /**
+     * settings for the suppressor
+     */
+    public static class Options {
+        private long holdOffMillis = 5 * 60 * 1000;
+        private long escalationMillis = 30 * 60 * 1000;
+        private long tickMillis = 1000;
+        private int wheelSlots = 4096;
+
+        /**
+         * @param holdOffMillis how long a condition must be quiet before it is let through again
+         */
+        public Options holdOffMillis(long holdOffMillis) {
+            this.holdOffMillis = holdOffMillis;
+            return this;
+        }
+
+        /**
+         * @param escalationMillis how long a condition may keep firing before it is let through
+         *                         again as escalated, 0 to never escalate
+         */
+        public Options escalationMillis(long escalationMillis) {
+            this.escalationMillis = escalationMillis;
+            return this;
+        }
+
+        /**
+         * @param tickMillis the resolution of the timer wheel; hold-offs end up to one tick late
+         */
+        public Options tickMillis(long tickMillis) {
+            this.tickMillis = tickMillis;
+            return this;
+        }
+
+        /**
+         * @param wheelSlots slots of the timer wheel, rounded up to a power of two
+         */
+        public Options wheelSlots(int wheelSlots) {
+            this.wheelSlots = wheelSlots;
+            return this;
+        }
+    }
+
+    private final long holdOffMillis;
+    private final long escalationMillis;
+    private final long tickMillis;
+    private final Group[] slots;
+    private final int slotMask;
+    private final Map<String, Group> groups = new HashMap<>();
+    // the last tick whose slot has been processed
+    private long currentTick = Long.MIN_VALUE;
+
+    private long passedAlerts;
+    private long suppressedAlerts;
+    private long escalatedAlerts;
+
+    /**
+     * Creates a suppressor with a 5 minute hold-off and a 30 minute escalation time.
+     */
+    public AlertSuppressor() {
+        this(new Options());
+    }
+
+    /**
+     * @param options hold-off, escalation and timer wheel settings
+     */
+    public AlertSuppressor(Options options) {
+        if (options.holdOffMillis < 1 || options.escalationMillis < 0 || options.tickMillis < 1
+                || options.wheelSlots < 1 || options.wheelSlots > (1 << 30)) {
+            throw new IllegalArgumentException("holdOffMillis, tickMillis and wheelSlots must be positive, "
+                    + "escalationMillis not negative");
+        }
+        this.holdOffMillis = options.holdOffMillis;
+        this.escalationMillis = options.escalationMillis;
+        this.tickMillis = options.tickMillis;
+        int slotCount = Integer.highestOneBit(options.wheelSlots);
+        if (slotCount < options.wheelSlots) {
+            slotCount <<= 1;
+        }
+        this.slots = new Group[slotCount];
+        this.slotMask = slotCount - 1;
+    }
+
+    /**
+     * Decides whether an alert is passed on.
+     *
+     * @param alert the triggered alert
+     * @return the alert, an escalated copy of it, or null if it is suppressed
+     */
+    public synchronized Alert filter(Alert alert) {
+        long now = alert.getTimestamp();
+        advanceTo(now);
+        String key = alert.getPatientId() + '\u0000' + conditionType(alert.getCondition());
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(key, now);
+            groups.put(key, group);
+            schedule(group);
+            passedAlerts++;
+            return alert;
+        }
+        group.lastSeen = Math.max(group.lastSeen, now);
+        if (escalationMillis > 0 && now - group.lastPassed >= escalationMillis) {
+            Alert escalated = new Alert(alert.getPatientId(),
+                    String.format("[ESCALATED] %s (active for %d min, %d repeats suppressed)",
+                            alert.getCondition(), (now - group.firstSeen) / 60_000, group.suppressed),
+                    now, alert.getStrategyName());
+            group.lastPassed = now;
+            group.suppressed = 0;
+            escalatedAlerts++;
+            passedAlerts++;
+            return escalated;
+        }
+        group.suppressed++;
+        suppressedAlerts++;
+        return null;
+    }
+
+    /**
+     * Ends the hold-off of every group that has been quiet long enough by the given time.
+     * Called by {@link #filter}; call it directly to free quiet groups when no alerts come in.
+     *
+     * @param now the current time in milliseconds since UNIX epoch
+     */
+    public synchronized void advanceTo(long now) {
+        long tick = Math.floorDiv(now, tickMillis);
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = tick;
+            return;
+        }
+        if (tick <= currentTick) {
+            return;
+        }
+        // after a full turn every slot has been looked at, later ticks would find the same groups
+        long last = Math.min(tick, currentTick + slots.length);
+        for (long t = currentTick + 1; t <= last; t++) {
+            expireSlot((int) (t & slotMask), tick);
+        }
+        currentTick = tick;
+    }
+
+    private void expireSlot(int slot, long tick) {
+        Group group = slots[slot];
+        while (group != null) {
+            Group next = group.next;
+            if (group.dueTick <= tick) {
+                unlink(group, slot);
+                if (Math.floorDiv(group.lastSeen + holdOffMillis, tickMillis) <= tick) {
+                    groups.remove(group.key);
+                } else {
+                    // repeats came in after it was scheduled, so its hold-off runs longer
+                    schedule(group);
+                }
+            }
+            group = next;
+        }
+    }
+
+    private void schedule(Group group) {
+        group.dueTick = Math.max(Math.floorDiv(group.lastSeen + holdOffMillis, tickMillis), currentTick + 1);
+        int slot = (int) (group.dueTick & slotMask);
+        group.prev = null;
+        group.next = slots[slot];
+        if (group.next != null) {
+            group.next.prev = group;
+        }
+        slots[slot] = group;
+    }
+
+    private void unlink(Group group, int slot) {
+        if (group.prev != null) {
+            group.prev.next = group.next;
+        } else {
+            slots[slot] = group.next;
+        }
+        if (group.next != null) {
+            group.next.prev = group.prev;
+        }
+        group.prev = null;
+        group.next = null;
+    }
+
+    /**
+     * Returns the part of an alert condition that names the condition, without
+     * the measured values: the text before the first digit, without trailing
+     * punctuation. "Low Blood Saturation: 88.0% (threshold: 92.0%)" becomes
+     * "Low Blood Saturation".
+     *
+     * @param condition the condition of an alert
+     * @return the condition type
+     */
+    public static String conditionType(String condition) {
+        int end = 0;
+        while (end < condition.length() && !Character.isDigit(condition.charAt(end))) {
+            end++;
+        }
+        while (end > 0 && !Character.isLetter(condition.charAt(end - 1))) {
+            end--;
+        }
+        return end == 0 ? condition : condition.substring(0, end);
+    }
+
+    /**
+     * @return the number of patient and condition type groups in their hold-off
+     */
+    public synchronized int getActiveGroups() {
+        return groups.size();
+    }
+
+    /**
+     * @return alerts passed on so far, including escalated ones
+     */
+    public synchronized long getPassedAlerts() {
+        return passedAlerts;
+    }
+
+    /**
+     * @return alerts suppressed so far
+     */
+    public synchronized long getSuppressedAlerts() {
+        return suppressedAlerts;
+    }
+
+    /**
+     * @return escalated alerts passed on so far
+     */
+    public synchronized long getEscalatedAlerts() {
+        return escalatedAlerts;
+    }
+
+    /**
+     * The alerts of one patient and condition type, linked into a slot of the wheel.
+     */
+    private static final class Group {
+        final String key;
+        final long firstSeen;
+        long lastSeen;
+        long lastPassed;
+        int suppressed;
+        long dueTick;
+        Group prev;
+        Group next;
+
+        Group(String key, long now) {
+            this.key = key;
+            this.firstSeen = now;
+            this.lastSeen = now;
+            this.lastPassed = now;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlertSuppressorTest {
+
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    @DisplayName("Should suppress repeats until the condition has been quiet for the hold-off time")
+    void testHoldOff() {
+        AlertSuppressor suppressor = new AlertSuppressor(new AlertSuppressor.Options()
+                .holdOffMillis(5 * MINUTE)
+                .escalationMillis(0));
+
+        assertNotNull(suppressor.filter(saturation("1", 88.0, START)));
+        assertNull(suppressor.filter(saturation("1", 87.5, START + MINUTE)));
+        assertNull(suppressor.filter(saturation("1", 87.0, START + 5 * MINUTE)));
+        // another patient and another condition are not held back
+        assertNotNull(suppressor.filter(saturation("2", 88.0, START + 5 * MINUTE)));
+        assertNotNull(suppressor.filter(new Alert("1", "ECG Abnormal Peak: -3.00 (2.5x above recent average of 1.20)",
+                START + 5 * MINUTE)));
+        assertEquals(3, suppressor.getActiveGroups());
+
+        // the last repeat extended the hold-off of patient 1 to START + 10 minutes
+        assertNull(suppressor.filter(saturation("1", 87.0, START + 9 * MINUTE)));
+        assertNotNull(suppressor.filter(saturation("1", 87.0, START + 15 * MINUTE)));
+        assertEquals(3, suppressor.getSuppressedAlerts());
+        assertEquals(4, suppressor.getPassedAlerts());
+
+        suppressor.advanceTo(START + 30 * MINUTE);
+        assertEquals(0, suppressor.getActiveGroups());
+    }
+
+    @Test
+    @DisplayName("Should let a condition that keeps firing through again as escalated")
+    void testEscalation() {
+        AlertSuppressor suppressor = new AlertSuppressor(new AlertSuppressor.Options()
+                .holdOffMillis(5 * MINUTE)
+                .escalationMillis(30 * MINUTE));
+
+        int passed = 0;
+        Alert escalated = null;
+        for (long t = START; t < START + 45 * MINUTE; t += MINUTE) {
+            Alert alert = suppressor.filter(saturation("7", 88.0, t));
+            if (alert != null) {
+                passed++;
+                escalated = alert;
+            }
+        }
+        assertEquals(2, passed);
+        assertEquals(1, suppressor.getEscalatedAlerts());
+        assertTrue(escalated.getCondition().startsWith("[ESCALATED] Low Blood Saturation"));
+        assertTrue(escalated.getCondition().contains("29 repeats suppressed"));
+        assertEquals(START + 30 * MINUTE, escalated.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Should expire many groups, also when the clock jumps past a full turn of the wheel")
+    void testManyGroupsExpire() {
+        AlertSuppressor suppressor = new AlertSuppressor(new AlertSuppressor.Options()
+                .holdOffMillis(MINUTE)
+                .wheelSlots(64));
+        for (int patientId = 0; patientId < 10_000; patientId++) {
+            suppressor.filter(saturation(Integer.toString(patientId), 88.0, START + patientId * 5L));
+        }
+        assertEquals(10_000, suppressor.getActiveGroups());
+
+        // the first 5000 groups came in during the first 25 seconds
+        suppressor.advanceTo(START + MINUTE + 25 * SECOND - 1);
+        assertEquals(5_000, suppressor.getActiveGroups());
+        suppressor.advanceTo(START + 24 * 60 * MINUTE);
+        assertEquals(0, suppressor.getActiveGroups());
+    }
+
+    @Test
+    @DisplayName("Should strip measured values from the condition")
+    void testConditionType() {
+        assertEquals("Low Blood Saturation", AlertSuppressor.conditionType("Low Blood Saturation: 88.0% (threshold: 92.0%)"));
+        assertEquals("ECG Abnormal Peak", AlertSuppressor.conditionType("ECG Abnormal Peak: -3.00 (2.5x above)"));
+        assertEquals("Manual Alert: Triggered by patient or medical staff",
+                AlertSuppressor.conditionType("Manual Alert: Triggered by patient or medical staff"));
+    }
+
+    @Test
+    @DisplayName("Should not trigger the same conditions again on the next sweep")
+    void testGeneratorSuppressesRepeatedSweeps() {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            storage.addPatientData(1, 88.0, "Saturation", now - (10 - i) * MINUTE);
+            storage.addPatientData(1, 185.0, "SystolicPressure", now - (10 - i) * MINUTE);
+        }
+        AlertGenerator generator = new AlertGenerator(storage);
+        List<Alert> unsuppressed = generator.evaluateAllPatients();
+        assertEquals(unsuppressed.size(), generator.evaluateAllPatients().size());
+
+        generator.enableSuppression(new AlertSuppressor());
+        List<Alert> first = generator.evaluateAllPatients();
+        assertEquals(2, first.size());
+        assertTrue(generator.evaluateAllPatients().isEmpty());
+    }
+
+    private static Alert saturation(String patientId, double value, long timestamp) {
+        return new Alert(patientId, String.format("Low Blood Saturation: %.1f%% (threshold: %.1f%%)", value, 92.0),
+                timestamp);
+    }
+}
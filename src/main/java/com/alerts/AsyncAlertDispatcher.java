@@ -0,0 +1,324 @@
+package com.alerts;
+
+import com.metrics.LatencyHistogram;
+import com.metrics.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivers alerts to one {@link AlertListener} on a thread of its own, so a
+ * slow listener (paging, file logging) does not hold up alert evaluation or
+ * the other listeners.
+ * Any number of threads may trigger alerts; they are put into a bounded queue
+ * that one consumer thread takes from in batches and hands to
+ * {@link AlertListener#onAlertsTriggered}. When the queue is full the
+ * {@link OverflowPolicy} decides what happens.
+ * The time from triggering an alert until the listener returned is also recorded
+ * in "alert_listener_delay_seconds" of the default {@link MetricsRegistry}.
+ */
+public class AsyncAlertDispatcher implements AlertListener, AutoCloseable {
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * what to do with an alert when the queue of the listener is full
+     */
+    public enum OverflowPolicy {
+        /** drop the oldest queued alert to make room for the new one */
+        DROP_OLDEST,
+        /** drop the new alert */
+        DROP_NEWEST,
+        /** make the triggering thread wait until the listener has caught up */
+        BLOCK
+    }
+
+    /**
+     * settings for the dispatcher
+     */
+    public static class Options {
+        private int queueCapacity = 1024;
+        private int batchSize = 64;
+        private long batchDelayMillis = 0;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * @param queueCapacity alerts that can wait for the listener before the policy applies
+         */
+        public Options queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize the most alerts passed to the listener at once
+         */
+        public Options batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param batchDelayMillis how long the first alert of a batch waits for more alerts,
+         *                         0 to pass on whatever is queued right away
+         */
+        public Options batchDelayMillis(long batchDelayMillis) {
+            this.batchDelayMillis = batchDelayMillis;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what to do when the queue is full
+         */
+        public Options overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+    }
+
+    private final AlertListener listener;
+    private final Options options;
+    private final BlockingQueue<QueuedAlert> queue;
+    private final Thread consumer;
+    private volatile boolean closed;
+    // threads between the closed check and queuing their alert; close() waits for them
+    private final AtomicInteger activeProducers = new AtomicInteger();
+
+    private final LongAdder deliveredAlerts = new LongAdder();
+    private final LongAdder droppedAlerts = new LongAdder();
+    private final LongAdder failedDeliveries = new LongAdder();
+    // written by the consumer thread only, and by close() once the consumer has stopped
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private final LatencyHistogram delays;
+
+    /**
+     * Creates a dispatcher with the default options and starts its consumer thread.
+     *
+     * @param listener the listener the alerts are delivered to
+     */
+    public AsyncAlertDispatcher(AlertListener listener) {
+        this(listener, new Options());
+    }
+
+    /**
+     * Creates a dispatcher and starts its consumer thread.
+     *
+     * @param listener the listener the alerts are delivered to
+     * @param options  queue size, batching and overflow settings
+     */
+    public AsyncAlertDispatcher(AlertListener listener, Options options) {
+        if (options.queueCapacity < 1 || options.batchSize < 1 || options.batchDelayMillis < 0) {
+            throw new IllegalArgumentException("queueCapacity and batchSize must be positive, batchDelayMillis not negative");
+        }
+        this.listener = listener;
+        this.options = options;
+        this.queue = new ArrayBlockingQueue<>(options.queueCapacity);
+        this.delays = MetricsRegistry.getDefault().histogram("alert_listener_delay_seconds",
+                "listener", listener.getClass().getSimpleName());
+        this.consumer = new Thread(this::consumeLoop, "alerts-" + listener.getClass().getSimpleName());
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * @return the listener the alerts are delivered to
+     */
+    public AlertListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Queues the alert for the listener and returns without waiting for it,
+     * unless the queue is full and the policy is {@link OverflowPolicy#BLOCK}.
+     * Alerts triggered after {@link #close()} are dropped.
+     *
+     * @param alert the alert that was triggered
+     */
+    @Override
+    public void onAlertTriggered(Alert alert) {
+        // registered before the check, so close() either sees this thread or this thread sees closed
+        activeProducers.incrementAndGet();
+        try {
+            if (closed) {
+                droppedAlerts.increment();
+                return;
+            }
+            enqueue(new QueuedAlert(alert, System.nanoTime()));
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+    }
+
+    private void enqueue(QueuedAlert queued) {
+        switch (options.overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(queued)) {
+                    if (queue.poll() != null) {
+                        droppedAlerts.increment();
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+                if (!queue.offer(queued)) {
+                    droppedAlerts.increment();
+                }
+                break;
+            case BLOCK:
+                try {
+                    queue.put(queued);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedAlerts.increment();
+                }
+                break;
+        }
+    }
+
+    private void consumeLoop() {
+        List<QueuedAlert> batch = new ArrayList<>(options.batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                QueuedAlert first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (options.batchDelayMillis > 0 && !closed) {
+                    long deadline = first.queuedNanos + TimeUnit.MILLISECONDS.toNanos(options.batchDelayMillis);
+                    while (batch.size() < options.batchSize) {
+                        QueuedAlert next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } else {
+                    queue.drainTo(batch, options.batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                // the thread is stopped through the closed flag; deliver what has been taken
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<QueuedAlert> batch) {
+        // a new list per batch, as listeners may keep it
+        List<Alert> alerts = new ArrayList<>(batch.size());
+        for (QueuedAlert queued : batch) {
+            alerts.add(queued.alert);
+        }
+        try {
+            listener.onAlertsTriggered(alerts);
+            deliveredAlerts.add(batch.size());
+        } catch (Exception e) {
+            failedDeliveries.add(batch.size());
+            System.err.println("Error notifying alert listener: " + e.getMessage());
+        }
+        long now = System.nanoTime();
+        long total = totalLatencyNanos;
+        long max = maxLatencyNanos;
+        for (QueuedAlert queued : batch) {
+            long latency = now - queued.queuedNanos;
+            delays.record(latency);
+            total += latency;
+            max = Math.max(max, latency);
+        }
+        totalLatencyNanos = total;
+        maxLatencyNanos = max;
+    }
+
+    /**
+     * @return alerts the listener has handled without throwing
+     */
+    public long getDeliveredAlerts() {
+        return deliveredAlerts.sum();
+    }
+
+    /**
+     * @return alerts dropped because the queue was full or the dispatcher was closed
+     */
+    public long getDroppedAlerts() {
+        return droppedAlerts.sum();
+    }
+
+    /**
+     * @return alerts in batches for which the listener threw an exception
+     */
+    public long getFailedDeliveries() {
+        return failedDeliveries.sum();
+    }
+
+    /**
+     * @return alerts waiting for the listener
+     */
+    public int getQueuedAlerts() {
+        return queue.size();
+    }
+
+    /**
+     * @return the mean time from triggering an alert until the listener returned, in microseconds
+     */
+    public double getMeanLatencyMicros() {
+        long handled = deliveredAlerts.sum() + failedDeliveries.sum();
+        return handled == 0 ? 0 : totalLatencyNanos / 1000.0 / handled;
+    }
+
+    /**
+     * @return the longest time from triggering an alert until the listener returned, in microseconds
+     */
+    public double getMaxLatencyMicros() {
+        return maxLatencyNanos / 1000.0;
+    }
+
+    /**
+     * Stops accepting alerts, delivers the queued ones and stops the consumer thread.
+     * Alerts queued by threads that were already triggering when the dispatcher
+     * was closed are delivered on the closing thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // not interrupted, so a listener that is busy with a batch is not disturbed
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            // the consumer is still running and delivers what is queued
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // the consumer may have seen an empty queue just before a producer queued its alert
+        List<QueuedAlert> batch = new ArrayList<>(options.batchSize);
+        while (true) {
+            queue.drainTo(batch, options.batchSize);
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch.clear();
+            } else if (activeProducers.get() == 0 && queue.isEmpty()) {
+                return;
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static final class QueuedAlert {
+        final Alert alert;
+        final long queuedNanos;
+
+        QueuedAlert(Alert alert, long queuedNanos) {
+            this.alert = alert;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncAlertDispatcherTest {
+
+    @Test
+    @DisplayName("Should not let a slow listener hold up the other listeners")
+    void testSlowListenerIsIsolated() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        long now = System.currentTimeMillis();
+        for (int patientId = 1; patientId <= 10; patientId++) {
+            storage.addPatientData(patientId, 88.0, "Saturation", now - 1000);
+        }
+        AlertGenerator generator = new AlertGenerator(storage);
+        BlockingListener slow = new BlockingListener();
+        AsyncAlertDispatcher dispatcher = generator.addAsyncAlertListener(slow, new AsyncAlertDispatcher.Options());
+        List<Alert> direct = new ArrayList<>();
+        generator.addAlertListener(direct::add);
+
+        // the sweep finishes while the slow listener is still stuck in its first batch
+        List<Alert> raised = generator.evaluateAllPatients();
+        assertEquals(10, raised.size());
+        assertEquals(raised, direct);
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+
+        slow.release.countDown();
+        generator.removeAlertListener(slow);
+        assertEquals(raised, slow.received());
+        assertEquals(10, dispatcher.getDeliveredAlerts());
+        assertEquals(0, dispatcher.getDroppedAlerts());
+        assertTrue(dispatcher.getMaxLatencyMicros() >= dispatcher.getMeanLatencyMicros());
+    }
+
+    @Test
+    @DisplayName("Should drop new alerts when the queue is full and deliver the rest in batches")
+    void testDropNewestAndBatching() throws InterruptedException {
+        BlockingListener slow = new BlockingListener();
+        AsyncAlertDispatcher dispatcher = new AsyncAlertDispatcher(slow, new AsyncAlertDispatcher.Options()
+                .queueCapacity(4)
+                .overflowPolicy(AsyncAlertDispatcher.OverflowPolicy.DROP_NEWEST));
+
+        dispatcher.onAlertTriggered(new Alert("1", "First", 1));
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 7; i++) {
+            dispatcher.onAlertTriggered(new Alert(Integer.toString(i), "Queued", i));
+        }
+        assertEquals(4, dispatcher.getQueuedAlerts());
+        assertEquals(2, dispatcher.getDroppedAlerts());
+
+        slow.release.countDown();
+        dispatcher.close();
+        assertEquals(List.of(1, 4), slow.batchSizes);
+        assertEquals(5, dispatcher.getDeliveredAlerts());
+        assertEquals("5", slow.received().get(4).getPatientId());
+
+        dispatcher.onAlertTriggered(new Alert("8", "After close", 8));
+        assertEquals(3, dispatcher.getDroppedAlerts());
+    }
+
+    @Test
+    @DisplayName("Should deliver or count as dropped every alert triggered while closing")
+    void testCloseWhileTriggering() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            List<Alert> received = Collections.synchronizedList(new ArrayList<>());
+            AsyncAlertDispatcher dispatcher = new AsyncAlertDispatcher(received::add, new AsyncAlertDispatcher.Options()
+                    .queueCapacity(8)
+                    .overflowPolicy(AsyncAlertDispatcher.OverflowPolicy.BLOCK));
+            int producers = 4;
+            int alertsPerProducer = 500;
+            CountDownLatch started = new CountDownLatch(producers);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                Thread thread = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < alertsPerProducer; i++) {
+                        dispatcher.onAlertTriggered(new Alert("1", "Racing close", i));
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            started.await();
+            dispatcher.close();
+            for (Thread thread : threads) {
+                thread.join(5000);
+                assertFalse(thread.isAlive());
+            }
+            assertEquals(received.size(), dispatcher.getDeliveredAlerts());
+            assertEquals(producers * alertsPerProducer,
+                    dispatcher.getDeliveredAlerts() + dispatcher.getDroppedAlerts());
+            assertEquals(0, dispatcher.getQueuedAlerts());
+        }
+    }
+
+    private static class BlockingListener implements AlertListener {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final List<Alert> received = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onAlertTriggered(Alert alert) {
+            received.add(alert);
+        }
+
+        @Override
+        public void onAlertsTriggered(List<Alert> alerts) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(alerts.size());
+            AlertListener.super.onAlertsTriggered(alerts);
+        }
+
+        List<Alert> received() {
+            return new ArrayList<>(received);
+        }
+    }
+}
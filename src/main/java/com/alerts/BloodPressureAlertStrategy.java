@@ -2,6 +2,7 @@ package com.alerts;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -28,12 +29,12 @@ public class BloodPressureAlertStrategy implements AlertStrategy{
 
         //filter blood pressure records
         List<PatientRecord> systolicRecords = records.stream()
-                .filter(r -> "SystolicPressure".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.SYSTOLIC_PRESSURE)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
         List<PatientRecord> diastolicRecords = records.stream()
-                .filter(r -> "DiastolicPressure".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.DIASTOLIC_PRESSURE)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
@@ -124,6 +125,11 @@ public class BloodPressureAlertStrategy implements AlertStrategy{
         return null;
     }
 
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SYSTOLIC_PRESSURE, RecordType.DIASTOLIC_PRESSURE};
+    }
+
     @Override
     public String getStrategyName() {
         return "BloodPressureAlertStrategy";
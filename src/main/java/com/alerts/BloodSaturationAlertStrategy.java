@@ -2,6 +2,7 @@ package com.alerts;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,7 +24,7 @@ public class BloodSaturationAlertStrategy implements AlertStrategy {
 
         //filter saturation records
         List<PatientRecord> saturationRecords = records.stream()
-                .filter(r -> "Saturation".equals(r.getRecordType()) || "BloodSaturation".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.SATURATION || r.getType() == RecordType.BLOOD_SATURATION)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
@@ -79,6 +80,11 @@ public class BloodSaturationAlertStrategy implements AlertStrategy {
         return null;
     }
 
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SATURATION, RecordType.BLOOD_SATURATION};
+    }
+
     @Override
     public String getStrategyName() {
         return "BloodSaturationAlertStrategy";
@@ -1,4 +1,7 @@
 package com.alerts;
+
+import java.time.Instant;
+
 /**
  * Simple alert listener that logs alerts to console
  */
@@ -6,10 +9,11 @@ public class ConsoleAlertListener implements AlertListener {
 
     @Override
     public void onAlertTriggered(Alert alert) {
-        System.out.println("=== MEDICAL ALERT ===");
-        System.out.println("Patient ID: " + alert.getPatientId());
-        System.out.println("Condition: " + alert.getCondition());
-        System.out.println("Timestamp: " + new java.util.Date(alert.getTimestamp()));
-        System.out.println("=====================");
+        // one println per alert, so alerts printed from several threads are not interleaved
+        System.out.println("=== MEDICAL ALERT ===" + System.lineSeparator()
+                + "Patient ID: " + alert.getPatientId() + System.lineSeparator()
+                + "Condition: " + alert.getCondition() + System.lineSeparator()
+                + "Timestamp: " + Instant.ofEpochMilli(alert.getTimestamp()) + System.lineSeparator()
+                + "=====================");
     }
-}
\ No newline at end of file
+}
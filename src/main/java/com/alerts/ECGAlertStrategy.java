@@ -2,62 +2,88 @@ package com.alerts;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordType;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
     /**
      * Handles ECG data alerts:
      * - Abnormal peaks based on sliding window average
+     * Every ECG reading is looked at once, using a {@link SlidingWindowPeakDetector},
+     * and every peak is reported.
      */
    public class ECGAlertStrategy implements AlertStrategy {
 
         private static final int SLIDING_WINDOW_SIZE = 10;
         private static final double ABNORMAL_PEAK_MULTIPLIER = 2.5; // Peak must be 2.5x the average
 
+        private final int windowSize;
+
+        /**
+         * Creates a strategy with the default window of 10 readings.
+         */
+        public ECGAlertStrategy() {
+            this(SLIDING_WINDOW_SIZE);
+        }
+
+        /**
+         * Creates a strategy with a custom window, e.g. 250 readings for real ECG sample rates.
+         * @param windowSize the number of previous readings a peak is compared against
+         */
+        public ECGAlertStrategy(int windowSize) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("Window size must be at least 1: " + windowSize);
+            }
+            this.windowSize = windowSize;
+        }
+
         @Override
         public List<Alert> evaluateData(Patient patient, List<PatientRecord> records) {
             List<Alert> alerts = new ArrayList<>();
 
-            // Filter ECG records
-            List<PatientRecord> ecgRecords = records.stream()
-                    .filter(r -> "ECG".equals(r.getRecordType()))
-                    .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
-                    .collect(Collectors.toList());
+            // Filter ECG records, sorting only if they did not arrive in time order
+            List<PatientRecord> ecgRecords = new ArrayList<>();
+            boolean sorted = true;
+            for (PatientRecord record : records) {
+                if (record.getType() == RecordType.ECG) {
+                    if (!ecgRecords.isEmpty()
+                            && ecgRecords.get(ecgRecords.size() - 1).getTimestamp() > record.getTimestamp()) {
+                        sorted = false;
+                    }
+                    ecgRecords.add(record);
+                }
+            }
 
-            if (ecgRecords.size() < SLIDING_WINDOW_SIZE + 1) {
+            if (ecgRecords.size() < windowSize + 1) {
                 return alerts; // Not enough data for analysis
             }
+            if (!sorted) {
+                ecgRecords.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+            }
 
             // Check for abnormal peaks using sliding window
-            for (int i = SLIDING_WINDOW_SIZE; i < ecgRecords.size(); i++) {
-                double currentValue = ecgRecords.get(i).getMeasurementValue();
-
-                // Calculate average of previous readings in sliding window
-                double sum = 0;
-                for (int j = i - SLIDING_WINDOW_SIZE; j < i; j++) {
-                    sum += Math.abs(ecgRecords.get(j).getMeasurementValue());
-                }
-                double average = sum / SLIDING_WINDOW_SIZE;
-
-                // Check if current value is an abnormal peak
-                if (Math.abs(currentValue) > average * ABNORMAL_PEAK_MULTIPLIER) {
+            SlidingWindowPeakDetector detector = new SlidingWindowPeakDetector(windowSize, ABNORMAL_PEAK_MULTIPLIER);
+            for (PatientRecord record : ecgRecords) {
+                double currentValue = record.getMeasurementValue();
+                if (detector.offer(currentValue)) {
+                    double average = detector.getLastAverage();
                     alerts.add(new Alert(
                             String.valueOf(patient.getPatientId()),
                             String.format("ECG Abnormal Peak: %.2f (%.1fx above recent average of %.2f)",
                                     currentValue, Math.abs(currentValue) / average, average),
                             System.currentTimeMillis()
                     ));
-
-                    // Limit to one alert per evaluation
-                    // --> to avoid spam
-                    break;
                 }
             }
 
             return alerts;
         }
 
+        @Override
+        public RecordType[] getRecordTypes() {
+            return new RecordType[] {RecordType.ECG};
+        }
+
         @Override
         public String getStrategyName() {
             return "ECGAlertStrategy";
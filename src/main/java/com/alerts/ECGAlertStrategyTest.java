@@ -157,8 +157,8 @@ public class ECGAlertStrategyTest {
     }
 
     @Test
-    @DisplayName("Should limit to one alert per evaluation")
-    void testOneAlertLimit() {
+    @DisplayName("Should report every abnormal peak")
+    void testReportsAllPeaks() {
         List<PatientRecord> records = new ArrayList<>();
         long currentTime = System.currentTimeMillis();
 
@@ -173,8 +173,44 @@ public class ECGAlertStrategyTest {
         records.add(new PatientRecord(789, 5.0, "ECG", currentTime + 12 * 1000));
         List<Alert> alerts = strategy.evaluateData(testPatient, records);
 
-        // Should only generate one alert due to break statement
+        // Each peak is compared against its own preceding window
+        assertEquals(3, alerts.size());
+    }
+
+    @Test
+    @DisplayName("Should support larger windows")
+    void testConfigurableWindowSize() {
+        ECGAlertStrategy wideStrategy = new ECGAlertStrategy(250);
+        List<PatientRecord> records = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+
+        for (int i = 0; i < 250; i++) {
+            records.add(new PatientRecord(789, 1.0, "ECG", currentTime + i * 4));
+        }
+        // with the default window this reading would not have enough history before it
+        assertTrue(wideStrategy.evaluateData(testPatient, records).isEmpty());
+
+        records.add(new PatientRecord(789, 3.0, "ECG", currentTime + 250 * 4));
+        records.add(new PatientRecord(789, 1.0, "ECG", currentTime + 251 * 4));
+        records.add(new PatientRecord(789, -3.0, "ECG", currentTime + 252 * 4));
+        assertEquals(2, wideStrategy.evaluateData(testPatient, records).size());
+    }
+
+    @Test
+    @DisplayName("Should sort ECG records that arrive out of order")
+    void testUnsortedRecords() {
+        List<PatientRecord> records = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+
+        // the peak arrives first but is the newest reading
+        records.add(new PatientRecord(789, 3.0, "ECG", currentTime + 10 * 1000));
+        for (int i = 0; i < 10; i++) {
+            records.add(new PatientRecord(789, 1.0, "ECG", currentTime + i * 1000));
+        }
+
+        List<Alert> alerts = strategy.evaluateData(testPatient, records);
         assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("3.00"));
     }
 
     @Test
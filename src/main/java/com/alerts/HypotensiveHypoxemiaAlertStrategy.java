@@ -2,6 +2,7 @@ package com.alerts;
 
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.RecordType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,12 +24,12 @@ public class HypotensiveHypoxemiaAlertStrategy implements AlertStrategy {
 
         // Filter relevant records
         List<PatientRecord> systolicRecords = records.stream()
-                .filter(r -> "SystolicPressure".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.SYSTOLIC_PRESSURE)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
         List<PatientRecord> saturationRecords = records.stream()
-                .filter(r -> "Saturation".equals(r.getRecordType()) || "BloodSaturation".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.SATURATION || r.getType() == RecordType.BLOOD_SATURATION)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
@@ -58,6 +59,11 @@ public class HypotensiveHypoxemiaAlertStrategy implements AlertStrategy {
         return alerts;
     }
 
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SYSTOLIC_PRESSURE, RecordType.SATURATION, RecordType.BLOOD_SATURATION};
+    }
+
     @Override
     public String getStrategyName() {
         return "HypotensiveHypoxemiaAlertStrategy";
@@ -0,0 +1,81 @@
+package com.alerts;
+
+/**
+ * Detects abnormal peaks in a stream of readings: a reading is a peak when its
+ * absolute value is more than {@code multiplier} times the average absolute
+ * value of the previous {@code windowSize} readings.
+ * The window is a ring buffer with a running sum, so each reading costs the
+ * same no matter how large the window is. The sum is recomputed from the
+ * buffer once per lap to keep floating point error from building up.
+ */
+public class SlidingWindowPeakDetector {
+    private final int windowSize;
+    private final double multiplier;
+    private final double[] window;
+    private int next;
+    private int count;
+    private double windowSum;
+    private double lastAverage;
+
+    /**
+     * @param windowSize the number of previous readings the average is taken over
+     * @param multiplier how many times the average a reading must exceed to be a peak
+     */
+    public SlidingWindowPeakDetector(int windowSize, double multiplier) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be at least 1: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.multiplier = multiplier;
+        this.window = new double[windowSize];
+    }
+
+    /**
+     * Adds a reading to the window.
+     *
+     * @param value the new reading
+     * @return true if the reading is a peak compared to the full window before it
+     */
+    public boolean offer(double value) {
+        double magnitude = Math.abs(value);
+        boolean peak = false;
+
+        if (count == windowSize) {
+            lastAverage = windowSum / windowSize;
+            peak = magnitude > lastAverage * multiplier;
+            windowSum -= window[next];
+        } else {
+            count++;
+        }
+        window[next] = magnitude;
+        windowSum += magnitude;
+        next++;
+        if (next == windowSize) {
+            next = 0;
+            resync();
+        }
+        return peak;
+    }
+
+    /**
+     * @return the window average the most recent reading was compared against
+     */
+    public double getLastAverage() {
+        return lastAverage;
+    }
+
+    /**
+     * @return the number of previous readings the average is taken over
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    private void resync() {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += window[i];
+        }
+        windowSum = sum;
+    }
+}
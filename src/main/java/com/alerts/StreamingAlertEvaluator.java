@@ -0,0 +1,144 @@
+package com.alerts;
+
+import com.data_management.PatientDataListener;
+import com.data_management.RecordType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Evaluates alert rules on every reading as it is stored, instead of
+ * re-reading the last 24 hours on a periodic sweep.
+ * Each patient gets its own set of {@link StreamingAlertStrategy} instances,
+ * so the state of one patient is never shared with another.
+ * Readings are dispatched by {@link RecordType} id to the strategies that
+ * subscribed to the type; readings no strategy wants are dropped without
+ * taking the patient's lock.
+ */
+public class StreamingAlertEvaluator implements PatientDataListener {
+    private final List<IntFunction<StreamingAlertStrategy>> strategyFactories;
+    private final Map<Integer, PatientStrategies> strategiesByPatient;
+    private final Consumer<Alert> alertSink;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param strategyFactories creates a strategy instance for a given patient ID
+     * @param alertSink         receives every alert that is raised
+     */
+    public StreamingAlertEvaluator(List<IntFunction<StreamingAlertStrategy>> strategyFactories,
+                                   Consumer<Alert> alertSink) {
+        this.strategyFactories = new ArrayList<>(strategyFactories);
+        this.strategiesByPatient = new ConcurrentHashMap<>();
+        this.alertSink = alertSink;
+    }
+
+    /**
+     * @return factories for the streaming versions of the built-in alert strategies
+     */
+    public static List<IntFunction<StreamingAlertStrategy>> defaultStrategies() {
+        List<IntFunction<StreamingAlertStrategy>> factories = new ArrayList<>();
+        factories.add(StreamingBloodPressureAlertStrategy::new);
+        factories.add(StreamingBloodSaturationAlertStrategy::new);
+        factories.add(StreamingHypotensiveHypoxemiaAlertStrategy::new);
+        factories.add(StreamingECGAlertStrategy::new);
+        return factories;
+    }
+
+    @Override
+    public void onPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        onPatientData(patientId, measurementValue, RecordType.of(recordType), timestamp);
+    }
+
+    @Override
+    public void onPatientData(int patientId, double measurementValue, RecordType recordType, long timestamp) {
+        PatientStrategies patientStrategies = strategiesByPatient.get(patientId);
+        if (patientStrategies == null) {
+            patientStrategies = strategiesByPatient.computeIfAbsent(patientId, this::createStrategies);
+        }
+        StreamingAlertStrategy[] strategies = patientStrategies.forType(recordType);
+        if (strategies.length == 0) {
+            return;
+        }
+
+        List<Alert> alerts = new ArrayList<>(0);
+        // readings of one patient may arrive on several threads, the strategy state is not thread-safe
+        synchronized (patientStrategies) {
+            for (StreamingAlertStrategy strategy : strategies) {
+                int raised = alerts.size();
+                try {
+                    strategy.onRecord(recordType, timestamp, measurementValue, alerts);
+                    for (int i = raised; i < alerts.size(); i++) {
+                        alerts.set(i, alerts.get(i).withStrategyName(strategy.getStrategyName()));
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error in alert strategy " + strategy.getStrategyName() +
+                            " for patient " + patientId + ": " + e.getMessage());
+                }
+            }
+        }
+        for (Alert alert : alerts) {
+            alertSink.accept(alert);
+        }
+    }
+
+    private PatientStrategies createStrategies(int patientId) {
+        StreamingAlertStrategy[] strategies = new StreamingAlertStrategy[strategyFactories.size()];
+        for (int i = 0; i < strategies.length; i++) {
+            strategies[i] = strategyFactories.get(i).apply(patientId);
+        }
+        return new PatientStrategies(strategies);
+    }
+
+    /**
+     * the strategies of one patient, indexed by the record type ids they subscribed to
+     */
+    private static class PatientStrategies {
+        // strategies that want every type; also used for types no strategy named
+        private final StreamingAlertStrategy[] anyType;
+        private final StreamingAlertStrategy[][] byTypeId;
+
+        PatientStrategies(StreamingAlertStrategy[] strategies) {
+            List<StreamingAlertStrategy> any = new ArrayList<>();
+            int maxId = -1;
+            for (StreamingAlertStrategy strategy : strategies) {
+                RecordType[] types = strategy.getRecordTypes();
+                if (types == null) {
+                    any.add(strategy);
+                } else {
+                    for (RecordType type : types) {
+                        maxId = Math.max(maxId, type.getId());
+                    }
+                }
+            }
+            anyType = any.toArray(new StreamingAlertStrategy[0]);
+            byTypeId = new StreamingAlertStrategy[maxId + 1][];
+            for (int id = 0; id <= maxId; id++) {
+                List<StreamingAlertStrategy> subscribed = new ArrayList<>();
+                for (StreamingAlertStrategy strategy : strategies) {
+                    RecordType[] types = strategy.getRecordTypes();
+                    if (types == null || contains(types, id)) {
+                        subscribed.add(strategy);
+                    }
+                }
+                byTypeId[id] = subscribed.toArray(new StreamingAlertStrategy[0]);
+            }
+        }
+
+        StreamingAlertStrategy[] forType(RecordType type) {
+            return type.getId() < byTypeId.length ? byTypeId[type.getId()] : anyType;
+        }
+
+        private static boolean contains(RecordType[] types, int id) {
+            for (RecordType type : types) {
+                if (type.getId() == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.alerts;
+
+import com.data_management.ReadingCursor;
+import com.data_management.RecordType;
+import java.util.List;
+
+/**
+ * Alert evaluation that sees each new reading exactly once instead of
+ * re-scanning the stored history. An instance belongs to a single patient
+ * and keeps only the compact state its rule needs, so every reading is
+ * handled in constant time.
+ */
+public interface StreamingAlertStrategy {
+    /**
+     * processes one new reading of this strategy's patient
+     * @param recordType the type of the reading, compared with {@code ==} against the RecordType constants
+     * @param timestamp  the time of the reading in milliseconds since the Unix epoch
+     * @param value      the measured value
+     * @param alerts     the list any resulting alerts are added to
+     */
+    void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts);
+
+    /**
+     * processes one new reading whose type is given by name
+     * @param recordType the type of the reading, e.g. "ECG"
+     * @param timestamp  the time of the reading in milliseconds since the Unix epoch
+     * @param value      the measured value
+     * @param alerts     the list any resulting alerts are added to
+     */
+    default void onRecord(String recordType, long timestamp, double value, List<Alert> alerts) {
+        onRecord(RecordType.of(recordType), timestamp, value, alerts);
+    }
+
+    /**
+     * the record types this strategy reacts to; the evaluator only passes it readings of these types
+     * @return the subscribed types, or null for every type
+     */
+    default RecordType[] getRecordTypes() {
+        return null;
+    }
+
+    /**
+     * processes stored readings in time order, e.g. to catch up on a patient's history
+     * the readings are decoded as they are consumed, so no record objects are created
+     * @param recordType the type of the readings, e.g. "ECG"
+     * @param readings   cursor over the readings, e.g. from {@link com.data_management.Patient#getCursor}
+     * @param alerts     the list any resulting alerts are added to
+     */
+    default void onRecords(RecordType recordType, ReadingCursor readings, List<Alert> alerts) {
+        while (readings.next()) {
+            onRecord(recordType, readings.getTimestamp(), readings.getValue(), alerts);
+        }
+    }
+
+    //returns name of alert strategy
+    String getStrategyName();
+}
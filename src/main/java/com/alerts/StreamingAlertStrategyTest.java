@@ -0,0 +1,150 @@
+package com.alerts;
+
+import com.data_management.DataStorage;
+import com.data_management.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingAlertStrategyTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    @DisplayName("Should raise critical and trend blood pressure alerts per reading")
+    void testBloodPressure() {
+        StreamingAlertStrategy strategy = new StreamingBloodPressureAlertStrategy(5);
+        List<Alert> alerts = new ArrayList<>();
+
+        strategy.onRecord("SystolicPressure", 1000L, 120.0, alerts);
+        strategy.onRecord("SystolicPressure", 2000L, 135.0, alerts);
+        assertTrue(alerts.isEmpty());
+
+        strategy.onRecord("SystolicPressure", 3000L, 150.0, alerts);
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("increasing trend"));
+
+        alerts.clear();
+        strategy.onRecord("DiastolicPressure", 4000L, 125.0, alerts);
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("Critical High Diastolic"));
+        assertEquals("5", alerts.get(0).getPatientId());
+        assertEquals(4000L, alerts.get(0).getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Should detect a rapid saturation drop only within 10 minutes")
+    void testSaturationRapidDrop() {
+        StreamingAlertStrategy strategy = new StreamingBloodSaturationAlertStrategy(5);
+        List<Alert> alerts = new ArrayList<>();
+
+        strategy.onRecord("Saturation", 0L, 99.0, alerts);
+        strategy.onRecord("Saturation", 5 * MINUTE, 97.0, alerts);
+        strategy.onRecord("Saturation", 12 * MINUTE, 93.0, alerts);
+        // 99 is outside the window, 97 -> 93 is only a 4% drop
+        assertTrue(alerts.isEmpty());
+
+        strategy.onRecord("Saturation", 14 * MINUTE, 91.0, alerts);
+        assertEquals(2, alerts.size());
+        assertTrue(alerts.stream().anyMatch(a -> a.getCondition().contains("Low Blood Saturation")));
+        assertTrue(alerts.stream().anyMatch(a -> a.getCondition().contains("from 97.0% to 91.0%")));
+    }
+
+    @Test
+    @DisplayName("Should combine the latest systolic and saturation readings")
+    void testHypotensiveHypoxemia() {
+        StreamingAlertStrategy strategy = new StreamingHypotensiveHypoxemiaAlertStrategy(5);
+        List<Alert> alerts = new ArrayList<>();
+
+        strategy.onRecord("SystolicPressure", 0L, 85.0, alerts);
+        strategy.onRecord("Saturation", 10 * MINUTE, 90.0, alerts);
+        assertTrue(alerts.isEmpty(), "readings are too far apart");
+
+        strategy.onRecord("SystolicPressure", 11 * MINUTE, 88.0, alerts);
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().startsWith("CRITICAL: Hypotensive Hypoxemia"));
+    }
+
+    @Test
+    @DisplayName("Should flag ECG peaks against the running window average")
+    void testECGPeak() {
+        StreamingAlertStrategy strategy = new StreamingECGAlertStrategy(5);
+        List<Alert> alerts = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            strategy.onRecord("ECG", i, 1.0, alerts);
+        }
+        strategy.onRecord("ECG", 10, 2.0, alerts);
+        assertTrue(alerts.isEmpty());
+
+        strategy.onRecord("ECG", 11, -3.0, alerts);
+        assertEquals(1, alerts.size());
+        assertTrue(alerts.get(0).getCondition().contains("-3.00"));
+    }
+
+    @Test
+    @DisplayName("Should trigger alerts as readings are stored")
+    void testEvaluatorOnIngest() {
+        DataStorage storage = new DataStorage();
+        AlertGenerator generator = new AlertGenerator(storage);
+        List<Alert> received = new ArrayList<>();
+        generator.addAlertListener(received::add);
+        generator.enableIncrementalEvaluation();
+
+        storage.addPatientData(3, 95.0, "Saturation", 1000L);
+        storage.addPatientData(4, 85.0, "Saturation", 1000L);
+        assertEquals(1, received.size());
+        assertEquals("4", received.get(0).getPatientId());
+
+        generator.disableIncrementalEvaluation();
+        storage.addPatientData(4, 80.0, "Saturation", 2000L);
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    @DisplayName("Should only pass readings of subscribed types to a strategy")
+    void testEvaluatorDispatchesByType() {
+        List<RecordType> seenBySaturation = new ArrayList<>();
+        List<RecordType> seenByAll = new ArrayList<>();
+        List<IntFunction<StreamingAlertStrategy>> factories = new ArrayList<>();
+        factories.add(patientId -> new RecordingStrategy(seenBySaturation, RecordType.SATURATION));
+        factories.add(patientId -> new RecordingStrategy(seenByAll, (RecordType[]) null));
+        StreamingAlertEvaluator evaluator = new StreamingAlertEvaluator(factories, alert -> { });
+
+        evaluator.onPatientData(1, 97.0, RecordType.SATURATION, 1000L);
+        evaluator.onPatientData(1, 0.5, "ECG", 1000L);
+        evaluator.onPatientData(1, 1.0, "NewlySeenType", 1000L);
+
+        assertEquals(List.of(RecordType.SATURATION), seenBySaturation);
+        assertEquals(List.of(RecordType.SATURATION, RecordType.ECG, RecordType.of("NewlySeenType")), seenByAll);
+        assertSame(RecordType.of("NewlySeenType"), RecordType.byId(RecordType.of("NewlySeenType").getId()));
+    }
+
+    private static class RecordingStrategy implements StreamingAlertStrategy {
+        private final List<RecordType> seen;
+        private final RecordType[] types;
+
+        RecordingStrategy(List<RecordType> seen, RecordType... types) {
+            this.seen = seen;
+            this.types = types;
+        }
+
+        @Override
+        public void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts) {
+            seen.add(recordType);
+        }
+
+        @Override
+        public RecordType[] getRecordTypes() {
+            return types;
+        }
+
+        @Override
+        public String getStrategyName() {
+            return "RecordingStrategy";
+        }
+    }
+}
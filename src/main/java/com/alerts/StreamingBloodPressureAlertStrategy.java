@@ -0,0 +1,99 @@
+package com.alerts;
+
+import com.data_management.RecordType;
+import java.util.List;
+
+/**
+ * Streaming version of {@link BloodPressureAlertStrategy}:
+ * -critical threshold alerts (>180/120 or <90/60) for every new reading
+ * -trend alerts (3 consecutive readings with >10mmHg change), using only the
+ *  last three readings of each pressure type
+ */
+public class StreamingBloodPressureAlertStrategy implements StreamingAlertStrategy {
+
+    private static final double TREND_THRESHOLD = 10.0;
+    private static final int TREND_READINGS_COUNT = 3;
+
+    //critical thresholds
+    private static final double SYSTOLIC_HIGH = 180.0;
+    private static final double SYSTOLIC_LOW = 90.0;
+    private static final double DIASTOLIC_HIGH = 120.0;
+    private static final double DIASTOLIC_LOW = 60.0;
+
+    private final String patientId;
+    private final LastReadings systolic = new LastReadings();
+    private final LastReadings diastolic = new LastReadings();
+
+    public StreamingBloodPressureAlertStrategy(int patientId) {
+        this.patientId = String.valueOf(patientId);
+    }
+
+    @Override
+    public void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts) {
+        if (recordType == RecordType.SYSTOLIC_PRESSURE) {
+            check(systolic, "Systolic", SYSTOLIC_HIGH, SYSTOLIC_LOW, timestamp, value, alerts);
+        } else if (recordType == RecordType.DIASTOLIC_PRESSURE) {
+            check(diastolic, "Diastolic", DIASTOLIC_HIGH, DIASTOLIC_LOW, timestamp, value, alerts);
+        }
+    }
+
+    private void check(LastReadings readings, String pressureType, double highThreshold, double lowThreshold,
+                       long timestamp, double value, List<Alert> alerts) {
+        if (value > highThreshold) {
+            alerts.add(new Alert(patientId,
+                    String.format("Critical High %s: %.1f mmHg (threshold: %.1f)", pressureType, value, highThreshold),
+                    timestamp));
+        } else if (value < lowThreshold) {
+            alerts.add(new Alert(patientId,
+                    String.format("Critical Low %s: %.1f mmHg (threshold: %.1f)", pressureType, value, lowThreshold),
+                    timestamp));
+        }
+
+        readings.add(value);
+        if (readings.count < TREND_READINGS_COUNT) {
+            return;
+        }
+        double first = readings.get(0) - readings.get(1);
+        double second = readings.get(1) - readings.get(2);
+        if (first > TREND_THRESHOLD && second > TREND_THRESHOLD) {
+            alerts.add(new Alert(patientId,
+                    String.format("%s pressure increasing trend: 3 consecutive readings with >10mmHg increase", pressureType),
+                    timestamp));
+        } else if (first < -TREND_THRESHOLD && second < -TREND_THRESHOLD) {
+            alerts.add(new Alert(patientId,
+                    String.format("%s pressure decreasing trend: 3 consecutive readings with >10mmHg decrease", pressureType),
+                    timestamp));
+        }
+    }
+
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SYSTOLIC_PRESSURE, RecordType.DIASTOLIC_PRESSURE};
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "BloodPressureAlertStrategy";
+    }
+
+    /**
+     * ring buffer of the last TREND_READINGS_COUNT values, get(0) is the newest
+     */
+    private static class LastReadings {
+        private final double[] values = new double[TREND_READINGS_COUNT];
+        private int next;
+        private int count;
+
+        void add(double value) {
+            values[next] = value;
+            next = (next + 1) % TREND_READINGS_COUNT;
+            if (count < TREND_READINGS_COUNT) {
+                count++;
+            }
+        }
+
+        double get(int age) {
+            return values[(next - 1 - age + 2 * TREND_READINGS_COUNT) % TREND_READINGS_COUNT];
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.alerts;
+
+import com.data_management.RecordType;
+import java.util.List;
+
+/**
+ * Streaming version of {@link BloodSaturationAlertStrategy}:
+ * - We have <92% => Low saturation alert
+ * - 5% drop within 10 minutes => rapid drop alert
+ * The highest reading of the last 10 minutes is kept in a monotonic deque,
+ * so each reading is added and evicted at most once.
+ */
+public class StreamingBloodSaturationAlertStrategy implements StreamingAlertStrategy {
+
+    private static final double LOW_SATURATION_THRESHOLD = 92.0;
+    private static final double RAPID_DROP_THRESHOLD = 5.0;
+    private static final long RAPID_DROP_TIME_WINDOW = 10 * 60 * 1000; // 10 minutes in milliseconds
+
+    private final String patientId;
+
+    // deque of readings with strictly decreasing values, head is the window maximum
+    private long[] dequeTimestamps = new long[16];
+    private double[] dequeValues = new double[16];
+    private int head;
+    private int size;
+
+    public StreamingBloodSaturationAlertStrategy(int patientId) {
+        this.patientId = String.valueOf(patientId);
+    }
+
+    @Override
+    public void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts) {
+        if (recordType != RecordType.SATURATION && recordType != RecordType.BLOOD_SATURATION) {
+            return;
+        }
+
+        if (value < LOW_SATURATION_THRESHOLD) {
+            alerts.add(new Alert(patientId,
+                    String.format("Low Blood Saturation: %.1f%% (threshold: %.1f%%)", value, LOW_SATURATION_THRESHOLD),
+                    timestamp));
+        }
+
+        // drop readings that are outside the 10-minute window
+        while (size > 0 && timestamp - dequeTimestamps[head] > RAPID_DROP_TIME_WINDOW) {
+            head = (head + 1) % dequeValues.length;
+            size--;
+        }
+        if (size > 0) {
+            double highest = dequeValues[head];
+            double saturationDrop = highest - value;
+            if (saturationDrop >= RAPID_DROP_THRESHOLD) {
+                alerts.add(new Alert(patientId,
+                        String.format("Rapid Saturation Drop: %.1f%% within 10 minutes (from %.1f%% to %.1f%%)",
+                                saturationDrop, highest, value),
+                        timestamp));
+            }
+        }
+
+        // a newer reading that is at least as high makes older lower readings irrelevant
+        while (size > 0 && dequeValues[(head + size - 1) % dequeValues.length] <= value) {
+            size--;
+        }
+        if (size == dequeValues.length) {
+            grow();
+        }
+        int tail = (head + size) % dequeValues.length;
+        dequeTimestamps[tail] = timestamp;
+        dequeValues[tail] = value;
+        size++;
+    }
+
+    private void grow() {
+        long[] timestamps = new long[dequeValues.length * 2];
+        double[] values = new double[dequeValues.length * 2];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = dequeTimestamps[(head + i) % dequeValues.length];
+            values[i] = dequeValues[(head + i) % dequeValues.length];
+        }
+        dequeTimestamps = timestamps;
+        dequeValues = values;
+        head = 0;
+    }
+
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SATURATION, RecordType.BLOOD_SATURATION};
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "BloodSaturationAlertStrategy";
+    }
+}
@@ -0,0 +1,56 @@
+package com.alerts;
+
+import com.data_management.RecordType;
+import java.util.List;
+
+/**
+ * Streaming version of {@link ECGAlertStrategy}:
+ * - Abnormal peaks based on sliding window average
+ * Uses a {@link SlidingWindowPeakDetector}, so each reading costs the same no
+ * matter how large the window is.
+ */
+public class StreamingECGAlertStrategy implements StreamingAlertStrategy {
+
+    private static final int SLIDING_WINDOW_SIZE = 10;
+    private static final double ABNORMAL_PEAK_MULTIPLIER = 2.5; // Peak must be 2.5x the average
+
+    private final String patientId;
+    private final SlidingWindowPeakDetector detector;
+
+    public StreamingECGAlertStrategy(int patientId) {
+        this(patientId, SLIDING_WINDOW_SIZE);
+    }
+
+    /**
+     * @param patientId  the patient this instance evaluates
+     * @param windowSize the number of previous readings a peak is compared against
+     */
+    public StreamingECGAlertStrategy(int patientId, int windowSize) {
+        this.patientId = String.valueOf(patientId);
+        this.detector = new SlidingWindowPeakDetector(windowSize, ABNORMAL_PEAK_MULTIPLIER);
+    }
+
+    @Override
+    public void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts) {
+        if (recordType != RecordType.ECG) {
+            return;
+        }
+        if (detector.offer(value)) {
+            double average = detector.getLastAverage();
+            alerts.add(new Alert(patientId,
+                    String.format("ECG Abnormal Peak: %.2f (%.1fx above recent average of %.2f)",
+                            value, Math.abs(value) / average, average),
+                    timestamp));
+        }
+    }
+
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.ECG};
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "ECGAlertStrategy";
+    }
+}
@@ -0,0 +1,70 @@
+package com.alerts;
+
+import com.data_management.RecordType;
+import java.util.List;
+
+/**
+ * Streaming version of {@link HypotensiveHypoxemiaAlertStrategy}:
+ * it Triggers when the latest systolic BP is less than 90 mmHg AND the latest
+ * blood saturation is less than 92%, with both readings at most 5 minutes apart.
+ * Only the latest reading of each type is kept.
+ */
+public class StreamingHypotensiveHypoxemiaAlertStrategy implements StreamingAlertStrategy {
+
+    private static final double SYSTOLIC_THRESHOLD = 90.0;
+    private static final double SATURATION_THRESHOLD = 92.0;
+    private static final long TIME_CORRELATION_WINDOW = 5 * 60 * 1000; // 5 minutes
+
+    private final String patientId;
+    private boolean hasSystolic;
+    private long systolicTimestamp;
+    private double systolicValue;
+    private boolean hasSaturation;
+    private long saturationTimestamp;
+    private double saturationValue;
+
+    public StreamingHypotensiveHypoxemiaAlertStrategy(int patientId) {
+        this.patientId = String.valueOf(patientId);
+    }
+
+    @Override
+    public void onRecord(RecordType recordType, long timestamp, double value, List<Alert> alerts) {
+        if (recordType == RecordType.SYSTOLIC_PRESSURE) {
+            if (hasSystolic && timestamp < systolicTimestamp) {
+                return; // an older reading does not change the latest state
+            }
+            hasSystolic = true;
+            systolicTimestamp = timestamp;
+            systolicValue = value;
+        } else if (recordType == RecordType.SATURATION || recordType == RecordType.BLOOD_SATURATION) {
+            if (hasSaturation && timestamp < saturationTimestamp) {
+                return;
+            }
+            hasSaturation = true;
+            saturationTimestamp = timestamp;
+            saturationValue = value;
+        } else {
+            return;
+        }
+
+        if (hasSystolic && hasSaturation
+                && Math.abs(systolicTimestamp - saturationTimestamp) <= TIME_CORRELATION_WINDOW
+                && systolicValue < SYSTOLIC_THRESHOLD
+                && saturationValue < SATURATION_THRESHOLD) {
+            alerts.add(new Alert(patientId,
+                    String.format("CRITICAL: Hypotensive Hypoxemia - Low BP (%.1f mmHg) AND Low O2 (%.1f%%)",
+                            systolicValue, saturationValue),
+                    timestamp));
+        }
+    }
+
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.SYSTOLIC_PRESSURE, RecordType.SATURATION, RecordType.BLOOD_SATURATION};
+    }
+
+    @Override
+    public String getStrategyName() {
+        return "HypotensiveHypoxemiaAlertStrategy";
+    }
+}
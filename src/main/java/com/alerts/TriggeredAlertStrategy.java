@@ -18,7 +18,7 @@ public class TriggeredAlertStrategy implements AlertStrategy {
 
         // Filter alert records
         List<PatientRecord> alertRecords = records.stream()
-                .filter(r -> "Alert".equals(r.getRecordType()))
+                .filter(r -> r.getType() == RecordType.ALERT)
                 .sorted((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()))
                 .collect(Collectors.toList());
 
@@ -37,6 +37,11 @@ public class TriggeredAlertStrategy implements AlertStrategy {
         return alerts;
     }
 
+    @Override
+    public RecordType[] getRecordTypes() {
+        return new RecordType[] {RecordType.ALERT};
+    }
+
     @Override
     public String getStrategyName() {
         return "TriggeredAlertStrategy";
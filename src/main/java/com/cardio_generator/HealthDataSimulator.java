@@ -3,6 +3,7 @@ package com.cardio_generator;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import com.cardio_generator.generators.AlertGenerator;
 
@@ -10,11 +11,19 @@ import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.MeteredGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.MeteredOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.cardio_generator.outputs.WireFormat;
+import com.metrics.MetricsRegistry;
+import com.metrics.MetricsReporter;
+import com.metrics.MetricsServer;
 
 import java.util.Collections;
 import java.util.List;
@@ -35,9 +44,27 @@ public class HealthDataSimulator {
 
     private static int patientCount = 50; // Default number of patients
     private static ScheduledExecutorService scheduler;
+    private static TickScheduler tickScheduler; // used instead of scheduler with --scheduler tick
+    private static boolean useTickScheduler = false;
+    private static int tickLoopCount = Runtime.getRuntime().availableProcessors();
+    private static final long TICK_MILLIS = 100;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
+    private static WireFormat wireFormat = WireFormat.TEXT; // set with --format, for file, websocket and tcp output
+    private static long rollMegabytes; // set with --roll-mb, 0 keeps one file per label
+    private static long rollMinutes; // set with --roll-minutes, 0 keeps one file per label
+    private static boolean gzipSegments; // set with --gzip
+    private static int metricsPort = -1; // set with --metrics-port, -1 serves no metrics
+    private static long metricsLogSeconds; // set with --metrics-log, 0 logs no metrics
+    private static MetricsServer metricsServer;
+    private static MetricsReporter metricsReporter;
+    private static Random random = new Random();
+    private static Long seed; // set with --seed, makes the generated values repeatable
+    private static long replayHours; // set with --replay-hours, 0 follows the wall clock
+    private static long replayStart = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static volatile long virtualMillis;
+    private static LongSupplier clock = System::currentTimeMillis;
     private static HealthDataSimulator instance; //for singleton
+    private static final ThreadLocal<SampleBatch> POOL_BATCHES = ThreadLocal.withInitial(() -> new SampleBatch(8));
 
 
 
@@ -50,13 +77,89 @@ public class HealthDataSimulator {
     public static void main(String[] args) throws IOException {
 
         parseArguments(args);
+        startMetrics();
 
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        if (seed != null) {
+            random = new Random(seed);
+        }
+        if (replayHours > 0) {
+            replay();
+            return;
+        }
+
+        if (useTickScheduler) {
+            tickScheduler = new TickScheduler(tickLoopCount, TICK_MILLIS);
+        } else {
+            scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        }
 
         List<Integer> patientIds = initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        Collections.shuffle(patientIds, random); // Randomize the order of patient IDs
 
         scheduleTasksForPatients(patientIds);
+
+        if (useTickScheduler) {
+            tickScheduler.start(outputStrategy);
+        }
+    }
+
+    /**
+     * generates {@code replayHours} of data on a virtual clock as fast as possible and exits
+     * all generators run on the calling thread in a fixed order, so the same seed gives the same output
+     */
+    private static void replay() {
+        useTickScheduler = true;
+        tickScheduler = new TickScheduler(1, TICK_MILLIS);
+        virtualMillis = replayStart;
+        clock = () -> virtualMillis;
+
+        List<Integer> patientIds = initializePatientIds(patientCount);
+        Collections.shuffle(patientIds, random);
+        scheduleTasksForPatients(patientIds);
+
+        long started = System.nanoTime();
+        long ticks = TimeUnit.HOURS.toMillis(replayHours) / TICK_MILLIS;
+        long runs = 0;
+        for (long tick = 0; tick < ticks; tick++) {
+            virtualMillis = replayStart + tick * TICK_MILLIS;
+            runs += tickScheduler.advanceTo(tick, outputStrategy);
+        }
+        if (outputStrategy instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) outputStrategy).close();
+            } catch (Exception e) {
+                System.err.println("Error closing output: " + e.getMessage());
+            }
+        }
+        // on stderr, so console output stays identical between runs
+        System.err.printf("Replayed %d hours (%d generator runs) in %d ms%n",
+                replayHours, runs, (System.nanoTime() - started) / 1_000_000);
+        if (metricsReporter != null) {
+            metricsReporter.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+    }
+
+    /**
+     * starts the metrics endpoint and log line asked for with --metrics-port and --metrics-log
+     * only then are the generators and the output metered, so runs without metrics pay nothing for them
+     * @throws IOException if the metrics port cannot be bound
+     */
+    private static void startMetrics() throws IOException {
+        if (!metricsEnabled()) {
+            return;
+        }
+        outputStrategy = new MeteredOutputStrategy(outputStrategy);
+        if (metricsPort >= 0) {
+            metricsServer = new MetricsServer(MetricsRegistry.getDefault(), metricsPort);
+            System.err.println("Metrics are served on http://localhost:" + metricsServer.getPort() + "/metrics");
+        }
+        if (metricsLogSeconds > 0) {
+            metricsReporter = new MetricsReporter(MetricsRegistry.getDefault());
+            metricsReporter.start(TimeUnit.SECONDS.toMillis(metricsLogSeconds));
+        }
     }
     /**
      * method that takes arguments and parses them, to configure the health care simulator
@@ -64,6 +167,7 @@ public class HealthDataSimulator {
     *@throws IOException handles situation if an I/O error occurs
      */
     private static void parseArguments(String[] args) throws IOException {
+        String outputArg = null;
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "-h":
@@ -82,37 +186,105 @@ public class HealthDataSimulator {
                     break;
                 case "--output":
                     if (i + 1 < args.length) {
-                        String outputArg = args[++i];
-                        if (outputArg.equals("console")) {
-                            outputStrategy = new ConsoleOutputStrategy();
-                        } else if (outputArg.startsWith("file:")) {
-                            String baseDirectory = outputArg.substring(5);
-                            Path outputPath = Paths.get(baseDirectory);
-                            if (!Files.exists(outputPath)) {
-                                Files.createDirectories(outputPath);
-                            }
-                            outputStrategy = new FileOutputStrategy(baseDirectory);
-                        } else if (outputArg.startsWith("websocket:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(10));
-                                // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
-                                System.out.println("WebSocket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println(
-                                        "Invalid port for WebSocket output. Please specify a valid port number.");
-                            }
-                        } else if (outputArg.startsWith("tcp:")) {
-                            try {
-                                int port = Integer.parseInt(outputArg.substring(4));
-                                // Initialize your TCP socket output strategy here
-                                outputStrategy = new TcpOutputStrategy(port);
-                                System.out.println("TCP socket output will be on port: " + port);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+                        outputArg = args[++i];
+                    }
+                    break;
+                case "--format":
+                    if (i + 1 < args.length) {
+                        String formatArg = args[++i];
+                        if (formatArg.equals("text")) {
+                            wireFormat = WireFormat.TEXT;
+                        } else if (formatArg.equals("binary")) {
+                            wireFormat = WireFormat.BINARY;
+                        } else if (formatArg.equals("csv")) {
+                            wireFormat = WireFormat.CSV;
+                        } else {
+                            System.err.println("Unknown format. Using default (text).");
+                        }
+                    }
+                    break;
+                case "--roll-mb":
+                    if (i + 1 < args.length) {
+                        try {
+                            rollMegabytes = Math.max(0, Long.parseLong(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment size. Not rolling by size.");
+                        }
+                    }
+                    break;
+                case "--roll-minutes":
+                    if (i + 1 < args.length) {
+                        try {
+                            rollMinutes = Math.max(0, Long.parseLong(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment length. Not rolling by time.");
+                        }
+                    }
+                    break;
+                case "--gzip":
+                    gzipSegments = true;
+                    break;
+                case "--metrics-port":
+                    if (i + 1 < args.length) {
+                        try {
+                            metricsPort = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Invalid port for metrics. Serving no metrics.");
+                        }
+                    }
+                    break;
+                case "--metrics-log":
+                    if (i + 1 < args.length) {
+                        try {
+                            metricsLogSeconds = Math.max(0, Long.parseLong(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid metrics interval. Logging no metrics.");
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using random values.");
+                        }
+                    }
+                    break;
+                case "--replay-hours":
+                    if (i + 1 < args.length) {
+                        try {
+                            replayHours = Math.max(0, Long.parseLong(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid number of hours. Following the wall clock.");
+                        }
+                    }
+                    break;
+                case "--replay-start":
+                    if (i + 1 < args.length) {
+                        try {
+                            replayStart = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid start time. Using default value: " + replayStart);
+                        }
+                    }
+                    break;
+                case "--scheduler":
+                    if (i + 1 < args.length) {
+                        String schedulerArg = args[++i];
+                        if (schedulerArg.equals("pool")) {
+                            useTickScheduler = false;
+                        } else if (schedulerArg.equals("tick") || schedulerArg.startsWith("tick:")) {
+                            useTickScheduler = true;
+                            if (schedulerArg.startsWith("tick:")) {
+                                try {
+                                    tickLoopCount = Math.max(1, Integer.parseInt(schedulerArg.substring(5)));
+                                } catch (NumberFormatException e) {
+                                    System.err.println("Invalid number of tick loops. Using default value: " + tickLoopCount);
+                                }
                             }
                         } else {
-                            System.err.println("Unknown output type. Using default (console).");
+                            System.err.println("Unknown scheduler type. Using default (pool).");
                         }
                     }
                     break;
@@ -122,6 +294,53 @@ public class HealthDataSimulator {
                     System.exit(1);
             }
         }
+        if (outputArg != null) {
+            createOutputStrategy(outputArg);
+        }
+    }
+
+    /**
+     * creates the output strategy named by the --output argument, after all options are known
+     * @param outputArg the output type, e.g. "websocket:8080"
+     * @throws IOException if the output directory cannot be created
+     */
+    private static void createOutputStrategy(String outputArg) throws IOException {
+        if (outputArg.equals("console")) {
+            outputStrategy = new ConsoleOutputStrategy();
+        } else if (outputArg.startsWith("file:")) {
+            String baseDirectory = outputArg.substring(5);
+            Path outputPath = Paths.get(baseDirectory);
+            if (!Files.exists(outputPath)) {
+                Files.createDirectories(outputPath);
+            }
+            outputStrategy = new FileOutputStrategy(baseDirectory, new FileOutputStrategy.Options()
+                    .format(wireFormat)
+                    .rollBytes(rollMegabytes * 1024 * 1024)
+                    .rollIntervalMillis(TimeUnit.MINUTES.toMillis(rollMinutes))
+                    .compress(gzipSegments));
+        } else if (outputArg.startsWith("websocket:")) {
+            try {
+                int port = Integer.parseInt(outputArg.substring(10));
+                // Initialize your WebSocket output strategy here
+                outputStrategy = new WebSocketOutputStrategy(port,
+                        new WebSocketOutputStrategy.Options().format(wireFormat));
+                System.out.println("WebSocket output will be on port: " + port);
+            } catch (NumberFormatException e) {
+                System.err.println(
+                        "Invalid port for WebSocket output. Please specify a valid port number.");
+            }
+        } else if (outputArg.startsWith("tcp:")) {
+            try {
+                int port = Integer.parseInt(outputArg.substring(4));
+                // Initialize your TCP socket output strategy here
+                outputStrategy = new TcpOutputStrategy(port, new TcpOutputStrategy.Options().format(wireFormat));
+                System.out.println("TCP socket output will be on port: " + port);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port for TCP output. Please specify a valid port number.");
+            }
+        } else {
+            System.err.println("Unknown output type. Using default (console).");
+        }
     }
 
     /**
@@ -138,6 +357,26 @@ public class HealthDataSimulator {
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
         System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("  --format <format>        Define how file, WebSocket and TCP output encode the data:");
+        System.out.println("                             'text' for text lines and JSON (default),");
+        System.out.println("                             'binary' for compact binary frames,");
+        System.out.println("                             'csv' for the CSV files FileDataReader reads (file output only).");
+        System.out.println("  --roll-mb <megabytes>    Start a new file output segment per label after this size.");
+        System.out.println("  --roll-minutes <minutes> Start a new file output segment per label every this many minutes");
+        System.out.println("                             of data; finished segments are listed in '<label>.idx'.");
+        System.out.println("  --gzip                   Compress finished file output segments (with --roll-mb or --roll-minutes).");
+        System.out.println("  --scheduler <type>       Define how data generation is scheduled. Options are:");
+        System.out.println("                             'pool' for one timer task per patient and generator (default),");
+        System.out.println("                             'tick[:<loops>]' for a few tick loops that run all due generators,");
+        System.out.println("                             suited for very large patient counts (default loops: CPU count).");
+        System.out.println("  --metrics-port <port>    Serve throughput and latency metrics as plain text on");
+        System.out.println("                             http://localhost:<port>/metrics (0 picks a free port).");
+        System.out.println("  --metrics-log <seconds>  Log a line with the metrics of the last interval to stderr.");
+        System.out.println("  --seed <number>          Generate the same values for the same seed.");
+        System.out.println("  --replay-hours <hours>   Generate this many hours of data on a virtual clock as fast as");
+        System.out.println("                             possible, then exit. With --seed the output is identical every run.");
+        System.out.println("  --replay-start <millis>  Start time of the virtual clock in milliseconds since UNIX epoch");
+        System.out.println("                             (default: 1704067200000, 2024-01-01 UTC).");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
@@ -161,18 +400,66 @@ public class HealthDataSimulator {
     * @param patientIds list of IDs of patients that get tasks
      */
     private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        long generatorSeed = seed != null ? seed : random.nextLong();
+        PatientDataGenerator ecgDataGenerator = metered(new ECGDataGenerator(patientCount, generatorSeed, clock));
+        PatientDataGenerator bloodSaturationDataGenerator =
+                metered(new BloodSaturationDataGenerator(patientCount, generatorSeed, clock));
+        PatientDataGenerator bloodPressureDataGenerator =
+                metered(new BloodPressureDataGenerator(patientCount, generatorSeed, clock));
+        PatientDataGenerator bloodLevelsDataGenerator =
+                metered(new BloodLevelsDataGenerator(patientCount, generatorSeed, clock));
+        PatientDataGenerator alertGenerator = metered(new AlertGenerator(patientCount, generatorSeed, clock));
 
         for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
+            scheduleGenerator(patientId, ecgDataGenerator, 1, TimeUnit.SECONDS);
+            scheduleGenerator(patientId, bloodSaturationDataGenerator, 1, TimeUnit.SECONDS);
+            scheduleGenerator(patientId, bloodPressureDataGenerator, 1, TimeUnit.MINUTES);
+            scheduleGenerator(patientId, bloodLevelsDataGenerator, 2, TimeUnit.MINUTES);
+            scheduleGenerator(patientId, alertGenerator, 20, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @param generator a data generator
+     * @return the generator, wrapped to record its metrics if metrics were asked for
+     */
+    private static PatientDataGenerator metered(PatientDataGenerator generator) {
+        return metricsEnabled() ? new MeteredGenerator(generator) : generator;
+    }
+
+    private static boolean metricsEnabled() {
+        return metricsPort >= 0 || metricsLogSeconds > 0;
+    }
+
+    /**
+     * runs a generator into this thread's batch and hands its samples to the output in one call
+     * @param patientId the patient to generate data for
+     * @param generator the generator to run
+     */
+    private static void generateBatch(int patientId, PatientDataGenerator generator) {
+        SampleBatch batch = POOL_BATCHES.get();
+        try {
+            generator.generate(patientId, batch);
+            if (!batch.isEmpty()) {
+                outputStrategy.outputBatch(batch);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * schedules a generator for one patient on the selected scheduler
+     * @param patientId the patient to generate data for
+     * @param generator the generator to run
+     * @param period defines how often the generator should run
+     * @param timeUnit what unit of time is used(min, sec..)
+     */
+    private static void scheduleGenerator(int patientId, PatientDataGenerator generator, long period, TimeUnit timeUnit) {
+        if (useTickScheduler) {
+            tickScheduler.schedule(patientId, generator, random.nextInt(5), period, timeUnit);
+        } else {
+            scheduleTask(() -> generateBatch(patientId, generator), period, timeUnit);
         }
     }
     /**
@@ -0,0 +1,254 @@
+package com.cardio_generator;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+
+/**
+ * drives the data generators of all patients from a few tick loops instead of
+ * one timer task per patient and generator
+ * Patients are split over the loops by ID. Each loop owns a timing wheel of
+ * tick slots; on every tick it runs all generators that are due in that slot
+ * and files them into the slot of their next run, so the work per tick is
+ * proportional to the generators that are due rather than to all patients.
+ * The samples of all generators that run in a tick are collected and handed to
+ * the output strategy in one {@link OutputStrategy#outputBatch} call.
+ */
+public class TickScheduler {
+    private static final int WHEEL_SIZE = 1024;
+
+    private final long tickMillis;
+    private final TickLoop[] loops;
+    private Thread[] threads;
+    private volatile boolean running;
+
+    /**
+     * creates a scheduler
+     * @param loopCount number of tick loops (threads) to spread the patients over
+     * @param tickMillis length of one tick; periods and delays are rounded to whole ticks
+     */
+    public TickScheduler(int loopCount, long tickMillis) {
+        if (loopCount < 1 || tickMillis < 1) {
+            throw new IllegalArgumentException("loopCount and tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.loops = new TickLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new TickLoop();
+        }
+    }
+
+    /**
+     * schedules a generator to run for a patient at a fixed rate
+     * must be called before {@link #start} or, for virtual time, before {@link #advanceTo}
+     * @param patientId the patient to generate data for
+     * @param generator the generator to run
+     * @param initialDelay delay before the first run
+     * @param period time between runs
+     * @param timeUnit unit of initialDelay and period
+     */
+    public void schedule(int patientId, PatientDataGenerator generator, long initialDelay, long period,
+                         TimeUnit timeUnit) {
+        long periodTicks = Math.max(1, timeUnit.toMillis(period) / tickMillis);
+        long delayTicks = timeUnit.toMillis(initialDelay) / tickMillis;
+        loops[Math.floorMod(patientId, loops.length)].add(patientId, generator, delayTicks, periodTicks);
+    }
+
+    /**
+     * starts one thread per loop that follows the wall clock, beginning with tick 0 now
+     * @param outputStrategy where the generators send their data
+     */
+    public synchronized void start(OutputStrategy outputStrategy) {
+        if (threads != null) {
+            throw new IllegalStateException("Scheduler already started");
+        }
+        running = true;
+        long startMillis = System.currentTimeMillis();
+        threads = new Thread[loops.length];
+        for (int i = 0; i < loops.length; i++) {
+            TickLoop loop = loops[i];
+            threads[i] = new Thread(() -> runLoop(loop, startMillis, outputStrategy), "tick-loop-" + i);
+            threads[i].setDaemon(false);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * stops the loop threads after their current tick
+     */
+    public synchronized void shutdown() {
+        running = false;
+        if (threads != null) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * runs every tick up to and including the given one on the calling thread
+     * used to drive the generators with a virtual clock instead of the loop threads
+     * @param tick the last tick to run, counted from 0
+     * @param outputStrategy where the generators send their data
+     * @return the number of generator runs
+     */
+    public long advanceTo(long tick, OutputStrategy outputStrategy) {
+        long runs = 0;
+        for (TickLoop loop : loops) {
+            runs += loop.advanceTo(tick, outputStrategy);
+        }
+        return runs;
+    }
+
+    /**
+     * moves every loop to the given tick without running the ticks it missed
+     * generators that were due in the missed ticks run once, in the given tick, instead of once per missed run
+     * @param tick the tick the loops continue with
+     */
+    void skipTo(long tick) {
+        for (TickLoop loop : loops) {
+            loop.skipTo(tick);
+        }
+    }
+
+    /**
+     * @return the length of one tick in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    private void runLoop(TickLoop loop, long startMillis, OutputStrategy outputStrategy) {
+        while (running) {
+            long currentTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+            // after a GC pause or a stall, continue from now instead of replaying the missed ticks in a burst
+            if (currentTick - loop.nextTick > 1) {
+                loop.skipTo(currentTick);
+            }
+            loop.advanceTo(currentTick, outputStrategy);
+            long nextTickMillis = startMillis + (currentTick + 1) * tickMillis;
+            long sleep = nextTickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * the tasks of one loop, stored as parallel arrays and indexed by the timing wheel
+     * only ever used by one thread once started
+     */
+    private static class TickLoop {
+        private int[] patientIds = new int[64];
+        private PatientDataGenerator[] generators = new PatientDataGenerator[64];
+        private long[] periodTicks = new long[64];
+        private long[] nextTicks = new long[64];
+        private int taskCount;
+
+        private final int[][] slots = new int[WHEEL_SIZE][];
+        private final int[] slotSizes = new int[WHEEL_SIZE];
+        private int[] spare = new int[16];
+        private long nextTick;
+        private final SampleBatch batch = new SampleBatch(1024);
+
+        synchronized void add(int patientId, PatientDataGenerator generator, long delayTicks, long period) {
+            if (taskCount == patientIds.length) {
+                int capacity = taskCount * 2;
+                patientIds = Arrays.copyOf(patientIds, capacity);
+                generators = Arrays.copyOf(generators, capacity);
+                periodTicks = Arrays.copyOf(periodTicks, capacity);
+                nextTicks = Arrays.copyOf(nextTicks, capacity);
+            }
+            int task = taskCount++;
+            patientIds[task] = patientId;
+            generators[task] = generator;
+            periodTicks[task] = period;
+            nextTicks[task] = nextTick + delayTicks;
+            file(task);
+        }
+
+        synchronized long advanceTo(long lastTick, OutputStrategy outputStrategy) {
+            long runs = 0;
+            while (nextTick <= lastTick) {
+                runs += runTick(nextTick, outputStrategy);
+                nextTick++;
+            }
+            return runs;
+        }
+
+        /**
+         * makes overdue tasks due in the given tick and refiles all tasks, as their old slots may be skipped
+         */
+        synchronized void skipTo(long tick) {
+            if (tick <= nextTick) {
+                return;
+            }
+            Arrays.fill(slotSizes, 0);
+            for (int task = 0; task < taskCount; task++) {
+                if (nextTicks[task] < tick) {
+                    nextTicks[task] = tick;
+                }
+                file(task);
+            }
+            nextTick = tick;
+        }
+
+        private long runTick(long tick, OutputStrategy outputStrategy) {
+            int slot = (int) (tick & (WHEEL_SIZE - 1));
+            int[] tasks = slots[slot];
+            int size = slotSizes[slot];
+            if (size == 0) {
+                return 0;
+            }
+            // swap in an empty list, tasks that are not due yet or are due again in this slot go back into it
+            slots[slot] = spare;
+            slotSizes[slot] = 0;
+
+            long runs = 0;
+            for (int i = 0; i < size; i++) {
+                int task = tasks[i];
+                if (nextTicks[task] <= tick) {
+                    try {
+                        generators[task].generate(patientIds[task], batch);
+                    } catch (RuntimeException e) {
+                        System.err.println("Generator failed for patient " + patientIds[task] + ": " + e.getMessage());
+                    }
+                    nextTicks[task] += periodTicks[task];
+                    runs++;
+                }
+                file(task);
+            }
+            spare = tasks;
+            if (!batch.isEmpty()) {
+                try {
+                    outputStrategy.outputBatch(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Output failed for " + batch.size() + " samples: " + e.getMessage());
+                } finally {
+                    batch.clear();
+                }
+            }
+            return runs;
+        }
+
+        private void file(int task) {
+            int slot = (int) (nextTicks[task] & (WHEEL_SIZE - 1));
+            int[] tasks = slots[slot];
+            if (tasks == null) {
+                tasks = new int[16];
+                slots[slot] = tasks;
+            } else if (slotSizes[slot] == tasks.length) {
+                tasks = Arrays.copyOf(tasks, tasks.length * 2);
+                slots[slot] = tasks;
+            }
+            tasks[slotSizes[slot]++] = task;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.cardio_generator;
+
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TickSchedulerTest {
+
+    /**
+     * verifies that every generator runs at its own period for every patient
+     * purpose: the timing wheel must not lose or repeat tasks when periods exceed the wheel size
+     */
+    @Test
+    void testGeneratorsRunAtTheirPeriod() {
+        TickScheduler scheduler = new TickScheduler(3, 100);
+        for (int patientId = 1; patientId <= 10; patientId++) {
+            scheduler.schedule(patientId, (id, out) -> out.output(id, 0, "fast", "x"), 0, 1, TimeUnit.SECONDS);
+            scheduler.schedule(patientId, (id, out) -> out.output(id, 0, "slow", "x"), 2, 2, TimeUnit.MINUTES);
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        OutputStrategy counter = (patientId, timestamp, label, data) -> counts.merge(label, 1, Integer::sum);
+
+        // 10 minutes of virtual time in ticks of 100 ms, the first tick is tick 0
+        long runs = scheduler.advanceTo(5999, counter);
+
+        assertEquals(10 * 600, counts.get("fast"));
+        assertEquals(10 * 4, counts.get("slow")); // at 2, 4, 6 and 8 minutes
+        assertEquals(runs, counts.get("fast") + counts.get("slow"));
+    }
+
+    /**
+     * verifies that skipped ticks are not replayed: an overdue generator runs once and then keeps its period
+     * purpose: after a stall the loops must not generate the whole backlog in a burst
+     */
+    @Test
+    void testSkipToDoesNotReplayMissedRuns() {
+        TickScheduler scheduler = new TickScheduler(2, 100);
+        int[] fast = new int[1];
+        int[] slow = new int[1];
+        scheduler.schedule(1, (id, out) -> fast[0]++, 0, 100, TimeUnit.MILLISECONDS);
+        scheduler.schedule(2, (id, out) -> slow[0]++, 0, 1, TimeUnit.MINUTES);
+        OutputStrategy ignore = (patientId, timestamp, label, data) -> { };
+
+        scheduler.advanceTo(0, ignore);
+        scheduler.skipTo(5000);
+        scheduler.advanceTo(5000, ignore);
+        assertEquals(2, fast[0]);
+        assertEquals(2, slow[0]);
+
+        scheduler.advanceTo(5600, ignore);
+        assertEquals(602, fast[0]);
+        assertEquals(3, slow[0]); // again 600 ticks after the skip
+    }
+
+    /**
+     * verifies that a failing generator does not stop the others in the same loop
+     */
+    @Test
+    void testFailingGeneratorIsSkipped() {
+        TickScheduler scheduler = new TickScheduler(1, 100);
+        scheduler.schedule(1, (id, out) -> { throw new IllegalStateException("boom"); }, 0, 1, TimeUnit.SECONDS);
+        int[] count = new int[1];
+        scheduler.schedule(2, (id, out) -> count[0]++, 0, 1, TimeUnit.SECONDS);
+
+        scheduler.advanceTo(99, (patientId, timestamp, label, data) -> { });
+
+        assertEquals(10, count[0]);
+    }
+
+    /**
+     * verifies that the samples of all generators due in a tick reach the output in one batch, in run order
+     */
+    @Test
+    void testOneBatchPerTick() {
+        TickScheduler scheduler = new TickScheduler(1, 100);
+        for (int patientId = 1; patientId <= 5; patientId++) {
+            scheduler.schedule(patientId, (id, out) -> {
+                out.output(id, 0, "Cholesterol", "1");
+                out.output(id, 0, "WhiteBloodCells", "2");
+                out.output(id, 0, "RedBloodCells", "3");
+            }, 0, 1, TimeUnit.SECONDS);
+        }
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> samples = new ArrayList<>();
+        OutputStrategy output = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                fail("samples must arrive in batches");
+            }
+
+            @Override
+            public void outputBatch(SampleBatch batch) {
+                batchSizes.add(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    samples.add(batch.getPatientId(i) + ":" + batch.getLabel(i));
+                }
+            }
+        };
+
+        scheduler.advanceTo(19, output);
+
+        // runs at ticks 0 and 10, all 15 samples of a tick in one call
+        assertEquals(List.of(15, 15), batchSizes);
+        assertEquals("1:Cholesterol", samples.get(0));
+        assertEquals("1:RedBloodCells", samples.get(2));
+        assertEquals("5:RedBloodCells", samples.get(14));
+    }
+}
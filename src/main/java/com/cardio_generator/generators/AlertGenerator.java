@@ -1,5 +1,6 @@
 package com.cardio_generator.generators;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 import com.cardio_generator.outputs.OutputStrategy;
 
 /**
@@ -8,10 +9,11 @@ import com.cardio_generator.outputs.OutputStrategy;
  */
 
 public class AlertGenerator implements PatientDataGenerator {
-    //final constants become upper snake case
-    public static final Random RANDOM_GENERATOR = new Random();
+    private static final long RANDOM_STREAM = 5;
     //variables become lower camel case
     private boolean[] alertStates; // false = resolved, true = pressed
+    private final SplittableRandom[] randoms;
+    private final LongSupplier clock;
 
     //adjust alertStates, add comment with param and function
 
@@ -21,7 +23,19 @@ public class AlertGenerator implements PatientDataGenerator {
     *
      */
     public AlertGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed(), System::currentTimeMillis);
+    }
+
+    /**
+     * constructor for repeatable runs
+     * @param patientCount count of patients to generate alarms for
+     * @param seed the same seed gives the same alerts
+     * @param clock the time of the generated alerts in milliseconds since UNIX epoch
+     */
+    public AlertGenerator(int patientCount, long seed, LongSupplier clock) {
         alertStates = new boolean[patientCount + 1];
+        randoms = PatientRandoms.create(seed, RANDOM_STREAM, patientCount);
+        this.clock = clock;
     }
 
     /**
@@ -34,23 +48,24 @@ public class AlertGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             if (alertStates[patientId]) {
-                if (RANDOM_GENERATOR.nextDouble() < 0.9) { // 90% chance to resolve
+                if (random.nextDouble() < 0.9) { // 90% chance to resolve
                     alertStates[patientId] = false;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(),
+                    outputStrategy.output(patientId, clock.getAsLong(),
                             "Alert", "resolved");
                 }
             } else {
                 //variable lamba small l, lower camel case
                 double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
                 double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
-                boolean alertTriggered = RANDOM_GENERATOR.nextDouble() < p;
+                boolean alertTriggered = random.nextDouble() < p;
 
                 if (alertTriggered) {
                     alertStates[patientId] = true;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(),
+                    outputStrategy.output(patientId, clock.getAsLong(),
                             "Alert", "triggered");
                 }
             }
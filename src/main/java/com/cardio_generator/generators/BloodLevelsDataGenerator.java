@@ -1,16 +1,31 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private static final long RANDOM_STREAM = 4;
+    private final SplittableRandom[] randoms;
+    private final LongSupplier clock;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed(), System::currentTimeMillis);
+    }
+
+    /**
+     * constructor for repeatable runs
+     * @param patientCount number of patients
+     * @param seed the same seed gives the same blood levels
+     * @param clock the time of the generated values in milliseconds since UNIX epoch
+     */
+    public BloodLevelsDataGenerator(int patientCount, long seed, LongSupplier clock) {
+        randoms = PatientRandoms.create(seed, RANDOM_STREAM, patientCount);
+        this.clock = clock;
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -18,6 +33,7 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
         // Generate baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
+            SplittableRandom random = randoms[i];
             baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
             baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
             baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
@@ -27,16 +43,18 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
+            long now = clock.getAsLong();
             // Generate values around the baseline for realism
             double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
             double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
             double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
+            outputStrategy.output(patientId, now, "Cholesterol", Double.toString(cholesterol));
+            outputStrategy.output(patientId, now, "WhiteBloodCells",
                     Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, now, "RedBloodCells", Double.toString(redCells));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
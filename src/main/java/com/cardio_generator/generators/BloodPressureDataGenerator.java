@@ -1,21 +1,37 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private static final long RANDOM_STREAM = 3;
+    private final SplittableRandom[] randoms;
+    private final LongSupplier clock;
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
     public BloodPressureDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed(), System::currentTimeMillis);
+    }
+
+    /**
+     * constructor for repeatable runs
+     * @param patientCount number of patients
+     * @param seed the same seed gives the same blood pressure values
+     * @param clock the time of the generated values in milliseconds since UNIX epoch
+     */
+    public BloodPressureDataGenerator(int patientCount, long seed, LongSupplier clock) {
+        randoms = PatientRandoms.create(seed, RANDOM_STREAM, patientCount);
+        this.clock = clock;
         lastSystolicValues = new int[patientCount + 1];
         lastDiastolicValues = new int[patientCount + 1];
 
         // Initialize with baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
+            SplittableRandom random = randoms[i];
             lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
             lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
         }
@@ -24,6 +40,7 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
             int diastolicVariation = random.nextInt(5) - 2;
             int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
@@ -34,9 +51,10 @@ public class BloodPressureDataGenerator implements PatientDataGenerator {
             lastSystolicValues[patientId] = newSystolicValue;
             lastDiastolicValues[patientId] = newDiastolicValue;
 
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
+            long now = clock.getAsLong();
+            outputStrategy.output(patientId, now, "SystolicPressure",
                     Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
+            outputStrategy.output(patientId, now, "DiastolicPressure",
                     Double.toString(newDiastolicValue));
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
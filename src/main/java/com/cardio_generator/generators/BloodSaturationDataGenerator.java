@@ -1,6 +1,7 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 
 import com.cardio_generator.outputs.OutputStrategy;
 
@@ -9,7 +10,9 @@ import com.cardio_generator.outputs.OutputStrategy;
  */
 
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private static final long RANDOM_STREAM = 2;
+    private final SplittableRandom[] randoms;
+    private final LongSupplier clock;
     private int[] lastSaturationValues;
 
     /**
@@ -17,11 +20,23 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
      * @param patientCount takes number of patients
      */
     public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed(), System::currentTimeMillis);
+    }
+
+    /**
+     * constructor for repeatable runs
+     * @param patientCount takes number of patients
+     * @param seed the same seed gives the same saturation values
+     * @param clock the time of the generated values in milliseconds since UNIX epoch
+     */
+    public BloodSaturationDataGenerator(int patientCount, long seed, LongSupplier clock) {
+        randoms = PatientRandoms.create(seed, RANDOM_STREAM, patientCount);
+        this.clock = clock;
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+            lastSaturationValues[i] = 95 + randoms[i].nextInt(6); // Initializes with a value between 95 and 100
         }
     }
 
@@ -34,13 +49,13 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         try {
             // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+            int variation = randoms[patientId].nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
             int newSaturationValue = lastSaturationValues[patientId] + variation;
 
             // Ensure the saturation stays within a realistic and healthy range
             newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
             lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
+            outputStrategy.output(patientId, clock.getAsLong(), "Saturation",
                     Double.toString(newSaturationValue) + "%");
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
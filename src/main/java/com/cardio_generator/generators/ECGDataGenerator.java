@@ -1,15 +1,30 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 
 import com.cardio_generator.outputs.OutputStrategy;
 
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private static final long RANDOM_STREAM = 1;
+    private final SplittableRandom[] randoms;
+    private final LongSupplier clock;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
     public ECGDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed(), System::currentTimeMillis);
+    }
+
+    /**
+     * constructor for repeatable runs
+     * @param patientCount number of patients
+     * @param seed the same seed gives the same ECG values
+     * @param clock the time of the generated values in milliseconds since UNIX epoch
+     */
+    public ECGDataGenerator(int patientCount, long seed, LongSupplier clock) {
+        randoms = PatientRandoms.create(seed, RANDOM_STREAM, patientCount);
+        this.clock = clock;
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
@@ -21,8 +36,9 @@ public class ECGDataGenerator implements PatientDataGenerator {
     public void generate(int patientId, OutputStrategy outputStrategy) {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
+            long now = clock.getAsLong();
+            double ecgValue = simulateEcgWaveform(randoms[patientId], now, lastEcgValues[patientId]);
+            outputStrategy.output(patientId, now, "ECG", Double.toString(ecgValue));
             lastEcgValues[patientId] = ecgValue;
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
@@ -30,10 +46,10 @@ public class ECGDataGenerator implements PatientDataGenerator {
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(SplittableRandom random, long now, double lastEcgValue) {
         // Simplified ECG waveform generation based on sinusoids
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double t = now / 1000.0; // Use the clock to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
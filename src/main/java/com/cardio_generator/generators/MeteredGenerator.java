@@ -0,0 +1,54 @@
+package com.cardio_generator.generators;
+
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.metrics.Counter;
+import com.metrics.LatencyHistogram;
+import com.metrics.MetricsRegistry;
+
+/**
+ * class that wraps a {@link PatientDataGenerator} and records its throughput and run time
+ * the metrics are "generator_samples_total" and "generator_run_seconds", labelled with the
+ * class name of the wrapped generator
+ * Samples are counted when the generator writes into a {@link SampleBatch}, as both
+ * schedulers of the simulator have it do; other outputs only get the run time.
+ */
+public class MeteredGenerator implements PatientDataGenerator {
+    private final PatientDataGenerator delegate;
+    private final Counter samples;
+    private final LatencyHistogram runTime;
+
+    /**
+     * creates a metered generator that records into the default registry
+     * @param delegate the generator that creates the data
+     */
+    public MeteredGenerator(PatientDataGenerator delegate) {
+        this(delegate, MetricsRegistry.getDefault());
+    }
+
+    /**
+     * creates a metered generator
+     * @param delegate the generator that creates the data
+     * @param registry where the metrics are recorded
+     */
+    public MeteredGenerator(PatientDataGenerator delegate, MetricsRegistry registry) {
+        String generator = delegate.getClass().getSimpleName();
+        this.delegate = delegate;
+        this.samples = registry.counter("generator_samples_total", "generator", generator);
+        this.runTime = registry.histogram("generator_run_seconds", "generator", generator);
+    }
+
+    @Override
+    public void generate(int patientId, OutputStrategy outputStrategy) {
+        int before = outputStrategy instanceof SampleBatch ? ((SampleBatch) outputStrategy).size() : 0;
+        long start = System.nanoTime();
+        try {
+            delegate.generate(patientId, outputStrategy);
+        } finally {
+            runTime.recordSince(start);
+            if (outputStrategy instanceof SampleBatch) {
+                samples.add(((SampleBatch) outputStrategy).size() - before);
+            }
+        }
+    }
+}
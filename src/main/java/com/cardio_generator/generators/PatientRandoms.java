@@ -0,0 +1,34 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * creates one seeded random number generator per patient, so the data of a patient
+ * only depends on the seed and not on how the runs of different patients interleave
+ */
+final class PatientRandoms {
+    private PatientRandoms() {
+    }
+
+    /**
+     * @param seed the seed of the simulation
+     * @param stream a constant per generator class, so generators with the same seed draw different numbers
+     * @param patientCount patients 1 to patientCount get a generator
+     * @return the generators indexed by patient ID
+     */
+    static SplittableRandom[] create(long seed, long stream, int patientCount) {
+        SplittableRandom root = new SplittableRandom(seed ^ (stream * 0x9E3779B97F4A7C15L));
+        SplittableRandom[] randoms = new SplittableRandom[patientCount + 1];
+        for (int i = 0; i <= patientCount; i++) {
+            randoms[i] = root.split();
+        }
+        return randoms;
+    }
+
+    /**
+     * @return a seed for runs that do not need to be repeatable
+     */
+    static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+}
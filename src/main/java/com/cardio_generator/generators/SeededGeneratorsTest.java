@@ -0,0 +1,74 @@
+package com.cardio_generator.generators;
+
+import com.cardio_generator.TickScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SeededGeneratorsTest {
+    private static final long START = 1_704_067_200_000L;
+
+    /**
+     * verifies that the same seed gives the same output on a virtual clock
+     * purpose: replayed data sets must be repeatable and must not depend on the wall clock
+     */
+    @Test
+    void testSameSeedGivesSameOutput() {
+        List<String> first = simulate(42, 10);
+        List<String> second = simulate(42, 10);
+        List<String> otherSeed = simulate(43, 10);
+
+        assertEquals(first, second);
+        assertNotEquals(first, otherSeed);
+        // 10 minutes: ECG and saturation every second, pressure every minute, blood levels every 2 minutes
+        assertTrue(first.size() >= 5 * (600 + 600 + 2 * 10 + 3 * 5));
+        assertTrue(first.get(0).startsWith(START + ","), first.get(0));
+    }
+
+    /**
+     * verifies that the data of a patient does not depend on the other patients
+     */
+    @Test
+    void testPatientDataIsIndependentOfPatientCount() {
+        long[] now = {START};
+        BloodSaturationDataGenerator few = new BloodSaturationDataGenerator(2, 7, () -> now[0]);
+        BloodSaturationDataGenerator many = new BloodSaturationDataGenerator(200, 7, () -> now[0]);
+        List<String> fromFew = new ArrayList<>();
+        List<String> fromMany = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            few.generate(1, (patientId, timestamp, label, data) -> fromFew.add(data));
+            many.generate(150, (patientId, timestamp, label, data) -> { });
+            many.generate(1, (patientId, timestamp, label, data) -> fromMany.add(data));
+        }
+        assertEquals(fromFew, fromMany);
+    }
+
+    private static List<String> simulate(long seed, int minutes) {
+        int patientCount = 5;
+        long[] now = {START};
+        TickScheduler scheduler = new TickScheduler(2, 100);
+        List<PatientDataGenerator> generators = List.of(
+                new ECGDataGenerator(patientCount, seed, () -> now[0]),
+                new BloodSaturationDataGenerator(patientCount, seed, () -> now[0]),
+                new BloodPressureDataGenerator(patientCount, seed, () -> now[0]),
+                new BloodLevelsDataGenerator(patientCount, seed, () -> now[0]),
+                new AlertGenerator(patientCount, seed, () -> now[0]));
+        long[] periods = {1, 1, 60, 120, 20};
+        for (int patientId = 1; patientId <= patientCount; patientId++) {
+            for (int g = 0; g < generators.size(); g++) {
+                scheduler.schedule(patientId, generators.get(g), 0, periods[g], TimeUnit.SECONDS);
+            }
+        }
+        List<String> output = new ArrayList<>();
+        for (long tick = 0; tick < minutes * 600L; tick++) {
+            now[0] = START + tick * 100;
+            scheduler.advanceTo(tick, (patientId, timestamp, label, data) ->
+                    output.add(timestamp + "," + patientId + "," + label + "," + data));
+        }
+        return output;
+    }
+}
@@ -5,4 +5,20 @@ public class ConsoleOutputStrategy implements OutputStrategy {
     public void output(int patientId, long timestamp, String label, String data) {
         System.out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
     }
+
+    /**
+     * prints the lines of all samples with one call, so the console stream is locked and flushed once per batch
+     */
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        StringBuilder lines = new StringBuilder(batch.size() * 80);
+        for (int i = 0; i < batch.size(); i++) {
+            lines.append("Patient ID: ").append(batch.getPatientId(i))
+                    .append(", Timestamp: ").append(batch.getTimestamp(i))
+                    .append(", Label: ").append(batch.getLabel(i))
+                    .append(", Data: ").append(batch.getData(i))
+                    .append(System.lineSeparator());
+        }
+        System.out.print(lines);
+    }
 }
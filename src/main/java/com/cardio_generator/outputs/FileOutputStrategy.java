@@ -1,37 +1,188 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.RecordCodec;
+
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * class implements {@link OutputStrategy} and outputs the patient data to text files
  * with each label type getting its own file
+ * Samples are handed to a dedicated writer thread through a bounded queue; the
+ * writer keeps one file open per label and flushes in batches, so generator
+ * threads never open files or wait for the disk.
+ * With {@link WireFormat#BINARY} each label gets a ".bin" file of {@link RecordCodec}
+ * frames instead, one frame per flush, which {@code FileDataReader} reads back, and with
+ * {@link WireFormat#CSV} ".csv" files of the lines {@code FileDataReader} parses, where an
+ * alert is 1 when triggered and 0 when resolved.
+ * With rolling on, each label writes numbered segments ("ECG-000001.csv", ...) that are
+ * closed by size or by time window, optionally gzipped, and listed in a "&lt;label&gt;.idx"
+ * file with their time and patient id ranges so readers can skip segments.
  */
 
 //name didn't match file name,f needs to be uppercase, class names: UpperCamelCase
-public class FileOutputStrategy implements OutputStrategy {
+public class FileOutputStrategy implements OutputStrategy, AutoCloseable {
     //B needs to be small, lowerCamelCase
     private String baseDirectory;
     //upper case, bc final, constant, UPPER_SNAKE_CASE
     public final ConcurrentHashMap<String, String> FILE_MAP = new ConcurrentHashMap<>();
 
+    private static final Sample END_OF_STREAM = new Sample(0, 0, null, null);
+    private static final int MAX_FRAME_BYTES = 1 << 16;
+    /** extension of the segment index files, one line per finished segment */
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private final Options options;
+    private final BlockingQueue<Sample> queue;
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+    // gzips finished segments off the writer thread, null without compression
+    private final ExecutorService compressor;
+    private volatile boolean closed;
+
+    /**
+     * settings for the writer thread
+     */
+    public static class Options {
+        private int queueCapacity = 65536;
+        private int batchSize = 4096;
+        private long flushIntervalMillis = 1000;
+        private boolean fsync = false;
+        private WireFormat format = WireFormat.TEXT;
+        private long rollBytes = 0;
+        private long rollIntervalMillis = 0;
+        private boolean compress = false;
+
+        /**
+         * @param queueCapacity samples that can wait for the writer before {@code output} blocks
+         */
+        public Options queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize the most samples the writer takes from the queue at once
+         */
+        public Options batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param flushIntervalMillis the longest a written sample stays in the writer's buffers,
+         *                            0 or less to flush after every batch
+         */
+        public Options flushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param fsync whether each flush also forces the files to disk (one fsync per file per flush)
+         */
+        public Options fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        /**
+         * @param format text lines in ".txt" files, CSV lines in ".csv" files or binary frames in ".bin" files
+         */
+        public Options format(WireFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * @param rollBytes size after which a label starts a new segment, 0 to never roll by size
+         */
+        public Options rollBytes(long rollBytes) {
+            this.rollBytes = rollBytes;
+            return this;
+        }
+
+        /**
+         * @param rollIntervalMillis length of the time window of a segment, measured on the sample
+         *                           timestamps so replays roll like live runs; 0 to never roll by time
+         */
+        public Options rollIntervalMillis(long rollIntervalMillis) {
+            this.rollIntervalMillis = rollIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param compress whether finished segments are gzipped ("ECG-000001.csv.gz"), only used when rolling
+         */
+        public Options compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+    }
+
     //constructor name didn't match, f needs to be uppercase, added method-level Javadoc
     /**
      * creates a FileOutputStrategy with the specified base directory
      * @param baseDirectory the directory where output files will be created
      */
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, new Options());
+    }
 
+    /**
+     * creates a FileOutputStrategy with the specified base directory and writer settings
+     * @param baseDirectory the directory where output files will be created
+     * @param options queue, batch, flush and fsync settings
+     */
+    public FileOutputStrategy(String baseDirectory, Options options) {
         this.baseDirectory = baseDirectory;
+        this.options = options;
+        this.queue = new ArrayBlockingQueue<>(options.queueCapacity);
+        this.compressor = rolling() && options.compress
+                ? Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "file-output-compressor");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+        this.writerThread = new Thread(this::writeLoop, "file-output-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        // flush what is still queued when the simulator is stopped
+        this.shutdownHook = new Thread(this::close, "file-output-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     /**
     * method that outputs the patient's data to a file based on the label
      * with each label getting its own file
+     * Blocks only when the writer has fallen {@code queueCapacity} samples behind.
      * @param patientId initializes which patient is considered
      * @param timestamp when the data was recorded
      * @param label what type of data
@@ -39,27 +190,397 @@ public class FileOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        if (closed) {
+            System.err.println("File output is closed, dropping data for patient " + patientId);
+            return;
+        }
+        try {
+            queue.put(new Sample(patientId, timestamp, label, data));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * stops accepting data, writes and flushes everything still queued and closes the files
+     * When rolling, the last segments are indexed too and the pending compressions finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            queue.put(END_OF_STREAM);
+            writerThread.join();
+            if (compressor != null) {
+                compressor.shutdown();
+                compressor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+    }
+
+    private void writeLoop() {
+        Map<String, LabelFile> files = new HashMap<>();
+        List<Sample> batch = new ArrayList<>(options.batchSize);
+        long nextFlush = System.currentTimeMillis() + options.flushIntervalMillis;
+        boolean dirty = false;
+        boolean running = true;
+
+        boolean flushEveryBatch = options.flushIntervalMillis <= 0;
+
+        while (running) {
+            try {
+                // without an interval there is nothing to flush while idle, so wait for the next sample
+                Sample first = flushEveryBatch ? queue.take()
+                        : queue.poll(Math.max(0, nextFlush - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, options.batchSize - 1);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            for (Sample sample : batch) {
+                if (sample == END_OF_STREAM) {
+                    running = false;
+                    break;
+                }
+                write(files, sample);
+                dirty = true;
+            }
+            batch.clear();
+
+            if (dirty && (!running || flushEveryBatch || System.currentTimeMillis() >= nextFlush)) {
+                flush(files);
+                dirty = false;
+            }
+            if (System.currentTimeMillis() >= nextFlush) {
+                nextFlush = System.currentTimeMillis() + options.flushIntervalMillis;
+            }
+        }
+
+        for (LabelFile file : files.values()) {
+            file.close(options.fsync);
+        }
+    }
+
+    private void write(Map<String, LabelFile> files, Sample sample) {
+        LabelFile file = files.get(sample.label);
+        if (file == null) {
+            try {
+                // Create the directory
+                Files.createDirectories(Paths.get(baseDirectory));
+            } catch (IOException e) {
+                System.err.println("Error creating base directory: " + e.getMessage());
+                return;
+            }
+            try {
+                file = new LabelFile(sample.label);
+                files.put(sample.label, file);
+            } catch (IOException e) {
+                System.err.println("Error opening file for " + sample.label + ": " + e.getMessage());
+                return;
+            }
+        }
+        file.write(sample);
+    }
+
+    private void flush(Map<String, LabelFile> files) {
+        for (LabelFile file : files.values()) {
+            file.flush(options.fsync);
+        }
+    }
+
+    private boolean rolling() {
+        return options.rollBytes > 0 || options.rollIntervalMillis > 0;
+    }
+
+    private String extension() {
+        switch (options.format) {
+            case BINARY:
+                return "bin";
+            case CSV:
+                return "csv";
+            default:
+                return "txt";
+        }
+    }
+
+    /**
+     * @return the highest segment number of the label already in the directory, so a restarted
+     *         simulator continues the sequence instead of appending to old segments
+     */
+    private int lastSegment(String label) throws IOException {
+        Pattern segmentName = Pattern.compile(Pattern.quote(label) + "-(\\d+)\\..+");
+        int last = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(baseDirectory), label + "-*")) {
+            for (Path path : stream) {
+                Matcher matcher = segmentName.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    last = Math.max(last, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * gzips a finished segment next to it and removes the original
+     * The ".gz" file only appears complete, so readers never see a half-written one.
+     */
+    private static void compress(Path segment) {
+        Path compressed = Paths.get(segment + ".gz");
+        Path partial = Paths.get(segment + ".gz.tmp");
         try {
-            // Create the directory
-            Files.createDirectories(Paths.get(baseDirectory));
+            try (InputStream in = Files.newInputStream(segment);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 1 << 16)) {
+                in.transferTo(out);
+            }
+            Files.move(partial, compressed, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(segment);
         } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
-            return;
+            System.err.println("Error compressing file " + segment + ": " + e.getMessage());
+        }
+    }
+
+    private static class Sample {
+        final int patientId;
+        final long timestamp;
+        final String label;
+        final String data;
+
+        Sample(int patientId, long timestamp, String label, String data) {
+            this.patientId = patientId;
+            this.timestamp = timestamp;
+            this.label = label;
+            this.data = data;
+        }
+    }
+
+    /**
+     * the open output file of one label, only used by the writer thread
+     * When rolling is on, this is the active segment; the statistics of the segment
+     * become its line in the label's index when it is rolled.
+     */
+    private class LabelFile {
+        private final String label;
+        private String filePath;
+        private FileChannel channel;
+        private BufferedWriter out;
+        private final StringBuilder line = new StringBuilder(96);
+        // collects the binary frame until the next flush, null for text files
+        private final RecordCodec.Encoder encoder;
+        private boolean dirty;
+        private int sequence;
+        private long writtenBytes;
+        private long records;
+        private long minTimestamp;
+        private long maxTimestamp;
+        private int minPatientId;
+        private int maxPatientId;
+
+        LabelFile(String label) throws IOException {
+            this.label = label;
+            this.encoder = options.format == WireFormat.BINARY ? new RecordCodec.Encoder() : null;
+            this.sequence = rolling() ? lastSegment(label) : 0;
+            open();
+        }
+
+        private void open() throws IOException {
+            String fileName = rolling()
+                    ? String.format("%s-%06d.%s", label, ++sequence, extension())
+                    : label + "." + extension();
+            filePath = Paths.get(baseDirectory, fileName).toString();
+            FILE_MAP.put(label, filePath);
+            channel = FileChannel.open(Paths.get(filePath),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            out = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 1 << 16);
+            writtenBytes = 0;
+            records = 0;
+            minTimestamp = Long.MAX_VALUE;
+            maxTimestamp = Long.MIN_VALUE;
+            minPatientId = Integer.MAX_VALUE;
+            maxPatientId = Integer.MIN_VALUE;
         }
-        // Set the FilePath variable
-        // FilePath --> filePath, variables become lowerCamelCase
-        String filePath = FILE_MAP.computeIfAbsent(label,
-                k -> Paths.get(baseDirectory, label + ".txt").toString());
-
-        // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(Paths.get(filePath),
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
-                    patientId, timestamp, label, data);
-        } catch (Exception e) { //adjust filePath
-            System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+
+        void write(Sample sample) {
+            if (records > 0 && shouldRoll(sample.timestamp)) {
+                roll();
+            }
+            records++;
+            minTimestamp = Math.min(minTimestamp, sample.timestamp);
+            maxTimestamp = Math.max(maxTimestamp, sample.timestamp);
+            minPatientId = Math.min(minPatientId, sample.patientId);
+            maxPatientId = Math.max(maxPatientId, sample.patientId);
+
+            if (encoder != null) {
+                encoder.add(sample.patientId, sample.timestamp, sample.label, sample.data);
+                dirty = true;
+                if (encoder.frameLength() >= MAX_FRAME_BYTES) {
+                    try {
+                        writeFrame();
+                    } catch (IOException e) {
+                        System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+                    }
+                }
+                return;
+            }
+            line.setLength(0);
+            if (options.format == WireFormat.CSV) {
+                // the "timestamp, patientId, label, value" lines FileDataReader parses, without the "%" of saturation
+                // and with an alert's "triggered" and "resolved" as 1 and 0
+                String data = csvValue(sample.data);
+                line.append(sample.timestamp)
+                        .append(", ").append(sample.patientId)
+                        .append(", ").append(sample.label)
+                        .append(", ").append(data, 0, data.endsWith("%") ? data.length() - 1 : data.length())
+                        .append('\n');
+            } else {
+                line.append("Patient ID: ").append(sample.patientId)
+                        .append(", Timestamp: ").append(sample.timestamp)
+                        .append(", Label: ").append(sample.label)
+                        .append(", Data: ").append(sample.data)
+                        .append(System.lineSeparator());
+            }
+            try {
+                out.append(line);
+                writtenBytes += line.length();
+                dirty = true;
+            } catch (IOException e) { //adjust filePath
+                System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * the numeric value of an alert state, otherwise the data as it is
+         */
+        private String csvValue(String data) {
+            switch (data) {
+                case "triggered":
+                    return "1";
+                case "resolved":
+                    return "0";
+                default:
+                    return data;
+            }
+        }
+
+        /**
+         * a segment is full when it reached {@code rollBytes}, or when the sample belongs
+         * to a later {@code rollIntervalMillis} window than the first sample of the segment
+         */
+        private boolean shouldRoll(long timestamp) {
+            if (options.rollBytes > 0
+                    && writtenBytes + (encoder != null ? encoder.frameLength() : 0) >= options.rollBytes) {
+                return true;
+            }
+            return options.rollIntervalMillis > 0
+                    && Math.floorDiv(timestamp, options.rollIntervalMillis)
+                    > Math.floorDiv(minTimestamp, options.rollIntervalMillis);
+        }
+
+        private void roll() {
+            finishSegment(options.fsync);
+            try {
+                open();
+            } catch (IOException e) {
+                System.err.println("Error opening file " + filePath + ": " + e.getMessage());
+            }
+        }
+
+        void flush(boolean fsync) {
+            if (!dirty) {
+                return;
+            }
+            try {
+                if (encoder != null) {
+                    writeFrame();
+                } else {
+                    out.flush();
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                dirty = false;
+            } catch (IOException e) {
+                System.err.println("Error flushing file " + filePath + ": " + e.getMessage());
+            }
+        }
+
+        private void writeFrame() throws IOException {
+            if (encoder.recordCount() == 0) {
+                return;
+            }
+            ByteBuffer frame = ByteBuffer.wrap(encoder.finishFrame());
+            writtenBytes += frame.remaining();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+
+        void close(boolean fsync) {
+            if (rolling()) {
+                finishSegment(fsync);
+            } else {
+                closeFile(fsync);
+            }
+        }
+
+        /**
+         * closes the active segment, records it in the index and hands it to the compressor
+         */
+        private void finishSegment(boolean fsync) {
+            if (!closeFile(fsync) || records == 0) {
+                return;
+            }
+            Path segment = Paths.get(filePath);
+            String entry = segment.getFileName() + "," + records
+                    + "," + minTimestamp + "," + maxTimestamp
+                    + "," + minPatientId + "," + maxPatientId + "\n";
+            Path index = Paths.get(baseDirectory, label + INDEX_EXTENSION);
+            try (FileChannel indexChannel = FileChannel.open(index,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(entry.getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    indexChannel.write(bytes);
+                }
+                if (fsync) {
+                    indexChannel.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing index " + index + ": " + e.getMessage());
+            }
+            if (compressor != null) {
+                compressor.execute(() -> compress(segment));
+            }
+        }
+
+        private boolean closeFile(boolean fsync) {
+            flush(fsync);
+            try {
+                out.close();
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error closing file " + filePath + ": " + e.getMessage());
+                return false;
+            }
         }
     }
-}
\ No newline at end of file
+}
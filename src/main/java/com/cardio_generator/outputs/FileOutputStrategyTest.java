@@ -0,0 +1,210 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileOutputStrategyTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * verifies that every sample reaches its label file, in order, once the strategy is closed
+     * purpose: close() must flush everything that is still queued for the writer thread
+     */
+    @Test
+    void testCloseFlushesAllSamplesPerLabel() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(),
+                new FileOutputStrategy.Options().queueCapacity(16).batchSize(4).flushIntervalMillis(60_000));
+
+        for (int i = 0; i < 100; i++) {
+            strategy.output(i % 5, 1000L + i, (i % 2 == 0) ? "ECG" : "Saturation", Integer.toString(i));
+        }
+        strategy.close();
+
+        List<String> ecg = Files.readAllLines(tempDir.resolve("ECG.txt"));
+        List<String> saturation = Files.readAllLines(tempDir.resolve("Saturation.txt"));
+        assertEquals(50, ecg.size());
+        assertEquals(50, saturation.size());
+        assertEquals("Patient ID: 0, Timestamp: 1000, Label: ECG, Data: 0", ecg.get(0));
+        assertEquals("Patient ID: 4, Timestamp: 1099, Label: Saturation, Data: 99", saturation.get(49));
+    }
+
+    /**
+     * verifies that data becomes visible after the flush interval without closing
+     * purpose: a long-running simulator must not keep data in memory indefinitely
+     */
+    @Test
+    void testFlushIntervalWithFsync() throws Exception {
+        try (FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(),
+                new FileOutputStrategy.Options().flushIntervalMillis(20).fsync(true))) {
+            strategy.output(1, 5L, "Alert", "triggered");
+
+            Path file = tempDir.resolve("Alert.txt");
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((!Files.exists(file) || Files.size(file) == 0) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("Patient ID: 1, Timestamp: 5, Label: Alert, Data: triggered"),
+                    Files.readAllLines(file));
+        }
+    }
+
+    /**
+     * verifies that without a flush interval every batch is flushed and close() still ends the writer
+     * purpose: an interval of 0 must not make the idle writer thread spin
+     */
+    @Test
+    void testZeroFlushIntervalFlushesEveryBatch() throws Exception {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(),
+                new FileOutputStrategy.Options().flushIntervalMillis(0));
+        strategy.output(2, 7L, "ECG", "0.5");
+
+        Path file = tempDir.resolve("ECG.txt");
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((!Files.exists(file) || Files.size(file) == 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("Patient ID: 2, Timestamp: 7, Label: ECG, Data: 0.5"), Files.readAllLines(file));
+        strategy.output(2, 8L, "ECG", "0.6");
+        strategy.close();
+        assertEquals(2, Files.readAllLines(file).size());
+    }
+
+    /**
+     * verifies that binary files written in several frames are read back by FileDataReader with their values
+     * purpose: binary output must be a format the file reader understands, "97%" included
+     */
+    @Test
+    void testBinaryFilesReadBack() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(),
+                new FileOutputStrategy.Options().batchSize(64).flushIntervalMillis(1).format(WireFormat.BINARY));
+        for (int i = 0; i < 10_000; i++) {
+            strategy.output(i % 5, 1000L + i, (i % 2 == 0) ? "ECG" : "Saturation",
+                    (i % 2 == 0) ? Double.toString(i * 0.5) : (90 + i % 10) + "%");
+        }
+        strategy.close();
+        assertTrue(Files.exists(tempDir.resolve("ECG.bin")));
+        assertFalse(Files.exists(tempDir.resolve("ECG.txt")));
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage);
+        int count = 0;
+        for (int patientId = 0; patientId < 5; patientId++) {
+            for (PatientRecord record : storage.getRecords(patientId, 0, Long.MAX_VALUE)) {
+                long i = record.getTimestamp() - 1000;
+                assertEquals(i % 5, record.getPatientId());
+                assertEquals((i % 2 == 0) ? i * 0.5 : 90 + i % 10, record.getMeasurementValue());
+                count++;
+            }
+        }
+        assertEquals(10_000, count);
+    }
+
+    /**
+     * verifies that CSV files with alerts are read back by FileDataReader, triggered as 1 and resolved as 0
+     * purpose: the reader only accepts numeric values, so alert states must not be written as text
+     */
+    @Test
+    void testCsvAlertsReadBack() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(),
+                new FileOutputStrategy.Options().format(WireFormat.CSV));
+        strategy.output(1, 1000L, "Alert", "triggered");
+        strategy.output(1, 2000L, "Saturation", "97%");
+        strategy.output(1, 3000L, "Alert", "resolved");
+        strategy.close();
+        assertEquals(List.of("1000, 1, Alert, 1", "3000, 1, Alert, 0"),
+                Files.readAllLines(tempDir.resolve("Alert.csv")));
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage);
+        List<PatientRecord> records = new ArrayList<>(storage.getRecords(1, 0, Long.MAX_VALUE));
+        records.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+        assertEquals(3, records.size());
+        assertEquals("Alert", records.get(0).getRecordType());
+        assertEquals(1.0, records.get(0).getMeasurementValue());
+        assertEquals(97.0, records.get(1).getMeasurementValue());
+        assertEquals("Alert", records.get(2).getRecordType());
+        assertEquals(0.0, records.get(2).getMeasurementValue());
+    }
+
+    /**
+     * verifies that size-rolled CSV segments are gzipped, indexed and read back completely
+     * purpose: a soak test's output must stay readable by FileDataReader after rolling and compression
+     */
+    @Test
+    void testRolledSegmentsAreCompressedAndIndexed() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(), new FileOutputStrategy.Options()
+                .batchSize(64).format(WireFormat.CSV).rollBytes(4096).compress(true));
+        for (int i = 0; i < 5_000; i++) {
+            strategy.output(1 + i % 5, 1000L + i, "Saturation", (90 + i % 10) + "%");
+        }
+        strategy.close();
+
+        List<String> index = Files.readAllLines(tempDir.resolve("Saturation.idx"));
+        assertTrue(index.size() > 10, index.size() + " segments");
+        long records = 0;
+        for (int segment = 0; segment < index.size(); segment++) {
+            String[] entry = index.get(segment).split(",");
+            assertEquals(String.format("Saturation-%06d.csv", segment + 1), entry[0]);
+            assertTrue(Files.exists(tempDir.resolve(entry[0] + ".gz")));
+            assertFalse(Files.exists(tempDir.resolve(entry[0])));
+            records += Long.parseLong(entry[1]);
+        }
+        assertEquals(5_000, records);
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage);
+        int count = 0;
+        for (int patientId = 1; patientId <= 5; patientId++) {
+            for (PatientRecord record : storage.getRecords(patientId, 0, Long.MAX_VALUE)) {
+                assertEquals(90 + (record.getTimestamp() - 1000) % 10, record.getMeasurementValue());
+                count++;
+            }
+        }
+        assertEquals(5_000, count);
+    }
+
+    /**
+     * verifies that time-rolled segments cover one window each and that a range read only opens the matching ones
+     * purpose: readers use the index to skip segments instead of scanning all of them
+     */
+    @Test
+    void testRangeReadSkipsIndexedSegments() throws IOException {
+        FileOutputStrategy strategy = new FileOutputStrategy(tempDir.toString(), new FileOutputStrategy.Options()
+                .format(WireFormat.CSV).rollIntervalMillis(1000).compress(true));
+        for (long timestamp = 0; timestamp < 10_000; timestamp += 10) {
+            strategy.output((int) (timestamp / 1000) * 10 + 1, timestamp, "ECG", Long.toString(timestamp));
+        }
+        strategy.close();
+
+        List<String> index = Files.readAllLines(tempDir.resolve("ECG.idx"));
+        assertEquals(10, index.size());
+        assertEquals("ECG-000004.csv,100,3000,3990,31,31", index.get(3));
+
+        // a skipped segment is never opened, so a damaged one does not matter
+        Files.write(tempDir.resolve("ECG-000001.csv.gz"), new byte[] {1, 2, 3});
+        DataStorage storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage, 3500, 5499, 0, 100);
+        assertTrue(storage.getRecords(31, 0, Long.MAX_VALUE).stream().allMatch(r -> r.getTimestamp() >= 3500));
+        assertEquals(50, storage.getRecords(31, 0, Long.MAX_VALUE).size());
+        assertEquals(100, storage.getRecords(41, 0, Long.MAX_VALUE).size());
+        assertEquals(50, storage.getRecords(51, 0, Long.MAX_VALUE).size());
+
+        storage = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(storage, 0, Long.MAX_VALUE, 60, 80);
+        assertEquals(100, storage.getRecords(61, 0, Long.MAX_VALUE).size());
+        assertEquals(100, storage.getRecords(71, 0, Long.MAX_VALUE).size());
+        assertTrue(storage.getRecords(81, 0, Long.MAX_VALUE).isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package com.cardio_generator.outputs;
+
+import com.metrics.Counter;
+import com.metrics.LatencyHistogram;
+import com.metrics.MetricsRegistry;
+
+/**
+ * class that wraps an {@link OutputStrategy} and records its throughput and write latency
+ * the metrics are "output_samples_total" and "output_write_seconds", labelled with the
+ * class name of the wrapped output; a batch is one write
+ * For outputs with a writer thread or a send queue, the latency is the time the
+ * generator threads spend handing the samples over, which is what stalls them.
+ */
+public class MeteredOutputStrategy implements OutputStrategy, AutoCloseable {
+    private final OutputStrategy delegate;
+    private final Counter samples;
+    private final LatencyHistogram writeTime;
+
+    /**
+     * creates a metered output that records into the default registry
+     * @param delegate the output that gets the samples
+     */
+    public MeteredOutputStrategy(OutputStrategy delegate) {
+        this(delegate, MetricsRegistry.getDefault());
+    }
+
+    /**
+     * creates a metered output
+     * @param delegate the output that gets the samples
+     * @param registry where the metrics are recorded
+     */
+    public MeteredOutputStrategy(OutputStrategy delegate, MetricsRegistry registry) {
+        String output = delegate.getClass().getSimpleName();
+        this.delegate = delegate;
+        this.samples = registry.counter("output_samples_total", "output", output);
+        this.writeTime = registry.histogram("output_write_seconds", "output", output);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        long start = System.nanoTime();
+        try {
+            delegate.output(patientId, timestamp, label, data);
+        } finally {
+            writeTime.recordSince(start);
+            samples.increment();
+        }
+    }
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        long start = System.nanoTime();
+        try {
+            delegate.outputBatch(batch);
+        } finally {
+            writeTime.recordSince(start);
+            samples.add(batch.size());
+        }
+    }
+
+    /**
+     * @return the output that gets the samples
+     */
+    public OutputStrategy getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * closes the wrapped output if it can be closed
+     * an error while closing it is logged, not thrown
+     */
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                System.err.println("Error closing output " + delegate.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
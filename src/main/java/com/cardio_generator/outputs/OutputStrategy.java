@@ -12,4 +12,16 @@ public interface OutputStrategy {
      * @param data actual data
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * outputs all samples of a batch, in batch order
+     * by default this calls {@link #output} for every sample; strategies override it to
+     * pay their per-call costs (locks, frames, wakeups) once per batch instead of once per sample
+     * @param batch the samples; only read during the call, the caller reuses it afterwards
+     */
+    default void outputBatch(SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            output(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getData(i));
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+
+/**
+ * class that collects samples so they can be handed to an {@link OutputStrategy} in one call
+ * The samples are kept in parallel arrays that are reused after {@link #clear}, so
+ * collecting does not create an object per sample. A batch is itself an output
+ * strategy: generators write into it like into any other output.
+ * Not thread-safe, every thread collects into its own batch.
+ */
+public class SampleBatch implements OutputStrategy {
+    private int[] patientIds;
+    private long[] timestamps;
+    private String[] labels;
+    private String[] data;
+    private int size;
+
+    public SampleBatch() {
+        this(64);
+    }
+
+    /**
+     * @param initialCapacity samples the batch holds before it grows
+     */
+    public SampleBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        timestamps = new long[capacity];
+        labels = new String[capacity];
+        data = new String[capacity];
+    }
+
+    /**
+     * adds a sample to the end of the batch
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+            this.data = Arrays.copyOf(this.data, capacity);
+        }
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        labels[size] = label;
+        this.data[size] = data;
+        size++;
+    }
+
+    /**
+     * @return the number of samples in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the batch has no samples
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the position of the sample, from 0 to {@code size() - 1}
+     * @return the patient of the sample
+     */
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    /**
+     * @param index the position of the sample
+     * @return when the sample was generated
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @param index the position of the sample
+     * @return the type of data of the sample
+     */
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    /**
+     * @param index the position of the sample
+     * @return the data of the sample
+     */
+    public String getData(int index) {
+        return data[index];
+    }
+
+    /**
+     * removes all samples, keeping the arrays for the next samples
+     */
+    public void clear() {
+        Arrays.fill(labels, 0, size, null);
+        Arrays.fill(data, 0, size, null);
+        size = 0;
+    }
+}
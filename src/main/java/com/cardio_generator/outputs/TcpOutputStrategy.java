@@ -1,20 +1,98 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.RecordCodec;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * class implements {@link OutputStrategy} and shows a way to output data on a tcp (transmission control protocol) socket
- * possible for client to connect and receive the real-time data
+ * possible for any number of clients to connect and receive the real-time data
+ * One selector thread accepts clients and writes to them without blocking. Each
+ * record is encoded once into a shared direct buffer and queued to every client;
+ * when a client's queue is full the {@link SlowConsumerPolicy} decides what happens.
+ * With {@link WireFormat#BINARY} each record is sent as one {@link RecordCodec} frame
+ * instead of a text line.
  */
-public class TcpOutputStrategy implements OutputStrategy {
+public class TcpOutputStrategy implements OutputStrategy, AutoCloseable {
+
+    private static final int SLAB_SIZE = 1 << 16;
+    private static final int MAX_GATHER = 64;
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
+    /**
+     * what to do with a record when a client's queue is full
+     */
+    public enum SlowConsumerPolicy {
+        /** drop the oldest queued record of that client, other clients are not affected */
+        DROP_OLDEST,
+        /** close the connection of that client */
+        DISCONNECT,
+        /** make the generator wait until the client has caught up */
+        BLOCK
+    }
+
+    /**
+     * settings for the server
+     */
+    public static class Options {
+        private int queueCapacity = 8192;
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+        private WireFormat format = WireFormat.TEXT;
+
+        /**
+         * @param queueCapacity records that can wait for one client before the policy applies
+         */
+        public Options queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param slowConsumerPolicy what to do when a client's queue is full
+         */
+        public Options slowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+
+        /**
+         * @param format text lines or binary frames
+         */
+        public Options format(WireFormat format) {
+            this.format = format;
+            return this;
+        }
+    }
+
+    private final Options options;
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    // clients that got data or must be closed, picked up by the selector thread
+    private final Queue<Client> pending = new ConcurrentLinkedQueue<>();
+    private final LongAdder droppedRecords = new LongAdder();
+
+    private final Object slabLock = new Object();
+    private ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+    private final ThreadLocal<byte[]> encodeBuffer = ThreadLocal.withInitial(() -> new byte[256]);
+    private final ThreadLocal<RecordCodec.Encoder> binaryEncoder = ThreadLocal.withInitial(RecordCodec.Encoder::new);
 
     /**
      * constructor that starts a tcp based on port socket
@@ -22,29 +100,37 @@ public class TcpOutputStrategy implements OutputStrategy {
      * @param port is used to identify which program should work with data
      */
     public TcpOutputStrategy(int port) {
+        this(port, new Options());
+    }
+
+    /**
+     * constructor that starts a tcp server with the given queue and slow-consumer settings
+     * @param port is used to identify which program should work with data, 0 picks a free port
+     * @param options per-client queue settings
+     */
+    public TcpOutputStrategy(int port, Options options) {
+        this.options = options;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("TCP Server started on port " + getPort());
+
+            // Accept and serve clients in a separate thread to not block the main thread
+            running = true;
+            selectorThread = new Thread(this::selectLoop, "tcp-output-selector");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-
     /**
      * method that outputs the patient's data in a string message, seperated by commas
-     * to a connected tcp client
+     * to all connected tcp clients
      * @param patientId initializes which patient is considered
      * @param timestamp when the data was recorded
      * @param label what type of data
@@ -52,9 +138,408 @@ public class TcpOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clients.isEmpty()) {
+            return;
+        }
+        ByteBuffer record = encode(patientId, timestamp, label, data);
+        for (Client client : clients) {
+            client.enqueue(record.duplicate());
+        }
+    }
+
+    /**
+     * encodes every sample once and queues the whole batch to each client with one lock
+     * acquisition and at most one selector wakeup per client
+     * @param batch the samples to send
+     */
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        if (clients.isEmpty() || batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] records = new ByteBuffer[batch.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = encode(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getData(i));
+        }
+        for (Client client : clients) {
+            client.enqueueAll(records);
+        }
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the number of currently connected clients
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return records dropped for slow clients with {@link SlowConsumerPolicy#DROP_OLDEST} so far
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * stops the server and disconnects all clients; queued records are discarded
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (selectorThread != null) {
+            try {
+                selectorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * encodes "patientId,timestamp,label,data\n" or a binary frame into a slice of the shared direct buffer
+     */
+    private ByteBuffer encode(int patientId, long timestamp, String label, String data) {
+        if (options.format == WireFormat.BINARY) {
+            RecordCodec.Encoder encoder = binaryEncoder.get();
+            encoder.add(patientId, timestamp, label, data);
+            synchronized (slabLock) {
+                ByteBuffer record = reserve(encoder.frameLength());
+                encoder.writeFrameTo(record);
+                return record.flip();
+            }
+        }
+        byte[] bytes = encodeBuffer.get();
+        int needed = 42 + label.length() + data.length();
+        if (bytes.length < needed) {
+            bytes = new byte[needed * 2];
+            encodeBuffer.set(bytes);
+        }
+        int length = appendLine(bytes, patientId, timestamp, label, data);
+        if (length < 0) {
+            // non-ASCII label or data
+            bytes = String.format("%d,%d,%s,%s\n", patientId, timestamp, label, data)
+                    .getBytes(StandardCharsets.UTF_8);
+            length = bytes.length;
+        }
+        synchronized (slabLock) {
+            ByteBuffer record = reserve(length);
+            record.put(bytes, 0, length).flip();
+            return record;
+        }
+    }
+
+    /**
+     * takes {@code length} bytes of the shared direct buffer; the caller holds slabLock
+     */
+    private ByteBuffer reserve(int length) {
+        if (slab.remaining() < length) {
+            slab = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, length));
+        }
+        ByteBuffer record = slab.slice(slab.position(), length);
+        slab.position(slab.position() + length);
+        return record;
+    }
+
+    /**
+     * @return the length of the line, or -1 if label or data are not ASCII
+     */
+    private static int appendLine(byte[] out, int patientId, long timestamp, String label, String data) {
+        int pos = appendLong(out, 0, patientId);
+        out[pos++] = ',';
+        pos = appendLong(out, pos, timestamp);
+        out[pos++] = ',';
+        pos = appendAscii(out, pos, label);
+        if (pos < 0) {
+            return -1;
+        }
+        out[pos++] = ',';
+        pos = appendAscii(out, pos, data);
+        if (pos < 0) {
+            return -1;
+        }
+        out[pos++] = '\n';
+        return pos;
+    }
+
+    private static int appendLong(byte[] out, int pos, long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return appendAscii(out, pos, Long.toString(value));
+            }
+            out[pos++] = '-';
+            value = -value;
+        }
+        int end = pos;
+        long rest = value;
+        do {
+            end++;
+            rest /= 10;
+        } while (rest != 0);
+        int digit = end;
+        do {
+            out[--digit] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int appendAscii(byte[] out, int pos, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                return -1;
+            }
+            out[pos++] = (byte) c;
+        }
+        return pos;
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Client client;
+                while ((client = pending.poll()) != null) {
+                    client.updateInterest();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client selected = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        selected.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        selected.write();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        Client client = new Client(channel);
+        client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        clients.add(client);
+        System.out.println("Client connected: " + channel.getRemoteAddress());
+    }
+
+    /**
+     * one connected client; the queue is shared with the generator threads,
+     * everything else is only used by the selector thread
+     */
+    private class Client {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private boolean writeRequested;
+        private boolean closing;
+        private volatile boolean closed;
+
+        // records taken from the queue and partly written, kept apart so dropping never cuts a line
+        private final ByteBuffer[] inFlight = new ByteBuffer[MAX_GATHER];
+        private int inFlightCount;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(512);
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void enqueue(ByteBuffer record) {
+            boolean wake = false;
+            synchronized (this) {
+                if (!waitForRoom()) {
+                    return;
+                }
+                queue.add(record);
+                if (!writeRequested) {
+                    writeRequested = true;
+                    wake = true;
+                }
+            }
+            if (wake) {
+                pending.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * queues duplicates of the records, applying the slow-consumer policy to each of them
+         */
+        void enqueueAll(ByteBuffer[] records) {
+            boolean wake = false;
+            synchronized (this) {
+                for (ByteBuffer record : records) {
+                    if (!waitForRoom()) {
+                        break;
+                    }
+                    queue.add(record.duplicate());
+                }
+                if (!queue.isEmpty() && !writeRequested) {
+                    writeRequested = true;
+                    wake = true;
+                }
+            }
+            if (wake) {
+                pending.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * makes room for one record as the policy says; the caller holds the client's lock
+         * @return false if the record must not be queued because the client is closing
+         */
+        private boolean waitForRoom() {
+            if (closed || closing) {
+                return false;
+            }
+            while (queue.size() >= options.queueCapacity) {
+                if (options.slowConsumerPolicy == SlowConsumerPolicy.DROP_OLDEST) {
+                    queue.poll();
+                    droppedRecords.increment();
+                } else if (options.slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                    closing = true;
+                    queue.clear();
+                    pending.add(this);
+                    selector.wakeup();
+                    return false;
+                } else {
+                    if (!writeRequested) {
+                        // a batch may fill the queue before its first wakeup
+                        writeRequested = true;
+                        pending.add(this);
+                        selector.wakeup();
+                    }
+                    try {
+                        wait(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    if (closed) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        void updateInterest() {
+            synchronized (this) {
+                if (closing) {
+                    System.out.println("Disconnecting slow client");
+                    close();
+                    return;
+                }
+            }
+            if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void read() {
+            try {
+                readBuffer.clear();
+                // clients are not expected to send anything, this only notices disconnects
+                if (channel.read(readBuffer) < 0) {
+                    System.out.println("Client disconnected: " + channel.getRemoteAddress());
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void write() {
+            synchronized (this) {
+                while (inFlightCount < MAX_GATHER && !queue.isEmpty()) {
+                    inFlight[inFlightCount++] = queue.poll();
+                }
+                notifyAll();
+            }
+            try {
+                channel.write(inFlight, 0, inFlightCount);
+            } catch (ClosedChannelException e) {
+                close();
+                return;
+            } catch (IOException e) {
+                System.out.println("Client disconnected: " + e.getMessage());
+                close();
+                return;
+            }
+            int done = 0;
+            while (done < inFlightCount && !inFlight[done].hasRemaining()) {
+                done++;
+            }
+            System.arraycopy(inFlight, done, inFlight, 0, inFlightCount - done);
+            for (int i = inFlightCount - done; i < inFlightCount; i++) {
+                inFlight[i] = null;
+            }
+            inFlightCount -= done;
+
+            synchronized (this) {
+                if (inFlightCount == 0 && queue.isEmpty()) {
+                    writeRequested = false;
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+                notifyAll();
+            }
+            clients.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 }
@@ -0,0 +1,131 @@
+package com.cardio_generator.outputs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TcpOutputStrategyTest {
+
+    /**
+     * verifies that every connected client receives every record, in order
+     * purpose: the server must fan out to any number of clients, not just the first one
+     */
+    @Test
+    void testAllClientsReceiveAllRecords() throws Exception {
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0);
+             Socket first = new Socket("localhost", strategy.getPort());
+             Socket second = new Socket("localhost", strategy.getPort())) {
+            awaitClientCount(strategy, 2);
+
+            for (int i = 0; i < 1000; i++) {
+                strategy.output(i % 10, 1000L + i, "ECG", Double.toString(i * 0.5));
+            }
+
+            for (Socket socket : new Socket[] {first, second}) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                for (int i = 0; i < 1000; i++) {
+                    assertEquals((i % 10) + "," + (1000L + i) + ",ECG," + (i * 0.5), in.readLine());
+                }
+            }
+        }
+    }
+
+    /**
+     * verifies that batches reach every client completely and in call order, mixed with single records
+     */
+    @Test
+    void testBatchesReachAllClients() throws Exception {
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0);
+             Socket first = new Socket("localhost", strategy.getPort());
+             Socket second = new Socket("localhost", strategy.getPort())) {
+            awaitClientCount(strategy, 2);
+
+            SampleBatch batch = new SampleBatch(4);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                if (i % 100 == 99) {
+                    strategy.output(i % 10, 1000L + i, "ECG", Double.toString(i * 0.5));
+                    expected.add((i % 10) + "," + (1000L + i) + ",ECG," + (i * 0.5));
+                    continue;
+                }
+                batch.output(i % 10, 1000L + i, "ECG", Double.toString(i * 0.5));
+                if (batch.size() == 33 || i == 998) {
+                    strategy.outputBatch(batch);
+                    for (int j = 0; j < batch.size(); j++) {
+                        expected.add(batch.getPatientId(j) + "," + batch.getTimestamp(j) + ",ECG," + batch.getData(j));
+                    }
+                    batch.clear();
+                }
+            }
+            assertEquals(1000, expected.size());
+
+            for (Socket socket : new Socket[] {first, second}) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                for (String line : expected) {
+                    assertEquals(line, in.readLine());
+                }
+            }
+        }
+    }
+
+    /**
+     * verifies that a client which does not read is disconnected instead of holding up the generators
+     */
+    @Test
+    void testDisconnectSlowClient() throws Exception {
+        TcpOutputStrategy.Options options = new TcpOutputStrategy.Options()
+                .queueCapacity(16)
+                .slowConsumerPolicy(TcpOutputStrategy.SlowConsumerPolicy.DISCONNECT);
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0, options);
+             Socket slow = new Socket()) {
+            slow.setReceiveBufferSize(4096);
+            slow.connect(new InetSocketAddress("localhost", strategy.getPort()));
+            awaitClientCount(strategy, 1);
+
+            // far more than the socket buffers can hold
+            for (int i = 0; i < 2_000_000 && strategy.getClientCount() > 0; i++) {
+                strategy.output(1, i, "Saturation", "97%");
+            }
+            awaitClientCount(strategy, 0);
+        }
+    }
+
+    /**
+     * verifies that records are dropped, not queued without limit, for a client which does not read
+     */
+    @Test
+    void testDropOldestForSlowClient() throws Exception {
+        TcpOutputStrategy.Options options = new TcpOutputStrategy.Options().queueCapacity(16);
+        try (TcpOutputStrategy strategy = new TcpOutputStrategy(0, options);
+             Socket slow = new Socket()) {
+            slow.setReceiveBufferSize(4096);
+            slow.connect(new InetSocketAddress("localhost", strategy.getPort()));
+            awaitClientCount(strategy, 1);
+
+            for (int i = 0; i < 2_000_000 && strategy.getDroppedRecords() == 0; i++) {
+                strategy.output(1, i, "Saturation", "97%");
+            }
+            assertTrue(strategy.getDroppedRecords() > 0);
+            assertEquals(1, strategy.getClientCount());
+        }
+    }
+
+    private static void awaitClientCount(TcpOutputStrategy strategy, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (strategy.getClientCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, strategy.getClientCount());
+    }
+}
@@ -1,7 +1,13 @@
 package com.cardio_generator.outputs;
 import com.data_management.DataStorage;
+import com.data_management.IngestQueue;
 import com.data_management.PatientRecord;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.data_management.ReadingBatch;
+import com.data_management.RecordCodec;
+import com.data_management.RecordType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
@@ -9,19 +15,88 @@ import org.java_websocket.handshake.ServerHandshake;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.data_management.DataReader;
 
+/**
+ * reads patient data from a WebSocket server into a {@link DataStorage}
+ * A frame may carry one or many records: CSV lines "patientId,timestamp,label,data"
+ * separated by newlines, a JSON object with the fields patientId, timestamp, label
+ * and data, or a JSON array of such objects. Binary messages hold {@link RecordCodec}
+ * frames, sent by the outputs with {@link WireFormat#BINARY}.
+ * By default every stored record is logged and stored on the socket thread; the
+ * high-throughput {@link Options} turn per-record logging off and hand records
+ * to storage through a bounded {@link IngestQueue}.
+ */
 public class WebSocketDataReader implements DataReader {
 
+    // thread-safe once configured, so all readers share one
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+    private static final int MAX_QUIET_ERRORS = 10;
+    private static final int TYPE_CACHE_SIZE = 16;
+
     private final DataStorage storage;
     private WebSocketClient client;
     private final String websocketUrl;
+    private final Options options;
+    private final IngestQueue ingestQueue;
+    private final LongAdder rejectedRecords = new LongAdder();
+    private final AtomicInteger loggedErrors = new AtomicInteger();
+    // record types seen in CSV frames, so the same label is not allocated and looked up again for every record
+    private final RecordType[] typeCache = new RecordType[TYPE_CACHE_SIZE];
+
+    /**
+     * settings for how received records are logged and stored
+     */
+    public static class Options {
+        private boolean verbose = true;
+        private int ingestQueueCapacity = 0;
+
+        /**
+         * @return settings for high message rates: no per-record logging and
+         * storing through a queue of 1024 frames
+         */
+        public static Options highThroughput() {
+            return new Options().verbose(false).ingestQueueCapacity(1024);
+        }
+
+        /**
+         * @param verbose whether every stored record and every rejected record is logged;
+         *                if false only the first few errors are logged and the rest counted
+         */
+        public Options verbose(boolean verbose) {
+            this.verbose = verbose;
+            return this;
+        }
+
+        /**
+         * @param ingestQueueCapacity frames that can wait for storage, 0 stores on the socket thread
+         */
+        public Options ingestQueueCapacity(int ingestQueueCapacity) {
+            this.ingestQueueCapacity = ingestQueueCapacity;
+            return this;
+        }
+    }
 
     public WebSocketDataReader(DataStorage storage, String websocketUrl) {
+        this(storage, websocketUrl, new Options());
+    }
+
+    /**
+     * @param storage where received records are stored
+     * @param websocketUrl the server to connect to
+     * @param options logging and storing settings
+     */
+    public WebSocketDataReader(DataStorage storage, String websocketUrl, Options options) {
         this.storage = storage;
         this.websocketUrl = websocketUrl;
+        this.options = options;
         initializeWebSocketClient();
+        this.ingestQueue = options.ingestQueueCapacity > 0 ? new IngestQueue(storage, options.ingestQueueCapacity) : null;
     }
 
     private void initializeWebSocketClient() {
@@ -35,48 +110,12 @@ public class WebSocketDataReader implements DataReader {
 
                 @Override
                 public void onMessage(String message) {
-                    try {
-                        //expected format from signal generator: patientId,timestamp,label,data
-                        //this matches the WebSocketOutputStrategy format
-                        String[] parts = message.split(",");
-                        if (parts.length != 4) {
-                            System.err.println("Invalid message format. Expected: patientId,timestamp,label,data");
-                            System.err.println(" Received: " + message);
-                            return;
-                        }
-
-                        //parse message components
-                        int patientId = Integer.parseInt(parts[0].trim());
-                        long timestamp = Long.parseLong(parts[1].trim());
-                        String recordType = parts[2].trim(); // This is the 'label'
-                        String dataValue = parts[3].trim();  // This is the 'data'
-
-                        //convert data to double (handle non-numeric gracefully)
-                        double measurementValue;
-                        try {
-                            measurementValue = Double.parseDouble(dataValue);
-                        } catch (NumberFormatException e) {
-                            System.err.println("Non-numeric data received for patient " + patientId +
-                                    ", type: " + recordType + ", data: " + dataValue);
-                            System.err.println("Skipping this record as DataStorage expects numeric values");
-                            return;
-                        }
-
-                        //store using the existing DataStorage method
-                        storage.addPatientData(patientId, measurementValue, recordType, timestamp);
-
-                        System.out.println("Stored data - Patient ID: " + patientId +
-                                ", Type: " + recordType +
-                                ", Value: " + measurementValue +
-                                ", Timestamp: " + timestamp);
+                    handleFrame(message);
+                }
 
-                    } catch (NumberFormatException e) {
-                        System.err.println("Error parsing numeric values in message: " + message);
-                        e.printStackTrace();
-                    } catch (Exception e) {
-                        System.err.println("Error processing message: " + message);
-                        e.printStackTrace();
-                    }
+                @Override
+                public void onMessage(ByteBuffer bytes) {
+                    handleBinaryFrame(bytes);
                 }
 
                 @Override
@@ -201,32 +240,283 @@ public class WebSocketDataReader implements DataReader {
         return false;
     }
 
+    /**
+     * parses a JSON object or an array of JSON objects and stores the records
+     * @param message the JSON text
+     */
     @Override
     public void onMessage(String message) {
+        ReadingBatch batch = new ReadingBatch(16);
+        parseJson(message, batch);
+        deliver(batch, "stored JSON data: ");
+    }
+
+    /**
+     * @return the number of records that could not be parsed so far
+     */
+    public long getRejectedRecords() {
+        return rejectedRecords.sum();
+    }
+
+    /**
+     * stores a frame received by the client, JSON or CSV lines
+     */
+    private void handleFrame(String message) {
+        ReadingBatch batch = new ReadingBatch(16);
+        int first = 0;
+        while (first < message.length() && Character.isWhitespace(message.charAt(first))) {
+            first++;
+        }
+        if (first < message.length() && (message.charAt(first) == '{' || message.charAt(first) == '[')) {
+            parseJson(message, batch);
+            deliver(batch, "stored JSON data: ");
+        } else {
+            parseCsv(message, batch);
+            deliver(batch, "Stored data - ");
+        }
+    }
+
+    /**
+     * stores the readings of a binary message; values arrive as doubles, so nothing is parsed
+     */
+    private void handleBinaryFrame(ByteBuffer message) {
+        ReadingBatch batch = new ReadingBatch(64);
         try {
-            // Parse the JSON using Jackson or built-in methods
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode jsonNode = mapper.readTree(message);
+            RecordCodec.decode(message, new RecordCodec.Handler() {
+                @Override
+                public void onValue(int patientId, long timestamp, RecordType type, double value) {
+                    batch.add(patientId, value, type, timestamp);
+                }
 
-            int patientId = jsonNode.get("patientId").asInt();
-            long timestamp = jsonNode.get("timestamp").asLong();
-            String recordType = jsonNode.get("label").asText();
-            String dataValue = jsonNode.get("data").asText();
+                @Override
+                public void onText(int patientId, long timestamp, RecordType type, String text) {
+                    reject("Non-numeric data received for patient " + patientId +
+                            ", type: " + type + ", data: " + text);
+                }
+            });
+        } catch (IOException e) {
+            reject("failed to decode binary message: " + e.getMessage());
+        }
+        deliver(batch, "stored binary data: ");
+    }
 
-            double measurementValue;
+    private void deliver(ReadingBatch batch, String logPrefix) {
+        if (batch.size() == 0) {
+            return;
+        }
+        if (ingestQueue != null) {
             try {
-                measurementValue = Double.parseDouble(dataValue);
-            } catch (NumberFormatException e) {
-                System.err.println("invalid numeric format for patient " + patientId + ": " + dataValue);
+                ingestQueue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reportError("Interrupted, dropping " + batch.size() + " records");
                 return;
             }
+        } else {
+            batch.storeIn(storage);
+        }
+        if (options.verbose) {
+            for (int i = 0; i < batch.size(); i++) {
+                System.out.println(logPrefix + "Patient ID: " + batch.getPatientId(i) +
+                        ", Type: " + batch.getRecordType(i) +
+                        ", Value: " + batch.getValue(i) +
+                        ", Timestamp: " + batch.getTimestamp(i));
+            }
+        }
+    }
 
-            storage.addPatientData(patientId, measurementValue, recordType, timestamp);
-            System.out.println("stored JSON data: " + jsonNode.toPrettyString());
+    /**
+     * parses newline separated "patientId,timestamp,label,data" lines without splitting into substrings
+     */
+    private void parseCsv(String message, ReadingBatch batch) {
+        int lineStart = 0;
+        while (lineStart < message.length()) {
+            int lineEnd = message.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = message.length();
+            }
+            int start = skipWhitespace(message, lineStart, lineEnd);
+            int end = trimEnd(message, start, lineEnd);
+            if (start < end) {
+                parseCsvLine(message, start, end, batch);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("failed to parse JSON message: " + message);
-            e.printStackTrace();
+    private void parseCsvLine(String message, int start, int end, ReadingBatch batch) {
+        //expected format from signal generator: patientId,timestamp,label,data
+        int comma1 = message.indexOf(',', start);
+        int comma2 = comma1 < 0 || comma1 >= end ? -1 : message.indexOf(',', comma1 + 1);
+        int comma3 = comma2 < 0 || comma2 >= end ? -1 : message.indexOf(',', comma2 + 1);
+        int extraComma = comma3 < 0 ? -1 : message.indexOf(',', comma3 + 1);
+        if (comma3 < 0 || comma3 >= end || (extraComma >= 0 && extraComma < end)) {
+            reject("Invalid message format. Expected: patientId,timestamp,label,data. Received: "
+                    + message.substring(start, end));
+            return;
+        }
+
+        int patientId;
+        long timestamp;
+        try {
+            patientId = Integer.parseInt(message, skipWhitespace(message, start, comma1),
+                    trimEnd(message, start, comma1), 10);
+            timestamp = Long.parseLong(message, skipWhitespace(message, comma1 + 1, comma2),
+                    trimEnd(message, comma1 + 1, comma2), 10);
+        } catch (NumberFormatException e) {
+            reject("Error parsing numeric values in message: " + message.substring(start, end));
+            return;
+        }
+        int typeStart = skipWhitespace(message, comma2 + 1, comma3);
+        RecordType recordType = recordType(message, typeStart, trimEnd(message, typeStart, comma3));
+        if (recordType == null) {
+            reject("Too many record types, unknown label in message: " + message.substring(start, end));
+            return;
+        }
+
+        //convert data to double (handle non-numeric gracefully)
+        int dataStart = skipWhitespace(message, comma3 + 1, end);
+        String dataValue = message.substring(dataStart, end);
+        double value = RecordCodec.parseValue(dataValue);
+        if (!isNumber(value, dataValue)) {
+            reject("Non-numeric data received for patient " + patientId +
+                    ", type: " + recordType + ", data: " + dataValue);
+            return;
+        }
+        batch.add(patientId, value, recordType, timestamp);
+    }
+
+    /**
+     * parseValue returns NaN for data that is not a number, so only the text "NaN" itself is NaN
+     */
+    private static boolean isNumber(double value, String data) {
+        return !Double.isNaN(value) || data.trim().equals("NaN");
+    }
+
+    private RecordType recordType(String message, int start, int end) {
+        int length = end - start;
+        int slot = length == 0 ? 0 : (message.charAt(start) * 31 + length) & (TYPE_CACHE_SIZE - 1);
+        RecordType cached = typeCache[slot];
+        if (cached != null && cached.getName().length() == length
+                && message.regionMatches(start, cached.getName(), 0, length)) {
+            return cached;
+        }
+        RecordType recordType = RecordType.tryOf(message.substring(start, end));
+        if (recordType != null) {
+            typeCache[slot] = recordType;
+        }
+        return recordType;
+    }
+
+    private static int skipWhitespace(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * streams through a JSON object or array of objects without building a tree
+     */
+    private void parseJson(String message, ReadingBatch batch) {
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                parseJsonRecord(parser, batch);
+            } else if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                    parseJsonRecord(parser, batch);
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    reject("failed to parse JSON message, expected an array of objects: " + message);
+                }
+            } else {
+                reject("failed to parse JSON message: " + message);
+            }
+        } catch (IOException e) {
+            reject("failed to parse JSON message: " + message + " (" + e.getMessage() + ")");
+        }
+    }
+
+    private void parseJsonRecord(JsonParser parser, ReadingBatch batch) throws IOException {
+        Integer patientId = null;
+        Long timestamp = null;
+        String recordType = null;
+        String dataValue = null;
+        double measurementValue = Double.NaN;
+        boolean numericData = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "patientId":
+                    patientId = parser.getValueAsInt();
+                    break;
+                case "timestamp":
+                    timestamp = parser.getValueAsLong();
+                    break;
+                case "label":
+                    recordType = parser.getValueAsString();
+                    break;
+                case "data":
+                    if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+                        measurementValue = parser.getDoubleValue();
+                        numericData = true;
+                    } else {
+                        dataValue = parser.getValueAsString();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (patientId == null || timestamp == null || recordType == null || (!numericData && dataValue == null)) {
+            reject("failed to parse JSON record, patientId, timestamp, label and data are required");
+            return;
+        }
+        if (!numericData) {
+            // text data may carry a unit, like the simulator's "97.0%"
+            measurementValue = RecordCodec.parseValue(dataValue);
+            if (!isNumber(measurementValue, dataValue)) {
+                reject("invalid numeric format for patient " + patientId + ": " + dataValue);
+                return;
+            }
+        }
+        RecordType type = RecordType.tryOf(recordType);
+        if (type == null) {
+            reject("Too many record types, unknown label for patient " + patientId + ": " + recordType);
+            return;
+        }
+        batch.add(patientId, measurementValue, type, timestamp);
+    }
+
+    private void reject(String message) {
+        rejectedRecords.increment();
+        reportError(message);
+    }
+
+    /**
+     * logs an error; without verbose logging only the first few are printed
+     */
+    private void reportError(String message) {
+        if (options.verbose) {
+            System.err.println(message);
+            return;
+        }
+        int logged = loggedErrors.incrementAndGet();
+        if (logged <= MAX_QUIET_ERRORS) {
+            System.err.println(message);
+        } else if (logged == MAX_QUIET_ERRORS + 1) {
+            System.err.println("Further errors are only counted, see getRejectedRecords()");
         }
     }
 
@@ -255,10 +545,13 @@ public class WebSocketDataReader implements DataReader {
     }
 
     /**
-     * closes the WebSocket connection
+     * closes the WebSocket connection and stores what is still queued
      */
     public void close() {
         if (client != null) {
             client.close();
         }
+        if (ingestQueue != null) {
+            ingestQueue.close();
+        }
     }}
\ No newline at end of file
@@ -54,6 +54,57 @@ public class WebSocketDataReaderTest {
             assertEquals(0, records.size());
         }
 
+        /**
+         * verifies batched JSON frames in high-throughput mode, including a bad record in the batch
+         * purpose: one bad record must not drop the others, and close() must store what is queued
+         */
+        @Test
+        public void testHighThroughputBatchedJson() {
+            DataStorage localStorage = new DataStorage();
+            WebSocketDataReader batchReader = new WebSocketDataReader(localStorage, "ws://localhost:9999",
+                    WebSocketDataReader.Options.highThroughput());
+
+            batchReader.onMessage("[{\"patientId\":5,\"timestamp\":100,\"label\":\"ECG\",\"data\":\"0.5\"},"
+                    + "{\"patientId\":5,\"timestamp\":200,\"label\":\"ECG\",\"data\":1.5,\"unit\":{\"a\":1}},"
+                    + "{\"patientId\":5,\"timestamp\":300,\"label\":\"ECG\",\"data\":\"n/a\"},"
+                    + "{\"patientId\":6,\"timestamp\":400,\"label\":\"Saturation\",\"data\":\"97.0%\"}]");
+            batchReader.onMessage("{\"patientId\":6,\"timestamp\":500,\"label\":\"Saturation\",\"data\":\"96.0\"}");
+            batchReader.close();
+
+            List<PatientRecord> ecg = localStorage.getRecords(5, 0, Long.MAX_VALUE);
+            assertEquals(2, ecg.size());
+            assertEquals(1.5, ecg.get(1).getMeasurementValue());
+            List<PatientRecord> saturation = localStorage.getRecords(6, 0, Long.MAX_VALUE);
+            assertEquals(2, saturation.size());
+            assertEquals(97.0, saturation.get(0).getMeasurementValue());
+            assertEquals(1, batchReader.getRejectedRecords());
+        }
+
+        /**
+         * verifies that a CSV frame with several lines stores every valid line, saturation readings with "%" included
+         */
+        @Test
+        public void testMultiLineCsvFrame() throws Exception {
+            DataStorage localStorage = new DataStorage();
+            WebSocketDataReader batchReader = new WebSocketDataReader(localStorage, "ws://localhost:9999",
+                    new WebSocketDataReader.Options().verbose(false));
+            java.lang.reflect.Field field = WebSocketDataReader.class.getDeclaredField("client");
+            field.setAccessible(true);
+            org.java_websocket.client.WebSocketClient client =
+                    (org.java_websocket.client.WebSocketClient) field.get(batchReader);
+
+            client.onMessage("7,1000,ECG,0.25\n7, 2000, ECG, -0.5\r\nbad_line\n7,3000,Saturation,97%\n8,4000,ECG,1.0\n");
+
+            List<PatientRecord> records = localStorage.getRecords(7, 0, Long.MAX_VALUE);
+            assertEquals(3, records.size());
+            assertEquals(-0.5, records.get(1).getMeasurementValue());
+            assertEquals("ECG", records.get(1).getRecordType());
+            assertEquals(97.0, records.get(2).getMeasurementValue());
+            assertEquals("Saturation", records.get(2).getRecordType());
+            assertEquals(1, localStorage.getRecords(8, 0, Long.MAX_VALUE).size());
+            assertEquals(1, batchReader.getRejectedRecords());
+        }
+
         /**
          * Uses reflection to simulate WebSocket message arrival without needing real connection.
          */
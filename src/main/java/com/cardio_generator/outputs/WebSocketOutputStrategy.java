@@ -1,49 +1,426 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.RecordCodec;
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-public class WebSocketOutputStrategy implements OutputStrategy {
+/**
+ * class implements {@link OutputStrategy} and sends the patient data as JSON to all connected WebSocket clients
+ * Records are serialized once and collected into one frame, a JSON array, that a
+ * flush thread broadcasts every {@code flushIntervalMillis}; the frame is encoded
+ * once for all clients. Each client's queue of unsent frames is bounded, and when
+ * it is full the {@link SlowConsumerPolicy} decides what happens, so one slow
+ * dashboard does not hold up the generators or the other clients.
+ * With {@link WireFormat#BINARY} frames are binary messages holding one
+ * {@link RecordCodec} frame instead of JSON.
+ */
+public class WebSocketOutputStrategy implements OutputStrategy, AutoCloseable {
 
-    private WebSocketServer server;
+    /**
+     * what to do with a frame when a client's queue is full
+     */
+    public enum SlowConsumerPolicy {
+        /** skip the frame for that client, other clients are not affected */
+        DROP,
+        /** close the connection of that client */
+        DISCONNECT
+    }
+
+    /**
+     * settings for the server
+     */
+    public static class Options {
+        private long flushIntervalMillis = 50;
+        private int maxRecordsPerFrame = 1024;
+        private int maxQueuedFrames = 256;
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;
+        private WireFormat format = WireFormat.TEXT;
+
+        /**
+         * @param flushIntervalMillis the longest a record waits for the next frame,
+         *                            0 sends every record, or every batch, in a frame of its own right away
+         */
+        public Options flushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param maxRecordsPerFrame records after which a frame is sent before the flush interval is over
+         */
+        public Options maxRecordsPerFrame(int maxRecordsPerFrame) {
+            this.maxRecordsPerFrame = maxRecordsPerFrame;
+            return this;
+        }
+
+        /**
+         * @param maxQueuedFrames frames that can wait for one client before the policy applies
+         */
+        public Options maxQueuedFrames(int maxQueuedFrames) {
+            this.maxQueuedFrames = maxQueuedFrames;
+            return this;
+        }
+
+        /**
+         * @param slowConsumerPolicy what to do when a client's queue is full
+         */
+        public Options slowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+
+        /**
+         * @param format JSON text messages or binary messages
+         */
+        public Options format(WireFormat format) {
+            this.format = format;
+            return this;
+        }
+    }
+
+    private final Options options;
+    private final SimpleWebSocketServer server;
+    private final AtomicInteger clientCount = new AtomicInteger();
+    private final LongAdder droppedRecords = new LongAdder();
+    private final LongAdder sentFrames = new LongAdder();
+    private final ThreadLocal<StringBuilder> recordBuffer = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    // the records of the next frame; taking and broadcasting a frame holds sendLock, so frames stay in order
+    private final Object frameLock = new Object();
+    private final Object sendLock = new Object();
+    private StringBuilder frame = new StringBuilder("[");
+    private int frameRecords;
+    private final RecordCodec.Encoder binaryFrame = new RecordCodec.Encoder();
+
+    private final Thread flushThread;
+    private volatile boolean running = true;
 
     public WebSocketOutputStrategy(int port) {
+        this(port, new Options());
+    }
+
+    /**
+     * constructor that starts a WebSocket server with the given framing and slow-client settings
+     * @param port the port to listen on, 0 picks a free port
+     * @param options framing and per-client queue settings
+     */
+    public WebSocketOutputStrategy(int port, Options options) {
+        this.options = options;
         server = new SimpleWebSocketServer(new InetSocketAddress(port));
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        try {
+            if (!server.started.await(5, TimeUnit.SECONDS)) {
+                System.err.println("WebSocket server did not start within 5 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (options.flushIntervalMillis > 0) {
+            flushThread = new Thread(this::flushLoop, "websocket-output-flush");
+            flushThread.setDaemon(true);
+            flushThread.start();
+        } else {
+            flushThread = null;
+        }
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String messageJson = String.format(
-                "{\"patientId\":%d,\"timestamp\":%d,\"label\":\"%s\",\"data\":\"%s\"}",
-                patientId, timestamp, label, data
-        );
+        if (clientCount.get() == 0) {
+            return;
+        }
+        if (options.format == WireFormat.BINARY) {
+            outputBinary(patientId, timestamp, label, data);
+            return;
+        }
+        StringBuilder record = recordBuffer.get();
+        record.setLength(0);
+        appendRecord(record, patientId, timestamp, label, data);
+
+        if (flushThread == null) {
+            synchronized (sendLock) {
+                broadcast(record.toString(), null, 1);
+            }
+            return;
+        }
+        boolean full;
+        synchronized (frameLock) {
+            if (frameRecords > 0) {
+                frame.append(',');
+            }
+            frame.append(record);
+            full = ++frameRecords >= options.maxRecordsPerFrame;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * adds all samples of the batch to the next frame at once; with a flush interval of 0
+     * the batch is sent right away as one frame
+     * @param batch the samples to send
+     */
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        if (clientCount.get() == 0 || batch.isEmpty()) {
+            return;
+        }
+        if (options.format == WireFormat.BINARY) {
+            outputBinaryBatch(batch);
+            return;
+        }
+        StringBuilder records = recordBuffer.get();
+        records.setLength(0);
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                records.append(',');
+            }
+            appendRecord(records, batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getData(i));
+        }
+
+        if (flushThread == null) {
+            synchronized (sendLock) {
+                broadcast("[" + records + "]", null, batch.size());
+            }
+            return;
+        }
+        boolean full;
+        synchronized (frameLock) {
+            if (frameRecords > 0) {
+                frame.append(',');
+            }
+            frame.append(records);
+            frameRecords += batch.size();
+            full = frameRecords >= options.maxRecordsPerFrame;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    private void outputBinaryBatch(SampleBatch batch) {
+        if (flushThread == null) {
+            synchronized (sendLock) {
+                addAll(binaryFrame, batch);
+                broadcast(null, binaryFrame.finishFrame(), batch.size());
+            }
+            return;
+        }
+        boolean full;
+        synchronized (frameLock) {
+            addAll(binaryFrame, batch);
+            full = binaryFrame.recordCount() >= options.maxRecordsPerFrame;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    private static void addAll(RecordCodec.Encoder encoder, SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            encoder.add(batch.getPatientId(i), batch.getTimestamp(i), batch.getLabel(i), batch.getData(i));
+        }
+    }
+
+    private void outputBinary(int patientId, long timestamp, String label, String data) {
+        if (flushThread == null) {
+            synchronized (sendLock) {
+                binaryFrame.add(patientId, timestamp, label, data);
+                broadcast(null, binaryFrame.finishFrame(), 1);
+            }
+            return;
+        }
+        boolean full;
+        synchronized (frameLock) {
+            binaryFrame.add(patientId, timestamp, label, data);
+            full = binaryFrame.recordCount() >= options.maxRecordsPerFrame;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * sends the records collected so far to all clients as one frame
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            String text = null;
+            byte[] bytes = null;
+            int records;
+            synchronized (frameLock) {
+                if (options.format == WireFormat.BINARY) {
+                    records = binaryFrame.recordCount();
+                    if (records == 0) {
+                        return;
+                    }
+                    bytes = binaryFrame.finishFrame();
+                } else {
+                    if (frameRecords == 0) {
+                        return;
+                    }
+                    text = frame.append(']').toString();
+                    records = frameRecords;
+                    frame = new StringBuilder(Math.max(64, text.length() + text.length() / 4)).append('[');
+                    frameRecords = 0;
+                }
+            }
+            broadcast(text, bytes, records);
+        }
+    }
+
+    /**
+     * queues one frame, text or bytes, to every client that is keeping up; the library frames it once per protocol draft
+     */
+    private void broadcast(String text, byte[] bytes, int records) {
+        List<WebSocket> targets = new ArrayList<>(clientCount.get());
         for (WebSocket conn : server.getConnections()) {
+            if (conn instanceof WebSocketImpl && ((WebSocketImpl) conn).outQueue.size() >= options.maxQueuedFrames) {
+                droppedRecords.add(records);
+                if (options.slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                    conn.close(CloseFrame.TRY_AGAIN_LATER, "client too slow");
+                }
+                continue;
+            }
+            targets.add(conn);
+        }
+        if (!targets.isEmpty()) {
             try {
-                conn.send(messageJson);
+                if (bytes != null) {
+                    server.broadcast(bytes, targets);
+                } else {
+                    server.broadcast(text, targets);
+                }
+                sentFrames.increment();
             } catch (Exception e) {
-                System.err.println("failed to send message to client: " + e.getMessage());
-                e.printStackTrace();
+                System.err.println("failed to send message to clients: " + e.getMessage());
             }
         }
     }
 
-    private static class SimpleWebSocketServer extends WebSocketServer {
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(options.flushIntervalMillis);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            }
+            flush();
+        }
+    }
+
+    /**
+     * writes one record as a JSON object
+     */
+    private static void appendRecord(StringBuilder out, int patientId, long timestamp, String label, String data) {
+        out.append("{\"patientId\":").append(patientId)
+                .append(",\"timestamp\":").append(timestamp)
+                .append(",\"label\":");
+        appendJsonString(out, label);
+        out.append(",\"data\":");
+        appendJsonString(out, data);
+        out.append('}');
+    }
+
+    /**
+     * writes a JSON string literal, escaping quotes, backslashes and control characters
+     */
+    static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * @return the number of currently connected clients
+     */
+    public int getClientCount() {
+        return clientCount.get();
+    }
+
+    /**
+     * @return records not sent to a client because its queue was full, counted once per client
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * @return frames broadcast so far
+     */
+    public long getSentFrames() {
+        return sentFrames.sum();
+    }
+
+    /**
+     * sends the collected records and stops the server
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (flushThread != null) {
+            flushThread.interrupt();
+            try {
+                flushThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        try {
+            server.stop(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class SimpleWebSocketServer extends WebSocketServer {
+        final CountDownLatch started = new CountDownLatch(1);
 
         public SimpleWebSocketServer(InetSocketAddress address) {
             super(address);
+            setReuseAddr(true);
         }
 
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
+            clientCount.incrementAndGet();
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            clientCount.decrementAndGet();
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
         }
 
@@ -60,6 +437,7 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         @Override
         public void onStart() {
             System.out.println("Server started successfully");
+            started.countDown();
         }
     }
 }
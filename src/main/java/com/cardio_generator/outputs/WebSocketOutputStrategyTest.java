@@ -0,0 +1,180 @@
+package com.cardio_generator.outputs;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebSocketOutputStrategyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * verifies that every connected client receives every record, in order, in fewer frames than records
+     * purpose: records are coalesced into shared frames instead of being sent one by one to each client
+     */
+    @Test
+    void testAllClientsReceiveAllRecords() throws Exception {
+        WebSocketOutputStrategy.Options options = new WebSocketOutputStrategy.Options()
+                .flushIntervalMillis(20)
+                .maxRecordsPerFrame(100);
+        try (WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(0, options)) {
+            CollectingClient first = connect(strategy);
+            CollectingClient second = connect(strategy);
+            awaitClientCount(strategy, 2);
+
+            for (int i = 0; i < 1000; i++) {
+                strategy.output(i % 10, 1000L + i, "ECG", Double.toString(i * 0.5));
+            }
+            strategy.flush();
+
+            for (CollectingClient client : new CollectingClient[] {first, second}) {
+                List<JsonNode> records = client.awaitRecords(1000);
+                for (int i = 0; i < 1000; i++) {
+                    JsonNode record = records.get(i);
+                    assertEquals(i % 10, record.get("patientId").asInt());
+                    assertEquals(1000L + i, record.get("timestamp").asLong());
+                    assertEquals("ECG", record.get("label").asText());
+                    assertEquals(Double.toString(i * 0.5), record.get("data").asText());
+                }
+                assertTrue(client.frames < 1000);
+                client.close();
+            }
+            assertTrue(strategy.getSentFrames() < 1000);
+        }
+    }
+
+    /**
+     * verifies that labels and values with quotes, backslashes and control characters arrive as valid JSON
+     */
+    @Test
+    void testEscapesStrings() throws Exception {
+        WebSocketOutputStrategy.Options options = new WebSocketOutputStrategy.Options().flushIntervalMillis(0);
+        try (WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(0, options)) {
+            CollectingClient client = connect(strategy);
+            awaitClientCount(strategy, 1);
+
+            strategy.output(3, 42L, "Alert \"manual\"", "C:\\ward\n7");
+
+            JsonNode record = client.awaitRecords(1).get(0);
+            assertEquals("Alert \"manual\"", record.get("label").asText());
+            assertEquals("C:\\ward\n7", record.get("data").asText());
+            client.close();
+        }
+    }
+
+    /**
+     * verifies that binary frames reach a {@link WebSocketDataReader} with their values,
+     * including saturation readings that text messages send as "97.0%"
+     */
+    @Test
+    void testBinaryFramesToReader() throws Exception {
+        WebSocketOutputStrategy.Options options = new WebSocketOutputStrategy.Options()
+                .flushIntervalMillis(20)
+                .format(WireFormat.BINARY);
+        try (WebSocketOutputStrategy strategy = new WebSocketOutputStrategy(0, options)) {
+            DataStorage storage = new DataStorage();
+            WebSocketDataReader reader = new WebSocketDataReader(storage, "ws://localhost:" + strategy.getPort(),
+                    new WebSocketDataReader.Options().verbose(false));
+            Thread readerThread = new Thread(reader::readData);
+            readerThread.setDaemon(true);
+            readerThread.start();
+            awaitClientCount(strategy, 1);
+
+            for (int i = 0; i < 500; i++) {
+                strategy.output(7, 1000L + 2 * i, "ECG", Double.toString(i * 0.25));
+                strategy.output(7, 1001L + 2 * i, "Saturation", (90 + i % 10) + ".0%");
+            }
+            strategy.flush();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (storage.getRecords(7, 0, Long.MAX_VALUE).size() < 1000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            List<PatientRecord> records = storage.getRecords(7, 0, Long.MAX_VALUE);
+            assertEquals(1000, records.size());
+            for (PatientRecord record : records) {
+                long i = (record.getTimestamp() - 1000) / 2;
+                if (record.getRecordType().equals("ECG")) {
+                    assertEquals(i * 0.25, record.getMeasurementValue());
+                } else {
+                    assertEquals(90 + i % 10, record.getMeasurementValue());
+                }
+            }
+            assertEquals(0, reader.getRejectedRecords());
+            reader.close();
+        }
+    }
+
+    private static CollectingClient connect(WebSocketOutputStrategy strategy) throws InterruptedException {
+        CollectingClient client = new CollectingClient(URI.create("ws://localhost:" + strategy.getPort()));
+        assertTrue(client.connectBlocking(5, TimeUnit.SECONDS));
+        return client;
+    }
+
+    private static void awaitClientCount(WebSocketOutputStrategy strategy, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (strategy.getClientCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, strategy.getClientCount());
+    }
+
+    private static class CollectingClient extends WebSocketClient {
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private int frames;
+
+        CollectingClient(URI uri) {
+            super(uri);
+        }
+
+        /**
+         * unpacks the received frames, which hold either one record or an array of records
+         */
+        List<JsonNode> awaitRecords(int count) throws Exception {
+            List<JsonNode> records = new ArrayList<>();
+            while (records.size() < count) {
+                String message = messages.poll(5, TimeUnit.SECONDS);
+                assertNotNull(message, "received " + records.size() + " of " + count + " records");
+                frames++;
+                JsonNode node = MAPPER.readTree(message);
+                if (node.isArray()) {
+                    node.forEach(records::add);
+                } else {
+                    records.add(node);
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
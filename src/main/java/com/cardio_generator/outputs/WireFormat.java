@@ -0,0 +1,13 @@
+package com.cardio_generator.outputs;
+
+/**
+ * how the network and file outputs encode the patient data
+ */
+public enum WireFormat {
+    /** human-readable lines and JSON, as the outputs always wrote them */
+    TEXT,
+    /** length-prefixed binary frames of {@link com.data_management.RecordCodec} */
+    BINARY,
+    /** "timestamp, patientId, label, value" lines as {@code FileDataReader} reads them; file output only, network outputs send {@link #TEXT} */
+    CSV
+}
@@ -0,0 +1,101 @@
+package com.data_management;
+
+/**
+ * An immutable, time-ordered range of rollup buckets of one record type: the
+ * minimum, maximum, sum and count of the readings in each bucket.
+ * Buckets without readings are left out.
+ */
+public class AggregateSlice {
+    private final String recordType;
+    private final RetentionPolicy.Resolution resolution;
+    private final long[] bucketStarts;
+    private final double[] minimums;
+    private final double[] maximums;
+    private final double[] sums;
+    private final long[] counts;
+
+    AggregateSlice(String recordType, RetentionPolicy.Resolution resolution, long[] bucketStarts,
+                   double[] minimums, double[] maximums, double[] sums, long[] counts) {
+        this.recordType = recordType;
+        this.resolution = resolution;
+        this.bucketStarts = bucketStarts;
+        this.minimums = minimums;
+        this.maximums = maximums;
+        this.sums = sums;
+        this.counts = counts;
+    }
+
+    static AggregateSlice empty(String recordType, RetentionPolicy.Resolution resolution) {
+        return new AggregateSlice(recordType, resolution, new long[0], new double[0], new double[0],
+                new double[0], new long[0]);
+    }
+
+    /**
+     * @return the record type of the aggregated readings
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * @return the width of the buckets
+     */
+    public RetentionPolicy.Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return the number of buckets in this slice
+     */
+    public int size() {
+        return bucketStarts.length;
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the start of the bucket in milliseconds since UNIX epoch
+     */
+    public long getBucketStart(int index) {
+        return bucketStarts[index];
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the smallest reading in the bucket
+     */
+    public double getMin(int index) {
+        return minimums[index];
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the largest reading in the bucket
+     */
+    public double getMax(int index) {
+        return maximums[index];
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the mean of the readings in the bucket
+     */
+    public double getMean(int index) {
+        return sums[index] / counts[index];
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the sum of the readings in the bucket
+     */
+    public double getSum(int index) {
+        return sums[index];
+    }
+
+    /**
+     * @param index the position of the bucket, from 0 to {@code size() - 1}
+     * @return the number of readings in the bucket
+     */
+    public long getCount(int index) {
+        return counts[index];
+    }
+}
@@ -0,0 +1,228 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed run of time-ordered readings of one series.
+ * Timestamps are stored as delta-of-deltas and values as the XOR with the
+ * previous value, with the bit layout of Facebook's Gorilla time series
+ * database: readings at a fixed interval with an unchanged value take two
+ * bits, slowly changing vital signs a few bits more.
+ */
+final class CompressedBlock {
+    private final long[] words;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    private CompressedBlock(long[] words, int count, long firstTimestamp, long lastTimestamp) {
+        this.words = words;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * Compresses {@code count > 0} readings, which must be sorted by timestamp.
+     */
+    static CompressedBlock encode(long[] timestamps, double[] values, int from, int count) {
+        BitWriter out = new BitWriter(count);
+        long timestamp = timestamps[from];
+        long bits = Double.doubleToRawLongBits(values[from]);
+        out.write(timestamp, 64);
+        out.write(bits, 64);
+        long delta = 0;
+        // leading and trailing zeros of the last stored XOR, -1 before the first one
+        int leading = -1;
+        int trailing = 0;
+        for (int i = from + 1; i < from + count; i++) {
+            long newDelta = timestamps[i] - timestamp;
+            long deltaOfDelta = newDelta - delta;
+            if (deltaOfDelta == 0) {
+                out.write(0, 1);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.write(0b10, 2);
+                out.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.write(0b110, 3);
+                out.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.write(0b1110, 4);
+                out.write(deltaOfDelta + 2047, 12);
+            } else {
+                out.write(0b1111, 4);
+                out.write(deltaOfDelta, 64);
+            }
+            timestamp = timestamps[i];
+            delta = newDelta;
+
+            long newBits = Double.doubleToRawLongBits(values[i]);
+            long xor = newBits ^ bits;
+            bits = newBits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int newTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                // the meaningful bits fit into the previous window
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int meaningful = 64 - newLeading - newTrailing;
+                out.write(0b11, 2);
+                out.write(newLeading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> newTrailing, meaningful);
+                leading = newLeading;
+                trailing = newTrailing;
+            }
+        }
+        return new CompressedBlock(out.toArray(), count, timestamps[from], timestamp);
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return the heap taken by the compressed readings, without object headers
+     */
+    int sizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    /**
+     * Decompresses all readings into the arrays, starting at the given offset.
+     */
+    void decode(long[] timestamps, double[] values, int offset) {
+        Decoder decoder = decoder();
+        for (int i = offset; decoder.next(); i++) {
+            timestamps[i] = decoder.timestamp;
+            values[i] = Double.longBitsToDouble(decoder.bits);
+        }
+    }
+
+    /**
+     * @return a decoder positioned before the first reading
+     */
+    Decoder decoder() {
+        return new Decoder();
+    }
+
+    /**
+     * Decompresses the readings of the block one at a time.
+     */
+    final class Decoder {
+        private int position;
+        private int remaining = count;
+        private long timestamp;
+        private long delta;
+        private long bits;
+        private int leading;
+        private int trailing;
+
+        /**
+         * @return false once every reading has been returned
+         */
+        boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            if (remaining-- == count) {
+                timestamp = read(64);
+                bits = read(64);
+                return true;
+            }
+            long deltaOfDelta;
+            if (read(1) == 0) {
+                deltaOfDelta = 0;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(7) - 63;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(9) - 255;
+            } else if (read(1) == 0) {
+                deltaOfDelta = read(12) - 2047;
+            } else {
+                deltaOfDelta = read(64);
+            }
+            delta += deltaOfDelta;
+            timestamp += delta;
+
+            if (read(1) != 0) {
+                if (read(1) != 0) {
+                    leading = (int) read(5);
+                    int meaningful = (int) read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                bits ^= read(64 - leading - trailing) << trailing;
+            }
+            return true;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        double value() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        private long read(int length) {
+            int word = position >>> 6;
+            int used = position & 63;
+            int available = 64 - used;
+            long result = (words[word] << used) >>> (64 - length);
+            if (length > available) {
+                result |= words[word + 1] >>> (64 - (length - available));
+            }
+            position += length;
+            return result;
+        }
+    }
+
+    /**
+     * Appends bit fields to a growable array of longs, most significant bit first.
+     */
+    private static final class BitWriter {
+        private long[] words;
+        private int position;
+
+        BitWriter(int expectedReadings) {
+            // two words for the first reading, about 16 bits per reading after it
+            words = new long[2 + (expectedReadings >> 2) + 1];
+        }
+
+        void write(long value, int length) {
+            if (length < 64) {
+                value &= (1L << length) - 1;
+            }
+            int word = position >>> 6;
+            int free = 64 - (position & 63);
+            if (word + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (length <= free) {
+                words[word] |= value << (free - length);
+            } else {
+                words[word] |= value >>> (length - free);
+                words[word + 1] |= value << (64 - (length - free));
+            }
+            position += length;
+        }
+
+        long[] toArray() {
+            // one spare word, so reads never check for the end of the array
+            return Arrays.copyOf(words, ((position + 63) >>> 6) + 1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressedBlockTest {
+
+    /**
+     * verifies that every timestamp gap and value survives compression unchanged
+     * purpose: covers each delta-of-delta range and the XOR window reuse
+     */
+    @Test
+    void testRoundTrip() {
+        long[] gaps = {0, 1, 1000, 1000, 1003, 940, 1200, 3000, 0, 86_400_000L, 1, Long.MAX_VALUE / 4};
+        double[] special = {0.0, -0.0, 98.0, 98.5, -1e300, Double.NaN, Double.MIN_VALUE,
+                Double.POSITIVE_INFINITY, 120.25, 120.25, 1e-9, 97.0};
+        Random random = new Random(42);
+        int count = 300;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = -5_000L;
+        for (int i = 0; i < count; i++) {
+            timestamp += gaps[i % gaps.length] % 1_000_000_000_000L;
+            timestamps[i] = timestamp;
+            values[i] = i < special.length ? special[i] : random.nextGaussian() * 10;
+        }
+
+        CompressedBlock block = CompressedBlock.encode(timestamps, values, 0, count);
+        assertEquals(count, block.count());
+        assertEquals(timestamps[0], block.firstTimestamp());
+        assertEquals(timestamps[count - 1], block.lastTimestamp());
+        long[] decodedTimestamps = new long[count];
+        double[] decodedValues = new double[count];
+        block.decode(decodedTimestamps, decodedValues, 0);
+        for (int i = 0; i < count; i++) {
+            assertEquals(timestamps[i], decodedTimestamps[i]);
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]));
+        }
+    }
+
+    /**
+     * verifies the size of a day of saturation readings
+     * purpose: slowly changing readings at a near-fixed interval must take under 2 bytes each
+     */
+    @Test
+    void testSaturationTakesUnderTwoBytesPerReading() {
+        RecordSeries series = new RecordSeries("Saturation");
+        Random random = new Random(7);
+        double saturation = 97.0;
+        long timestamp = 1_700_000_000_000L;
+        int count = 86_400;
+        for (int i = 0; i < count; i++) {
+            // scheduler jitter of a few milliseconds, value changes now and then
+            timestamp += 1000 + random.nextInt(5) - 2;
+            if (random.nextInt(20) == 0) {
+                saturation = Math.max(90.0, Math.min(100.0, saturation + random.nextInt(3) - 1));
+            }
+            series.add(timestamp, saturation);
+        }
+        assertEquals(count, series.size());
+        double bytesPerReading = (double) series.sizeInBytes() / count;
+        assertTrue(bytesPerReading < 2.0, "bytes per reading: " + bytesPerReading);
+    }
+}
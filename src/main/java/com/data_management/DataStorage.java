@@ -2,26 +2,42 @@ package com.data_management;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import com.alerts.AlertGenerator;
+import com.alerts.AsyncAlertDispatcher;
+import com.metrics.Counter;
+import com.metrics.LatencyHistogram;
+import com.metrics.MetricsRegistry;
 
 /**
  * Manages storage and retrieval of patient data within a healthcare monitoring
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * The storage is safe to use from several threads: patients are kept in a
+ * concurrent map and each patient locks its record series individually, so
+ * ingestion threads only contend when they write the same patient and type.
+ * Every storage counts its readings in "storage_readings_total" and the time
+ * spent notifying its listeners in "storage_listener_seconds" of the default
+ * {@link MetricsRegistry}.
  */
   public class DataStorage {
+    private static final Counter STORED_READINGS = MetricsRegistry.getDefault().counter("storage_readings_total");
+    private static final LatencyHistogram LISTENER_TIME = MetricsRegistry.getDefault().histogram("storage_listener_seconds");
     private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
-    private static DataStorage instance; //for singleton
+    private List<PatientDataListener> dataListeners; // Notified of every reading after it is stored.
+    private volatile WriteAheadLog writeAheadLog; // Logs every reading before it is stored, if set.
+
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
      * structure.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.patientMap = new ConcurrentHashMap<>();
+        this.dataListeners = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -29,6 +45,7 @@ import com.alerts.AlertGenerator;
      * If the patient does not exist, a new Patient object is created and added to
      * the storage.
      * Otherwise, the new data is added to the existing patient's records.
+     * Registered {@link PatientDataListener}s are notified once the data is stored.
      *
      * @param patientId        the unique identifier of the patient
      * @param measurementValue the value of the health metric being recorded
@@ -38,12 +55,185 @@ import com.alerts.AlertGenerator;
      *                         milliseconds since the Unix epoch
      */
    public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordType.of(recordType), timestamp);
+    }
+
+    /**
+     * Adds a reading of a registered record type, like
+     * {@link #addPatientData(int, double, String, long)} but without looking up
+     * the type by name.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordType       the type of record
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, RecordType recordType, long timestamp) {
+        Patient patient = patientMap.get(patientId);
+        if (patient == null) {
+            patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        }
+        patient.addRecord(measurementValue, recordType, timestamp, writeAheadLog);
+        STORED_READINGS.increment();
+        if (dataListeners.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (PatientDataListener listener : dataListeners) {
+            listener.onPatientData(patientId, measurementValue, recordType, timestamp);
+        }
+        LISTENER_TIME.recordSince(start);
+    }
+
+    /**
+     * Adds a batch of readings of one type for one patient, taking the series
+     * lock once for the whole batch. Listeners are notified of each reading
+     * once the batch is stored.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of the readings
+     * @param timestamps the times of the readings; may be reordered
+     * @param values     the measured values
+     * @param count      the number of readings in the arrays to add
+     */
+    public void addPatientData(int patientId, String recordType, long[] timestamps, double[] values, int count) {
+        addPatientData(patientId, RecordType.of(recordType), timestamps, values, count);
+    }
+
+    /**
+     * Adds a batch of readings of one registered type for one patient, like
+     * {@link #addPatientData(int, String, long[], double[], int)}.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of the readings
+     * @param timestamps the times of the readings; may be reordered
+     * @param values     the measured values
+     * @param count      the number of readings in the arrays to add
+     */
+    public void addPatientData(int patientId, RecordType recordType, long[] timestamps, double[] values, int count) {
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        }
+        patient.addRecords(recordType, timestamps, values, count, writeAheadLog);
+        STORED_READINGS.add(count);
+        if (dataListeners.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (PatientDataListener listener : dataListeners) {
+            for (int i = 0; i < count; i++) {
+                listener.onPatientData(patientId, values[i], recordType, timestamps[i]);
+            }
+        }
+        LISTENER_TIME.recordSince(start);
+    }
+
+    /**
+     * Adds readings replayed from the write-ahead log up to the given log position:
+     * they are neither logged again nor passed to the listeners.
+     */
+    void restore(int patientId, String recordType, long[] timestamps, double[] values, int count, long position) {
+        Patient patient = patientMap.get(patientId);
+        if (patient == null) {
+            patient = patientMap.computeIfAbsent(patientId, Patient::new);
+        }
+        patient.addReplayedRecords(recordType, timestamps, values, count, position);
+    }
+
+    /**
+     * Adds a snapshot segment read from disk to its patient.
+     */
+    void restore(SegmentFile segment) {
+        patientMap.computeIfAbsent(segment.getPatientId(), Patient::new).addSegment(segment);
+    }
+
+    /**
+     * @return the write-ahead log position up to which the patient's readings of
+     *         the type are already in snapshot segments, -1 if none
+     */
+    long getPersistedPosition(int patientId, String recordType) {
+        Patient patient = patientMap.get(patientId);
+        return patient == null ? -1 : patient.getPersistedPosition(recordType);
+    }
+
+    /**
+     * @return the write-ahead log readings are written to, or null
+     */
+    WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    /**
+     * Makes every reading added from now on go to the given write-ahead log
+     * before it is stored, so it can be recovered after a restart.
+     * @param writeAheadLog the log, or null to stop logging
+     */
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    /**
+     * Creates a storage with the readings of an existing write-ahead log and
+     * logs further readings to it.
+     * @param writeAheadLog the opened log
+     * @return the recovered storage
+     * @throws IOException if the log cannot be read
+     */
+    public static DataStorage recover(WriteAheadLog writeAheadLog) throws IOException {
+        return recover(null, writeAheadLog);
+    }
+
+    /**
+     * Creates a storage from snapshot segments and the write-ahead log: the
+     * segments are mapped, not loaded, and only log entries newer than the
+     * segments are replayed. Further readings are logged to the write-ahead log.
+     * @param snapshots the snapshot directory, or null
+     * @param writeAheadLog the opened log, or null
+     * @return the recovered storage
+     * @throws IOException if a segment or the log cannot be read
+     */
+    public static DataStorage recover(SnapshotStore snapshots, WriteAheadLog writeAheadLog) throws IOException {
+        DataStorage storage = new DataStorage();
+        if (snapshots != null) {
+            snapshots.loadInto(storage);
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.replayInto(storage);
+            storage.setWriteAheadLog(writeAheadLog);
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        return storage;
+    }
+
+    /**
+     * Rolls up every patient's readings that are older than the policy's raw
+     * window and drops rollups past their own windows. Snapshot segments that
+     * only hold rolled-up readings are detached, and deleted by the next
+     * snapshot once it has written the rollups.
+     * @param policy the retention policy
+     * @param now the current time in milliseconds since the Unix epoch
+     */
+    public void applyRetention(RetentionPolicy policy, long now) {
+        for (Patient patient : patientMap.values()) {
+            patient.applyRetention(policy, now);
+        }
+    }
+
+    /**
+     * Registers a listener that is notified of every reading added to this storage.
+     * @param listener the listener to add
+     */
+    public void addPatientDataListener(PatientDataListener listener) {
+        dataListeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered data listener.
+     * @param listener the listener to remove
+     */
+    public void removePatientDataListener(PatientDataListener listener) {
+        dataListeners.remove(listener);
     }
 
     /**
@@ -68,6 +258,48 @@ import com.alerts.AlertGenerator;
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Retrieves the records of a single type for a specific patient, filtered by
+     * a time range.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a list of PatientRecord objects of the given type, in time order
+     */
+    public List<PatientRecord> getRecords(int patientId, String recordType, long startTime, long endTime) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRecords(recordType, startTime, endTime);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Aggregates a patient's readings of one type per bucket of the given
+     * resolution, from raw readings and rollups alike.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param resolution the bucket width
+     * @return the non-empty buckets that overlap the range, in time order
+     */
+    public AggregateSlice getAggregates(int patientId, String recordType, long startTime, long endTime,
+                                        RetentionPolicy.Resolution resolution) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getAggregates(recordType, startTime, endTime, resolution);
+        }
+        return AggregateSlice.empty(recordType, resolution);
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      * @return a list of all patients
@@ -76,12 +308,20 @@ import com.alerts.AlertGenerator;
         return new ArrayList<>(patientMap.values());
     }
 
+    /**
+     * Returns the shared DataStorage instance. The instance is created lazily
+     * and safely on first use, even when several threads call this at once.
+     * @return the shared DataStorage
+     */
     public static DataStorage getInstance() {
-        if (instance== null){
-            instance = new DataStorage();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
+
+    //for singleton, the JVM initializes the holder class exactly once
+    private static class InstanceHolder {
+        private static final DataStorage INSTANCE = new DataStorage();
+    }
+
     /**
      * The main method for the DataStorage class.
      * Initializes the system, reads data into storage, and continuously monitors
@@ -108,10 +348,13 @@ import com.alerts.AlertGenerator;
 
         // Initialize the AlertGenerator with the storage
         AlertGenerator alertGenerator = new AlertGenerator(storage);
+        AsyncAlertDispatcher consoleLog = alertGenerator.enableConsoleLog();
 
        // Evaluate all patients' data to check for conditions that may trigger alerts
         for (Patient patient : storage.getAllPatients()) {
             alertGenerator.evaluateData(patient);
         }
+        // prints the alerts that are still queued before exiting
+        consoleLog.close();
     }
 }
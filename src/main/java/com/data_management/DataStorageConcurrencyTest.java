@@ -0,0 +1,74 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataStorageConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int RECORDS_PER_WRITER = 5000;
+
+    /**
+     * verifies that concurrent writers to shared patients lose no records
+     * while a reader queries the same patients
+     * purpose: the WebSocket reader thread writes while the alert generator reads
+     */
+    @Test
+    void testConcurrentWritersAndReader() throws InterruptedException {
+        DataStorage storage = new DataStorage();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                    String type = (i % 2 == 0) ? "ECG" : "Saturation";
+                    storage.addPatientData(i % 4 + 1, writer, type, i);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            awaitQuietly(start);
+            try {
+                for (int i = 0; i < 200; i++) {
+                    List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+                    for (int r = 1; r < records.size(); r++) {
+                        assertTrue(records.get(r - 1).getTimestamp() <= records.get(r).getTimestamp());
+                    }
+                }
+            } catch (Throwable t) {
+                synchronized (failures) {
+                    failures.add(t);
+                }
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.isEmpty(), () -> "reader failed: " + failures);
+        int total = 0;
+        for (Patient patient : storage.getAllPatients()) {
+            total += patient.getRecords(0L, Long.MAX_VALUE).size();
+        }
+        assertEquals(4, storage.getAllPatients().size());
+        assertEquals(WRITERS * RECORDS_PER_WRITER, total);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.data_management;
 import java.io.*;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.stream.Stream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
     /**
      * reads CSV files from folder, stores each record in DataStorage
+     * ".bin" files of {@link RecordCodec} frames, as the file output writes them in binary format, are read too,
+     * as are gzipped segments ("*.csv.gz", "*.bin.gz") of a rolling file output
+     * The ".idx" files a rolling file output keeps list the time and patient id range of every
+     * finished segment; {@link #readData(DataStorage, long, long, int, int)} uses them to skip
+     * segments that hold nothing in the requested ranges.
      */
     public class FileDataReader implements DataReader {
         private final Path directory;
@@ -19,28 +29,181 @@ import java.util.stream.Stream;
 
         @Override
         public void readData(DataStorage dataStorage) throws IOException {
-            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.csv")) {
+            readData(dataStorage, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        /**
+         * reads only the records in the given ranges, all bounds inclusive
+         * Indexed segments outside the ranges are not opened; files without an index entry,
+         * such as the segment still being written, are read and filtered record by record.
+         * @param dataStorage the storage where the records will be stored
+         * @param startTime the earliest timestamp to read
+         * @param endTime the latest timestamp to read
+         * @param minPatientId the lowest patient id to read
+         * @param maxPatientId the highest patient id to read
+         * @throws IOException if the directory cannot be listed
+         */
+        public void readData(DataStorage dataStorage, long startTime, long endTime,
+                             int minPatientId, int maxPatientId) throws IOException {
+            Map<String, SegmentRange> index = readIndex();
+            RecordFilter filter = new RecordFilter(startTime, endTime, minPatientId, maxPatientId);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{csv,csv.gz}")) {
+                for (Path file : files) {
+                    if (shouldRead(file, index, filter)) {
+                        readCsv(file, dataStorage, filter);
+                    }
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{bin,bin.gz}")) {
                 for (Path file : files) {
-                    try (Stream<String> lines = Files.lines(file)) {
-                        lines.forEach(line -> {
-                            try {
-                                String[] parts = line.split(",");
-                                if (parts.length != 4) return;
-
-                                long ts = Long.parseLong(parts[0].trim());
-                                int pid = Integer.parseInt(parts[1].trim());
-                                String type = parts[2].trim();
-                                double val = Double.parseDouble(parts[3].trim());
-
-                                dataStorage.addPatientData(pid, val, type, ts);
-                            } catch (Exception e) {
-                                System.err.println("Skipping malformed line: " + line);
-                            }
-                        });
+                    if (shouldRead(file, index, filter)) {
+                        readBinary(file, dataStorage, filter);
+                    }
+                }
+            }
+        }
+
+        /**
+         * a plain segment whose ".gz" already exists is skipped, it is only left over
+         * from an interrupted compression
+         */
+        private boolean shouldRead(Path file, Map<String, SegmentRange> index, RecordFilter filter) {
+            String name = file.getFileName().toString();
+            boolean compressed = name.endsWith(".gz");
+            if (!compressed && Files.exists(file.resolveSibling(name + ".gz"))) {
+                return false;
+            }
+            SegmentRange range = index.get(compressed ? name.substring(0, name.length() - 3) : name);
+            return range == null || filter.overlaps(range);
+        }
+
+        private void readCsv(Path file, DataStorage dataStorage, RecordFilter filter) throws IOException {
+            try (BufferedReader lines = new BufferedReader(
+                    new InputStreamReader(open(file), StandardCharsets.UTF_8), 1 << 16)) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    try {
+                        String[] parts = line.split(",");
+                        if (parts.length != 4) continue;
+
+                        long ts = Long.parseLong(parts[0].trim());
+                        int pid = Integer.parseInt(parts[1].trim());
+                        RecordType type = RecordType.tryOf(parts[2].trim());
+                        double val = Double.parseDouble(parts[3].trim());
+                        if (type == null) {
+                            System.err.println("Skipping line of a new record type, too many types: " + line);
+                            continue;
+                        }
+
+                        if (filter.accepts(pid, ts)) {
+                            dataStorage.addPatientData(pid, val, type, ts);
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Skipping malformed line: " + line);
                     }
                 }
             }
+        }
 
+        /**
+         * decodes a file of binary frames in chunks; a frame cut off at the end of the file is skipped
+         */
+        private void readBinary(Path file, DataStorage dataStorage, RecordFilter filter) throws IOException {
+            RecordCodec.StreamDecoder decoder = new RecordCodec.StreamDecoder(new RecordCodec.Handler() {
+                @Override
+                public void onValue(int patientId, long timestamp, RecordType type, double value) {
+                    if (filter.accepts(patientId, timestamp)) {
+                        dataStorage.addPatientData(patientId, value, type, timestamp);
+                    }
+                }
 
+                @Override
+                public void onText(int patientId, long timestamp, RecordType type, String text) {
+                    System.err.println("Skipping non-numeric reading in " + file + ": " + text);
+                }
+            });
+            byte[] chunk = new byte[1 << 16];
+            try (InputStream in = open(file)) {
+                int read;
+                while ((read = in.read(chunk)) >= 0) {
+                    decoder.feed(ByteBuffer.wrap(chunk, 0, read));
+                }
+            } catch (IOException e) {
+                System.err.println("Skipping rest of file " + file + ": " + e.getMessage());
+                return;
+            }
+            if (decoder.pendingBytes() > 0) {
+                System.err.println("Skipping incomplete frame at the end of " + file);
+            }
+        }
+
+        private static InputStream open(Path file) throws IOException {
+            InputStream in = Files.newInputStream(file);
+            return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+        }
+
+        /**
+         * loads the entries "segment,records,minTimestamp,maxTimestamp,minPatientId,maxPatientId"
+         * of all ".idx" files, keyed by the uncompressed segment name
+         */
+        private Map<String, SegmentRange> readIndex() throws IOException {
+            Map<String, SegmentRange> index = new HashMap<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.idx")) {
+                for (Path file : files) {
+                    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                    for (String line : lines) {
+                        String[] parts = line.split(",");
+                        if (parts.length != 6) {
+                            continue;
+                        }
+                        try {
+                            index.put(parts[0], new SegmentRange(
+                                    Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                                    Integer.parseInt(parts[4]), Integer.parseInt(parts[5])));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Skipping malformed index line in " + file + ": " + line);
+                        }
+                    }
+                }
+            }
+            return index;
+        }
+
+        private static class SegmentRange {
+            final long minTimestamp;
+            final long maxTimestamp;
+            final int minPatientId;
+            final int maxPatientId;
+
+            SegmentRange(long minTimestamp, long maxTimestamp, int minPatientId, int maxPatientId) {
+                this.minTimestamp = minTimestamp;
+                this.maxTimestamp = maxTimestamp;
+                this.minPatientId = minPatientId;
+                this.maxPatientId = maxPatientId;
+            }
+        }
+
+        private static class RecordFilter {
+            final long startTime;
+            final long endTime;
+            final int minPatientId;
+            final int maxPatientId;
+
+            RecordFilter(long startTime, long endTime, int minPatientId, int maxPatientId) {
+                this.startTime = startTime;
+                this.endTime = endTime;
+                this.minPatientId = minPatientId;
+                this.maxPatientId = maxPatientId;
+            }
+
+            boolean accepts(int patientId, long timestamp) {
+                return timestamp >= startTime && timestamp <= endTime
+                        && patientId >= minPatientId && patientId <= maxPatientId;
+            }
+
+            boolean overlaps(SegmentRange range) {
+                return range.minTimestamp <= endTime && range.maxTimestamp >= startTime
+                        && range.minPatientId <= maxPatientId && range.maxPatientId >= minPatientId;
+            }
         }
-    }
\ No newline at end of file
+    }
@@ -0,0 +1,102 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands batches of readings from a receiving thread, such as a network
+ * reader, to one thread that stores them in the {@link DataStorage}.
+ * The queue is bounded: when storage falls behind, {@link #put} blocks, which
+ * slows the sender down instead of buffering without limit.
+ */
+public class IngestQueue implements AutoCloseable {
+    private static final ReadingBatch END_OF_STREAM = new ReadingBatch(1);
+
+    private final DataStorage storage;
+    private final BlockingQueue<ReadingBatch> queue;
+    private final Thread storeThread;
+    private final LongAdder storedReadings = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Creates the queue and starts its storing thread.
+     *
+     * @param storage  the storage the readings are added to
+     * @param capacity the number of batches that can wait before {@link #put} blocks
+     */
+    public IngestQueue(DataStorage storage, int capacity) {
+        this.storage = storage;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.storeThread = new Thread(this::storeLoop, "ingest-queue");
+        this.storeThread.setDaemon(true);
+        this.storeThread.start();
+    }
+
+    /**
+     * Queues a batch for storing. The batch must not be changed afterwards.
+     *
+     * @param batch the readings to store
+     * @throws InterruptedException if interrupted while waiting for space
+     */
+    public void put(ReadingBatch batch) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Ingest queue is closed");
+        }
+        if (batch.size() > 0) {
+            queue.put(batch);
+        }
+    }
+
+    /**
+     * @return the number of readings stored so far
+     */
+    public long getStoredReadings() {
+        return storedReadings.sum();
+    }
+
+    /**
+     * Stores everything still queued and stops the storing thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            queue.put(END_OF_STREAM);
+            storeThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void storeLoop() {
+        List<ReadingBatch> batches = new ArrayList<>();
+        while (true) {
+            try {
+                batches.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batches);
+            for (ReadingBatch batch : batches) {
+                if (batch == END_OF_STREAM) {
+                    return;
+                }
+                try {
+                    batch.storeIn(storage);
+                    storedReadings.add(batch.size());
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to store readings: " + e.getMessage());
+                }
+            }
+            batches.clear();
+        }
+    }
+}
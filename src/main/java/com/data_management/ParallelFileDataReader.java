@@ -0,0 +1,463 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * reads the same CSV files as {@link FileDataReader} ("timestamp, patientId, type, value"
+ * per line) for large backfills
+ * Every file is memory-mapped and split at line boundaries into chunks that are
+ * parsed in parallel on a fork-join pool. Numbers are parsed straight from the
+ * mapped bytes, and the readings of a chunk are grouped per patient and type and
+ * added to the {@link DataStorage} in batches.
+ */
+public class ParallelFileDataReader implements DataReader {
+    private static final int BATCH_SIZE = 8192;
+    private static final int MAX_REPORTED_LINES = 10;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Path directory;
+    private final int parallelism;
+    private final long chunkSize;
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder rejectedLines = new LongAdder();
+    private final AtomicInteger reportedLines = new AtomicInteger();
+
+    /**
+     * creates a reader that uses all available processors and 64 MB chunks
+     * @param directoryPath the directory with the *.csv files
+     */
+    public ParallelFileDataReader(String directoryPath) {
+        this(directoryPath, Runtime.getRuntime().availableProcessors(), 64L << 20);
+    }
+
+    /**
+     * @param directoryPath the directory with the *.csv files
+     * @param parallelism   number of threads that parse chunks
+     * @param chunkSize     approximate number of bytes per chunk
+     */
+    public ParallelFileDataReader(String directoryPath, int parallelism, long chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("parallelism and chunkSize must be positive");
+        }
+        this.directory = Paths.get(directoryPath);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void onMessage(String message) {}
+
+    /**
+     * reads all *.csv files of the directory into the storage and prints the
+     * number of lines, lines per second and rejected lines
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if a file cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        linesRead.reset();
+        rejectedLines.reset();
+        reportedLines.set(0);
+        long start = System.nanoTime();
+
+        List<Callable<Void>> chunks = new ArrayList<>();
+        int fileCount = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.csv")) {
+            for (Path file : files) {
+                fileCount++;
+                addChunks(file, dataStorage, chunks);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> chunk : pool.invokeAll(chunks)) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + directory, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to read " + directory, e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        long lines = linesRead.sum();
+        System.out.printf("Read %d lines from %d files in %d ms (%.0f lines/sec), %d rejected%n",
+                lines, fileCount, elapsedNanos / 1_000_000, lines * 1e9 / elapsedNanos, rejectedLines.sum());
+    }
+
+    /**
+     * @return the number of lines read by the last {@link #readData} call, including rejected ones
+     */
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    /**
+     * @return the number of malformed lines skipped by the last {@link #readData} call
+     */
+    public long getRejectedLines() {
+        return rejectedLines.sum();
+    }
+
+    /**
+     * splits a file into chunks that each end right after a line break
+     */
+    private void addChunks(Path file, DataStorage dataStorage, List<Callable<Void>> chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkStart = 0;
+            // a single mapping cannot exceed 2 GB, leave room for the rest of the last line
+            long limit = Math.min(chunkSize, Integer.MAX_VALUE - (1 << 20));
+            while (chunkStart < size) {
+                long chunkEnd = chunkStart + limit >= size ? size : nextLineStart(channel, chunkStart + limit, size);
+                long from = chunkStart;
+                long to = chunkEnd;
+                chunks.add(() -> {
+                    readChunk(file, from, to, dataStorage);
+                    return null;
+                });
+                chunkStart = chunkEnd;
+            }
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void readChunk(Path file, long from, long to, DataStorage dataStorage) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        }
+        new ChunkParser(bytes, dataStorage).parse();
+    }
+
+    /**
+     * parses the lines of one chunk and collects the readings per patient and type
+     */
+    private class ChunkParser {
+        private final ByteBuffer bytes;
+        private final DataStorage dataStorage;
+        private final Map<Long, Batch> batches = new HashMap<>();
+        private final List<RecordType> types = new ArrayList<>();
+        private final List<byte[]> typeBytes = new ArrayList<>();
+        private long lines;
+        private long rejected;
+
+        // fields of the current line, set by the parse methods
+        private int pos;
+        private long parsedLong;
+        private double parsedDouble;
+
+        ChunkParser(ByteBuffer bytes, DataStorage dataStorage) {
+            this.bytes = bytes;
+            this.dataStorage = dataStorage;
+        }
+
+        void parse() {
+            int end = bytes.limit();
+            int lineStart = 0;
+            while (lineStart < end) {
+                int lineEnd = lineStart;
+                while (lineEnd < end && bytes.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && bytes.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                if (contentEnd > lineStart) {
+                    lines++;
+                    if (!parseLine(lineStart, contentEnd)) {
+                        rejected++;
+                        report(lineStart, contentEnd);
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            for (Map.Entry<Long, Batch> entry : batches.entrySet()) {
+                flush(entry.getKey(), entry.getValue());
+            }
+            linesRead.add(lines);
+            rejectedLines.add(rejected);
+        }
+
+        private boolean parseLine(int start, int end) {
+            pos = start;
+            if (!parseLong(end) || !expectComma(end)) {
+                return false;
+            }
+            long timestamp = parsedLong;
+            if (!parseLong(end) || parsedLong < Integer.MIN_VALUE || parsedLong > Integer.MAX_VALUE
+                    || !expectComma(end)) {
+                return false;
+            }
+            int patientId = (int) parsedLong;
+            int typeIndex = parseType(end);
+            if (typeIndex < 0 || !expectComma(end) || !parseDouble(end)) {
+                return false;
+            }
+            skipSpaces(end);
+            if (pos != end) {
+                return false;
+            }
+
+            long key = ((long) patientId << 32) | typeIndex;
+            Batch batch = batches.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                batches.put(key, batch);
+            }
+            batch.add(timestamp, parsedDouble);
+            if (batch.count == BATCH_SIZE) {
+                flush(key, batch);
+            }
+            return true;
+        }
+
+        private void flush(long key, Batch batch) {
+            if (batch.count > 0) {
+                dataStorage.addPatientData((int) (key >> 32), types.get((int) key),
+                        batch.timestamps, batch.values, batch.count);
+                batch.count = 0;
+            }
+        }
+
+        private void skipSpaces(int end) {
+            while (pos < end && (bytes.get(pos) == ' ' || bytes.get(pos) == '\t')) {
+                pos++;
+            }
+        }
+
+        private boolean expectComma(int end) {
+            skipSpaces(end);
+            if (pos < end && bytes.get(pos) == ',') {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean parseLong(int end) {
+            skipSpaces(end);
+            boolean negative = pos < end && bytes.get(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            int digitsStart = pos;
+            long value = 0;
+            while (pos < end) {
+                int digit = bytes.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (value > (Long.MAX_VALUE - digit) / 10) {
+                    return false;
+                }
+                value = value * 10 + digit;
+                pos++;
+            }
+            parsedLong = negative ? -value : value;
+            return pos > digitsStart;
+        }
+
+        /**
+         * parses the type up to the next comma and returns its index, reusing the
+         * String of a type already seen in this chunk
+         */
+        private int parseType(int end) {
+            skipSpaces(end);
+            int start = pos;
+            while (pos < end && bytes.get(pos) != ',') {
+                pos++;
+            }
+            int typeEnd = pos;
+            while (typeEnd > start && bytes.get(typeEnd - 1) == ' ') {
+                typeEnd--;
+            }
+            int length = typeEnd - start;
+            if (length == 0) {
+                return -1;
+            }
+            for (int i = 0; i < typeBytes.size(); i++) {
+                if (matches(typeBytes.get(i), start, length)) {
+                    return i;
+                }
+            }
+            byte[] type = new byte[length];
+            bytes.get(start, type);
+            RecordType recordType = RecordType.tryOf(new String(type, StandardCharsets.UTF_8));
+            if (recordType == null) {
+                return -1;
+            }
+            typeBytes.add(type);
+            types.add(recordType);
+            return types.size() - 1;
+        }
+
+        private boolean matches(byte[] type, int start, int length) {
+            if (type.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (type[i] != bytes.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * parses a decimal number; values with up to 15 significant digits and a small
+         * exponent are converted exactly without building a String, anything else
+         * goes through {@link Double#parseDouble}
+         */
+        private boolean parseDouble(int end) {
+            skipSpaces(end);
+            int start = pos;
+            boolean negative = false;
+            if (pos < end && (bytes.get(pos) == '-' || bytes.get(pos) == '+')) {
+                negative = bytes.get(pos) == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean seenPoint = false;
+            boolean fast = true;
+            while (pos < end) {
+                byte b = bytes.get(pos);
+                if (b >= '0' && b <= '9') {
+                    if (mantissa < 1_000_000_000_000_000L) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (seenPoint) {
+                            scale--;
+                        }
+                    } else {
+                        fast = false;
+                    }
+                    digits++;
+                } else if (b == '.' && !seenPoint) {
+                    seenPoint = true;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+            if (pos < end && (bytes.get(pos) == 'e' || bytes.get(pos) == 'E')) {
+                pos++;
+                boolean negativeExponent = pos < end && bytes.get(pos) == '-';
+                if (pos < end && (bytes.get(pos) == '-' || bytes.get(pos) == '+')) {
+                    pos++;
+                }
+                int exponentStart = pos;
+                int exponent = 0;
+                while (pos < end && bytes.get(pos) >= '0' && bytes.get(pos) <= '9') {
+                    exponent = Math.min(exponent * 10 + (bytes.get(pos) - '0'), 100_000);
+                    pos++;
+                }
+                if (pos == exponentStart) {
+                    return false;
+                }
+                scale += negativeExponent ? -exponent : exponent;
+            }
+            if (digits > 0 && fast && mantissa < (1L << 53) && scale >= -22 && scale <= 22) {
+                // both operands are exact doubles, so one multiplication or division rounds correctly
+                double value = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+                parsedDouble = negative ? -value : value;
+                return true;
+            }
+            // many digits, large exponents, NaN or Infinity
+            int fallbackEnd = pos;
+            while (fallbackEnd < end && bytes.get(fallbackEnd) != ',') {
+                fallbackEnd++;
+            }
+            byte[] text = new byte[fallbackEnd - start];
+            bytes.get(start, text);
+            try {
+                parsedDouble = Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+                pos = fallbackEnd;
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private void report(int start, int end) {
+            int reported = reportedLines.incrementAndGet();
+            if (reported <= MAX_REPORTED_LINES) {
+                byte[] line = new byte[end - start];
+                bytes.get(start, line);
+                System.err.println("Skipping malformed line: " + new String(line, StandardCharsets.UTF_8));
+            } else if (reported == MAX_REPORTED_LINES + 1) {
+                System.err.println("Further malformed lines are only counted");
+            }
+        }
+    }
+
+    /**
+     * readings of one patient and type waiting to be added to the storage
+     */
+    private static class Batch {
+        long[] timestamps = new long[64];
+        double[] values = new double[64];
+        int count;
+
+        void add(long timestamp, double value) {
+            if (count == timestamps.length) {
+                int capacity = Math.min(BATCH_SIZE, count * 2);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            timestamps[count] = timestamp;
+            values[count] = value;
+            count++;
+        }
+    }
+}
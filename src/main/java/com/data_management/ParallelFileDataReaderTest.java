@@ -0,0 +1,82 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelFileDataReaderTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * verifies that small chunks split at line boundaries read the same records as FileDataReader
+     * purpose: no line may be lost or read twice where a file is split into chunks
+     */
+    @Test
+    void testChunkedReadMatchesFileDataReader() throws IOException {
+        StringBuilder a = new StringBuilder();
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            a.append(1000 + i).append(", ").append(i % 7).append(", ECG, ").append(i * 0.125 - 3).append('\n');
+            b.append(5000 - i).append(",").append(i % 3).append(",Saturation,").append(90 + i % 10).append("\r\n");
+        }
+        Files.writeString(tempDir.resolve("a.csv"), a);
+        Files.writeString(tempDir.resolve("b.csv"), b);
+
+        DataStorage expected = new DataStorage();
+        new FileDataReader(tempDir.toString()).readData(expected);
+        DataStorage actual = new DataStorage();
+        ParallelFileDataReader reader = new ParallelFileDataReader(tempDir.toString(), 3, 1000);
+        reader.readData(actual);
+
+        assertEquals(4000, reader.getLinesRead());
+        assertEquals(0, reader.getRejectedLines());
+        for (int patientId = 0; patientId < 7; patientId++) {
+            List<PatientRecord> expectedRecords = expected.getRecords(patientId, 0L, Long.MAX_VALUE);
+            List<PatientRecord> actualRecords = actual.getRecords(patientId, 0L, Long.MAX_VALUE);
+            assertEquals(expectedRecords.size(), actualRecords.size());
+            for (int i = 0; i < expectedRecords.size(); i++) {
+                assertEquals(expectedRecords.get(i).getTimestamp(), actualRecords.get(i).getTimestamp());
+                assertEquals(expectedRecords.get(i).getRecordType(), actualRecords.get(i).getRecordType());
+                assertEquals(expectedRecords.get(i).getMeasurementValue(), actualRecords.get(i).getMeasurementValue());
+            }
+        }
+    }
+
+    /**
+     * verifies number parsing edge cases and that malformed lines are counted, not stored
+     */
+    @Test
+    void testParsesNumbersAndRejectsMalformedLines() throws IOException {
+        Files.writeString(tempDir.resolve("mixed.csv"), String.join("\n",
+                "1, 1, HR, 0.1",
+                "2, 1, HR, -7.25e2",
+                "3, 1, HR, 12345678901234567890.5",
+                "4, 1, HR, 1e-30",
+                "5, 1, HR, 97%",
+                "6, 1, HR",
+                "x, 1, HR, 1.0",
+                "7, 99999999999, HR, 1.0",
+                "8, 1, , 1.0",
+                ""));
+
+        DataStorage storage = new DataStorage();
+        ParallelFileDataReader reader = new ParallelFileDataReader(tempDir.toString());
+        reader.readData(storage);
+
+        assertEquals(9, reader.getLinesRead());
+        assertEquals(5, reader.getRejectedLines());
+        List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+        assertEquals(4, records.size());
+        assertEquals(0.1, records.get(0).getMeasurementValue());
+        assertEquals(-725.0, records.get(1).getMeasurementValue());
+        assertEquals(12345678901234567890.5, records.get(2).getMeasurementValue());
+        assertEquals(1e-30, records.get(3).getMeasurementValue());
+    }
+}
@@ -1,28 +1,58 @@
 package com.data_management;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * Records are kept in one time-sorted {@link RecordSeries} per record type,
+ * found by the {@link RecordType} instance without hashing the type name.
+ * Records may be added and read from different threads; each series has its
+ * own lock, so there is no lock shared by all types of a patient.
+ * Older readings may live in snapshot {@link SegmentFile}s instead of the
+ * in-memory series, and readings past the retention window only as rollups;
+ * queries merge all of them.
  */
 public class Patient {
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    // series of the types the patient has readings of; replaced on write so readers need no lock
+    private volatile Map<RecordType, RecordSeries> seriesByType;
+    // series in the order their types were first seen; replaced on write so readers need no lock
+    private volatile RecordSeries[] seriesInOrder;
+    // snapshot segments of this patient, replaced on write
+    private volatile SegmentFile[] segments = new SegmentFile[0];
+    // write-ahead log position covered by the segments, per record type
+    private final Map<String, Long> persistedPositions = new ConcurrentHashMap<>();
+    // queries hold the read lock so they never see readings both in a new segment and in memory
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    // snapshots and retention run one at a time, so no reading ends up both in a new segment and in a rollup
+    private final Object maintenanceLock = new Object();
+    // segments detached by retention, deleted once a newer segment holds their rollups; guarded by maintenanceLock
+    private final List<SegmentFile> retiredSegments = new ArrayList<>();
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.seriesByType = Map.of();
+        this.seriesInOrder = new RecordSeries[0];
     }
 
     /**
@@ -37,27 +67,518 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordType.of(recordType), timestamp, null);
+    }
+
+    /**
+     * Adds a new record of a registered type to this patient's records.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordType       the type of record
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, RecordType recordType, long timestamp) {
+        addRecord(measurementValue, recordType, timestamp, null);
+    }
+
+    /**
+     * Adds a record, logging it to the write-ahead log first if one is given.
+     */
+    void addRecord(double measurementValue, RecordType recordType, long timestamp, WriteAheadLog log) {
+        RecordSeries series = seriesFor(recordType);
+        if (log == null) {
+            series.add(timestamp, measurementValue);
+        } else {
+            series.addLogged(patientId, timestamp, measurementValue, log);
+        }
+    }
+
+    /**
+     * Adds a batch of readings of one record type to this patient's records.
+     *
+     * @param recordType the type of the readings
+     * @param timestamps the times of the readings; may be reordered
+     * @param values     the measured values
+     * @param count      the number of readings in the arrays to add
+     */
+    public void addRecords(String recordType, long[] timestamps, double[] values, int count) {
+        addRecords(RecordType.of(recordType), timestamps, values, count, null);
+    }
+
+    /**
+     * Adds a batch of readings, logging them to the write-ahead log first if one is given.
+     */
+    void addRecords(RecordType recordType, long[] timestamps, double[] values, int count, WriteAheadLog log) {
+        RecordSeries series = seriesFor(recordType);
+        if (log == null) {
+            series.addAll(timestamps, values, count);
+        } else {
+            series.addAllLogged(patientId, timestamps, values, count, log);
+        }
+    }
+
+    /**
+     * Adds readings replayed from the write-ahead log up to the given position.
+     */
+    void addReplayedRecords(String recordType, long[] timestamps, double[] values, int count, long position) {
+        RecordSeries series = seriesFor(RecordType.of(recordType));
+        series.addAllReplayed(timestamps, values, count, position);
+    }
+
+    /**
+     * Writes the readings held in memory and the rollups made since the last
+     * snapshot to a new segment file and, once it is complete, serves the
+     * readings from the file instead of the heap. Segments detached by retention
+     * are deleted then, because their rollups are now on disk.
+     *
+     * @param file the segment file to create
+     * @return the new segment, or null if there was nothing to write
+     * @throws IOException if the segment cannot be written
+     */
+    SegmentFile writeSnapshot(Path file) throws IOException {
+        synchronized (maintenanceLock) {
+            return writeSnapshotLocked(file);
+        }
+    }
+
+    private SegmentFile writeSnapshotLocked(Path file) throws IOException {
+        List<RecordSeries> copiedSeries = new ArrayList<>();
+        List<RecordSlice> slices = new ArrayList<>();
+        List<AggregateSlice> rollups = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        for (RecordSeries series : seriesInOrder) {
+            RecordSeries.SnapshotCopy copy = series.copyForSnapshot();
+            if (!copy.isEmpty()) {
+                copiedSeries.add(series);
+                slices.add(copy.readings);
+                rollups.addAll(copy.rollups);
+                positions.add(copy.loggedPosition);
+            }
+        }
+        if (slices.isEmpty() && retiredSegments.isEmpty()) {
+            return null;
+        }
+        long[] loggedPositions = positions.stream().mapToLong(Long::longValue).toArray();
+        List<Path> absorbed = new ArrayList<>();
+        for (SegmentFile retired : retiredSegments) {
+            absorbed.add(retired.getPath());
+        }
+        SegmentFile segment = SegmentFile.write(file, patientId, slices, loggedPositions, rollups, absorbed);
+
+        segmentLock.writeLock().lock();
+        try {
+            for (int i = 0; i < copiedSeries.size(); i++) {
+                copiedSeries.get(i).removeAll(slices.get(i));
+                copiedSeries.get(i).markRollupsPersisted();
+            }
+            attachSegment(segment);
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        for (Path retired : absorbed) {
+            try {
+                Files.deleteIfExists(retired);
+            } catch (IOException e) {
+                System.err.println("Error deleting expired segment " + retired + ": " + e.getMessage());
+            }
+        }
+        retiredSegments.clear();
+        return segment;
+    }
+
+    /**
+     * Merges the newest segments into one while the segment before them holds
+     * no more readings than they do together. Snapshots of similar size thus
+     * merge like a binary counter: the number of segments grows with the
+     * logarithm of the number of snapshots, and every reading is rewritten
+     * only that many times.
+     *
+     * @param fileFor names the merged segment file for the segments it replaces
+     * @return the replaced segments, whose files can be deleted; empty if nothing was merged
+     * @throws IOException if the merged segment cannot be written; the segments stay as they were
+     */
+    List<SegmentFile> compactSegments(Function<List<SegmentFile>, Path> fileFor) throws IOException {
+        synchronized (maintenanceLock) {
+            SegmentFile[] current = segments;
+            // a merged segment covers the sequences of its inputs, so it must not cover a segment still retiring
+            if (current.length < 2 || !retiredSegments.isEmpty()) {
+                return List.of();
+            }
+            int first = current.length - 1;
+            long readings = current[first].getReadingCount();
+            while (first > 0 && current[first - 1].getReadingCount() <= readings) {
+                first--;
+                readings += current[first].getReadingCount();
+            }
+            if (first == current.length - 1) {
+                return List.of();
+            }
+            List<SegmentFile> inputs = List.of(Arrays.copyOfRange(current, first, current.length));
+            SegmentFile merged = SegmentFile.merge(fileFor.apply(inputs), inputs);
+
+            segmentLock.writeLock().lock();
+            try {
+                // snapshots only append, and they hold the maintenance lock too, so the inputs are still the tail
+                SegmentFile[] updated = Arrays.copyOf(segments, first + 1);
+                updated[first] = merged;
+                segments = updated;
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+            return inputs;
+        }
+    }
+
+    /**
+     * Rolls up the readings older than the policy's raw window: readings in memory
+     * are moved into the rollups, and segments that only hold such readings are
+     * rolled up and detached. Rollup buckets past their own window are dropped.
+     * The rollups stay on the heap until the next snapshot writes them, so a
+     * detached segment is only deleted by that snapshot.
+     *
+     * @param policy the retention policy
+     * @param now    the current time in milliseconds since UNIX epoch
+     */
+    void applyRetention(RetentionPolicy policy, long now) {
+        long cutoff = policy.rawCutoff(now);
+        synchronized (maintenanceLock) {
+            List<SegmentFile> expired = new ArrayList<>();
+            List<RecordSlice> expiredReadings = new ArrayList<>();
+            List<AggregateSlice> expiredRollups = new ArrayList<>();
+            for (SegmentFile segment : segments) {
+                // a segment holding only rollups has nothing to roll up; compaction keeps their number small
+                if (segment.getMaxTimestamp() < cutoff && segment.getReadingCount() > 0) {
+                    expired.add(segment);
+                    for (String recordType : segment.getRecordTypes()) {
+                        expiredReadings.add(segment.slice(recordType, Long.MIN_VALUE, Long.MAX_VALUE));
+                    }
+                    expiredRollups.addAll(segment.getRollups());
+                }
+            }
+            segmentLock.writeLock().lock();
+            try {
+                for (RecordSlice readings : expiredReadings) {
+                    RecordSeries series = seriesFor(RecordType.of(readings.getRecordType()));
+                    series.dropExpiredRollups(policy, now);
+                    series.rollUp(readings);
+                }
+                for (AggregateSlice buckets : expiredRollups) {
+                    seriesFor(RecordType.of(buckets.getRecordType())).unpersistRollups(buckets);
+                }
+                if (!expired.isEmpty()) {
+                    List<SegmentFile> kept = new ArrayList<>(Arrays.asList(segments));
+                    kept.removeAll(expired);
+                    segments = kept.toArray(new SegmentFile[0]);
+                }
+                for (RecordSeries series : seriesInOrder) {
+                    series.dropExpiredRollups(policy, now);
+                    series.rollUpBefore(cutoff);
+                }
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+            retiredSegments.addAll(expired);
+        }
+    }
+
+    /**
+     * Adds a segment written earlier, e.g. when the storage is opened, along with its rollups.
+     */
+    void addSegment(SegmentFile segment) {
+        segmentLock.writeLock().lock();
+        try {
+            attachSegment(segment);
+            for (AggregateSlice buckets : segment.getRollups()) {
+                seriesFor(RecordType.of(buckets.getRecordType())).restoreRollups(buckets);
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    private void attachSegment(SegmentFile segment) {
+        SegmentFile[] current = segments;
+        SegmentFile[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = segment;
+        segments = updated;
+        for (String recordType : segment.getRecordTypes()) {
+            persistedPositions.merge(recordType, segment.getLoggedPosition(recordType), Math::max);
+        }
+    }
+
+    /**
+     * @return the write-ahead log position up to which readings of the type are in segments, -1 if none
+     */
+    long getPersistedPosition(String recordType) {
+        return persistedPositions.getOrDefault(recordType, -1L);
+    }
+
+    private RecordSeries seriesOf(RecordType recordType) {
+        return seriesByType.get(recordType);
+    }
+
+    private RecordSeries seriesOf(String recordType) {
+        RecordType type = RecordType.find(recordType);
+        return type == null ? null : seriesOf(type);
+    }
+
+    private RecordSeries seriesFor(RecordType recordType) {
+        RecordSeries series = seriesOf(recordType);
+        return series != null ? series : addSeries(recordType);
+    }
+
+    private synchronized RecordSeries addSeries(RecordType recordType) {
+        RecordSeries series = seriesOf(recordType);
+        if (series == null) {
+            series = new RecordSeries(recordType);
+            RecordSeries[] current = seriesInOrder;
+            RecordSeries[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = series;
+            // sized by the types of this patient only, not by every type ever registered
+            Map<RecordType, RecordSeries> byType = new HashMap<>(seriesByType);
+            byType.put(recordType, series);
+            // publish the lookup map last, readers find the series through it
+            seriesInOrder = updated;
+            seriesByType = Map.copyOf(byType);
+        }
+        return series;
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
      * The method filters records based on the start and end times provided.
+     * Readings that have been rolled up are returned as one record per rollup
+     * bucket, with the bucket's mean at the bucket's start.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since UNIX epoch
      * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     *         range, in time order
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        // TODO Implement and test this method
-        // Implement and test this method
-        return patientRecords.stream()
-                .filter(record -> record.getTimestamp() >= startTime && record.getTimestamp() <= endTime)
-                .collect(Collectors.toList());
+        List<RecordSlice> slices = new ArrayList<>();
+        segmentLock.readLock().lock();
+        try {
+            for (SegmentFile segment : segments) {
+                segment.addSlices(startTime, endTime, slices);
+            }
+            for (RecordSeries series : seriesInOrder) {
+                RecordSlice slice = series.slice(startTime, endTime);
+                if (slice.size() > 0) {
+                    slices.add(slice);
+                }
+                RecordSlice rolledUp = series.rollupMeans(startTime, endTime);
+                if (rolledUp.size() > 0) {
+                    slices.add(rolledUp);
+                }
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        int total = 0;
+        for (RecordSlice slice : slices) {
+            total += slice.size();
+        }
+        List<PatientRecord> records = new ArrayList<>(total);
+        if (slices.size() == 1) {
+            slices.get(0).appendTo(patientId, records);
+            return records;
+        }
+        // k-way merge of the slices; k is the number of record types times the segments in range, so it stays small
+        int[] cursors = new int[slices.size()];
+        RecordType[] types = new RecordType[slices.size()];
+        for (int s = 0; s < types.length; s++) {
+            types[s] = RecordType.of(slices.get(s).getRecordType());
+        }
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            long nextTimestamp = Long.MAX_VALUE;
+            for (int s = 0; s < slices.size(); s++) {
+                RecordSlice slice = slices.get(s);
+                if (cursors[s] < slice.size() && (next < 0 || slice.getTimestamp(cursors[s]) < nextTimestamp)) {
+                    next = s;
+                    nextTimestamp = slice.getTimestamp(cursors[s]);
+                }
+            }
+            RecordSlice slice = slices.get(next);
+            int index = cursors[next]++;
+            records.add(new PatientRecord(patientId, slice.getValue(index), types[next], nextTimestamp));
+        }
+        return records;
+    }
+
+    /**
+     * Retrieves the records of a single type that fall within a specified time range.
+     *
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a list of PatientRecord objects of the given type, in time order
+     */
+    public List<PatientRecord> getRecords(String recordType, long startTime, long endTime) {
+        List<PatientRecord> records = new ArrayList<>();
+        getSlice(recordType, startTime, endTime).appendTo(patientId, records);
+        return records;
+    }
+
+    /**
+     * Retrieves the readings of a single type within a time range as parallel
+     * timestamp and value arrays, without creating a record object per reading.
+     * Rolled-up readings are included as one reading per bucket, like in
+     * {@link #getRecords(long, long)}.
+     *
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the readings of the given type, in time order
+     */
+    public RecordSlice getSlice(String recordType, long startTime, long endTime) {
+        segmentLock.readLock().lock();
+        try {
+            return slice(recordType, seriesOf(recordType), startTime, endTime, true);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the readings of a registered type within a time range, like
+     * {@link #getSlice(String, long, long)}.
+     *
+     * @param recordType the type of record
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return the readings of the given type, in time order
+     */
+    public RecordSlice getSlice(RecordType recordType, long startTime, long endTime) {
+        segmentLock.readLock().lock();
+        try {
+            return slice(recordType.getName(), seriesOf(recordType), startTime, endTime, true);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a cursor over the readings of a single type within a time range.
+     * Readings in memory are decompressed while the cursor advances, so
+     * strategies can scan long ranges without copying them first.
+     *
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor over the readings of the given type, in time order
+     */
+    public ReadingCursor getCursor(String recordType, long startTime, long endTime) {
+        return cursor(recordType, seriesOf(recordType), startTime, endTime);
+    }
+
+    /**
+     * Returns a cursor over the readings of a registered type within a time
+     * range, like {@link #getCursor(String, long, long)}.
+     *
+     * @param recordType the type of record
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor over the readings of the given type, in time order
+     */
+    public ReadingCursor getCursor(RecordType recordType, long startTime, long endTime) {
+        return cursor(recordType.getName(), seriesOf(recordType), startTime, endTime);
+    }
+
+    private ReadingCursor cursor(String recordType, RecordSeries series, long startTime, long endTime) {
+        segmentLock.readLock().lock();
+        try {
+            List<RecordSlice> slices = new ArrayList<>(3);
+            for (SegmentFile segment : segments) {
+                RecordSlice slice = segment.slice(recordType, startTime, endTime);
+                if (slice.size() > 0) {
+                    slices.add(slice);
+                }
+            }
+            if (series == null) {
+                return slices.isEmpty() ? RecordSlice.empty(recordType).cursor()
+                        : RecordSlice.merge(recordType, slices).cursor();
+            }
+            RecordSlice rolledUp = series.rollupMeans(startTime, endTime);
+            if (slices.isEmpty() && rolledUp.size() == 0) {
+                return series.cursor(startTime, endTime);
+            }
+            // segments and rollups are merged up front; they are not held compressed in memory anyway
+            if (rolledUp.size() > 0) {
+                slices.add(rolledUp);
+            }
+            slices.add(series.slice(startTime, endTime));
+            return RecordSlice.merge(recordType, slices).cursor();
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aggregates the readings of a single type per bucket of the given resolution:
+     * minimum, maximum, mean and count. Raw readings and rollups are combined,
+     * so the result does not depend on which readings have been rolled up yet.
+     * Buckets the retention policy no longer keeps at this resolution are
+     * missing; a coarser resolution still has them.
+     *
+     * @param recordType the type of record, e.g. "ECG"
+     * @param startTime  the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @param resolution the bucket width
+     * @return every non-empty bucket that overlaps the range, in time order
+     */
+    public AggregateSlice getAggregates(String recordType, long startTime, long endTime,
+                                        RetentionPolicy.Resolution resolution) {
+        long from = resolution.bucketStart(startTime);
+        long to = endTime > Long.MAX_VALUE - resolution.getMillis()
+                ? Long.MAX_VALUE : resolution.bucketStart(endTime) + resolution.getMillis() - 1;
+        RollupSeries buckets = new RollupSeries(resolution);
+        segmentLock.readLock().lock();
+        try {
+            RecordSeries series = seriesOf(recordType);
+            RecordSlice raw = slice(recordType, series, from, to, false);
+            for (int i = 0; i < raw.size(); i++) {
+                buckets.add(raw.getTimestamp(i), raw.getValue(i));
+            }
+            if (series != null) {
+                buckets.addAll(series.rollupSlice(resolution, from, to));
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        return buckets.slice(recordType, from, to);
+    }
+
+    // callers hold the segment read lock
+    private RecordSlice slice(String recordType, RecordSeries series, long startTime, long endTime,
+                              boolean withRollups) {
+        List<RecordSlice> slices = new ArrayList<>(3);
+        for (SegmentFile segment : segments) {
+            RecordSlice slice = segment.slice(recordType, startTime, endTime);
+            if (slice.size() > 0) {
+                slices.add(slice);
+            }
+        }
+        if (series != null) {
+            RecordSlice slice = series.slice(startTime, endTime);
+            if (slice.size() > 0) {
+                slices.add(slice);
+            }
+            if (withRollups) {
+                RecordSlice rolledUp = series.rollupMeans(startTime, endTime);
+                if (rolledUp.size() > 0) {
+                    slices.add(rolledUp);
+                }
+            }
+        }
+        if (slices.isEmpty()) {
+            return RecordSlice.empty(recordType);
+        }
+        return slices.size() == 1 ? slices.get(0) : RecordSlice.merge(recordType, slices);
     }
 
     // You might want a getter for patientId if not already present
@@ -0,0 +1,32 @@
+package com.data_management;
+
+/**
+ * Interface for components that need to see every reading as it is added to
+ * the {@link DataStorage}, instead of querying the stored history later.
+ */
+public interface PatientDataListener {
+    /**
+     * Called after a reading has been stored. Runs on the thread that added
+     * the reading, so implementations should return quickly.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record, e.g. "ECG"
+     * @param timestamp        the time of the reading in milliseconds since the Unix epoch
+     */
+    void onPatientData(int patientId, double measurementValue, String recordType, long timestamp);
+
+    /**
+     * Called after a reading has been stored, with the registered record type.
+     * {@link DataStorage} calls this variant; listeners that dispatch on the type
+     * can override it to avoid comparing names.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record
+     * @param timestamp        the time of the reading in milliseconds since the Unix epoch
+     */
+    default void onPatientData(int patientId, double measurementValue, RecordType recordType, long timestamp) {
+        onPatientData(patientId, measurementValue, recordType.getName(), timestamp);
+    }
+}
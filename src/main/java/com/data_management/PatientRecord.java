@@ -10,7 +10,7 @@ package com.data_management;
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private RecordType recordType; // Example: ECG, blood pressure, etc.
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -25,6 +25,19 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, RecordType.of(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record of a registered record type.
+     *
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param recordType       the type of measurement
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, RecordType recordType, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
         this.recordType = recordType;
@@ -61,6 +74,15 @@ public class PatientRecord {
      * @return the record type
      */
     public String getRecordType() {
+        return recordType.getName();
+    }
+
+    /**
+     * Returns the registered type of this record, which can be compared with {@code ==}.
+     *
+     * @return the record type
+     */
+    public RecordType getType() {
         return recordType;
     }
 
@@ -0,0 +1,125 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A growable batch of readings for any patients and record types, kept in
+ * parallel arrays so a reader can collect the records of one message without
+ * creating an object per reading.
+ */
+public class ReadingBatch {
+    private int[] patientIds;
+    private RecordType[] recordTypes;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     *
+     * @param initialCapacity the number of readings the batch holds before it grows
+     */
+    public ReadingBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.patientIds = new int[capacity];
+        this.recordTypes = new RecordType[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Adds a reading to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record, e.g. "ECG"
+     * @param timestamp        the time of the reading in milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, String recordType, long timestamp) {
+        add(patientId, measurementValue, RecordType.of(recordType), timestamp);
+    }
+
+    /**
+     * Adds a reading of a registered record type to the batch.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the reading
+     * @param recordType       the type of record
+     * @param timestamp        the time of the reading in milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, RecordType recordType, long timestamp) {
+        if (size == patientIds.length) {
+            int capacity = size * 2;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            recordTypes = Arrays.copyOf(recordTypes, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        recordTypes[size] = recordType;
+        timestamps[size] = timestamp;
+        values[size] = measurementValue;
+        size++;
+    }
+
+    /**
+     * Stores every reading of the batch, in batch order.
+     *
+     * @param storage the storage to add the readings to
+     */
+    public void storeIn(DataStorage storage) {
+        for (int i = 0; i < size; i++) {
+            storage.addPatientData(patientIds[i], values[i], recordTypes[i], timestamps[i]);
+        }
+    }
+
+    /**
+     * @return the number of readings in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all readings so the batch can be reused.
+     */
+    public void clear() {
+        Arrays.fill(recordTypes, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return the patient ID of the reading at the given index
+     */
+    public int getPatientId(int index) {
+        return patientIds[index];
+    }
+
+    /**
+     * @return the record type of the reading at the given index
+     */
+    public String getRecordType(int index) {
+        return recordTypes[index].getName();
+    }
+
+    /**
+     * @return the registered record type of the reading at the given index
+     */
+    public RecordType getType(int index) {
+        return recordTypes[index];
+    }
+
+    /**
+     * @return the timestamp of the reading at the given index
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @return the measured value of the reading at the given index
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+}
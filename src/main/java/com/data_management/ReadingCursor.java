@@ -0,0 +1,26 @@
+package com.data_management;
+
+/**
+ * Iterates over readings of one record type in time order without creating
+ * an object per reading. Compressed readings are decoded as the cursor
+ * advances, so a long range never has to be decompressed at once.
+ * Call {@link #next()} before reading the first timestamp and value.
+ */
+public interface ReadingCursor {
+    /**
+     * Moves to the next reading.
+     *
+     * @return false if there are no more readings
+     */
+    boolean next();
+
+    /**
+     * @return the timestamp of the current reading in milliseconds since UNIX epoch
+     */
+    long getTimestamp();
+
+    /**
+     * @return the value of the current reading
+     */
+    double getValue();
+}
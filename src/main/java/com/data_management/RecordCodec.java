@@ -0,0 +1,430 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary format for readings, shared by the simulator's outputs and
+ * the readers. Readings travel in length-prefixed frames:
+ * <pre>
+ * frame   = varint bodyLength, entry*
+ * entry   = 0, varint typeId, varint nameLength, name           (defines a type for this frame)
+ *         | 1, varint typeId, varint patientId, zigzag delta, 8-byte IEEE double
+ *         | 2, varint typeId, varint patientId, zigzag delta, varint textLength, text
+ * </pre>
+ * The timestamp delta is taken from the previous reading of the frame, the
+ * first from 0. The simulator's record types have fixed ids, any other type is
+ * defined in each frame that uses it; names and text are UTF-8. Every frame can
+ * be decoded on its own, so a client may start reading at any frame.
+ * Values are sent as raw doubles, so the consumer does not parse text; data that
+ * is not a number, such as an alert's "triggered", is sent as text. A trailing
+ * "%" is dropped, so saturation readings like "97.0%" arrive as 97.0.
+ */
+public final class RecordCodec {
+    private static final byte TYPE_ENTRY = 0;
+    private static final byte VALUE_ENTRY = 1;
+    private static final byte TEXT_ENTRY = 2;
+
+    // part of the format, append new names only
+    private static final String[] FIXED_TYPE_NAMES = {
+            "ECG", "Saturation", "SystolicPressure", "DiastolicPressure", "Alert",
+            "Cholesterol", "WhiteBloodCells", "RedBloodCells", "BloodSaturation"
+    };
+    private static final Map<String, Integer> FIXED_TYPE_IDS = new HashMap<>();
+    private static final RecordType[] FIXED_TYPES = new RecordType[FIXED_TYPE_NAMES.length];
+
+    static {
+        for (int id = 0; id < FIXED_TYPE_NAMES.length; id++) {
+            FIXED_TYPE_IDS.put(FIXED_TYPE_NAMES[id], id);
+            FIXED_TYPES[id] = RecordType.of(FIXED_TYPE_NAMES[id]);
+        }
+    }
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Receives the readings of decoded frames.
+     */
+    public interface Handler {
+        /**
+         * Called for a numeric reading.
+         *
+         * @param patientId the unique identifier of the patient
+         * @param timestamp the time of the reading in milliseconds since the Unix epoch
+         * @param type      the type of the reading
+         * @param value     the value of the reading
+         */
+        void onValue(int patientId, long timestamp, RecordType type, double value);
+
+        /**
+         * Called for a reading whose data is not a number. Ignored by default.
+         *
+         * @param patientId the unique identifier of the patient
+         * @param timestamp the time of the reading in milliseconds since the Unix epoch
+         * @param type      the type of the reading
+         * @param text      the data of the reading
+         */
+        default void onText(int patientId, long timestamp, RecordType type, String text) {
+        }
+    }
+
+    /**
+     * Collects readings into one frame. Not thread-safe.
+     */
+    public static final class Encoder {
+        private byte[] body = new byte[256];
+        private int size;
+        private int recordCount;
+        private long lastTimestamp;
+        // types defined in the current frame, with ids after the fixed ones
+        private final Map<String, Integer> frameTypeIds = new HashMap<>();
+
+        /**
+         * Adds a reading whose data is text as the outputs receive it. Numbers,
+         * optionally followed by "%", are stored as values, anything else as text.
+         *
+         * @param patientId the unique identifier of the patient
+         * @param timestamp the time of the reading in milliseconds since the Unix epoch
+         * @param label     the type of the reading
+         * @param data      the data of the reading
+         */
+        public void add(int patientId, long timestamp, String label, String data) {
+            double value = parseValue(data);
+            if (!Double.isNaN(value) || data.trim().equals("NaN")) {
+                add(patientId, timestamp, label, value);
+                return;
+            }
+            int typeId = typeId(label);
+            byte[] text = data.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(1 + 5 + 5 + 10 + 5 + text.length);
+            body[size++] = TEXT_ENTRY;
+            putReadingHeader(typeId, patientId, timestamp);
+            putVarLong(text.length);
+            System.arraycopy(text, 0, body, size, text.length);
+            size += text.length;
+            recordCount++;
+        }
+
+        /**
+         * Adds a numeric reading.
+         *
+         * @param patientId the unique identifier of the patient
+         * @param timestamp the time of the reading in milliseconds since the Unix epoch
+         * @param label     the type of the reading
+         * @param value     the value of the reading
+         */
+        public void add(int patientId, long timestamp, String label, double value) {
+            int typeId = typeId(label);
+            ensureCapacity(1 + 5 + 5 + 10 + Double.BYTES);
+            body[size++] = VALUE_ENTRY;
+            putReadingHeader(typeId, patientId, timestamp);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                body[size++] = (byte) (bits >>> shift);
+            }
+            recordCount++;
+        }
+
+        /**
+         * @return the number of readings in the current frame
+         */
+        public int recordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return the length of the current frame including its length prefix
+         */
+        public int frameLength() {
+            return varLongLength(size) + size;
+        }
+
+        /**
+         * Writes the current frame and starts a new one.
+         *
+         * @param out the buffer to write to, with at least {@link #frameLength()} bytes remaining
+         */
+        public void writeFrameTo(ByteBuffer out) {
+            long length = size;
+            while ((length & ~0x7FL) != 0) {
+                out.put((byte) ((length & 0x7F) | 0x80));
+                length >>>= 7;
+            }
+            out.put((byte) length);
+            out.put(body, 0, size);
+            reset();
+        }
+
+        /**
+         * Returns the current frame and starts a new one.
+         *
+         * @return the frame including its length prefix
+         */
+        public byte[] finishFrame() {
+            ByteBuffer frame = ByteBuffer.allocate(frameLength());
+            writeFrameTo(frame);
+            return frame.array();
+        }
+
+        /**
+         * Discards the current frame.
+         */
+        public void reset() {
+            size = 0;
+            recordCount = 0;
+            lastTimestamp = 0;
+            frameTypeIds.clear();
+            if (body.length > 1 << 20) {
+                body = new byte[256];
+            }
+        }
+
+        private int typeId(String label) {
+            Integer id = FIXED_TYPE_IDS.get(label);
+            if (id == null) {
+                id = frameTypeIds.get(label);
+            }
+            if (id == null) {
+                id = FIXED_TYPE_NAMES.length + frameTypeIds.size();
+                frameTypeIds.put(label, id);
+                byte[] name = label.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(1 + 5 + 5 + name.length);
+                body[size++] = TYPE_ENTRY;
+                putVarLong(id);
+                putVarLong(name.length);
+                System.arraycopy(name, 0, body, size, name.length);
+                size += name.length;
+            }
+            return id;
+        }
+
+        private void putReadingHeader(int typeId, int patientId, long timestamp) {
+            putVarLong(typeId);
+            putVarLong(patientId & 0xFFFFFFFFL);
+            long delta = timestamp - lastTimestamp;
+            putVarLong((delta << 1) ^ (delta >> 63));
+            lastTimestamp = timestamp;
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                body[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            body[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (size + bytes > body.length) {
+                body = Arrays.copyOf(body, Math.max(body.length * 2, size + bytes));
+            }
+        }
+    }
+
+    /**
+     * Decodes frames that arrive in pieces, such as from a socket or a file read
+     * in chunks. Not thread-safe.
+     */
+    public static final class StreamDecoder {
+        private final Handler handler;
+        private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+
+        /**
+         * @param handler receives the decoded readings
+         */
+        public StreamDecoder(Handler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Decodes every frame that is complete with the given bytes and keeps the rest.
+         *
+         * @param bytes the next bytes of the stream
+         * @return the number of decoded readings
+         * @throws IOException if a frame is malformed
+         */
+        public int feed(ByteBuffer bytes) throws IOException {
+            if (pending.remaining() < bytes.remaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                        pending.position() + bytes.remaining()));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.put(bytes);
+            pending.flip();
+            int readings = 0;
+            try {
+                while (pending.hasRemaining()) {
+                    int start = pending.position();
+                    long length = readLength(pending);
+                    if (length < 0 || pending.remaining() < length) {
+                        pending.position(start);
+                        break;
+                    }
+                    readings += decodeBody(pending, (int) length, handler);
+                }
+            } finally {
+                pending.compact();
+            }
+            return readings;
+        }
+
+        /**
+         * @return bytes of an incomplete frame waiting for the rest of it
+         */
+        public int pendingBytes() {
+            return pending.position();
+        }
+    }
+
+    /**
+     * Decodes complete frames, e.g. one WebSocket message.
+     *
+     * @param frames  one or more frames
+     * @param handler receives the decoded readings
+     * @return the number of decoded readings
+     * @throws IOException if a frame is malformed or incomplete
+     */
+    public static int decode(ByteBuffer frames, Handler handler) throws IOException {
+        int readings = 0;
+        while (frames.hasRemaining()) {
+            long length = readLength(frames);
+            if (length < 0 || frames.remaining() < length) {
+                throw new IOException("Incomplete frame");
+            }
+            readings += decodeBody(frames, (int) length, handler);
+        }
+        return readings;
+    }
+
+    /**
+     * Parses data as the simulator formats it: a number, optionally followed by "%".
+     *
+     * @param data the data of a reading
+     * @return the value, or NaN if the data is not a number
+     */
+    public static double parseValue(String data) {
+        String value = data.trim();
+        if (value.endsWith("%")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return the length prefix, or -1 if it is not complete yet
+     */
+    private static long readLength(ByteBuffer in) throws IOException {
+        long length = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!in.hasRemaining()) {
+                return -1;
+            }
+            byte b = in.get();
+            length |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return length;
+            }
+        }
+        throw new IOException("Frame length too large");
+    }
+
+    private static int decodeBody(ByteBuffer in, int length, Handler handler) throws IOException {
+        int end = in.position() + length;
+        ByteBuffer body = in.slice(in.position(), length);
+        in.position(end);
+        RecordType[] frameTypes = null;
+        long timestamp = 0;
+        int readings = 0;
+        try {
+            while (body.hasRemaining()) {
+                byte entry = body.get();
+                if (entry == TYPE_ENTRY) {
+                    int id = (int) readVarLong(body) - FIXED_TYPE_NAMES.length;
+                    String name = readString(body);
+                    if (id < 0 || id > 0xFFFF) {
+                        throw new IOException("Invalid type id in frame");
+                    }
+                    if (frameTypes == null || frameTypes.length <= id) {
+                        frameTypes = frameTypes == null ? new RecordType[Math.max(4, id + 1)]
+                                : Arrays.copyOf(frameTypes, Math.max(frameTypes.length * 2, id + 1));
+                    }
+                    frameTypes[id] = RecordType.tryOf(name);
+                    if (frameTypes[id] == null) {
+                        throw new IOException("Too many record types, cannot register " + name);
+                    }
+                    continue;
+                }
+                if (entry != VALUE_ENTRY && entry != TEXT_ENTRY) {
+                    throw new IOException("Unknown entry " + entry + " in frame");
+                }
+                RecordType type = type(readVarLong(body), frameTypes);
+                int patientId = (int) readVarLong(body);
+                long delta = readVarLong(body);
+                timestamp += (delta >>> 1) ^ -(delta & 1);
+                if (entry == VALUE_ENTRY) {
+                    handler.onValue(patientId, timestamp, type, body.getDouble());
+                } else {
+                    handler.onText(patientId, timestamp, type, readString(body));
+                }
+                readings++;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Entry runs past the end of its frame");
+        }
+        return readings;
+    }
+
+    private static RecordType type(long id, RecordType[] frameTypes) throws IOException {
+        if (id < FIXED_TYPES.length) {
+            return FIXED_TYPES[(int) id];
+        }
+        long frameId = id - FIXED_TYPES.length;
+        if (frameTypes == null || frameId >= frameTypes.length || frameTypes[(int) frameId] == null) {
+            throw new IOException("Undefined type id " + id + " in frame");
+        }
+        return frameTypes[(int) frameId];
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        long length = readVarLong(in);
+        if (length > in.remaining()) {
+            throw new IOException("Text runs past the end of its frame");
+        }
+        byte[] bytes = new byte[(int) length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in frame");
+    }
+
+    private static int varLongLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+}
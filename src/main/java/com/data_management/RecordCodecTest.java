@@ -0,0 +1,122 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordCodecTest {
+
+    /**
+     * verifies that readings of fixed and frame-defined types, out-of-order timestamps,
+     * negative patient ids, text and percent data survive a round trip
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        encoder.add(1, 1_704_067_200_000L, "ECG", "0.123456789");
+        encoder.add(2, 1_704_067_200_100L, "Saturation", "97.0%");
+        encoder.add(-3, 1_704_067_199_000L, "HeartRate", 72.0);
+        encoder.add(Integer.MAX_VALUE, 0L, "Alert", "triggered");
+        encoder.add(4, Long.MAX_VALUE, "HeartRate", Double.NaN);
+        encoder.add(5, Long.MIN_VALUE, "Temp°", "-0.0");
+        assertEquals(6, encoder.recordCount());
+
+        List<String> decoded = new ArrayList<>();
+        int readings = RecordCodec.decode(ByteBuffer.wrap(encoder.finishFrame()), collect(decoded));
+
+        assertEquals(6, readings);
+        assertEquals(List.of(
+                "1,1704067200000,ECG,0.123456789",
+                "2,1704067200100,Saturation,97.0",
+                "-3,1704067199000,HeartRate,72.0",
+                "2147483647,0,Alert,text:triggered",
+                "4,9223372036854775807,HeartRate,NaN",
+                "5,-9223372036854775808,Temp°,-0.0"), decoded);
+        assertEquals(0, encoder.recordCount());
+    }
+
+    /**
+     * verifies that frames split at any byte are decoded once the rest arrives
+     * purpose: stream readers get frames in arbitrary pieces
+     */
+    @Test
+    void testStreamDecoderAcrossChunks() throws IOException {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        ByteBuffer stream = ByteBuffer.allocate(1 << 16);
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < frame; i++) {
+                encoder.add(i, 1000L * frame + i, i % 2 == 0 ? "ECG" : "Custom" + frame, i * 0.5);
+            }
+            encoder.writeFrameTo(stream);
+        }
+        stream.flip();
+        byte[] bytes = new byte[stream.remaining()];
+        stream.get(bytes);
+
+        List<String> whole = new ArrayList<>();
+        RecordCodec.decode(ByteBuffer.wrap(bytes), collect(whole));
+        assertEquals(190, whole.size());
+
+        for (int chunk : new int[] {1, 3, 7, 100}) {
+            List<String> pieces = new ArrayList<>();
+            RecordCodec.StreamDecoder decoder = new RecordCodec.StreamDecoder(collect(pieces));
+            for (int offset = 0; offset < bytes.length; offset += chunk) {
+                decoder.feed(ByteBuffer.wrap(bytes, offset, Math.min(chunk, bytes.length - offset)));
+            }
+            assertEquals(whole, pieces);
+            assertEquals(0, decoder.pendingBytes());
+        }
+    }
+
+    /**
+     * verifies that a cut-off or damaged frame is reported instead of decoded into wrong readings
+     */
+    @Test
+    void testMalformedFrames() {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        encoder.add(1, 1000L, "ECG", 0.5);
+        byte[] frame = encoder.finishFrame();
+
+        ByteBuffer truncated = ByteBuffer.wrap(frame, 0, frame.length - 1);
+        assertThrows(IOException.class, () -> RecordCodec.decode(truncated, collect(new ArrayList<>())));
+        frame[1] = 7;
+        assertThrows(IOException.class, () -> RecordCodec.decode(ByteBuffer.wrap(frame), collect(new ArrayList<>())));
+    }
+
+    /**
+     * verifies the bandwidth saving over the CSV lines for a frame of simulator-like readings
+     */
+    @Test
+    void testSmallerThanText() {
+        RecordCodec.Encoder encoder = new RecordCodec.Encoder();
+        int textBytes = 0;
+        for (int i = 0; i < 1000; i++) {
+            int patientId = 1 + i % 50;
+            long timestamp = 1_704_067_200_000L + i * 7L;
+            String data = Double.toString(Math.sin(i) * 1.5);
+            encoder.add(patientId, timestamp, "ECG", data);
+            textBytes += (patientId + "," + timestamp + ",ECG," + data + "\n").length();
+        }
+        int binaryBytes = encoder.frameLength();
+        assertTrue(binaryBytes * 2 < textBytes, binaryBytes + " binary bytes for " + textBytes + " text bytes");
+    }
+
+    private static RecordCodec.Handler collect(List<String> out) {
+        return new RecordCodec.Handler() {
+            @Override
+            public void onValue(int patientId, long timestamp, RecordType type, double value) {
+                out.add(patientId + "," + timestamp + "," + type + "," + value);
+            }
+
+            @Override
+            public void onText(int patientId, long timestamp, RecordType type, String text) {
+                out.add(patientId + "," + timestamp + "," + type + ",text:" + text);
+            }
+        };
+    }
+}
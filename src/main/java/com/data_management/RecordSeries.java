@@ -0,0 +1,751 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores all readings of one record type for one patient in time order.
+ * The newest readings are kept in parallel primitive arrays instead of one
+ * {@link PatientRecord} object per reading; once there are enough of them, the
+ * oldest are sealed into immutable {@link CompressedBlock}s, which take a
+ * couple of bits per reading for slowly changing vital signs. A time range
+ * query is a binary search over the blocks and the arrays, decompressing only
+ * the blocks that overlap the range.
+ * All access goes through the series' own lock, so writers for different
+ * patients or record types never contend with each other.
+ * Readings older than the retention window are moved into per-second,
+ * per-minute and hourly rollups, which the series also holds.
+ */
+public class RecordSeries {
+    private static final int INITIAL_CAPACITY = 16;
+    // readings per sealed block
+    static final int BLOCK_READINGS = 512;
+    // readings kept uncompressed past a full block, so slightly late readings rarely reopen a block
+    private static final int SEAL_SLACK = 64;
+    private static final CompressedBlock[] NO_BLOCKS = new CompressedBlock[0];
+
+    private final RecordType type;
+    private final String recordType;
+    // sealed readings, oldest first; blocks never overlap and no unsealed reading is older than the last block
+    private CompressedBlock[] blocks = NO_BLOCKS;
+    private int blockCount;
+    private int sealedReadings;
+    // the newest readings, uncompressed
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+    // write-ahead log position of the last reading logged into this series, -1 if none
+    private long loggedPosition = -1;
+    // rollups of readings that left the series, one per resolution; created on the first roll-up
+    private RollupSeries[] rollups;
+    // whether rollups have been written to or read from a snapshot segment; until then none are on disk
+    private boolean rollupsPersisted;
+    // once rollups are persisted, the part of them not yet written to a segment; null if none
+    private RollupSeries[] unpersistedRollups;
+
+    /**
+     * Creates an empty series for the given record type.
+     *
+     * @param recordType the type of record stored in this series, e.g. "ECG"
+     */
+    public RecordSeries(String recordType) {
+        this(RecordType.of(recordType));
+    }
+
+    /**
+     * Creates an empty series for the given registered record type.
+     *
+     * @param type the type of record stored in this series
+     */
+    public RecordSeries(RecordType type) {
+        this.type = type;
+        this.recordType = type.getName();
+        this.timestamps = new long[INITIAL_CAPACITY];
+        this.values = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a reading to the series. Readings that arrive in time order are
+     * appended; an older reading is inserted after all readings with the same
+     * or an earlier timestamp, so the series stays sorted.
+     *
+     * @param timestamp the time of the reading in milliseconds since UNIX epoch
+     * @param value     the measured value
+     */
+    public synchronized void add(long timestamp, double value) {
+        if (blockCount > 0 && timestamp < blocks[blockCount - 1].lastTimestamp()) {
+            unsealFrom(firstBlockEndingAfter(timestamp));
+        }
+        ensureCapacity(size + 1);
+        if (size == 0 || timestamp >= timestamps[size - 1]) {
+            timestamps[size] = timestamp;
+            values[size] = value;
+        } else {
+            int position = upperBound(timestamp);
+            System.arraycopy(timestamps, position, timestamps, position + 1, size - position);
+            System.arraycopy(values, position, values, position + 1, size - position);
+            timestamps[position] = timestamp;
+            values[position] = value;
+        }
+        size++;
+        seal();
+    }
+
+    /**
+     * Logs a reading to the write-ahead log and adds it while holding the series
+     * lock, so the log holds the readings of one series in the order they were added.
+     */
+    synchronized void addLogged(int patientId, long timestamp, double value, WriteAheadLog log) {
+        loggedPosition = log.append(patientId, recordType, timestamp, value);
+        add(timestamp, value);
+    }
+
+    /**
+     * Logs a batch of readings and adds them while holding the series lock.
+     */
+    synchronized void addAllLogged(int patientId, long[] batchTimestamps, double[] batchValues, int count,
+                                   WriteAheadLog log) {
+        loggedPosition = log.appendAll(patientId, recordType, batchTimestamps, batchValues, count);
+        addAll(batchTimestamps, batchValues, count);
+    }
+
+    /**
+     * Adds readings replayed from the write-ahead log, up to the given log position.
+     */
+    synchronized void addAllReplayed(long[] batchTimestamps, double[] batchValues, int count, long position) {
+        addAll(batchTimestamps, batchValues, count);
+        loggedPosition = Math.max(loggedPosition, position);
+    }
+
+    /**
+     * Copies all readings and the rollups not yet persisted for a snapshot,
+     * together with the log position they cover. The readings stay in the series
+     * until {@link #removeAll} is called with the copy.
+     */
+    synchronized SnapshotCopy copyForSnapshot() {
+        List<AggregateSlice> copiedRollups = new ArrayList<>();
+        RollupSeries[] unpersisted = rollupsPersisted ? unpersistedRollups : rollups;
+        if (unpersisted != null) {
+            for (RollupSeries tier : unpersisted) {
+                AggregateSlice buckets = tier.slice(recordType, Long.MIN_VALUE, Long.MAX_VALUE);
+                if (buckets.size() > 0) {
+                    copiedRollups.add(buckets);
+                }
+            }
+        }
+        return new SnapshotCopy(slice(Long.MIN_VALUE, Long.MAX_VALUE), copiedRollups, loggedPosition);
+    }
+
+    /**
+     * Forgets the rollups copied for a snapshot once the snapshot is written.
+     * Callers make sure no readings were rolled up since the copy was taken.
+     */
+    synchronized void markRollupsPersisted() {
+        rollupsPersisted = true;
+        unpersistedRollups = null;
+    }
+
+    /**
+     * Removes the readings of a copy taken earlier. Readings added since then,
+     * even older ones inserted between the copied readings, stay in the series.
+     */
+    synchronized void removeAll(RecordSlice copy) {
+        unsealFrom(0);
+        int kept = 0;
+        int c = 0;
+        for (int i = 0; i < size; i++) {
+            // both are sorted by timestamp, so a merge walk finds the copied readings
+            while (c < copy.size() && copy.getTimestamp(c) < timestamps[i]) {
+                c++;
+            }
+            if (c < copy.size() && copy.getTimestamp(c) == timestamps[i]
+                    && Double.doubleToRawLongBits(copy.getValue(c)) == Double.doubleToRawLongBits(values[i])) {
+                c++;
+                continue;
+            }
+            timestamps[kept] = timestamps[i];
+            values[kept] = values[i];
+            kept++;
+        }
+        size = kept;
+        seal();
+        trimCapacity();
+    }
+
+    /**
+     * Removes the readings older than the cutoff and adds them to the rollups.
+     *
+     * @return the number of readings rolled up
+     */
+    synchronized int rollUpBefore(long cutoff) {
+        int rolledUp = 0;
+        int expiredBlocks = 0;
+        while (expiredBlocks < blockCount && blocks[expiredBlocks].lastTimestamp() < cutoff) {
+            CompressedBlock.Decoder decoder = blocks[expiredBlocks++].decoder();
+            while (decoder.next()) {
+                rollUp(decoder.timestamp(), decoder.value());
+                rolledUp++;
+            }
+        }
+        blockCount -= expiredBlocks;
+        System.arraycopy(blocks, expiredBlocks, blocks, 0, blockCount);
+        Arrays.fill(blocks, blockCount, blockCount + expiredBlocks, null);
+        if (blockCount > 0 && blocks[0].firstTimestamp() < cutoff) {
+            // the cutoff falls into the first block: keep its newer part as a smaller block
+            CompressedBlock block = blocks[0];
+            long[] blockTimestamps = new long[block.count()];
+            double[] blockValues = new double[block.count()];
+            block.decode(blockTimestamps, blockValues, 0);
+            int expired = 0;
+            while (blockTimestamps[expired] < cutoff) {
+                rollUp(blockTimestamps[expired], blockValues[expired]);
+                expired++;
+            }
+            blocks[0] = CompressedBlock.encode(blockTimestamps, blockValues, expired, block.count() - expired);
+            rolledUp += expired;
+        }
+        sealedReadings -= rolledUp;
+
+        int count = lowerBound(cutoff);
+        for (int i = 0; i < count; i++) {
+            rollUp(timestamps[i], values[i]);
+        }
+        size -= count;
+        System.arraycopy(timestamps, count, timestamps, 0, size);
+        System.arraycopy(values, count, values, 0, size);
+        trimCapacity();
+        return rolledUp + count;
+    }
+
+    private void rollUp(long timestamp, double value) {
+        for (RollupSeries tier : rollups()) {
+            tier.add(timestamp, value);
+        }
+        if (rollupsPersisted) {
+            for (RollupSeries tier : unpersistedRollups()) {
+                tier.add(timestamp, value);
+            }
+        }
+    }
+
+    /**
+     * Adds readings that are dropped elsewhere, e.g. with an expired segment, to the rollups.
+     */
+    synchronized void rollUp(RecordSlice readings) {
+        for (int i = 0; i < readings.size(); i++) {
+            rollUp(readings.getTimestamp(i), readings.getValue(i));
+        }
+    }
+
+    /**
+     * Adds rollup buckets read from a snapshot segment.
+     */
+    synchronized void restoreRollups(AggregateSlice buckets) {
+        if (!rollupsPersisted) {
+            // rollups made before are not on disk; track them apart from the restored ones
+            rollupsPersisted = true;
+            if (rollups != null) {
+                for (RollupSeries tier : rollups) {
+                    unpersistedRollups()[tier.getResolution().ordinal()]
+                            .addAll(tier.slice(recordType, Long.MIN_VALUE, Long.MAX_VALUE));
+                }
+            }
+        }
+        rollups()[buckets.getResolution().ordinal()].addAll(buckets);
+    }
+
+    /**
+     * Marks rollup buckets as not persisted again because the segment holding
+     * them is dropped. The buckets are already part of the rollups.
+     */
+    synchronized void unpersistRollups(AggregateSlice buckets) {
+        if (rollupsPersisted) {
+            unpersistedRollups()[buckets.getResolution().ordinal()].addAll(buckets);
+        }
+    }
+
+    /**
+     * Drops the rollup buckets the policy no longer keeps at the given time.
+     * Called before rolling up, it also keeps readings out of buckets that would
+     * be dropped right away, such as those of a tier the policy does not keep.
+     */
+    synchronized void dropExpiredRollups(RetentionPolicy policy, long now) {
+        RollupSeries[] tiers = rollups();
+        for (RetentionPolicy.Resolution resolution : RetentionPolicy.Resolution.values()) {
+            long cutoff = policy.rollupCutoff(resolution, now);
+            tiers[resolution.ordinal()].removeBefore(cutoff);
+            if (unpersistedRollups != null) {
+                unpersistedRollups[resolution.ordinal()].removeBefore(cutoff);
+            }
+        }
+    }
+
+    /**
+     * Returns the rollup buckets of the resolution that start within the range.
+     * Readings still held raw are not included.
+     */
+    synchronized AggregateSlice rollupSlice(RetentionPolicy.Resolution resolution, long startTime, long endTime) {
+        if (rollups == null) {
+            return AggregateSlice.empty(recordType, resolution);
+        }
+        return rollups[resolution.ordinal()].slice(recordType, startTime, endTime);
+    }
+
+    /**
+     * Returns the rolled-up readings in the range as one reading per bucket,
+     * at the bucket start with the bucket's mean. Each part of the range comes
+     * from the finest tier that still covers it.
+     */
+    synchronized RecordSlice rollupMeans(long startTime, long endTime) {
+        if (rollups == null || startTime > endTime) {
+            return RecordSlice.empty(recordType);
+        }
+        List<RecordSlice> parts = new ArrayList<>(rollups.length);
+        long coveredUntil = endTime;
+        for (int t = 0; t < rollups.length; t++) {
+            RollupSeries tier = rollups[t];
+            long tierFrom = tier.getCoveredFrom();
+            if (t + 1 < rollups.length) {
+                // a tier that is not kept holds nothing, and one restored from segments may not reach back
+                // to its cutoff; the coarser tier takes over from a whole bucket of its own
+                tierFrom = Math.max(tierFrom, rollups[t + 1].getResolution().bucketStartAtOrAfter(tier.getFirstBucketStart()));
+            }
+            RecordSlice part = tier.means(recordType, Math.max(startTime, tierFrom), coveredUntil);
+            if (part.size() > 0) {
+                parts.add(part);
+            }
+            if (tierFrom <= startTime) {
+                break;
+            }
+            coveredUntil = Math.min(coveredUntil, tierFrom - 1);
+        }
+        if (parts.isEmpty()) {
+            return RecordSlice.empty(recordType);
+        }
+        return parts.size() == 1 ? parts.get(0) : RecordSlice.merge(recordType, parts);
+    }
+
+    private RollupSeries[] rollups() {
+        if (rollups == null) {
+            rollups = newTiers();
+        }
+        return rollups;
+    }
+
+    private RollupSeries[] unpersistedRollups() {
+        if (unpersistedRollups == null) {
+            unpersistedRollups = newTiers();
+            if (rollups != null) {
+                // buckets dropped from the rollups must not come back from a snapshot
+                for (int t = 0; t < rollups.length; t++) {
+                    unpersistedRollups[t].removeBefore(rollups[t].getCoveredFrom());
+                }
+            }
+        }
+        return unpersistedRollups;
+    }
+
+    private static RollupSeries[] newTiers() {
+        RetentionPolicy.Resolution[] resolutions = RetentionPolicy.Resolution.values();
+        RollupSeries[] tiers = new RollupSeries[resolutions.length];
+        for (RetentionPolicy.Resolution resolution : resolutions) {
+            tiers[resolution.ordinal()] = new RollupSeries(resolution);
+        }
+        return tiers;
+    }
+
+    /**
+     * Readings and rollup buckets copied from a series for a snapshot.
+     */
+    static class SnapshotCopy {
+        final RecordSlice readings;
+        final List<AggregateSlice> rollups;
+        final long loggedPosition;
+
+        SnapshotCopy(RecordSlice readings, List<AggregateSlice> rollups, long loggedPosition) {
+            this.readings = readings;
+            this.rollups = rollups;
+            this.loggedPosition = loggedPosition;
+        }
+
+        boolean isEmpty() {
+            return readings.size() == 0 && rollups.isEmpty();
+        }
+    }
+
+    /**
+     * Adds a batch of readings to the series under one lock acquisition. The
+     * batch is sorted first; if it starts at or after the newest stored reading
+     * it is appended, otherwise it is merged in. Readings with equal timestamps
+     * end up in the same order as with repeated calls to {@link #add}.
+     *
+     * @param batchTimestamps the times of the readings; sorted in place together with the values
+     * @param batchValues     the measured values
+     * @param count           the number of readings in the arrays to add
+     */
+    public void addAll(long[] batchTimestamps, double[] batchValues, int count) {
+        if (count <= 0) {
+            return;
+        }
+        sortBatch(batchTimestamps, batchValues, count);
+        synchronized (this) {
+            if (blockCount > 0 && batchTimestamps[0] < blocks[blockCount - 1].lastTimestamp()) {
+                unsealFrom(firstBlockEndingAfter(batchTimestamps[0]));
+            }
+            ensureCapacity(size + count);
+            if (size == 0 || batchTimestamps[0] >= timestamps[size - 1]) {
+                System.arraycopy(batchTimestamps, 0, timestamps, size, count);
+                System.arraycopy(batchValues, 0, values, size, count);
+            } else {
+                // merge from the back so no reading is moved twice
+                int i = size - 1;
+                int j = count - 1;
+                for (int k = size + count - 1; j >= 0; k--) {
+                    if (i >= 0 && timestamps[i] > batchTimestamps[j]) {
+                        timestamps[k] = timestamps[i];
+                        values[k] = values[i];
+                        i--;
+                    } else {
+                        timestamps[k] = batchTimestamps[j];
+                        values[k] = batchValues[j];
+                        j--;
+                    }
+                }
+            }
+            size += count;
+            seal();
+        }
+    }
+
+    private static void sortBatch(long[] batchTimestamps, double[] batchValues, int count) {
+        int unsortedAt = 1;
+        while (unsortedAt < count && batchTimestamps[unsortedAt - 1] <= batchTimestamps[unsortedAt]) {
+            unsortedAt++;
+        }
+        if (unsortedAt >= count) {
+            return;
+        }
+        // stable sort of an index so equal timestamps keep their order
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(batchTimestamps[a], batchTimestamps[b]));
+        long[] sortedTimestamps = new long[count];
+        double[] sortedValues = new double[count];
+        for (int i = 0; i < count; i++) {
+            sortedTimestamps[i] = batchTimestamps[order[i]];
+            sortedValues[i] = batchValues[order[i]];
+        }
+        System.arraycopy(sortedTimestamps, 0, batchTimestamps, 0, count);
+        System.arraycopy(sortedValues, 0, batchValues, 0, count);
+    }
+
+    /**
+     * Returns a copy of all readings with {@code startTime <= timestamp <= endTime}.
+     *
+     * @param startTime the start of the time range (inclusive)
+     * @param endTime   the end of the time range (inclusive)
+     * @return the readings in the range, in time order
+     */
+    public synchronized RecordSlice slice(long startTime, long endTime) {
+        if (startTime > endTime) {
+            return RecordSlice.empty(recordType);
+        }
+        int firstBlock = firstBlockEndingAtOrAfter(startTime);
+        int endBlock = firstBlock;
+        int count = 0;
+        while (endBlock < blockCount && blocks[endBlock].firstTimestamp() <= endTime) {
+            count += blocks[endBlock++].count();
+        }
+        int from = lowerBound(startTime);
+        int to = upperBound(endTime);
+        count += Math.max(0, to - from);
+        if (count == 0) {
+            return RecordSlice.empty(recordType);
+        }
+        long[] sliceTimestamps = new long[count];
+        double[] sliceValues = new double[count];
+        int n = 0;
+        for (int b = firstBlock; b < endBlock; b++) {
+            CompressedBlock block = blocks[b];
+            if (block.firstTimestamp() >= startTime && block.lastTimestamp() <= endTime) {
+                block.decode(sliceTimestamps, sliceValues, n);
+                n += block.count();
+                continue;
+            }
+            CompressedBlock.Decoder decoder = block.decoder();
+            while (decoder.next() && decoder.timestamp() <= endTime) {
+                if (decoder.timestamp() >= startTime) {
+                    sliceTimestamps[n] = decoder.timestamp();
+                    sliceValues[n++] = decoder.value();
+                }
+            }
+        }
+        if (to > from) {
+            System.arraycopy(timestamps, from, sliceTimestamps, n, to - from);
+            System.arraycopy(values, from, sliceValues, n, to - from);
+            n += to - from;
+        }
+        if (n < count) {
+            sliceTimestamps = Arrays.copyOf(sliceTimestamps, n);
+            sliceValues = Arrays.copyOf(sliceValues, n);
+        }
+        return new RecordSlice(recordType, sliceTimestamps, sliceValues);
+    }
+
+    /**
+     * Returns a cursor over the readings with {@code startTime <= timestamp <= endTime}.
+     * Sealed blocks are decompressed while the cursor advances, outside the
+     * series lock; later changes to the series are not seen by the cursor.
+     *
+     * @param startTime the start of the time range (inclusive)
+     * @param endTime   the end of the time range (inclusive)
+     * @return a cursor over the readings in the range, in time order
+     */
+    public synchronized ReadingCursor cursor(long startTime, long endTime) {
+        if (startTime > endTime) {
+            return RecordSlice.empty(recordType).cursor();
+        }
+        int firstBlock = firstBlockEndingAtOrAfter(startTime);
+        int endBlock = firstBlock;
+        while (endBlock < blockCount && blocks[endBlock].firstTimestamp() <= endTime) {
+            endBlock++;
+        }
+        int from = lowerBound(startTime);
+        int to = Math.max(from, upperBound(endTime));
+        return new SeriesCursor(Arrays.copyOfRange(blocks, firstBlock, endBlock), startTime, endTime,
+                Arrays.copyOfRange(timestamps, from, to), Arrays.copyOfRange(values, from, to));
+    }
+
+    /**
+     * Walks the sealed blocks of a range, then the uncompressed readings copied with them.
+     */
+    private static final class SeriesCursor implements ReadingCursor {
+        private final CompressedBlock[] blocks;
+        private final long startTime;
+        private final long endTime;
+        private final long[] headTimestamps;
+        private final double[] headValues;
+        private int nextBlock;
+        private CompressedBlock.Decoder decoder;
+        private int headIndex = -1;
+        private long timestamp;
+        private double value;
+
+        SeriesCursor(CompressedBlock[] blocks, long startTime, long endTime,
+                     long[] headTimestamps, double[] headValues) {
+            this.blocks = blocks;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.headTimestamps = headTimestamps;
+            this.headValues = headValues;
+        }
+
+        @Override
+        public boolean next() {
+            while (decoder != null || nextBlock < blocks.length) {
+                if (decoder == null) {
+                    decoder = blocks[nextBlock++].decoder();
+                }
+                while (decoder.next()) {
+                    long current = decoder.timestamp();
+                    if (current > endTime) {
+                        // blocks are in time order, so nothing later is in range either
+                        nextBlock = blocks.length;
+                        break;
+                    }
+                    if (current >= startTime) {
+                        timestamp = current;
+                        value = decoder.value();
+                        return true;
+                    }
+                }
+                decoder = null;
+            }
+            if (headIndex + 1 < headTimestamps.length) {
+                headIndex++;
+                timestamp = headTimestamps[headIndex];
+                value = headValues[headIndex];
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * @return the record type stored in this series
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * @return the registered record type stored in this series
+     */
+    public RecordType getType() {
+        return type;
+    }
+
+    /**
+     * @return the number of readings in this series
+     */
+    public synchronized int size() {
+        return sealedReadings + size;
+    }
+
+    /**
+     * @return the heap taken by the readings and rollups of this series, without object headers
+     */
+    public synchronized long sizeInBytes() {
+        long bytes = (long) timestamps.length * (Long.BYTES + Double.BYTES);
+        for (int b = 0; b < blockCount; b++) {
+            bytes += blocks[b].sizeInBytes();
+        }
+        for (RollupSeries[] tiers : new RollupSeries[][] {rollups, unpersistedRollups}) {
+            if (tiers != null) {
+                for (RollupSeries tier : tiers) {
+                    bytes += tier.sizeInBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Compresses the oldest uncompressed readings into blocks once there are
+     * enough of them. Callers must hold the series lock.
+     */
+    private void seal() {
+        if (size < BLOCK_READINGS + SEAL_SLACK) {
+            return;
+        }
+        int sealed = 0;
+        while (size - sealed >= BLOCK_READINGS + SEAL_SLACK) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, Math.max(4, blockCount * 2));
+            }
+            blocks[blockCount++] = CompressedBlock.encode(timestamps, values, sealed, BLOCK_READINGS);
+            sealed += BLOCK_READINGS;
+        }
+        sealedReadings += sealed;
+        size -= sealed;
+        System.arraycopy(timestamps, sealed, timestamps, 0, size);
+        System.arraycopy(values, sealed, values, 0, size);
+        trimCapacity();
+    }
+
+    /**
+     * Decompresses the blocks from the given one on back into the uncompressed
+     * readings, so an older reading can be inserted among them.
+     * Callers must hold the series lock.
+     */
+    private void unsealFrom(int firstBlock) {
+        if (firstBlock >= blockCount) {
+            return;
+        }
+        int unsealed = 0;
+        for (int b = firstBlock; b < blockCount; b++) {
+            unsealed += blocks[b].count();
+        }
+        long[] newTimestamps = new long[unsealed + size + SEAL_SLACK];
+        double[] newValues = new double[newTimestamps.length];
+        int n = 0;
+        for (int b = firstBlock; b < blockCount; b++) {
+            blocks[b].decode(newTimestamps, newValues, n);
+            n += blocks[b].count();
+            blocks[b] = null;
+        }
+        System.arraycopy(timestamps, 0, newTimestamps, n, size);
+        System.arraycopy(values, 0, newValues, n, size);
+        timestamps = newTimestamps;
+        values = newValues;
+        size += unsealed;
+        sealedReadings -= unsealed;
+        blockCount = firstBlock;
+    }
+
+    // index of the first block whose last reading is at or after the time
+    private int firstBlockEndingAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].lastTimestamp() < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // index of the first block whose last reading is after the time
+    private int firstBlockEndingAfter(long timestamp) {
+        return timestamp == Long.MAX_VALUE ? blockCount : firstBlockEndingAtOrAfter(timestamp + 1);
+    }
+
+    /**
+     * Returns the index of the first uncompressed reading with a timestamp at or
+     * after the given time. Callers must hold the series lock.
+     */
+    int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the index of the first uncompressed reading with a timestamp after
+     * the given time. Callers must hold the series lock.
+     */
+    int upperBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // gives memory back once most uncompressed readings have been sealed or moved out of the series
+    private void trimCapacity() {
+        if (timestamps.length > BLOCK_READINGS + SEAL_SLACK && size < timestamps.length / 4) {
+            int newCapacity = Math.max(BLOCK_READINGS + SEAL_SLACK, size * 2);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > timestamps.length) {
+            int newCapacity = Math.max(required, timestamps.length + (timestamps.length >> 1));
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+}
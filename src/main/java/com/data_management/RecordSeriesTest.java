@@ -0,0 +1,143 @@
+package com.data_management;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordSeriesTest {
+
+    private RecordSeries series;
+
+    @BeforeEach
+    void setUp() {
+        series = new RecordSeries("ECG");
+    }
+
+    /**
+     * verifies that readings arriving out of order are stored in time order
+     * purpose: range queries rely on the series staying sorted
+     */
+    @Test
+    void testOutOfOrderInsertKeepsTimeOrder() {
+        series.add(3000L, 3.0);
+        series.add(1000L, 1.0);
+        series.add(4000L, 4.0);
+        series.add(2000L, 2.0);
+
+        RecordSlice slice = series.slice(0L, Long.MAX_VALUE);
+        assertEquals(4, slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            assertEquals((i + 1) * 1000L, slice.getTimestamp(i));
+            assertEquals(i + 1.0, slice.getValue(i));
+        }
+    }
+
+    /**
+     * verifies inclusive bounds and duplicate timestamps in range queries
+     * purpose: equal timestamps keep their arrival order and both bounds are inclusive
+     */
+    @Test
+    void testSliceBoundsAndDuplicates() {
+        for (int i = 0; i < 100; i++) {
+            series.add(i * 10L, i);
+        }
+        series.add(500L, -1.0);
+
+        RecordSlice slice = series.slice(490L, 510L);
+        assertEquals(4, slice.size());
+        assertEquals(49.0, slice.getValue(0));
+        assertEquals(50.0, slice.getValue(1));
+        assertEquals(-1.0, slice.getValue(2));
+        assertEquals(51.0, slice.getValue(3));
+
+        assertEquals(0, series.slice(2000L, 3000L).size());
+        assertEquals(0, series.slice(300L, 200L).size());
+    }
+
+    /**
+     * verifies that records of different types are merged in time order
+     * purpose: Patient.getRecords combines all series into one sorted list
+     */
+    @Test
+    void testPatientMergesTypesInTimeOrder() {
+        Patient patient = new Patient(7);
+        patient.addRecord(120.0, "SystolicPressure", 2000L);
+        patient.addRecord(98.0, "Saturation", 1000L);
+        patient.addRecord(80.0, "DiastolicPressure", 3000L);
+        patient.addRecord(97.0, "Saturation", 4000L);
+
+        List<PatientRecord> records = patient.getRecords(0L, 5000L);
+        assertEquals(4, records.size());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals("SystolicPressure", records.get(1).getRecordType());
+        assertEquals("DiastolicPressure", records.get(2).getRecordType());
+        assertEquals(4000L, records.get(3).getTimestamp());
+
+        assertEquals(2, patient.getRecords("Saturation", 0L, 5000L).size());
+        assertTrue(patient.getRecords("ECG", 0L, 5000L).isEmpty());
+    }
+
+    /**
+     * verifies that a bulk insert gives the same series as adding the readings one by one
+     * purpose: addAll appends or merges batches that overlap stored readings
+     */
+    @Test
+    void testAddAllMatchesSingleAdds() {
+        RecordSeries single = new RecordSeries("ECG");
+        for (int i = 0; i < 10; i++) {
+            series.add(i * 100L, i);
+            single.add(i * 100L, i);
+        }
+        long[] timestamps = {950L, 50L, 500L, 2000L, 500L};
+        double[] values = {-1.0, -2.0, -3.0, -4.0, -5.0};
+        for (int i = 0; i < timestamps.length; i++) {
+            single.add(timestamps[i], values[i]);
+        }
+        series.addAll(timestamps, values, timestamps.length);
+
+        RecordSlice expected = single.slice(0L, Long.MAX_VALUE);
+        RecordSlice actual = series.slice(0L, Long.MAX_VALUE);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(expected.getValue(i), actual.getValue(i));
+        }
+    }
+
+    /**
+     * verifies that late readings are inserted among compressed readings
+     * purpose: sealed blocks are reopened so the series stays sorted
+     */
+    @Test
+    void testLateReadingsReopenSealedBlocks() {
+        for (int i = 0; i < 5000; i++) {
+            series.add(i * 10L, i);
+        }
+        series.add(15L, -1.0);
+        series.addAll(new long[] {25_000L, 35L}, new double[] {-2.0, -3.0}, 2);
+
+        RecordSlice slice = series.slice(0L, Long.MAX_VALUE);
+        assertEquals(5003, slice.size());
+        for (int i = 1; i < slice.size(); i++) {
+            assertTrue(slice.getTimestamp(i - 1) <= slice.getTimestamp(i));
+        }
+        assertEquals(-1.0, series.slice(15L, 15L).getValue(0));
+        assertEquals(-3.0, series.slice(35L, 35L).getValue(0));
+
+        // the cursor sees the same readings as the slice
+        RecordSlice range = series.slice(1234L, 45_678L);
+        ReadingCursor cursor = series.cursor(1234L, 45_678L);
+        for (int i = 0; i < range.size(); i++) {
+            assertTrue(cursor.next());
+            assertEquals(range.getTimestamp(i), cursor.getTimestamp());
+            assertEquals(range.getValue(i), cursor.getValue());
+        }
+        assertFalse(cursor.next());
+
+        // rolling up splits the block the cutoff falls into
+        assertEquals(1234, series.rollUpBefore(12_315L));
+        assertEquals(12_320L, series.slice(0L, Long.MAX_VALUE).getTimestamp(0));
+        assertEquals(5003 - 1234, series.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.data_management;
+
+import java.util.List;
+
+/**
+ * An immutable, time-ordered range of readings copied out of a {@link RecordSeries}.
+ * Timestamps and values are exposed as parallel arrays so callers can scan
+ * them without creating a {@link PatientRecord} per reading.
+ */
+public class RecordSlice {
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    private final String recordType;
+    private final long[] timestamps;
+    private final double[] values;
+
+    RecordSlice(String recordType, long[] timestamps, double[] values) {
+        this.recordType = recordType;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    static RecordSlice empty(String recordType) {
+        return new RecordSlice(recordType, NO_TIMESTAMPS, NO_VALUES);
+    }
+
+    /**
+     * Merges time-ordered slices of one record type into one time-ordered slice.
+     * Readings with equal timestamps keep the order of the slices.
+     */
+    static RecordSlice merge(String recordType, List<RecordSlice> slices) {
+        int total = 0;
+        for (RecordSlice slice : slices) {
+            total += slice.size();
+        }
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int[] cursors = new int[slices.size()];
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            for (int s = 0; s < slices.size(); s++) {
+                RecordSlice slice = slices.get(s);
+                if (cursors[s] < slice.size() && (next < 0
+                        || slice.timestamps[cursors[s]] < slices.get(next).timestamps[cursors[next]])) {
+                    next = s;
+                }
+            }
+            RecordSlice slice = slices.get(next);
+            timestamps[n] = slice.timestamps[cursors[next]];
+            values[n] = slice.values[cursors[next]++];
+        }
+        return new RecordSlice(recordType, timestamps, values);
+    }
+
+    /**
+     * @return the record type of the readings in this slice
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * @return the number of readings in this slice
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * @param index the position of the reading, from 0 to {@code size() - 1}
+     * @return the timestamp of the reading at the given position
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @param index the position of the reading, from 0 to {@code size() - 1}
+     * @return the value of the reading at the given position
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return a cursor over the readings of this slice
+     */
+    public ReadingCursor cursor() {
+        return new ReadingCursor() {
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                return ++index < timestamps.length;
+            }
+
+            @Override
+            public long getTimestamp() {
+                return timestamps[index];
+            }
+
+            @Override
+            public double getValue() {
+                return values[index];
+            }
+        };
+    }
+
+    /**
+     * Converts the readings into {@link PatientRecord} objects and adds them to the given list.
+     *
+     * @param patientId the patient the readings belong to
+     * @param out       the list the records are added to
+     */
+    public void appendTo(int patientId, List<PatientRecord> out) {
+        RecordType type = RecordType.of(recordType);
+        for (int i = 0; i < timestamps.length; i++) {
+            out.add(new PatientRecord(patientId, values[i], type, timestamps[i]));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registered record type such as "ECG". Every name maps to exactly one
+ * instance with a small, dense id, so types can be compared with {@code ==}
+ * and used as array indexes instead of comparing and hashing strings for
+ * every reading. The types the simulator produces are registered up front;
+ * any other name is registered the first time it is seen and stays
+ * registered for the lifetime of the JVM. Names come from untrusted input,
+ * so at most {@link #MAX_TYPES} types are ever registered; readers reject
+ * readings of new names once the registry is full.
+ * Ids are only valid within one JVM; anything written to disk uses the name.
+ */
+public final class RecordType {
+    /**
+     * The most types that can be registered, including the predefined ones.
+     */
+    public static final int MAX_TYPES = 256;
+
+    private static final Map<String, RecordType> BY_NAME = new ConcurrentHashMap<>();
+    private static volatile RecordType[] byId = new RecordType[16];
+    private static int count;
+
+    public static final RecordType ECG = of("ECG");
+    public static final RecordType SATURATION = of("Saturation");
+    // older data files use this name for saturation readings
+    public static final RecordType BLOOD_SATURATION = of("BloodSaturation");
+    public static final RecordType SYSTOLIC_PRESSURE = of("SystolicPressure");
+    public static final RecordType DIASTOLIC_PRESSURE = of("DiastolicPressure");
+    public static final RecordType ALERT = of("Alert");
+    public static final RecordType CHOLESTEROL = of("Cholesterol");
+    public static final RecordType WHITE_BLOOD_CELLS = of("WhiteBloodCells");
+    public static final RecordType RED_BLOOD_CELLS = of("RedBloodCells");
+
+    private final int id;
+    private final String name;
+
+    private RecordType(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * Returns the type with the given name, registering it if it is new.
+     *
+     * @param name the name of the type, e.g. "ECG"
+     * @return the registered type
+     * @throws IllegalArgumentException if the name is new and {@link #MAX_TYPES} types are registered
+     */
+    public static RecordType of(String name) {
+        RecordType type = tryOf(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Too many record types, cannot register " + name);
+        }
+        return type;
+    }
+
+    /**
+     * Returns the type with the given name, registering it if it is new and
+     * the registry is not full yet.
+     *
+     * @param name the name of the type, e.g. "ECG"
+     * @return the registered type, or null if the name is new and {@link #MAX_TYPES} types are registered
+     */
+    public static RecordType tryOf(String name) {
+        RecordType type = BY_NAME.get(name);
+        return type != null ? type : register(name);
+    }
+
+    /**
+     * Returns the type with the given name without registering it.
+     *
+     * @param name the name of the type, e.g. "ECG"
+     * @return the registered type, or null if no type has this name
+     */
+    public static RecordType find(String name) {
+        return BY_NAME.get(name);
+    }
+
+    /**
+     * @param id the id of a registered type
+     * @return the type with the id
+     */
+    public static RecordType byId(int id) {
+        return byId[id];
+    }
+
+    /**
+     * @return the number of registered types; ids run from 0 to {@code count() - 1}
+     */
+    public static synchronized int count() {
+        return count;
+    }
+
+    private static synchronized RecordType register(String name) {
+        RecordType type = BY_NAME.get(name);
+        if (type == null) {
+            if (count == MAX_TYPES) {
+                return null;
+            }
+            RecordType[] types = byId;
+            if (count == types.length) {
+                types = Arrays.copyOf(types, Math.min(count * 2, MAX_TYPES));
+            }
+            type = new RecordType(count, name);
+            types[count++] = type;
+            byId = types;
+            BY_NAME.put(name, type);
+        }
+        return type;
+    }
+
+    /**
+     * @return the id of this type, from 0 to {@code count() - 1}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of this type, e.g. "ECG"
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
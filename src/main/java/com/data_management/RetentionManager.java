@@ -0,0 +1,58 @@
+package com.data_management;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a {@link RetentionPolicy} to a {@link DataStorage} at a fixed
+ * interval on a background thread, so the heap stays bounded however long the
+ * storage keeps ingesting.
+ */
+public class RetentionManager implements AutoCloseable {
+    private final DataStorage storage;
+    private final RetentionPolicy policy;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Starts applying the policy, the first time after one interval.
+     * @param storage the storage to apply the policy to
+     * @param policy the retention policy
+     * @param interval time between two runs
+     * @param timeUnit unit of the interval
+     */
+    public RetentionManager(DataStorage storage, RetentionPolicy policy, long interval, TimeUnit timeUnit) {
+        this.storage = storage;
+        this.policy = policy;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runOnce, interval, interval, timeUnit);
+    }
+
+    /**
+     * applies the policy now, using the system clock
+     */
+    public void runOnce() {
+        try {
+            storage.applyRetention(policy, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            System.err.println("Error applying retention policy: " + e.getMessage());
+        }
+    }
+
+    /**
+     * stops applying the policy, waiting for a run in progress
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.data_management;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Says how long readings are kept and at which resolution.
+ * Raw readings are kept for the raw retention window. After that they are
+ * rolled up into the minimum, maximum, mean and count of every second, minute
+ * and hour, and each of these tiers is kept for its own window or not at all.
+ * By default raw readings are kept for an hour, per-minute rollups for 30 days
+ * and hourly rollups forever. Per-second rollups are not kept by default: a
+ * bucket takes 40 bytes, while a compressed reading at 1 Hz takes about two,
+ * so they would take more memory than the raw readings they replace.
+ */
+public class RetentionPolicy {
+
+    /**
+     * The bucket widths readings are rolled up into, finest first.
+     */
+    public enum Resolution {
+        SECOND(1_000L),
+        MINUTE(60_000L),
+        HOUR(3_600_000L);
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        /**
+         * @return the width of one bucket in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the start of the bucket the timestamp falls into
+         */
+        long bucketStart(long timestamp) {
+            return Math.floorDiv(timestamp, millis) * millis;
+        }
+
+        /**
+         * @return the start of the first bucket that starts at or after the timestamp
+         */
+        long bucketStartAtOrAfter(long timestamp) {
+            long start = bucketStart(timestamp);
+            if (start == timestamp) {
+                return start;
+            }
+            return start > Long.MAX_VALUE - millis ? Long.MAX_VALUE : start + millis;
+        }
+    }
+
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private long rawRetentionMillis = TimeUnit.HOURS.toMillis(1);
+    // 0 for a tier that is not kept
+    private final long[] rollupRetentionMillis = {
+            0, TimeUnit.DAYS.toMillis(30), Long.MAX_VALUE};
+
+    /**
+     * @param duration how long raw readings are kept before they are rolled up
+     * @param unit     the unit of the duration
+     */
+    public RetentionPolicy rawRetention(long duration, TimeUnit unit) {
+        this.rawRetentionMillis = toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param resolution the rollup tier
+     * @param duration   how long the tier's buckets are kept; {@code Long.MAX_VALUE} keeps them forever
+     * @param unit       the unit of the duration
+     */
+    public RetentionPolicy rollupRetention(Resolution resolution, long duration, TimeUnit unit) {
+        rollupRetentionMillis[resolution.ordinal()] = toMillis(duration, unit);
+        return this;
+    }
+
+    /**
+     * @param resolution the rollup tier not to keep; readings are rolled up into the other tiers only
+     */
+    public RetentionPolicy withoutRollup(Resolution resolution) {
+        rollupRetentionMillis[resolution.ordinal()] = 0;
+        return this;
+    }
+
+    /**
+     * @return how long raw readings are kept, in milliseconds
+     */
+    public long getRawRetentionMillis() {
+        return rawRetentionMillis;
+    }
+
+    /**
+     * @return how long the tier's buckets are kept, in milliseconds; {@code Long.MAX_VALUE} means forever,
+     *         0 that the tier is not kept
+     */
+    public long getRollupRetentionMillis(Resolution resolution) {
+        return rollupRetentionMillis[resolution.ordinal()];
+    }
+
+    /**
+     * @return the time before which raw readings are rolled up
+     */
+    long rawCutoff(long now) {
+        return now - rawRetentionMillis;
+    }
+
+    /**
+     * Returns the time before which buckets of the tier are dropped. It is aligned
+     * to the next coarser tier, so where one tier ends the coarser one starts on
+     * a whole bucket. A tier that is not kept is dropped entirely.
+     */
+    long rollupCutoff(Resolution resolution, long now) {
+        long retention = rollupRetentionMillis[resolution.ordinal()];
+        if (retention == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (retention == Long.MAX_VALUE || now < Long.MIN_VALUE + retention) {
+            return Long.MIN_VALUE;
+        }
+        int coarser = Math.min(resolution.ordinal() + 1, RESOLUTIONS.length - 1);
+        return RESOLUTIONS[coarser].bucketStart(now - retention);
+    }
+
+    private static long toMillis(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Retention must be positive: " + duration + " " + unit);
+        }
+        return unit.toMillis(duration);
+    }
+}
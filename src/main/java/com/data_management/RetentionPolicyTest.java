@@ -0,0 +1,173 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetentionPolicyTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    // three hours of readings every 100 ms
+    private static DataStorage threeHours() {
+        DataStorage storage = new DataStorage();
+        for (int i = 0; i < 3 * 36_000; i++) {
+            storage.addPatientData(1, i % 10, "HeartRate", i * 100L);
+        }
+        return storage;
+    }
+
+    /**
+     * verifies that rolling up keeps the aggregates and serves old ranges per bucket
+     * purpose: retention frees raw readings without changing what queries see
+     */
+    @Test
+    void testRollUpKeepsAggregates() {
+        DataStorage storage = threeHours();
+        AggregateSlice before = storage.getAggregates(1, "HeartRate", 0, 3 * HOUR, RetentionPolicy.Resolution.MINUTE);
+
+        storage.applyRetention(new RetentionPolicy(), 3 * HOUR);
+
+        AggregateSlice after = storage.getAggregates(1, "HeartRate", 0, 3 * HOUR, RetentionPolicy.Resolution.MINUTE);
+        assertEquals(180, after.size());
+        for (int i = 0; i < after.size(); i++) {
+            assertEquals(before.getBucketStart(i), after.getBucketStart(i));
+            assertEquals(600, after.getCount(i));
+            assertEquals(0.0, after.getMin(i));
+            assertEquals(9.0, after.getMax(i));
+            assertEquals(before.getSum(i), after.getSum(i), 1e-9);
+        }
+        // the first two hours are one record per minute at the mean, the last hour is raw
+        List<PatientRecord> records = storage.getRecords(1, 0L, 3 * HOUR);
+        assertEquals(2 * 60 + 36_000, records.size());
+        assertEquals(4.5, records.get(0).getMeasurementValue());
+        assertEquals(60_000L, records.get(1).getTimestamp());
+        assertEquals(2 * HOUR, records.get(120).getTimestamp());
+        assertEquals(0, storage.getAggregates(1, "HeartRate", 0, 2 * HOUR - 1, RetentionPolicy.Resolution.SECOND)
+                .size());
+    }
+
+    /**
+     * verifies that rolling up 1 Hz readings with the default policy frees memory
+     * purpose: a rollup bucket is larger than a compressed reading, so the default
+     * tiers must combine many readings per bucket
+     */
+    @Test
+    void testDefaultRollupsTakeLessHeapThanReadings() {
+        RecordSeries series = new RecordSeries("Saturation");
+        Random random = new Random(42);
+        double saturation = 97.0;
+        long timestamp = 0;
+        for (int i = 0; i < 6 * 3600; i++) {
+            // scheduler jitter of a few milliseconds, value changes now and then
+            timestamp += 1000 + random.nextInt(5) - 2;
+            if (random.nextInt(20) == 0) {
+                saturation = Math.max(90.0, Math.min(100.0, saturation + random.nextInt(3) - 1));
+            }
+            series.add(timestamp, saturation);
+        }
+        long before = series.sizeInBytes();
+
+        RetentionPolicy policy = new RetentionPolicy();
+        series.dropExpiredRollups(policy, 6 * HOUR);
+        series.rollUpBefore(policy.rawCutoff(6 * HOUR));
+
+        long after = series.sizeInBytes();
+        assertTrue(after < before, "before: " + before + " bytes, after: " + after + " bytes");
+        assertEquals(300, series.rollupSlice(RetentionPolicy.Resolution.MINUTE, 0, 6 * HOUR).size());
+        assertEquals(0, series.rollupSlice(RetentionPolicy.Resolution.SECOND, 0, 6 * HOUR).size());
+    }
+
+    /**
+     * verifies that expired tiers are dropped and coarser tiers take over
+     * purpose: per-second rollups must not grow without bound either
+     */
+    @Test
+    void testExpiredTierFallsBackToCoarserTier() {
+        DataStorage storage = threeHours();
+        RetentionPolicy policy = new RetentionPolicy()
+                .rawRetention(10, TimeUnit.MINUTES)
+                .rollupRetention(RetentionPolicy.Resolution.SECOND, 1, TimeUnit.HOURS);
+
+        storage.applyRetention(policy, 3 * HOUR);
+
+        // per-second buckets are kept from 2h on, aligned to the minute
+        AggregateSlice seconds = storage.getAggregates(1, "HeartRate", 0, 3 * HOUR, RetentionPolicy.Resolution.SECOND);
+        assertEquals(2 * HOUR, seconds.getBucketStart(0));
+        assertEquals(3600, seconds.size());
+        assertEquals(36_000, storage.getAggregates(1, "HeartRate", 0, 3 * HOUR, RetentionPolicy.Resolution.HOUR)
+                .getCount(0));
+
+        List<PatientRecord> records = storage.getRecords(1, 0L, 3 * HOUR);
+        // 120 minutes, then 50 minutes of seconds, then 10 minutes raw
+        assertEquals(120 + 50 * 60 + 6000, records.size());
+        assertEquals(60_000L, records.get(1).getTimestamp());
+        assertEquals(2 * HOUR, records.get(120).getTimestamp());
+    }
+
+    /**
+     * verifies that snapshot segments past the raw window are rolled up, and deleted
+     * once the next snapshot holds their rollups
+     * purpose: retention also applies to readings that were moved to disk, and the
+     * rollups of deleted segments must survive a restart
+     */
+    @Test
+    void testExpiredSegmentsAreRolledUpAndPersisted() throws IOException {
+        Path segments = tempDir.resolve("segments");
+        DataStorage storage = new DataStorage();
+        try (SnapshotStore snapshots = new SnapshotStore(segments)) {
+            for (int i = 0; i < 3600; i++) {
+                storage.addPatientData(1, i, "ECG", i * 1000L);
+            }
+            snapshots.snapshot(storage);
+            storage.addPatientData(1, 1.0, "ECG", 2 * HOUR);
+            Path expired = segmentFiles(segments).get(0);
+            Path copy = Files.copy(expired, tempDir.resolve("expired.seg"));
+
+            storage.applyRetention(new RetentionPolicy(), 2 * HOUR + 1);
+            // the rollups are only on the heap, so the segment stays until the next snapshot
+            assertTrue(Files.exists(expired));
+            assertEquals(60 + 1, storage.getRecords(1, 0L, 2 * HOUR).size());
+
+            snapshots.snapshot(storage);
+            assertFalse(Files.exists(expired));
+            assertEquals(1, segmentFiles(segments).size());
+            // as if the snapshot had been interrupted before it deleted the expired segment
+            Files.copy(copy, expired);
+        }
+        AggregateSlice hours = storage.getAggregates(1, "ECG", 0, 2 * HOUR, RetentionPolicy.Resolution.HOUR);
+        assertEquals(2, hours.size());
+        assertEquals(3600, hours.getCount(0));
+        assertEquals(3599.0, hours.getMax(0));
+
+        try (SnapshotStore snapshots = new SnapshotStore(segments)) {
+            DataStorage restarted = new DataStorage();
+            assertEquals(1, snapshots.loadInto(restarted));
+            assertEquals(1, segmentFiles(segments).size());
+            AggregateSlice restored = restarted.getAggregates(1, "ECG", 0, 2 * HOUR,
+                    RetentionPolicy.Resolution.HOUR);
+            assertEquals(2, restored.size());
+            assertEquals(3600, restored.getCount(0));
+            assertEquals(hours.getSum(0), restored.getSum(0));
+            assertEquals(3599.0, restored.getMax(0));
+            assertEquals(60 + 1, restarted.getRecords(1, 0L, 2 * HOUR).size());
+        }
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).toList();
+        }
+    }
+}
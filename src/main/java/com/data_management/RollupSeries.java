@@ -0,0 +1,199 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * The rollup buckets of one record type at one resolution, kept in parallel
+ * arrays sorted by bucket start.
+ * Not thread-safe; a {@link RecordSeries} guards its rollups with its own lock.
+ */
+class RollupSeries {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final RetentionPolicy.Resolution resolution;
+    // allocated on the first bucket, so a tier that is not kept takes no memory
+    private long[] bucketStarts = new long[0];
+    private double[] minimums = new double[0];
+    private double[] maximums = new double[0];
+    private double[] sums = new double[0];
+    private long[] counts = new long[0];
+    private int size;
+    // buckets before this time have been dropped, so readings before it are not added any more
+    private long coveredFrom = Long.MIN_VALUE;
+
+    RollupSeries(RetentionPolicy.Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Adds a reading to its bucket, unless the bucket has already been dropped.
+     */
+    void add(long timestamp, double value) {
+        if (timestamp < coveredFrom) {
+            return;
+        }
+        addBucket(resolution.bucketStart(timestamp), value, value, value, 1);
+    }
+
+    /**
+     * Merges aggregates into the bucket starting at the given time, creating it
+     * if needed, unless buckets from that time have already been dropped.
+     */
+    void addBucket(long bucketStart, double min, double max, double sum, long count) {
+        if (bucketStart < coveredFrom) {
+            return;
+        }
+        int index;
+        if (size > 0 && bucketStarts[size - 1] == bucketStart) {
+            index = size - 1;
+        } else {
+            index = (size == 0 || bucketStarts[size - 1] < bucketStart) ? size : lowerBound(bucketStart);
+            if (index == size || bucketStarts[index] != bucketStart) {
+                insert(index, bucketStart, min, max, sum, count);
+                return;
+            }
+        }
+        minimums[index] = Math.min(minimums[index], min);
+        maximums[index] = Math.max(maximums[index], max);
+        sums[index] += sum;
+        counts[index] += count;
+    }
+
+    /**
+     * Merges all buckets of the slice into this series.
+     */
+    void addAll(AggregateSlice slice) {
+        for (int i = 0; i < slice.size(); i++) {
+            addBucket(slice.getBucketStart(i), slice.getMin(i), slice.getMax(i),
+                    slice.getSum(i), slice.getCount(i));
+        }
+    }
+
+    /**
+     * Drops the buckets that start before the cutoff.
+     */
+    void removeBefore(long cutoff) {
+        if (cutoff <= coveredFrom) {
+            return;
+        }
+        coveredFrom = cutoff;
+        int from = lowerBound(cutoff);
+        if (from == 0) {
+            return;
+        }
+        size -= from;
+        System.arraycopy(bucketStarts, from, bucketStarts, 0, size);
+        System.arraycopy(minimums, from, minimums, 0, size);
+        System.arraycopy(maximums, from, maximums, 0, size);
+        System.arraycopy(sums, from, sums, 0, size);
+        System.arraycopy(counts, from, counts, 0, size);
+        if (size == 0) {
+            resize(0);
+        } else if (bucketStarts.length > INITIAL_CAPACITY && size < bucketStarts.length / 4) {
+            resize(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+    }
+
+    /**
+     * @return the heap taken by the buckets, without object headers
+     */
+    long sizeInBytes() {
+        return (long) bucketStarts.length * (Long.BYTES + 3 * Double.BYTES + Long.BYTES);
+    }
+
+    /**
+     * @return the width of the buckets of this tier
+     */
+    RetentionPolicy.Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @return the start of the oldest bucket, {@code Long.MAX_VALUE} if there are none
+     */
+    long getFirstBucketStart() {
+        return size == 0 ? Long.MAX_VALUE : bucketStarts[0];
+    }
+
+    /**
+     * @return the time from which this tier holds every rolled-up reading
+     */
+    long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * @return the buckets that start within the range
+     */
+    AggregateSlice slice(String recordType, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = endTime == Long.MAX_VALUE ? size : lowerBound(endTime + 1);
+        if (from > to) {
+            to = from;
+        }
+        return new AggregateSlice(recordType, resolution,
+                Arrays.copyOfRange(bucketStarts, from, to),
+                Arrays.copyOfRange(minimums, from, to),
+                Arrays.copyOfRange(maximums, from, to),
+                Arrays.copyOfRange(sums, from, to),
+                Arrays.copyOfRange(counts, from, to));
+    }
+
+    /**
+     * @return the mean of every bucket that starts within the range, as a reading at the bucket start
+     */
+    RecordSlice means(String recordType, long startTime, long endTime) {
+        int from = lowerBound(startTime);
+        int to = endTime == Long.MAX_VALUE ? size : lowerBound(endTime + 1);
+        if (from >= to) {
+            return RecordSlice.empty(recordType);
+        }
+        double[] means = new double[to - from];
+        for (int i = from; i < to; i++) {
+            means[i - from] = sums[i] / counts[i];
+        }
+        return new RecordSlice(recordType, Arrays.copyOfRange(bucketStarts, from, to), means);
+    }
+
+    private void insert(int index, long bucketStart, double min, double max, double sum, long count) {
+        if (size == bucketStarts.length) {
+            resize(Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+        }
+        int moved = size - index;
+        if (moved > 0) {
+            System.arraycopy(bucketStarts, index, bucketStarts, index + 1, moved);
+            System.arraycopy(minimums, index, minimums, index + 1, moved);
+            System.arraycopy(maximums, index, maximums, index + 1, moved);
+            System.arraycopy(sums, index, sums, index + 1, moved);
+            System.arraycopy(counts, index, counts, index + 1, moved);
+        }
+        bucketStarts[index] = bucketStart;
+        minimums[index] = min;
+        maximums[index] = max;
+        sums[index] = sum;
+        counts[index] = count;
+        size++;
+    }
+
+    private int lowerBound(long bucketStart) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucketStarts[mid] < bucketStart) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void resize(int capacity) {
+        bucketStarts = Arrays.copyOf(bucketStarts, capacity);
+        minimums = Arrays.copyOf(minimums, capacity);
+        maximums = Arrays.copyOf(maximums, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+}
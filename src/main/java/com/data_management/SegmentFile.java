@@ -0,0 +1,584 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable snapshot file holding time-sorted readings of one patient.
+ * The readings of each record type are stored in compressed blocks of up to
+ * {@value #BLOCK_READINGS} readings, followed by an index with the time range
+ * of every block. Opening a segment maps the file and reads only the index;
+ * blocks are decompressed when a query needs them, so cold data stays off the heap.
+ *
+ * A segment also holds the rollup buckets made since the previous snapshot, and
+ * the names of the segments whose readings and rollups it took over; those are
+ * deleted once it is written, and on startup if a crash came in between.
+ *
+ * Layout: magic, patient ID, the blocks, the rollup buckets, the index, then the
+ * index offset and the magic again. A block holds the first timestamp, the
+ * timestamp deltas and the values, deflated. Rollup buckets are not compressed.
+ */
+class SegmentFile {
+    private static final int MAGIC = 0x50534732; // "PSG2"
+    // segments written before rollups were persisted; they hold neither rollups nor absorbed segments
+    private static final int MAGIC_WITHOUT_ROLLUPS = 0x50534731; // "PSG1"
+    private static final int BUCKET_BYTES = 8 + 8 + 8 + 8 + 8;
+    private static final int BLOCK_READINGS = 4096;
+    private static final int TRAILER_BYTES = 8 + 4;
+
+    private final Path path;
+    private final int patientId;
+    private final MappedByteBuffer data;
+    private final String[] recordTypes;
+    private final long[] loggedPositions;
+    private final BlockIndex[] indexes;
+    private final RollupIndex[] rollupIndexes;
+    private final String[] absorbed;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+
+    private SegmentFile(Path path, int patientId, MappedByteBuffer data, String[] recordTypes,
+                        long[] loggedPositions, BlockIndex[] indexes, RollupIndex[] rollupIndexes,
+                        String[] absorbed) {
+        this.path = path;
+        this.patientId = patientId;
+        this.data = data;
+        this.recordTypes = recordTypes;
+        this.loggedPositions = loggedPositions;
+        this.indexes = indexes;
+        this.rollupIndexes = rollupIndexes;
+        this.absorbed = absorbed;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (BlockIndex index : indexes) {
+            if (index.blockCount() > 0) {
+                min = Math.min(min, index.firstTimestamps[0]);
+                max = Math.max(max, index.lastTimestamps[index.blockCount() - 1]);
+            }
+        }
+        this.minTimestamp = min;
+        this.maxTimestamp = max;
+    }
+
+    /**
+     * Writes the readings to a new segment file and opens it. The file is
+     * written under a temporary name and renamed once it is complete and forced
+     * to disk, so a crash never leaves a partial segment behind.
+     *
+     * @param file            the segment file to create
+     * @param patientId       the patient the readings belong to
+     * @param slices          the time-sorted readings, one slice per record type
+     * @param loggedPositions per slice, the write-ahead log position its readings and rollups cover
+     * @param rollups         the rollup buckets to keep with the readings
+     * @param absorbed        the segments whose readings and rollups this one takes over
+     */
+    static SegmentFile write(Path file, int patientId, List<RecordSlice> slices, long[] loggedPositions,
+                             List<AggregateSlice> rollups, List<Path> absorbed) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(patientId);
+            header.flip();
+            long offset = writeFully(channel, header);
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            ByteBuffer raw = ByteBuffer.allocate(BLOCK_READINGS * 16 + 8);
+            ByteBuffer compressed = ByteBuffer.allocate(BLOCK_READINGS * 17 + 64);
+            List<BlockIndex> indexes = new ArrayList<>();
+            for (RecordSlice slice : slices) {
+                int blockCount = (slice.size() + BLOCK_READINGS - 1) / BLOCK_READINGS;
+                BlockIndex index = new BlockIndex(blockCount);
+                for (int b = 0; b < blockCount; b++) {
+                    int from = b * BLOCK_READINGS;
+                    int to = Math.min(slice.size(), from + BLOCK_READINGS);
+                    raw.clear();
+                    long previous = slice.getTimestamp(from);
+                    raw.putLong(previous);
+                    for (int i = from + 1; i < to; i++) {
+                        raw.putLong(slice.getTimestamp(i) - previous);
+                        previous = slice.getTimestamp(i);
+                    }
+                    for (int i = from; i < to; i++) {
+                        raw.putDouble(slice.getValue(i));
+                    }
+                    raw.flip();
+                    deflater.reset();
+                    deflater.setInput(raw);
+                    deflater.finish();
+                    compressed.clear();
+                    while (!deflater.finished()) {
+                        if (!compressed.hasRemaining()) {
+                            compressed = ByteBuffer.allocate(compressed.capacity() * 2)
+                                    .put(compressed.flip());
+                        }
+                        deflater.deflate(compressed);
+                    }
+                    compressed.flip();
+                    index.firstTimestamps[b] = slice.getTimestamp(from);
+                    index.lastTimestamps[b] = slice.getTimestamp(to - 1);
+                    index.counts[b] = to - from;
+                    index.offsets[b] = offset;
+                    index.lengths[b] = compressed.remaining();
+                    offset += writeFully(channel, compressed);
+                }
+                indexes.add(index);
+            }
+            deflater.end();
+
+            long[] rollupOffsets = new long[rollups.size()];
+            for (int r = 0; r < rollups.size(); r++) {
+                AggregateSlice buckets = rollups.get(r);
+                ByteBuffer section = ByteBuffer.allocate(buckets.size() * BUCKET_BYTES);
+                for (int i = 0; i < buckets.size(); i++) {
+                    section.putLong(buckets.getBucketStart(i)).putDouble(buckets.getMin(i))
+                            .putDouble(buckets.getMax(i)).putDouble(buckets.getSum(i)).putLong(buckets.getCount(i));
+                }
+                section.flip();
+                rollupOffsets[r] = offset;
+                offset += writeFully(channel, section);
+            }
+            List<byte[]> absorbedNames = new ArrayList<>();
+            for (Path segment : absorbed) {
+                absorbedNames.add(segment.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+            long indexOffset = offset;
+            ByteBuffer index = ByteBuffer.allocate(indexBytes(slices, indexes, rollups, absorbedNames)
+                    + TRAILER_BYTES);
+            index.putInt(slices.size());
+            for (int s = 0; s < slices.size(); s++) {
+                byte[] name = slices.get(s).getRecordType().getBytes(StandardCharsets.UTF_8);
+                BlockIndex blocks = indexes.get(s);
+                index.putShort((short) name.length).put(name).putLong(loggedPositions[s]).putInt(blocks.blockCount());
+                for (int b = 0; b < blocks.blockCount(); b++) {
+                    index.putLong(blocks.firstTimestamps[b]).putLong(blocks.lastTimestamps[b])
+                            .putInt(blocks.counts[b]).putLong(blocks.offsets[b]).putInt(blocks.lengths[b]);
+                }
+            }
+            index.putInt(rollups.size());
+            for (int r = 0; r < rollups.size(); r++) {
+                AggregateSlice buckets = rollups.get(r);
+                byte[] name = buckets.getRecordType().getBytes(StandardCharsets.UTF_8);
+                index.putShort((short) name.length).put(name).put((byte) buckets.getResolution().ordinal())
+                        .putInt(buckets.size()).putLong(rollupOffsets[r]);
+            }
+            index.putInt(absorbedNames.size());
+            for (byte[] name : absorbedNames) {
+                index.putShort((short) name.length).put(name);
+            }
+            index.putLong(indexOffset).putInt(MAGIC);
+            index.flip();
+            writeFully(channel, index);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    /**
+     * Writes the readings of several segments of one patient to a new segment
+     * file and opens it. Readings of each record type are merged in time order,
+     * and so are rollup buckets; the logged position of a type is the newest
+     * among the inputs. Absorbed segments of the inputs that still exist are
+     * absorbed by the new segment.
+     *
+     * @param file   the segment file to create
+     * @param inputs the segments to merge, all of the same patient
+     */
+    static SegmentFile merge(Path file, List<SegmentFile> inputs) throws IOException {
+        Map<String, List<RecordSlice>> slicesByType = new LinkedHashMap<>();
+        Map<String, Long> positionsByType = new LinkedHashMap<>();
+        for (SegmentFile input : inputs) {
+            for (int t = 0; t < input.recordTypes.length; t++) {
+                String recordType = input.recordTypes[t];
+                slicesByType.computeIfAbsent(recordType, type -> new ArrayList<>())
+                        .add(input.slice(t, Long.MIN_VALUE, Long.MAX_VALUE));
+                positionsByType.merge(recordType, input.loggedPositions[t], Math::max);
+            }
+        }
+        List<RecordSlice> slices = new ArrayList<>();
+        long[] loggedPositions = new long[slicesByType.size()];
+        for (Map.Entry<String, List<RecordSlice>> entry : slicesByType.entrySet()) {
+            loggedPositions[slices.size()] = positionsByType.get(entry.getKey());
+            slices.add(RecordSlice.merge(entry.getKey(), entry.getValue()));
+        }
+
+        Map<String, RollupSeries[]> rollupsByType = new LinkedHashMap<>();
+        List<Path> absorbed = new ArrayList<>();
+        for (SegmentFile input : inputs) {
+            for (AggregateSlice buckets : input.getRollups()) {
+                RollupSeries[] tiers = rollupsByType.computeIfAbsent(buckets.getRecordType(),
+                        type -> new RollupSeries[RetentionPolicy.Resolution.values().length]);
+                int tier = buckets.getResolution().ordinal();
+                if (tiers[tier] == null) {
+                    tiers[tier] = new RollupSeries(buckets.getResolution());
+                }
+                tiers[tier].addAll(buckets);
+            }
+            for (Path absorbedFile : input.getAbsorbed()) {
+                if (Files.exists(absorbedFile)) {
+                    absorbed.add(absorbedFile);
+                }
+            }
+        }
+        List<AggregateSlice> rollups = new ArrayList<>();
+        for (Map.Entry<String, RollupSeries[]> entry : rollupsByType.entrySet()) {
+            for (RollupSeries tier : entry.getValue()) {
+                if (tier != null) {
+                    rollups.add(tier.slice(entry.getKey(), Long.MIN_VALUE, Long.MAX_VALUE));
+                }
+            }
+        }
+        return write(file, inputs.get(0).patientId, slices, loggedPositions, rollups, absorbed);
+    }
+
+    /**
+     * Maps a segment file and reads its index.
+     */
+    static SegmentFile open(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8 + 4 + TRAILER_BYTES) {
+                throw new IOException("Segment file too short: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int limit = data.limit();
+        int magic = data.getInt(0);
+        if ((magic != MAGIC && magic != MAGIC_WITHOUT_ROLLUPS) || data.getInt(limit - 4) != magic) {
+            throw new IOException("Not a complete segment file: " + file);
+        }
+        int patientId = data.getInt(4);
+        ByteBuffer index = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        index.position((int) data.getLong(limit - TRAILER_BYTES));
+        int typeCount = index.getInt();
+        String[] recordTypes = new String[typeCount];
+        long[] loggedPositions = new long[typeCount];
+        BlockIndex[] indexes = new BlockIndex[typeCount];
+        for (int t = 0; t < typeCount; t++) {
+            byte[] name = new byte[index.getShort()];
+            index.get(name);
+            recordTypes[t] = new String(name, StandardCharsets.UTF_8);
+            loggedPositions[t] = index.getLong();
+            BlockIndex blocks = new BlockIndex(index.getInt());
+            for (int b = 0; b < blocks.blockCount(); b++) {
+                blocks.firstTimestamps[b] = index.getLong();
+                blocks.lastTimestamps[b] = index.getLong();
+                blocks.counts[b] = index.getInt();
+                blocks.offsets[b] = index.getLong();
+                blocks.lengths[b] = index.getInt();
+            }
+            indexes[t] = blocks;
+        }
+        RollupIndex[] rollupIndexes = new RollupIndex[0];
+        String[] absorbed = new String[0];
+        if (magic == MAGIC) {
+            rollupIndexes = new RollupIndex[index.getInt()];
+            for (int r = 0; r < rollupIndexes.length; r++) {
+                byte[] name = new byte[index.getShort()];
+                index.get(name);
+                rollupIndexes[r] = new RollupIndex(new String(name, StandardCharsets.UTF_8),
+                        RetentionPolicy.Resolution.values()[index.get()], index.getInt(), index.getLong());
+            }
+            absorbed = new String[index.getInt()];
+            for (int a = 0; a < absorbed.length; a++) {
+                byte[] name = new byte[index.getShort()];
+                index.get(name);
+                absorbed[a] = new String(name, StandardCharsets.UTF_8);
+            }
+        }
+        return new SegmentFile(file, patientId, data, recordTypes, loggedPositions, indexes, rollupIndexes,
+                absorbed);
+    }
+
+    /**
+     * @return the patient whose readings the segment holds
+     */
+    int getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * @return the file of this segment
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the newest timestamp of any reading in this segment
+     */
+    long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    /**
+     * @return the number of readings in this segment
+     */
+    long getReadingCount() {
+        long count = 0;
+        for (BlockIndex index : indexes) {
+            for (int c : index.counts) {
+                count += c;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the record types in this segment
+     */
+    String[] getRecordTypes() {
+        return recordTypes.clone();
+    }
+
+    /**
+     * @return the write-ahead log position up to which the readings of the type are in this segment, -1 if none
+     */
+    long getLoggedPosition(String recordType) {
+        int t = indexOf(recordType);
+        return t < 0 ? -1 : loggedPositions[t];
+    }
+
+    /**
+     * Reads the rollup buckets kept in this segment, one slice per record type and resolution.
+     */
+    List<AggregateSlice> getRollups() {
+        List<AggregateSlice> rollups = new ArrayList<>(rollupIndexes.length);
+        for (RollupIndex rollup : rollupIndexes) {
+            long[] bucketStarts = new long[rollup.bucketCount];
+            double[] minimums = new double[rollup.bucketCount];
+            double[] maximums = new double[rollup.bucketCount];
+            double[] sums = new double[rollup.bucketCount];
+            long[] counts = new long[rollup.bucketCount];
+            ByteBuffer section = data.slice((int) rollup.offset, rollup.bucketCount * BUCKET_BYTES);
+            for (int i = 0; i < rollup.bucketCount; i++) {
+                bucketStarts[i] = section.getLong();
+                minimums[i] = section.getDouble();
+                maximums[i] = section.getDouble();
+                sums[i] = section.getDouble();
+                counts[i] = section.getLong();
+            }
+            rollups.add(new AggregateSlice(rollup.recordType, rollup.resolution, bucketStarts, minimums,
+                    maximums, sums, counts));
+        }
+        return rollups;
+    }
+
+    /**
+     * @return the files of the segments this one took over, which may already be deleted
+     */
+    List<Path> getAbsorbed() {
+        List<Path> files = new ArrayList<>(absorbed.length);
+        for (String name : absorbed) {
+            files.add(path.resolveSibling(name));
+        }
+        return files;
+    }
+
+    /**
+     * Adds a slice per record type with readings in the time range to the list.
+     */
+    void addSlices(long startTime, long endTime, List<RecordSlice> out) {
+        if (startTime > maxTimestamp || endTime < minTimestamp) {
+            return;
+        }
+        for (int t = 0; t < recordTypes.length; t++) {
+            RecordSlice slice = slice(t, startTime, endTime);
+            if (slice.size() > 0) {
+                out.add(slice);
+            }
+        }
+    }
+
+    /**
+     * @return the readings of the type in the time range, decompressing only the blocks that overlap it
+     */
+    RecordSlice slice(String recordType, long startTime, long endTime) {
+        int t = indexOf(recordType);
+        if (t < 0 || startTime > maxTimestamp || endTime < minTimestamp) {
+            return RecordSlice.empty(recordType);
+        }
+        return slice(t, startTime, endTime);
+    }
+
+    private RecordSlice slice(int t, long startTime, long endTime) {
+        BlockIndex blocks = indexes[t];
+        List<long[]> timestampParts = new ArrayList<>();
+        List<double[]> valueParts = new ArrayList<>();
+        int total = 0;
+        for (int b = blocks.firstBlockEndingAtOrAfter(startTime); b < blocks.blockCount(); b++) {
+            if (blocks.firstTimestamps[b] > endTime) {
+                break;
+            }
+            long[] timestamps = new long[blocks.counts[b]];
+            double[] values = new double[blocks.counts[b]];
+            readBlock(blocks, b, timestamps, values);
+            int from = 0;
+            while (from < timestamps.length && timestamps[from] < startTime) {
+                from++;
+            }
+            int to = timestamps.length;
+            while (to > from && timestamps[to - 1] > endTime) {
+                to--;
+            }
+            if (to > from) {
+                timestampParts.add(Arrays.copyOfRange(timestamps, from, to));
+                valueParts.add(Arrays.copyOfRange(values, from, to));
+                total += to - from;
+            }
+        }
+        if (timestampParts.size() == 1) {
+            return new RecordSlice(recordTypes[t], timestampParts.get(0), valueParts.get(0));
+        }
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int position = 0;
+        for (int p = 0; p < timestampParts.size(); p++) {
+            int length = timestampParts.get(p).length;
+            System.arraycopy(timestampParts.get(p), 0, timestamps, position, length);
+            System.arraycopy(valueParts.get(p), 0, values, position, length);
+            position += length;
+        }
+        return new RecordSlice(recordTypes[t], timestamps, values);
+    }
+
+    private void readBlock(BlockIndex blocks, int b, long[] timestamps, double[] values) {
+        ByteBuffer input = data.slice((int) blocks.offsets[b], blocks.lengths[b]);
+        ByteBuffer raw = ByteBuffer.allocate(blocks.counts[b] * 16);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block in segment " + path, e);
+        } finally {
+            inflater.end();
+        }
+        if (raw.hasRemaining()) {
+            throw new IllegalStateException("Truncated block in segment " + path);
+        }
+        raw.flip();
+        long timestamp = raw.getLong();
+        timestamps[0] = timestamp;
+        for (int i = 1; i < timestamps.length; i++) {
+            timestamp += raw.getLong();
+            timestamps[i] = timestamp;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = raw.getDouble();
+        }
+    }
+
+    private int indexOf(String recordType) {
+        for (int t = 0; t < recordTypes.length; t++) {
+            if (recordTypes[t].equals(recordType)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexBytes(List<RecordSlice> slices, List<BlockIndex> indexes,
+                                  List<AggregateSlice> rollups, List<byte[]> absorbedNames) {
+        int bytes = 4;
+        for (int s = 0; s < slices.size(); s++) {
+            bytes += 2 + slices.get(s).getRecordType().getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+            bytes += indexes.get(s).blockCount() * (8 + 8 + 4 + 8 + 4);
+        }
+        bytes += 4;
+        for (AggregateSlice buckets : rollups) {
+            bytes += 2 + buckets.getRecordType().getBytes(StandardCharsets.UTF_8).length + 1 + 4 + 8;
+        }
+        bytes += 4;
+        for (byte[] name : absorbedNames) {
+            bytes += 2 + name.length;
+        }
+        return bytes;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * record type, resolution, size and position of the rollup buckets of one tier
+     */
+    private static class RollupIndex {
+        final String recordType;
+        final RetentionPolicy.Resolution resolution;
+        final int bucketCount;
+        final long offset;
+
+        RollupIndex(String recordType, RetentionPolicy.Resolution resolution, int bucketCount, long offset) {
+            this.recordType = recordType;
+            this.resolution = resolution;
+            this.bucketCount = bucketCount;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * time range, size and position of every block of one record type
+     */
+    private static class BlockIndex {
+        final long[] firstTimestamps;
+        final long[] lastTimestamps;
+        final int[] counts;
+        final long[] offsets;
+        final int[] lengths;
+
+        BlockIndex(int blockCount) {
+            firstTimestamps = new long[blockCount];
+            lastTimestamps = new long[blockCount];
+            counts = new int[blockCount];
+            offsets = new long[blockCount];
+            lengths = new int[blockCount];
+        }
+
+        int blockCount() {
+            return counts.length;
+        }
+
+        /**
+         * blocks are in time order, so the last timestamps are sorted and can be searched
+         */
+        int firstBlockEndingAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = counts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lastTimestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
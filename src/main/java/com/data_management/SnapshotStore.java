@@ -0,0 +1,226 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the snapshot segments of a {@link DataStorage} in a directory.
+ * A snapshot writes the readings each patient holds in memory to a new,
+ * immutable {@link SegmentFile} and then serves them from that file, so the
+ * heap only holds readings since the last snapshot. On startup the segments
+ * are mapped rather than read, which takes time proportional to the number of
+ * segments instead of the number of readings.
+ * If the storage writes a {@link WriteAheadLog}, every snapshot starts a new
+ * log segment and deletes the log segments it has made redundant.
+ * After a snapshot, the newest segments of a patient are merged (see
+ * {@link Patient#compactSegments}), so the number of segments - and of
+ * mapped files - grows with the logarithm of the uptime rather than linearly.
+ * A merged segment is named after the range of snapshot sequences it holds.
+ */
+public class SnapshotStore implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "patient-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private long nextSequence;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param directory where the segment files are kept; created if missing
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        long maxSequence = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                maxSequence = Math.max(maxSequence, sequenceOf(file));
+            }
+        }
+        this.nextSequence = maxSequence + 1;
+    }
+
+    /**
+     * maps every segment in the directory and adds it to its patient
+     * Left-over temporary files of an interrupted snapshot are deleted, as are
+     * segments an interrupted compaction has already merged into another one
+     * and expired segments whose rollups a newer segment has taken over.
+     * @param storage the storage to add the segments to
+     * @return the number of segments loaded
+     * @throws IOException if a segment cannot be read
+     */
+    public synchronized int loadInto(DataStorage storage) throws IOException {
+        Map<String, List<SegmentName>> namesByPatient = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(SEGMENT_SUFFIX)) {
+                    SegmentName name = SegmentName.of(file);
+                    namesByPatient.computeIfAbsent(name.patient, patient -> new ArrayList<>()).add(name);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        List<SegmentFile> opened = new ArrayList<>();
+        Set<Path> absorbed = new HashSet<>();
+        for (List<SegmentName> names : namesByPatient.values()) {
+            // oldest first, and a merged segment before the inputs it starts with
+            names.sort(Comparator.comparingLong((SegmentName name) -> name.firstSequence)
+                    .thenComparing(Comparator.comparingLong((SegmentName name) -> name.lastSequence).reversed()));
+            long covered = Long.MIN_VALUE;
+            for (SegmentName name : names) {
+                if (name.lastSequence <= covered) {
+                    Files.deleteIfExists(name.file);
+                } else {
+                    SegmentFile segment = SegmentFile.open(name.file);
+                    opened.add(segment);
+                    absorbed.addAll(segment.getAbsorbed());
+                    covered = name.lastSequence;
+                }
+            }
+        }
+        int loaded = 0;
+        for (SegmentFile segment : opened) {
+            if (absorbed.contains(segment.getPath())) {
+                Files.deleteIfExists(segment.getPath());
+            } else {
+                storage.restore(segment);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * writes a segment for every patient with readings in memory
+     * @param storage the storage to snapshot
+     * @return the number of segments written
+     * @throws IOException if a segment cannot be written; segments written before stay valid
+     */
+    public synchronized int snapshot(DataStorage storage) throws IOException {
+        WriteAheadLog log = storage.getWriteAheadLog();
+        // everything in earlier log segments is in memory, so it will be in the new segments
+        long logStart = log == null ? -1 : log.rotate();
+        int written = 0;
+        for (Patient patient : storage.getAllPatients()) {
+            Path file = directory.resolve(String.format("%s%d-%020d%s",
+                    SEGMENT_PREFIX, patient.getPatientId(), nextSequence, SEGMENT_SUFFIX));
+            if (patient.writeSnapshot(file) != null) {
+                written++;
+            }
+        }
+        nextSequence++;
+        if (log != null) {
+            log.deleteSegmentsBefore(logStart);
+        }
+        for (Patient patient : storage.getAllPatients()) {
+            for (SegmentFile replaced : patient.compactSegments(SnapshotStore::mergedFileFor)) {
+                Files.deleteIfExists(replaced.getPath());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * takes a snapshot at a fixed interval on a background thread
+     * @param storage the storage to snapshot
+     * @param interval time between snapshots
+     * @param timeUnit unit of the interval
+     */
+    public synchronized void startPeriodicSnapshots(DataStorage storage, long interval, TimeUnit timeUnit) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Periodic snapshots already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(storage);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error writing snapshot: " + e.getMessage());
+            }
+        }, interval, interval, timeUnit);
+    }
+
+    /**
+     * stops periodic snapshots, waiting for one in progress
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Path mergedFileFor(List<SegmentFile> inputs) {
+        SegmentFile first = inputs.get(0);
+        SegmentFile last = inputs.get(inputs.size() - 1);
+        return first.getPath().resolveSibling(String.format("%s%d-%020d-%020d%s",
+                SEGMENT_PREFIX, first.getPatientId(), SegmentName.of(first.getPath()).firstSequence,
+                SegmentName.of(last.getPath()).lastSequence, SEGMENT_SUFFIX));
+    }
+
+    private static long sequenceOf(Path file) {
+        return SegmentName.of(file).lastSequence;
+    }
+
+    /**
+     * the parts of a segment file name: the patient, then the snapshot sequence,
+     * or for a merged segment the first and the last sequence it holds
+     */
+    private static class SegmentName {
+        private static final int SEQUENCE_DIGITS = 20;
+
+        final Path file;
+        final String patient;
+        final long firstSequence;
+        final long lastSequence;
+
+        private SegmentName(Path file, String patient, long firstSequence, long lastSequence) {
+            this.file = file;
+            this.patient = patient;
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+        }
+
+        static SegmentName of(Path file) {
+            String name = file.getFileName().toString();
+            String body = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+            int last = body.lastIndexOf('-');
+            long lastSequence = Long.parseLong(body.substring(last + 1));
+            String rest = body.substring(0, last);
+            int first = rest.lastIndexOf('-');
+            if (first > 0 && rest.length() - first - 1 == SEQUENCE_DIGITS) {
+                return new SegmentName(file, rest.substring(0, first),
+                        Long.parseLong(rest.substring(first + 1)), lastSequence);
+            }
+            return new SegmentName(file, rest, lastSequence, lastSequence);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotStoreTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * verifies that snapshotted readings are served from segments, merged with newer readings in memory
+     * purpose: getRecords must not change when readings move from the heap to a segment file
+     */
+    @Test
+    void testQueriesMergeSegmentsAndMemory() throws IOException {
+        DataStorage storage = new DataStorage();
+        try (SnapshotStore snapshots = new SnapshotStore(tempDir.resolve("segments"))) {
+            for (int i = 0; i < 10_000; i++) {
+                storage.addPatientData(1, i, (i % 2 == 0) ? "ECG" : "Saturation", i * 10L);
+            }
+            assertEquals(1, snapshots.snapshot(storage));
+            // newer readings, and a late one that falls between snapshotted readings
+            storage.addPatientData(1, -1.0, "ECG", 100_000L);
+            storage.addPatientData(1, -2.0, "ECG", 55L);
+
+            List<PatientRecord> records = storage.getRecords(1, 40L, 70L);
+            assertEquals(5, records.size());
+            assertEquals(-2.0, records.get(2).getMeasurementValue());
+            assertEquals(10_002, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+
+            RecordSlice ecg = storage.getAllPatients().get(0).getSlice("ECG", 99_980L, Long.MAX_VALUE);
+            assertEquals(2, ecg.size());
+            assertEquals(99_980L, ecg.getTimestamp(0));
+            assertEquals(100_000L, ecg.getTimestamp(1));
+        }
+    }
+
+    /**
+     * verifies recovery from segments plus the write-ahead log without duplicates
+     * purpose: readings in a segment must not be replayed from the log again
+     */
+    @Test
+    void testRecoverFromSegmentsAndLog() throws IOException {
+        Path segments = tempDir.resolve("segments");
+        Path wal = tempDir.resolve("wal");
+        try (WriteAheadLog log = WriteAheadLog.open(wal);
+             SnapshotStore snapshots = new SnapshotStore(segments)) {
+            DataStorage storage = DataStorage.recover(snapshots, log);
+            for (int i = 0; i < 1000; i++) {
+                storage.addPatientData(i % 3, i, "ECG", i);
+            }
+            snapshots.snapshot(storage);
+            for (int i = 1000; i < 1500; i++) {
+                storage.addPatientData(i % 3, i, "ECG", i);
+            }
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(wal);
+             SnapshotStore snapshots = new SnapshotStore(segments)) {
+            DataStorage recovered = DataStorage.recover(snapshots, log);
+            int total = 0;
+            for (int patientId = 0; patientId < 3; patientId++) {
+                List<PatientRecord> records = recovered.getRecords(patientId, 0L, Long.MAX_VALUE);
+                for (int n = 1; n < records.size(); n++) {
+                    assertEquals(records.get(n - 1).getTimestamp() + 3, records.get(n).getTimestamp());
+                }
+                total += records.size();
+            }
+            assertEquals(1500, total);
+
+            // a second snapshot after recovery covers the replayed readings as well
+            snapshots.snapshot(recovered);
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(wal);
+             SnapshotStore snapshots = new SnapshotStore(segments)) {
+            assertEquals(500, DataStorage.recover(snapshots, log).getRecords(0, 0L, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * verifies that snapshot segments are compacted and survive a reload intact
+     * purpose: the number of segment files must not grow with the number of snapshots,
+     * and inputs left behind by an interrupted compaction must not be loaded twice
+     */
+    @Test
+    void testSegmentsAreCompacted() throws IOException {
+        Path segments = tempDir.resolve("segments");
+        try (SnapshotStore snapshots = new SnapshotStore(segments)) {
+            DataStorage storage = new DataStorage();
+            for (int snapshot = 0; snapshot < 100; snapshot++) {
+                for (int i = 0; i < 100; i++) {
+                    long timestamp = snapshot * 100L + i;
+                    storage.addPatientData(1, timestamp, "ECG", timestamp);
+                }
+                snapshots.snapshot(storage);
+            }
+            // 100 snapshots of equal size leave one segment per set bit of 100
+            assertEquals(3, segmentFiles(segments).size());
+            assertEquals(10_000, storage.getRecords(1, 0L, Long.MAX_VALUE).size());
+        }
+
+        // an interrupted compaction can leave an input next to the segment it was merged into
+        Path merged = segmentFiles(segments).stream()
+                .filter(file -> file.getFileName().toString().startsWith("patient-1-00000000000000000001-"))
+                .findFirst().orElseThrow();
+        Files.copy(merged, segments.resolve(String.format("patient-1-%020d.seg", 5)));
+
+        try (SnapshotStore snapshots = new SnapshotStore(segments)) {
+            DataStorage storage = new DataStorage();
+            assertEquals(3, snapshots.loadInto(storage));
+            assertEquals(3, segmentFiles(segments).size());
+            List<PatientRecord> records = storage.getRecords(1, 0L, Long.MAX_VALUE);
+            assertEquals(10_000, records.size());
+            for (int n = 0; n < records.size(); n++) {
+                assertEquals(n, records.get(n).getTimestamp());
+            }
+        }
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).toList();
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only binary log of every reading added to a {@link DataStorage},
+ * used to rebuild the storage after a restart.
+ * The log is a sequence of segment files. Each reading is one fixed-width
+ * entry; record types are written once per segment as dictionary entries and
+ * referenced by a short ID. Every entry ends with a CRC32C of its bytes, and
+ * replay stops at the first entry whose checksum does not match, so a torn or
+ * garbage tail is never stored as readings. Appends go to an in-memory buffer that a background
+ * thread writes and forces to disk every {@code syncIntervalMillis}, so many
+ * readings share one fsync. Readings appended after the last sync can be lost
+ * in a crash.
+ * Positions in the log are given as a log sequence number: the segment number
+ * in the high 32 bits and the byte offset within the segment in the low 32 bits.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final int MAGIC = 0x50574132; // "PWA2", entries with checksums
+    private static final int MAGIC_WITHOUT_CHECKSUMS = 0x50574131; // "PWA1", still replayed
+    private static final int HEADER_BYTES = 4;
+    private static final byte TYPE_ENTRY = 1;
+    private static final byte RECORD_ENTRY = 2;
+    private static final int CHECKSUM_BYTES = 4;
+    // tag, patient ID, type ID, timestamp, value, checksum
+    static final int RECORD_BYTES = 1 + 4 + 2 + 8 + 8 + CHECKSUM_BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int REPLAY_BATCH_SIZE = 8192;
+
+    /**
+     * settings for the log
+     */
+    public static class Options {
+        private long segmentBytes = 256L << 20;
+        private long syncIntervalMillis = 200;
+        private int bufferBytes = 1 << 20;
+
+        /**
+         * @param segmentBytes size after which a new segment file is started, at most 2 GB
+         */
+        public Options segmentBytes(long segmentBytes) {
+            this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+            return this;
+        }
+
+        /**
+         * @param syncIntervalMillis the longest an appended reading waits before it is forced to disk
+         */
+        public Options syncIntervalMillis(long syncIntervalMillis) {
+            this.syncIntervalMillis = syncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param bufferBytes appended bytes held in memory before they are written to the file
+         */
+        public Options bufferBytes(int bufferBytes) {
+            this.bufferBytes = bufferBytes;
+            return this;
+        }
+    }
+
+    private final Path directory;
+    private final Options options;
+    // segments that existed when the log was opened, replayed by replayInto
+    private final List<Path> recoveredSegments;
+
+    private final Map<String, Integer> typeIds = new HashMap<>();
+    private final List<String> types = new ArrayList<>();
+    private final BitSet typesInSegment = new BitSet();
+
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;
+    private long segmentSequence;
+    private long segmentOffset;
+    private boolean unsynced;
+
+    private final Thread syncThread;
+    // the sync thread waits on this between syncs; close() wakes it instead of interrupting it,
+    // because an interrupt during a write or force would close the segment's channel
+    private final Object syncWakeup = new Object();
+    private volatile boolean closed;
+
+    private WriteAheadLog(Path directory, Options options) throws IOException {
+        this.directory = directory;
+        this.options = options;
+        Files.createDirectories(directory);
+        this.recoveredSegments = listSegments(directory);
+        this.segmentSequence = recoveredSegments.isEmpty() ? 0 : sequenceOf(recoveredSegments.get(recoveredSegments.size() - 1));
+        this.buffer = ByteBuffer.allocateDirect(Math.max(options.bufferBytes, 4096));
+        // never append to a segment of an earlier run, its tail may be torn
+        startSegment();
+
+        this.syncThread = new Thread(this::syncLoop, "wal-sync");
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * opens the log in the given directory with default settings
+     * @param directory where the segment files are kept; created if missing
+     * @return the opened log
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public static WriteAheadLog open(Path directory) throws IOException {
+        return open(directory, new Options());
+    }
+
+    /**
+     * opens the log in the given directory
+     * @param directory where the segment files are kept; created if missing
+     * @param options segment and sync settings
+     * @return the opened log
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public static WriteAheadLog open(Path directory, Options options) throws IOException {
+        return new WriteAheadLog(directory, options);
+    }
+
+    /**
+     * appends one reading
+     * @return the log position right after the reading
+     * @throws IllegalStateException if the log is closed
+     */
+    public synchronized long append(int patientId, String recordType, long timestamp, double value) {
+        ensureOpen();
+        int typeId = prepareRecord(recordType);
+        putRecord(patientId, typeId, timestamp, value);
+        return position();
+    }
+
+    /**
+     * appends a batch of readings of one patient and type
+     * @return the log position right after the last reading
+     * @throws IllegalStateException if the log is closed
+     */
+    public synchronized long appendAll(int patientId, String recordType, long[] timestamps, double[] values,
+                                       int count) {
+        ensureOpen();
+        for (int i = 0; i < count; i++) {
+            int typeId = prepareRecord(recordType);
+            putRecord(patientId, typeId, timestamps[i], values[i]);
+        }
+        return position();
+    }
+
+    /**
+     * @return the log sequence number right after the last appended entry
+     */
+    public synchronized long position() {
+        return (segmentSequence << 32) | (segmentOffset + buffer.position());
+    }
+
+    /**
+     * writes buffered entries and forces them to disk; does nothing once the log is closed,
+     * as closing forces everything appended
+     * @throws IOException if writing or forcing fails
+     */
+    public void sync() throws IOException {
+        FileChannel target;
+        long targetSequence;
+        synchronized (this) {
+            if (closed || (!unsynced && buffer.position() == 0)) {
+                return;
+            }
+            writeBuffer();
+            unsynced = false;
+            target = channel;
+            targetSequence = segmentSequence;
+        }
+        // force outside the lock so appends continue during the fsync
+        try {
+            target.force(false);
+        } catch (ClosedChannelException e) {
+            synchronized (this) {
+                // rotating and closing force the segment before they close it; anything else lost data
+                if (e instanceof ClosedByInterruptException || (segmentSequence == targetSequence && !closed)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * rebuilds the readings of all segments that existed when the log was opened
+     * The readings are added without writing them to the log again and without
+     * notifying the storage's listeners. Readings that the storage already holds
+     * in snapshot segments are skipped. A torn entry at the end of a segment,
+     * left by a crash, ends the replay of that segment.
+     * @param storage the storage to add the readings to
+     * @return the number of readings replayed
+     * @throws IOException if a segment cannot be read
+     */
+    public long replayInto(DataStorage storage) throws IOException {
+        long replayed = 0;
+        for (Path segment : recoveredSegments) {
+            replayed += replaySegment(segment, storage);
+        }
+        return replayed;
+    }
+
+    /**
+     * closes the current segment and starts a new one
+     * @return the log position at the start of the new segment
+     * @throws IOException if the current segment cannot be written
+     */
+    public synchronized long rotate() throws IOException {
+        ensureOpen();
+        writeBuffer();
+        channel.force(false);
+        channel.close();
+        startSegment();
+        return position();
+    }
+
+    /**
+     * deletes closed segments that only hold entries before the given position,
+     * for use once those readings are persisted elsewhere
+     * @param lsn a log sequence number from {@link #position()}
+     * @throws IOException if a segment cannot be deleted
+     */
+    public synchronized void deleteSegmentsBefore(long lsn) throws IOException {
+        long sequence = lsn >>> 32;
+        for (Path segment : listSegments(directory)) {
+            long segmentNumber = sequenceOf(segment);
+            if (segmentNumber < sequence && segmentNumber != segmentSequence) {
+                Files.deleteIfExists(segment);
+                recoveredSegments.remove(segment);
+            }
+        }
+    }
+
+    /**
+     * stops the sync thread, forces everything appended so far to disk and closes the segment
+     * Appends made after this throw {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // set under the lock, so every append either finished before or sees the log closed
+            closed = true;
+        }
+        synchronized (syncWakeup) {
+            syncWakeup.notifyAll();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                syncThread.join();
+                break;
+            } catch (InterruptedException e) {
+                // the final write below must not run while the sync thread may still be writing
+                interrupted = true;
+            }
+        }
+        synchronized (this) {
+            try {
+                writeBuffer();
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing write-ahead log: " + e);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    /**
+     * makes room for a record entry and writes the type's dictionary entry if the
+     * current segment does not have it yet
+     * @return the ID of the record type
+     */
+    private int prepareRecord(String recordType) {
+        Integer id = typeIds.get(recordType);
+        if (id == null) {
+            if (types.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many record types for the write-ahead log");
+            }
+            id = types.size();
+            types.add(recordType);
+            typeIds.put(recordType, id);
+        }
+        byte[] name = typesInSegment.get(id) ? null : recordType.getBytes(StandardCharsets.UTF_8);
+        reserve(RECORD_BYTES + (name == null ? 0 : 5 + name.length + CHECKSUM_BYTES));
+        // reserving may have started a new segment, which needs its own dictionary entry
+        if (!typesInSegment.get(id)) {
+            if (name == null) {
+                name = recordType.getBytes(StandardCharsets.UTF_8);
+            }
+            int start = buffer.position();
+            buffer.put(TYPE_ENTRY).putShort((short) (int) id).putShort((short) name.length).put(name);
+            buffer.putInt(checksum(crc, buffer, start, buffer.position()));
+            typesInSegment.set(id);
+        }
+        return id;
+    }
+
+    private void putRecord(int patientId, int typeId, long timestamp, double value) {
+        int start = buffer.position();
+        buffer.put(RECORD_ENTRY).putInt(patientId).putShort((short) typeId).putLong(timestamp).putDouble(value);
+        buffer.putInt(checksum(crc, buffer, start, buffer.position()));
+        unsynced = true;
+    }
+
+    /**
+     * @return the CRC32C of the bytes from {@code from} to {@code to}, leaving the buffer's position and limit as they were
+     */
+    private static int checksum(CRC32C crc, ByteBuffer bytes, int from, int to) {
+        int position = bytes.position();
+        int limit = bytes.limit();
+        bytes.limit(to).position(from);
+        crc.reset();
+        crc.update(bytes);
+        bytes.limit(limit).position(position);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * makes room for an entry, writing the buffer or starting a new segment as needed
+     */
+    private void reserve(int bytes) {
+        try {
+            if (segmentOffset + buffer.position() + bytes > options.segmentBytes) {
+                rotate();
+            }
+            if (buffer.remaining() < bytes) {
+                writeBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing write-ahead log", e);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentOffset += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void startSegment() throws IOException {
+        segmentSequence++;
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentOffset = 0;
+        typesInSegment.clear();
+        buffer.putInt(MAGIC);
+    }
+
+    private void syncLoop() {
+        while (true) {
+            synchronized (syncWakeup) {
+                long deadline = System.currentTimeMillis() + options.syncIntervalMillis;
+                long wait;
+                while (!closed && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        syncWakeup.wait(wait);
+                    } catch (InterruptedException e) {
+                        // only close() stops this thread
+                    }
+                }
+            }
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } catch (IOException e) {
+                System.err.println("Error syncing write-ahead log: " + e);
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        segments.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return segments;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long replaySegment(Path segment, DataStorage storage) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (file.size() < HEADER_BYTES) {
+                return 0;
+            }
+            bytes = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+        int magic = bytes.getInt();
+        if (magic != MAGIC && magic != MAGIC_WITHOUT_CHECKSUMS) {
+            throw new IOException("Not a write-ahead log segment: " + segment);
+        }
+        int checksumBytes = magic == MAGIC ? CHECKSUM_BYTES : 0;
+        int recordBytes = RECORD_BYTES - CHECKSUM_BYTES + checksumBytes;
+        CRC32C crc = new CRC32C();
+
+        long sequence = sequenceOf(segment);
+        List<String> segmentTypes = new ArrayList<>();
+        ReplayBatches batches = new ReplayBatches(storage);
+        long replayed = 0;
+        while (bytes.hasRemaining()) {
+            int start = bytes.position();
+            byte tag = bytes.get(start);
+            if (tag == RECORD_ENTRY && bytes.remaining() >= recordBytes) {
+                if (!checksumMatches(crc, bytes, start, recordBytes, checksumBytes)) {
+                    break;
+                }
+                bytes.get();
+                int patientId = bytes.getInt();
+                int typeId = bytes.getShort();
+                long timestamp = bytes.getLong();
+                double value = bytes.getDouble();
+                bytes.position(bytes.position() + checksumBytes);
+                if (typeId < 0 || typeId >= segmentTypes.size() || segmentTypes.get(typeId) == null) {
+                    break;
+                }
+                long position = (sequence << 32) | bytes.position();
+                if (batches.add(patientId, typeId, segmentTypes.get(typeId), timestamp, value, position)) {
+                    replayed++;
+                }
+            } else if (tag == TYPE_ENTRY && bytes.remaining() >= 5 && bytes.getShort(start + 3) >= 0
+                    && bytes.remaining() >= 5 + bytes.getShort(start + 3) + checksumBytes) {
+                if (!checksumMatches(crc, bytes, start, 5 + bytes.getShort(start + 3) + checksumBytes, checksumBytes)) {
+                    break;
+                }
+                bytes.get();
+                int typeId = bytes.getShort();
+                byte[] name = new byte[bytes.getShort()];
+                bytes.get(name);
+                bytes.position(bytes.position() + checksumBytes);
+                while (segmentTypes.size() <= typeId) {
+                    segmentTypes.add(null);
+                }
+                segmentTypes.set(typeId, new String(name, StandardCharsets.UTF_8));
+            } else {
+                // torn or zeroed tail after a crash
+                break;
+            }
+        }
+        batches.flushAll();
+        return replayed;
+    }
+
+    /**
+     * @return whether the checksum at the end of the entry matches its bytes; always true for segments without checksums
+     */
+    private static boolean checksumMatches(CRC32C crc, ByteBuffer bytes, int start, int entryBytes, int checksumBytes) {
+        if (checksumBytes == 0) {
+            return true;
+        }
+        int end = start + entryBytes - CHECKSUM_BYTES;
+        return checksum(crc, bytes, start, end) == bytes.getInt(end);
+    }
+
+    /**
+     * collects replayed readings per patient and type so they are stored in bulk
+     * Keys are found in an open-addressing table to avoid boxing per entry.
+     */
+    private static class ReplayBatches {
+        private final DataStorage storage;
+        private long[] keys = new long[1024];
+        private int[] slots = new int[1024];
+        private final List<Batch> batches = new ArrayList<>();
+
+        ReplayBatches(DataStorage storage) {
+            this.storage = storage;
+            Arrays.fill(slots, -1);
+        }
+
+        /**
+         * @return false if the reading is already in a snapshot segment
+         */
+        boolean add(int patientId, int typeId, String recordType, long timestamp, double value, long position) {
+            Batch batch = batchFor(((long) patientId << 16) | typeId, patientId, recordType);
+            if (position <= batch.persistedPosition) {
+                return false;
+            }
+            batch.add(timestamp, value, position);
+            if (batch.count == REPLAY_BATCH_SIZE) {
+                batch.flush(storage);
+            }
+            return true;
+        }
+
+        void flushAll() {
+            for (Batch batch : batches) {
+                batch.flush(storage);
+            }
+        }
+
+        private Batch batchFor(long key, int patientId, String recordType) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (slots[slot] >= 0) {
+                if (keys[slot] == key) {
+                    return batches.get(slots[slot]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            Batch batch = new Batch(patientId, recordType, storage.getPersistedPosition(patientId, recordType));
+            keys[slot] = key;
+            slots[slot] = batches.size();
+            batches.add(batch);
+            if (batches.size() * 2 > keys.length) {
+                grow();
+            }
+            return batch;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldSlots.length * 2];
+            Arrays.fill(slots, -1);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldSlots[i] >= 0) {
+                    int slot = Long.hashCode(oldKeys[i] * 0x9E3779B97F4A7C15L) & mask;
+                    while (slots[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    slots[slot] = oldSlots[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * replayed readings of one patient and type waiting to be stored
+     */
+    private static class Batch {
+        final int patientId;
+        final String recordType;
+        final long persistedPosition;
+        long[] timestamps = new long[64];
+        double[] values = new double[64];
+        int count;
+        long lastPosition;
+
+        Batch(int patientId, String recordType, long persistedPosition) {
+            this.patientId = patientId;
+            this.recordType = recordType;
+            this.persistedPosition = persistedPosition;
+        }
+
+        void add(long timestamp, double value, long position) {
+            lastPosition = position;
+            if (count == timestamps.length) {
+                int capacity = Math.min(REPLAY_BATCH_SIZE, count * 2);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            timestamps[count] = timestamp;
+            values[count] = value;
+            count++;
+        }
+
+        void flush(DataStorage storage) {
+            if (count > 0) {
+                storage.restore(patientId, recordType, timestamps, values, count, lastPosition);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * verifies that a storage recovered from the log holds the same readings, across several segments
+     * purpose: every reading added through addPatientData must survive a restart
+     */
+    @Test
+    void testRecoverAcrossSegments() throws IOException {
+        WriteAheadLog.Options options = new WriteAheadLog.Options().segmentBytes(4096);
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir, options)) {
+            DataStorage storage = DataStorage.recover(log);
+            for (int i = 0; i < 1000; i++) {
+                storage.addPatientData(i % 4, i * 0.5, (i % 3 == 0) ? "ECG" : "Saturation", 1000L + i);
+            }
+            storage.addPatientData(9, "ECG", new long[] {5L, 3L}, new double[] {5.0, 3.0}, 2);
+        }
+        assertTrue(segments().size() > 1);
+
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir, options)) {
+            DataStorage recovered = DataStorage.recover(log);
+            for (int patientId = 0; patientId < 4; patientId++) {
+                List<PatientRecord> records = recovered.getRecords(patientId, 0L, Long.MAX_VALUE);
+                assertEquals(250, records.size());
+                for (int n = 0; n < records.size(); n++) {
+                    PatientRecord record = records.get(n);
+                    int i = patientId + 4 * n;
+                    assertEquals(1000L + i, record.getTimestamp());
+                    assertEquals(i * 0.5, record.getMeasurementValue());
+                    assertEquals((i % 3 == 0) ? "ECG" : "Saturation", record.getRecordType());
+                }
+            }
+            assertEquals(3L, recovered.getRecords(9, 0L, Long.MAX_VALUE).get(0).getTimestamp());
+
+            // readings added after recovery are logged as well
+            recovered.addPatientData(10, 1.0, "Alert", 1L);
+        }
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir, options)) {
+            assertEquals(1, DataStorage.recover(log).getRecords(10, 0L, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * verifies that a segment cut off in the middle of an entry is replayed up to the last complete entry
+     * purpose: a crash during a write must not prevent recovery
+     */
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir)) {
+            DataStorage storage = DataStorage.recover(log);
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(1, i, "ECG", i);
+            }
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - WriteAheadLog.RECORD_BYTES / 2);
+        }
+
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir)) {
+            DataStorage recovered = new DataStorage();
+            assertEquals(9, log.replayInto(recovered));
+            assertEquals(9, recovered.getRecords(1, 0L, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * verifies that replay stops at an entry whose checksum does not match, even if it looks like a valid reading
+     * purpose: garbage after a crash must not be recovered as bogus readings
+     */
+    @Test
+    void testCorruptEntryEndsReplay() throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir)) {
+            DataStorage storage = DataStorage.recover(log);
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(1, i, "ECG", i);
+            }
+        }
+        Path segment = segments().get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        // the value of the 8th reading; tag, patient and type id still look valid
+        int eighthReading = bytes.length - 3 * WriteAheadLog.RECORD_BYTES;
+        bytes[eighthReading + 20] ^= 0x40;
+        Files.write(segment, bytes);
+        // a garbage tail that starts with a record tag and type id 0
+        byte[] garbage = new byte[WriteAheadLog.RECORD_BYTES];
+        garbage[0] = 2;
+        garbage[4] = 1;
+        Files.write(segment, garbage, StandardOpenOption.APPEND);
+
+        try (WriteAheadLog log = WriteAheadLog.open(tempDir)) {
+            DataStorage recovered = new DataStorage();
+            assertEquals(7, log.replayInto(recovered));
+            assertEquals(7, recovered.getRecords(1, 0L, Long.MAX_VALUE).size());
+        }
+    }
+
+    /**
+     * verifies that closing while the sync thread keeps writing and forcing loses no appended reading
+     * purpose: close() must not interrupt a sync, which would close the segment before its tail is written
+     */
+    @Test
+    void testCloseWhileSyncing() throws IOException {
+        WriteAheadLog.Options options = new WriteAheadLog.Options().syncIntervalMillis(1).bufferBytes(4096);
+        for (int round = 0; round < 20; round++) {
+            Path directory = tempDir.resolve("round-" + round);
+            WriteAheadLog log = WriteAheadLog.open(directory, options);
+            for (int i = 0; i < 25_000; i++) {
+                log.append(i % 7, "ECG", i, i * 0.5);
+            }
+            log.close();
+            assertThrows(IllegalStateException.class, () -> log.append(1, "ECG", 0L, 0.0));
+
+            try (WriteAheadLog reopened = WriteAheadLog.open(directory, options)) {
+                DataStorage recovered = new DataStorage();
+                assertEquals(25_000, reopened.replayInto(recovered));
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, e.g. of samples or readings.
+ * Increments are spread over per-thread cells ({@link LongAdder}), so threads
+ * that count at the same time do not contend on one memory location, and
+ * counting never allocates once the cells exist.
+ */
+public final class Counter {
+    private final String name;
+    private final String labels;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, String labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     * @param amount the amount to add, not negative
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * @return the count so far
+     */
+    public long sum() {
+        return count.sum();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getLabels() {
+        return labels;
+    }
+}
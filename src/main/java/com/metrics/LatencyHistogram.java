@@ -0,0 +1,183 @@
+package com.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A distribution of durations in nanoseconds, from which percentiles are read.
+ * Like an HDR histogram, the buckets are log-linear: every power of two is split
+ * into 32 buckets, so a percentile is at most about 3% above the recorded value,
+ * from 1 ns up to about 18 minutes (longer durations land in the last bucket).
+ * Recording takes two atomic additions and never allocates. Threads record into
+ * one of a few stripes chosen by thread id, so concurrent recorders rarely share
+ * a cache line; the stripes are only added up when a {@link Snapshot} is taken.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+    private static final int SUM = BUCKETS;
+    // buckets, the sum and padding, so neighbouring stripes do not share a cache line
+    private static final int STRIPE_LENGTH = BUCKETS + 1 + 8;
+    // a power of two, at most 4, so a stripe is picked with a mask
+    private static final int STRIPES =
+            Math.min(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final String name;
+    private final String labels;
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE_LENGTH);
+
+    LatencyHistogram(String name, String labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds; negative durations count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_LENGTH;
+        counts.getAndIncrement(stripe + bucketOf(value));
+        counts.getAndAdd(stripe + SUM, value);
+    }
+
+    /**
+     * Records the time since a start taken with {@link System#nanoTime()}.
+     * @param startNanos the start of the measured work
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the durations recorded so far; recording may go on while the snapshot is taken
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES * STRIPE_LENGTH; stripe += STRIPE_LENGTH) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += counts.get(stripe + i);
+            }
+            sum += counts.get(stripe + SUM);
+        }
+        return new Snapshot(buckets, sum);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getLabels() {
+        return labels;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((nanos >>> (exponent - SUB_BITS)) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the largest duration that falls into the bucket
+     */
+    static long highestValueOf(int bucket) {
+        int range = bucket >>> SUB_BITS;
+        int sub = bucket & (SUB_BUCKETS - 1);
+        if (range == 0) {
+            return sub;
+        }
+        return ((long) (SUB_BUCKETS + sub + 1) << (range - 1)) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long sum;
+        private final long count;
+
+        private Snapshot(long[] buckets, long sum) {
+            this.buckets = buckets;
+            this.sum = sum;
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            this.count = total;
+        }
+
+        /**
+         * @param earlier a snapshot of the same histogram taken before this one
+         * @return the durations recorded between the two snapshots
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] difference = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                difference[i] = buckets[i] - earlier.buckets[i];
+            }
+            return new Snapshot(difference, sum - earlier.sum);
+        }
+
+        /**
+         * @return the number of recorded durations
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the total of the recorded durations in nanoseconds
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the mean duration in nanoseconds, 0 if nothing was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         * @return the duration in nanoseconds that the given share of the durations
+         *         does not exceed, rounded up to its bucket; 0 if nothing was recorded
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return highestValueOf(i);
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * @return the longest duration in nanoseconds, rounded up to its bucket; 0 if nothing was recorded
+         */
+        public long getMax() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (buckets[i] != 0) {
+                    return highestValueOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
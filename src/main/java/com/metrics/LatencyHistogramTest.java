@@ -0,0 +1,77 @@
+package com.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    /**
+     * verifies that every value lands in a bucket whose upper bound is at most about 3% above it,
+     * and that the buckets cover the range without gaps
+     */
+    @Test
+    void testBucketPrecision() {
+        for (long value : new long[] {0, 1, 31, 32, 63, 64, 65, 1000, 123_456, 1_000_000_007L, 1L << 40}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+            assertTrue(highest >= value, value + " above its bucket " + highest);
+            assertTrue(highest <= value + value / 32, value + " in too wide a bucket " + highest);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long lowest = LatencyHistogram.highestValueOf(bucket - 1) + 1;
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    /**
+     * verifies the percentiles, count, sum and interval differences of recorded durations
+     */
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test_seconds");
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        assertEquals(1000, first.getCount());
+        assertEquals(500_500_000L, first.getSum());
+        assertEquals(500_000, first.getValueAtQuantile(0.5), 500_000 / 32.0);
+        assertEquals(990_000, first.getValueAtQuantile(0.99), 990_000 / 32.0);
+        assertEquals(1_000_000, first.getMax(), 1_000_000 / 32.0);
+
+        histogram.record(5_000_000_000L);
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(first);
+        assertEquals(1, interval.getCount());
+        assertEquals(5_000_000_000L, interval.getValueAtQuantile(0.5), 5_000_000_000L / 32.0);
+        assertEquals(0, new MetricsRegistry().histogram("empty_seconds").snapshot().getValueAtQuantile(0.99));
+    }
+
+    /**
+     * verifies that no recording is lost when several threads record at once
+     * purpose: the stripes are shared by threads whose ids map to the same stripe
+     */
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test_seconds");
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(1 + random.nextInt(1_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, histogram.snapshot().getCount());
+    }
+}
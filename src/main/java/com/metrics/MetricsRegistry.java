@@ -0,0 +1,139 @@
+package com.metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Holds the counters and latency histograms of a process by name.
+ * Instrumented classes look their metrics up once, e.g. in a field, and then
+ * only count and record. {@link #writeText} renders all metrics in the
+ * Prometheus text format for {@link MetricsServer}, and {@link MetricsReporter}
+ * turns them into a periodic log line.
+ * Metric names follow the Prometheus conventions: lower snake case, counters
+ * end in "_total" and durations in "_seconds".
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    // sorted by name and labels, so the metrics of one name are rendered together
+    private final ConcurrentSkipListMap<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return the registry the simulator, the storage and the alerts record into
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     * @param name the metric name, e.g. "storage_readings_total"
+     * @return the counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter(name, ""));
+    }
+
+    /**
+     * Returns the counter with the given name and label, creating it on first use.
+     * @param name       the metric name, e.g. "generator_samples_total"
+     * @param labelName  the label that tells the counters of the name apart, e.g. "generator"
+     * @param labelValue the value of the label, e.g. "ECGDataGenerator"
+     * @return the counter
+     */
+    public Counter counter(String name, String labelName, String labelValue) {
+        String labels = label(labelName, labelValue);
+        return counters.computeIfAbsent(name + "{" + labels + "}", key -> new Counter(name, labels));
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use.
+     * @param name the metric name, e.g. "storage_listener_seconds"
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram(name, ""));
+    }
+
+    /**
+     * Returns the histogram with the given name and label, creating it on first use.
+     * @param name       the metric name, e.g. "output_write_seconds"
+     * @param labelName  the label that tells the histograms of the name apart, e.g. "output"
+     * @param labelValue the value of the label
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name, String labelName, String labelValue) {
+        String labels = label(labelName, labelValue);
+        return histograms.computeIfAbsent(name + "{" + labels + "}", key -> new LatencyHistogram(name, labels));
+    }
+
+    /**
+     * @return all counters, ordered by name and labels
+     */
+    public List<Counter> getCounters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    /**
+     * @return all histograms, ordered by name and labels
+     */
+    public List<LatencyHistogram> getHistograms() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format. Histograms are
+     * written as summaries of everything recorded since the start, with the
+     * 0.5, 0.9, 0.99 and 0.999 quantiles and the maximum as quantile 1, in seconds.
+     * @param out where the text goes
+     * @throws IOException if the text cannot be written
+     */
+    public void writeText(Appendable out) throws IOException {
+        String lastName = null;
+        for (Counter counter : counters.values()) {
+            if (!counter.getName().equals(lastName)) {
+                lastName = counter.getName();
+                out.append("# TYPE ").append(lastName).append(" counter\n");
+            }
+            out.append(series(counter.getName(), counter.getLabels(), null))
+                    .append(' ').append(Long.toString(counter.sum())).append('\n');
+        }
+        lastName = null;
+        for (LatencyHistogram histogram : histograms.values()) {
+            String name = histogram.getName();
+            String labels = histogram.getLabels();
+            if (!name.equals(lastName)) {
+                lastName = name;
+                out.append("# TYPE ").append(name).append(" summary\n");
+            }
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            for (double quantile : QUANTILES) {
+                out.append(series(name, labels, "quantile=\"" + quantile + "\""))
+                        .append(' ').append(Double.toString(snapshot.getValueAtQuantile(quantile) / 1e9)).append('\n');
+            }
+            out.append(series(name + "_sum", labels, null))
+                    .append(' ').append(Double.toString(snapshot.getSum() / 1e9)).append('\n');
+            out.append(series(name + "_count", labels, null))
+                    .append(' ').append(Long.toString(snapshot.getCount())).append('\n');
+        }
+    }
+
+    private static String series(String name, String labels, String extraLabel) {
+        if (labels.isEmpty() && extraLabel == null) {
+            return name;
+        }
+        if (extraLabel == null) {
+            return name + "{" + labels + "}";
+        }
+        return name + "{" + (labels.isEmpty() ? "" : labels + ",") + extraLabel + "}";
+    }
+
+    private static String label(String labelName, String labelValue) {
+        String escaped = labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return labelName + "=\"" + escaped + "\"";
+    }
+}
@@ -0,0 +1,75 @@
+package com.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    /**
+     * verifies that counters and histograms are rendered in the Prometheus text format,
+     * grouped by name, with escaped label values
+     */
+    @Test
+    void testTextFormat() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("samples_total", "generator", "ECG").add(5);
+        registry.counter("samples_total", "generator", "Say \"hi\"").increment();
+        assertSame(registry.counter("samples_total", "generator", "ECG"), registry.counter("samples_total", "generator", "ECG"));
+        registry.histogram("write_seconds").record(2_000_000);
+
+        StringBuilder text = new StringBuilder();
+        registry.writeText(text);
+        String expected = "# TYPE samples_total counter\n"
+                + "samples_total{generator=\"ECG\"} 5\n"
+                + "samples_total{generator=\"Say \\\"hi\\\"\"} 1\n"
+                + "# TYPE write_seconds summary\n";
+        assertTrue(text.toString().startsWith(expected), text.toString());
+        assertTrue(text.toString().contains("write_seconds{quantile=\"0.99\"} 0.00"), text.toString());
+        assertTrue(text.toString().contains("write_seconds_sum 0.002\n"), text.toString());
+        assertTrue(text.toString().endsWith("write_seconds_count 1\n"), text.toString());
+    }
+
+    /**
+     * verifies that the log line shows rates and percentiles of the last interval only
+     */
+    @Test
+    void testReporterShowsInterval() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter readings = registry.counter("readings_total");
+        LatencyHistogram writes = registry.histogram("write_seconds", "output", "File");
+        readings.add(100);
+        MetricsReporter reporter = new MetricsReporter(registry);
+
+        readings.add(10);
+        writes.record(1_500_000);
+        String line = reporter.report();
+        assertTrue(line.startsWith("metrics ("), line);
+        assertTrue(line.contains(" readings_total "), line);
+        assertTrue(line.contains("; write_seconds{output=\"File\"} n=1 p50=1.5ms p99=1.5ms max=1.5ms"), line);
+        assertTrue(reporter.report().endsWith(" idle"));
+    }
+
+    /**
+     * verifies that the metrics can be scraped over HTTP
+     */
+    @Test
+    void testServerServesMetrics() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("readings_total").add(42);
+        try (MetricsServer server = new MetricsServer(registry, 0)) {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            assertEquals("# TYPE readings_total counter\nreadings_total 42\n", response.body());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.metrics;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the metrics of a registry as one line per interval, e.g.
+ * <pre>
+ * metrics (10.0 s): generator_samples_total{generator="ECGDataGenerator"} 500.0/s;
+ * output_write_seconds{output="FileOutputStrategy"} n=1000 p50=12us p99=80us max=1.2ms
+ * </pre>
+ * Counters are shown as rates and histograms as percentiles of what happened in
+ * the interval, so a stall shows up in the line of the interval it happened in.
+ * Metrics that did not change in the interval are left out.
+ */
+public class MetricsReporter implements AutoCloseable {
+    private final MetricsRegistry registry;
+    private final Map<Counter, Long> lastCounts = new HashMap<>();
+    private final Map<LatencyHistogram, LatencyHistogram.Snapshot> lastSnapshots = new HashMap<>();
+    private long lastNanos;
+    private ScheduledExecutorService timer;
+
+    /**
+     * Creates a reporter whose first interval starts now.
+     * @param registry the metrics to report
+     */
+    public MetricsReporter(MetricsRegistry registry) {
+        this.registry = registry;
+        this.lastNanos = System.nanoTime();
+        for (Counter counter : registry.getCounters()) {
+            lastCounts.put(counter, counter.sum());
+        }
+        for (LatencyHistogram histogram : registry.getHistograms()) {
+            lastSnapshots.put(histogram, histogram.snapshot());
+        }
+    }
+
+    /**
+     * Prints a report line to standard error at a fixed interval, on a daemon thread.
+     * @param intervalMillis the time between two lines
+     */
+    public synchronized void start(long intervalMillis) {
+        if (timer != null) {
+            throw new IllegalStateException("Reporter already started");
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(() -> System.err.println(report()), intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds the line for the interval since the previous call, or since the
+     * reporter was created, and starts the next interval.
+     * @return the report line
+     */
+    public synchronized String report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastNanos) / 1e9;
+        lastNanos = now;
+
+        StringBuilder line = new StringBuilder(256);
+        line.append(String.format(Locale.ROOT, "metrics (%.1f s):", seconds));
+        int length = line.length();
+        for (Counter counter : registry.getCounters()) {
+            long count = counter.sum();
+            Long last = lastCounts.put(counter, count);
+            long delta = count - (last == null ? 0 : last);
+            if (delta != 0) {
+                appendSeparator(line, length);
+                appendName(line, counter.getName(), counter.getLabels());
+                line.append(String.format(Locale.ROOT, " %.1f/s", delta / seconds));
+            }
+        }
+        for (LatencyHistogram histogram : registry.getHistograms()) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            LatencyHistogram.Snapshot last = lastSnapshots.put(histogram, snapshot);
+            LatencyHistogram.Snapshot interval = last == null ? snapshot : snapshot.minus(last);
+            if (interval.getCount() != 0) {
+                appendSeparator(line, length);
+                appendName(line, histogram.getName(), histogram.getLabels());
+                line.append(" n=").append(interval.getCount())
+                        .append(" p50=").append(formatNanos(interval.getValueAtQuantile(0.5)))
+                        .append(" p99=").append(formatNanos(interval.getValueAtQuantile(0.99)))
+                        .append(" max=").append(formatNanos(interval.getMax()));
+            }
+        }
+        if (line.length() == length) {
+            line.append(" idle");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Stops the periodic lines and prints a last one for the time since the previous line.
+     */
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+            System.err.println(report());
+        }
+    }
+
+    private static void appendSeparator(StringBuilder line, int emptyLength) {
+        line.append(line.length() == emptyLength ? " " : "; ");
+    }
+
+    private static void appendName(StringBuilder line, String name, String labels) {
+        line.append(name);
+        if (!labels.isEmpty()) {
+            line.append('{').append(labels).append('}');
+        }
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return (nanos / 1_000) + "us";
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+}